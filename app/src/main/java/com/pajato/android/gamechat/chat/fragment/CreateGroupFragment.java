@@ -40,6 +40,7 @@ import com.pajato.android.gamechat.database.GroupManager;
 import com.pajato.android.gamechat.database.MemberManager;
 import com.pajato.android.gamechat.database.MessageManager;
 import com.pajato.android.gamechat.database.RoomManager;
+import com.pajato.android.gamechat.database.WriteScheduler;
 import com.pajato.android.gamechat.exp.NotificationManager;
 
 import java.util.ArrayList;
@@ -136,7 +137,9 @@ public class CreateGroupFragment extends BaseCreateFragment {
         String groupKey = GroupManager.instance.getGroupKey();
         String roomKey = RoomManager.instance.getRoomKey(groupKey);
 
-        // Update and persist the group adding the default room to it's room list.
+        // Update and persist the group adding the default room to it's room list.  The group, its
+        // default room, member, welcome message and the account update are written as one batch.
+        WriteScheduler.instance.begin();
         mGroup.key = groupKey;
         mGroup.owner = account.key;
         mGroup.roomList.add(roomKey);
@@ -162,6 +165,7 @@ public class CreateGroupFragment extends BaseCreateFragment {
         // Post a welcome message to the default room from the owner.
         String text = "Welcome to my new group!";
         MessageManager.instance.createMessage(text, STANDARD, account, room);
+        WriteScheduler.instance.end();
 
         // Dismiss the Keyboard and return to the previous fragment.
         dismissKeyboard();
@@ -22,6 +22,8 @@ import android.content.Intent;
 import android.support.annotation.NonNull;
 import android.support.design.widget.FloatingActionButton;
 import android.support.design.widget.Snackbar;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.KeyEvent;
@@ -73,6 +75,16 @@ import static com.pajato.android.gamechat.main.MainService.ROOM_KEY;
 public class ShowMessagesFragment extends BaseChatFragment implements View.OnClickListener,
         TextView.OnEditorActionListener {
 
+    // Private class constants.
+
+    /** The number of rows from either end of the list at which paging kicks in. */
+    private static final int PAGING_DISTANCE = 5;
+
+    // Private instance variables.
+
+    /** The listener loading older messages on scroll-up and trimming them back at the bottom. */
+    private RecyclerView.OnScrollListener mScrollListener = new PagingScrollListener();
+
     // Public instance methods.
 
     /** Return null or a list to be displayed by the list adapter */
@@ -92,19 +104,6 @@ public class ShowMessagesFragment extends BaseChatFragment implements View.OnCli
         return RoomManager.instance.getRoomName(mDispatcher.roomKey);
     }
 
-    /** Ensure that all the messages in a given room are marked as seen by the account holder. */
-    private void markMessagesSeen(@NonNull final String groupKey, @NonNull final String roomKey) {
-        List<Message> list = MessageManager.instance.getMessageList(groupKey, roomKey);
-        String accountId = AccountManager.instance.getCurrentAccountId();
-        if (list == null || list.size() == 0 || accountId == null)
-            return;
-        for (Message message : list)
-            if (message.unseenList.contains(accountId)) {
-                message.unseenList.remove(accountId);
-                MessageManager.instance.updateMessage(message);
-            }
-    }
-
     /** Process a given button click event looking for one on the chat fab button. */
     @Subscribe public void onClick(final ClickEvent event) {
         // Determine if this event is for the chat fab button.
@@ -178,6 +177,10 @@ public class ShowMessagesFragment extends BaseChatFragment implements View.OnCli
     @Override public void onPause() {
         super.onPause();
         clearJoinState(mDispatcher.groupKey, mDispatcher.roomKey, chat);
+        RecyclerView recycler = (RecyclerView) mLayout.findViewById(R.id.ItemList);
+        if (recycler != null)
+            recycler.removeOnScrollListener(mScrollListener);
+        MessageManager.instance.trimMessages(mDispatcher);
     }
 
     /** Deal with the fragment's lifecycle by managing the FAB. */
@@ -186,12 +189,17 @@ public class ShowMessagesFragment extends BaseChatFragment implements View.OnCli
         initEditText(mLayout);
         FabManager.chat.setVisibility(this, View.GONE);
         setJoinState(mDispatcher.groupKey, mDispatcher.roomKey, chat);
+        RecyclerView recycler = (RecyclerView) mLayout.findViewById(R.id.ItemList);
+        if (recycler != null) {
+            recycler.removeOnScrollListener(mScrollListener);
+            recycler.addOnScrollListener(mScrollListener);
+        }
     }
 
     /** Setup the fragment configuration using the specified dispatcher. */
     public void onSetup(Context context, Dispatcher dispatcher) {
         mDispatcher = dispatcher;
-        markMessagesSeen(mDispatcher.groupKey, mDispatcher.roomKey);
+        MessageManager.instance.markSeen(mDispatcher.groupKey, mDispatcher.roomKey);
     }
 
     /** Setup the toolbar. */
@@ -246,6 +254,23 @@ public class ShowMessagesFragment extends BaseChatFragment implements View.OnCli
 
     // Private inner classes.
 
+    /** Load older messages when scrolling up near the top and trim them back near the bottom. */
+    private class PagingScrollListener extends RecyclerView.OnScrollListener {
+        @Override public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            RecyclerView.LayoutManager manager = recyclerView.getLayoutManager();
+            if (!(manager instanceof LinearLayoutManager) || dy == 0)
+                return;
+            LinearLayoutManager layoutManager = (LinearLayoutManager) manager;
+            int first = layoutManager.findFirstVisibleItemPosition();
+            int last = layoutManager.findLastVisibleItemPosition();
+            int fromEnd = layoutManager.getItemCount() - 1 - last;
+            if (dy < 0 && first <= PAGING_DISTANCE)
+                MessageManager.instance.loadOlderMessages(mDispatcher);
+            else if (dy > 0 && fromEnd <= PAGING_DISTANCE)
+                MessageManager.instance.trimMessages(mDispatcher);
+        }
+    }
+
     /** Provide a text handler for messages to be posted. */
     private class EditTextWatcher implements TextWatcher {
 
@@ -19,6 +19,7 @@ package com.pajato.android.gamechat.chat.model;
 
 import com.google.firebase.database.Exclude;
 import com.pajato.android.gamechat.database.AccountManager;
+import com.pajato.android.gamechat.database.MemberManager;
 import com.pajato.android.gamechat.database.model.Base;
 
 import java.util.List;
@@ -48,7 +49,10 @@ public class Message extends Base {
     /** The message type. */
     public int type;
 
-    /** A list of users (by account identifier) in the room, that have not yet seen the message. */
+    /**
+     * Null, or, on messages posted before read cursors, the users (by account identifier) in the
+     * room that have not yet seen the message.  Only a user on the list can find it unseen.
+     */
     public List<String> unseenList;
 
     /** The poster's url. */
@@ -84,7 +88,18 @@ public class Message extends Base {
 
     /** Return TRUE iff the message has not been seen by the current account holder. */
     @Exclude public boolean isUnseen() {
+        return isUnseen(MemberManager.instance.getSeenTime(groupKey, roomKey));
+    }
+
+    /**
+     * Return TRUE iff the message has not been seen by the current account holder given the time
+     * the holder last saw the room (the read cursor): the message was posted by someone else after
+     * that time and, if it carries a legacy unseen list, the holder is on it.
+     */
+    @Exclude public boolean isUnseen(final long seenTime) {
         String id = AccountManager.instance.getCurrentAccountId();
-        return id != null && unseenList != null && unseenList.contains(id);
+        if (id == null || id.equals(owner) || (unseenList != null && !unseenList.contains(id)))
+            return false;
+        return createTime > seenTime;
     }
 }
@@ -265,14 +265,20 @@ public abstract class BaseFragment extends Fragment {
 
         // Inject the list items into the recycler view making sure to scroll to the end of the
         // list when showing messages.
-        ListAdapter listAdapter = (ListAdapter) adapter;
-        listAdapter.clearItems();
+        final ListAdapter listAdapter = (ListAdapter) adapter;
+        final RecyclerView listView = recycler;
         List<ListItem> items = getList();
         int size = items != null ? items.size() : 0;
         Log.d(TAG, String.format(Locale.US, "Updating with %d items.", size));
-        listAdapter.addItems(items);
-        if (type == messageList)
-            recycler.scrollToPosition(listAdapter.getItemCount() - 1);
+        // Keep showing the newest messages only if they were being shown (an older page may be
+        // coming in while scrolled up).
+        boolean isAtEnd = !listView.canScrollVertically(1);
+        Runnable scrollTask = type != messageList || !isAtEnd ? null : new Runnable() {
+            @Override public void run() {
+                listView.scrollToPosition(listAdapter.getItemCount() - 1);
+            }
+        };
+        listAdapter.updateItems(items, scrollTask);
         return true;
     }
 
@@ -239,7 +239,7 @@ public enum DispatchManager {
             default:            // Depends on kind and number of experiences, if any.
                 if (kind == chat)
                     return new Dispatcher(chatGroupList);
-                if (ExperienceManager.instance.experienceMap.size() > 0)
+                if (ExperienceManager.instance.getExperienceCount() > 0)
                     return new Dispatcher(expGroupList);
                 return new Dispatcher(noExperiences);
         }
@@ -57,6 +57,7 @@ import com.pajato.android.gamechat.database.GroupManager;
 import com.pajato.android.gamechat.database.MemberManager;
 import com.pajato.android.gamechat.database.MessageManager;
 import com.pajato.android.gamechat.database.RoomManager;
+import com.pajato.android.gamechat.database.WriteScheduler;
 import com.pajato.android.gamechat.event.AppEventManager;
 import com.pajato.android.gamechat.event.AuthenticationChangeEvent;
 import com.pajato.android.gamechat.event.GroupJoinedEvent;
@@ -133,7 +134,9 @@ public enum InvitationManager implements GoogleApiClient.OnConnectionFailedListe
         if (isMember || !isInvited || group == null) return;
 
         // The account holder has been invited to join the given group.  Do so by adding the group
-        // key to the account join list and create a copy of the account as a member of the group.
+        // key to the account join list and create a copy of the account as a member of the group,
+        // persisting the account, member and group changes as one batch.
+        WriteScheduler.instance.begin();
         account.joinMap.put(groupKey, new JoinState());
         AccountManager.instance.updateAccount(account);
         Account member = new Account(account);
@@ -145,6 +148,7 @@ public enum InvitationManager implements GoogleApiClient.OnConnectionFailedListe
         group.memberList.add(member.key);
         path = GroupManager.instance.getGroupProfilePath(groupKey);
         DBUtils.updateChildren(path, group.toMap());
+        WriteScheduler.instance.end();
     }
 
     /** Clear the external app invitations map */
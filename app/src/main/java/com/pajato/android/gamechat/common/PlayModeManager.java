@@ -37,7 +37,9 @@ import com.pajato.android.gamechat.database.GroupManager;
 import com.pajato.android.gamechat.database.JoinManager;
 import com.pajato.android.gamechat.database.MemberManager;
 import com.pajato.android.gamechat.exp.BaseExperienceFragment;
+import com.pajato.android.gamechat.exp.ComputerPlayer;
 import com.pajato.android.gamechat.exp.Experience;
+import com.pajato.android.gamechat.exp.Team;
 import com.pajato.android.gamechat.exp.model.Player;
 
 import java.util.ArrayList;
@@ -79,6 +81,46 @@ public enum PlayModeManager {
             mPlayModePopupWindow.dismiss();
     }
 
+    /** Return the team the computer plays in the given experience, null if it is not playing. */
+    public Team getComputerTeam(final Experience experience) {
+        Player player = getComputerPlayer(experience);
+        return player != null ? getTeam(player) : null;
+    }
+
+    /** Handle a computer selection in the play mode menu by having it play the second player. */
+    public void handlePlayModeComputerSelection(final BaseExperienceFragment fragment) {
+        // Ensure that the experience has an engine able to play and a local second player for the
+        // computer to take over.  If not, abort, otherwise make the computer that player and let
+        // it move if it is its turn.
+        closePlayModeMenu();
+        Experience experience = fragment.getExperience();
+        if (!fragment.hasComputerOpponent()) {
+            fragment.showFutureFeatureMessage(R.string.PlayModeComputerMenuTitle);
+            return;
+        }
+        List<Player> players = experience.getPlayers();
+        Player player = players.size() == 2 ? players.get(1) : null;
+        if (player == null || player.id != null)
+            return;
+        player.name = fragment.getString(R.string.computer);
+        player.computer = true;
+        ExperienceManager.instance.updateExperience(experience);
+        fragment.startComputerMove();
+    }
+
+    /** Handle a local (friend) selection in the play mode menu by retiring any computer player. */
+    public void handlePlayModeLocalSelection(final BaseExperienceFragment fragment) {
+        closePlayModeMenu();
+        Experience experience = fragment.getExperience();
+        Player player = getComputerPlayer(experience);
+        if (player == null)
+            return;
+        ComputerPlayer.instance.cancel();
+        player.computer = false;
+        player.name = fragment.getString(R.string.friend);
+        ExperienceManager.instance.updateExperience(experience);
+    }
+
     /** Handle a use selection in the play mode menu */
     public void handlePlayModeUserSelection(View view, BaseExperienceFragment fragment) {
         Object payload = view.getTag();
@@ -104,6 +146,7 @@ public enum PlayModeManager {
             if (p.id == null) {
                 p.id = member.key;
                 p.name = member.getNickName();
+                p.computer = false;
                 break;
             }
         }
@@ -114,6 +157,14 @@ public enum PlayModeManager {
         PlayModeManager.instance.closePlayModeMenu();
     }
 
+    /** Return TRUE iff the computer plays the side whose turn it is in the given experience. */
+    public boolean isComputerTurn(final Experience experience) {
+        Team team = getComputerTeam(experience);
+        if (team == null)
+            return false;
+        return team == (experience.getTurn() ? Team.PRIMARY : Team.SECONDARY);
+    }
+
     /**
      * Create and show the play mode popup menu. The popup menu must be created with the anchor in
      * the current fragment layout, so it cannot be shared across fragments.
@@ -152,6 +203,17 @@ public enum PlayModeManager {
 
     // Private instance methods.
 
+    /** Return the player the computer plays for in the given experience, null if there is none. */
+    private Player getComputerPlayer(final Experience experience) {
+        List<Player> players = experience != null ? experience.getPlayers() : null;
+        if (players == null)
+            return null;
+        for (Player player : players)
+            if (player.computer)
+                return player;
+        return null;
+    }
+
     private List<PlayModeMenuEntry> getMenuItems(Activity activity) {
         List<PlayModeMenuEntry> result = new ArrayList<>();
         result.add(new PlayModeMenuEntry(activity.getString(R.string.PlayModeLocalMenuTitle), null, null));
@@ -180,4 +242,14 @@ public enum PlayModeManager {
         result.addAll(memberMap.values());
         return result;
     }
+
+    /**
+     * Return the team of the given (second) player.  Tictactoe players have no team: the second
+     * player (O) moves on the secondary turn.
+     */
+    private Team getTeam(final Player player) {
+        if (player.team == null || player.team.isEmpty())
+            return Team.SECONDARY;
+        return Team.valueOf(player.team.toUpperCase(Locale.US));
+    }
 }
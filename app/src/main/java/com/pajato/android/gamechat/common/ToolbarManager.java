@@ -55,6 +55,7 @@ public enum ToolbarManager {
         chat (R.string.SwitchToChat, 0, IF_ROOM, R.drawable.ic_chat_bubble_circle_white_24dp),
         game (R.string.SwitchToExp, 0, IF_ROOM, R.drawable.ic_checkers_white_24dp),
         helpAndFeedback (R.string.MenuItemHelpAndFeedback, 55, NEVER, -1), // should always be included
+        hint (R.string.MenuItemHint, 10, NEVER, -1),
         invite (R.string.InviteFriendMessage, 20, NEVER, R.drawable.ic_share_white_24dp),
         search (R.string.MenuItemSearch, 20, NEVER, R.drawable.ic_search_white_24px),
         members (R.string.MembersMenuItem, 30, NEVER, -1),
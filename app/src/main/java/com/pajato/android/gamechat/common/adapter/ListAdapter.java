@@ -19,7 +19,10 @@ package com.pajato.android.gamechat.common.adapter;
 
 import android.content.Context;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.RecyclerView.ViewHolder;
 import android.text.TextUtils;
@@ -49,6 +52,8 @@ import com.pajato.android.gamechat.main.NavigationManager;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.pajato.android.gamechat.chat.model.Room.RoomType.ME;
 
@@ -75,9 +80,18 @@ public class ListAdapter extends RecyclerView.Adapter<ViewHolder>
     /** A format string for displaying unhandled cases. */
     private static final String UNHANDLED_FORMAT = "Unhandled item entry type: {%s}.";
 
+    /** The single background thread diffing item lists, shared by all adapters. */
+    private static final ExecutorService DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
     /** The list displayed by the owning list view. */
     private List<ListItem> mList = new ArrayList<>();
 
+    /** The update generation, advanced by each change to the list; stale diffs are dropped. */
+    private int mGeneration;
+
+    /** The UI thread handler used to apply the diffs, created on first use. */
+    private Handler mHandler;
+
     // Public instance methods.
 
     /** Add items to the adapter's main list. */
@@ -85,18 +99,62 @@ public class ListAdapter extends RecyclerView.Adapter<ViewHolder>
         if (items == null)
             return;
         // Add all the items after clearing the current ones.
+        mGeneration++;
         mList.addAll(items);
         notifyDataSetChanged();
     }
 
     /** Clear all current items. */
     public void clearItems() {
+        mGeneration++;
         mList.clear();
     }
 
     /** Get the items being adapted. */
     public List<ListItem> getItems() {return mList;}
 
+    /**
+     * Replace the items with the given ones, then run the given (possibly null) task.  The changes
+     * are found by diffing the lists on a background thread and notified as the individual
+     * inserts, removals, moves and changes, so that only the affected rows are rebound.  An empty
+     * list on either side is simply swapped in.
+     */
+    public void updateItems(final List<ListItem> items, final Runnable onUpdated) {
+        final List<ListItem> newList = new ArrayList<>();
+        if (items != null)
+            newList.addAll(items);
+        final int generation = ++mGeneration;
+        if (mList.isEmpty() || newList.isEmpty()) {
+            mList = newList;
+            notifyDataSetChanged();
+            if (onUpdated != null)
+                onUpdated.run();
+            return;
+        }
+
+        // Diff the displayed list against the new one in the background and apply the result on
+        // the UI thread unless a later update has superseded it.
+        if (mHandler == null)
+            mHandler = new Handler(Looper.getMainLooper());
+        final List<ListItem> oldList = mList;
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new ItemDiff(oldList,
+                        newList));
+                mHandler.post(new Runnable() {
+                    @Override public void run() {
+                        if (generation != mGeneration)
+                            return;
+                        mList = newList;
+                        result.dispatchUpdatesTo(ListAdapter.this);
+                        if (onUpdated != null)
+                            onUpdated.run();
+                    }
+                });
+            }
+        });
+    }
+
     /** Manage the recycler view holder. */
     @Override public ViewHolder onCreateViewHolder(final ViewGroup parent, final int viewType) {
         if (viewType < 0 || viewType >= ItemType.values().length)
@@ -156,7 +214,7 @@ public class ListAdapter extends RecyclerView.Adapter<ViewHolder>
             switch (item.type) {
                 case contact:
                 case member:
-                    updateContactHolder((ContactViewHolder) holder, item);
+                    updateContactHolder((ContactViewHolder) holder, item, true);
                     break;
                 case date:
                 case resourceHeader:
@@ -180,7 +238,7 @@ public class ListAdapter extends RecyclerView.Adapter<ViewHolder>
                 case selectableRoom:
                      // The group item has to update the group title, the number of new messages,
                     // and the list of rooms with messages (possibly old).
-                    updateHolder((ItemListViewHolder) holder, item);
+                    updateHolder((ItemListViewHolder) holder, item, true);
                     break;
                 case newItem:
                     updateNewItemHolder((NewItemViewHolder)holder, item);
@@ -195,6 +253,21 @@ public class ListAdapter extends RecyclerView.Adapter<ViewHolder>
         }
     }
 
+    /** Rebind the changed parts of the holder at the given position, given the change payloads. */
+    @Override public void onBindViewHolder(ViewHolder holder, int position, List<Object> payloads) {
+        // A change leaving the icon alone rebinds the holder without reloading the icon.
+        ListItem item = mList.get(position);
+        boolean isIconSame = !payloads.isEmpty() && item != null;
+        for (Object payload : payloads)
+            isIconSame &= ListItem.ICON_UNCHANGED.equals(payload);
+        if (isIconSame && holder instanceof ItemListViewHolder)
+            updateHolder((ItemListViewHolder) holder, item, false);
+        else if (isIconSame && holder instanceof ContactViewHolder)
+            updateContactHolder((ContactViewHolder) holder, item, false);
+        else
+            onBindViewHolder(holder, position);
+    }
+
     /** Post any item clicks to the app. */
     public void onClick(final View view) {
         AppEventManager.instance.post(new ClickEvent(view));
@@ -380,8 +453,12 @@ public class ListAdapter extends RecyclerView.Adapter<ViewHolder>
         holder.itemView.setTag(item);
     }
 
-    /** Update the given view holder using the data from the given item. */
-    private void updateHolder(ItemListViewHolder holder, final ListItem item) {
+    /**
+     * Update the given view holder using the data from the given item, reloading the icon only if
+     * the given flag is set.
+     */
+    private void updateHolder(ItemListViewHolder holder, final ListItem item,
+                              final boolean isIconNew) {
         // Set the title and list text view content based on the given item.  Provide the item in
         // the view holder tag field.
         holder.name.setText(item.name);
@@ -402,7 +479,8 @@ public class ListAdapter extends RecyclerView.Adapter<ViewHolder>
                 holder.text.setText(CompatUtils.fromHtml(item.text));
 
         }
-        setIcon(holder, item);
+        if (isIconNew)
+            setIcon(holder, item);
         setEndIcon(holder, item);
         holder.itemView.setTag(item);
 
@@ -426,10 +504,13 @@ public class ListAdapter extends RecyclerView.Adapter<ViewHolder>
         holder.button.setTag(item);
     }
 
-    /** Use the item passed to update the specified contact view holder */
-    private void updateContactHolder(ContactViewHolder holder, final ListItem item) {
+    /** Use the item passed to update the specified contact view holder, and its icon if flagged. */
+    private void updateContactHolder(ContactViewHolder holder, final ListItem item,
+                                     final boolean isIconNew) {
         holder.name.setText(item.name);
         holder.email.setText(item.email);
+        if (!isIconNew)
+            return;
         Context context = holder.icon.getContext();
         if (item.iconUrl == null) {
             holder.icon.setImageResource(R.drawable.ic_account_circle_black_48dp);
@@ -459,6 +540,37 @@ public class ListAdapter extends RecyclerView.Adapter<ViewHolder>
 
     // Inner classes.
 
+    /** Compare an old and a new item list using the item identity and content. */
+    private static class ItemDiff extends DiffUtil.Callback {
+        private final List<ListItem> mNewList;
+        private final List<ListItem> mOldList;
+
+        ItemDiff(final List<ListItem> oldList, final List<ListItem> newList) {
+            mOldList = oldList;
+            mNewList = newList;
+        }
+
+        @Override public int getOldListSize() {
+            return mOldList.size();
+        }
+
+        @Override public int getNewListSize() {
+            return mNewList.size();
+        }
+
+        @Override public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return mNewList.get(newPosition).isSameItem(mOldList.get(oldPosition));
+        }
+
+        @Override public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            return mNewList.get(newPosition).hasSameContent(mOldList.get(oldPosition));
+        }
+
+        @Override public Object getChangePayload(int oldPosition, int newPosition) {
+            return mNewList.get(newPosition).getChangePayload(mOldList.get(oldPosition));
+        }
+    }
+
     /** Provide a handler for clicks on the selector button. */
     private class SelectorClickListener implements View.OnClickListener {
         public void onClick(View view) {
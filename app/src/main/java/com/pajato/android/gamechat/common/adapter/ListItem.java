@@ -112,6 +112,11 @@ public class ListItem {
 
     }
 
+    // Public class constants.
+
+    /** The change payload for an item whose icon is unchanged: its icon need not be reloaded. */
+    public static final String ICON_UNCHANGED = "iconUnchanged";
+
     // Public instance variables.
 
     /** The number of new messages or experiences in a group or a room. */
@@ -294,12 +299,51 @@ public class ListItem {
 
     // Public instance methods.
 
+    /**
+     * Return the payload describing the change from the given item (the same item, with different
+     * content) to this one: ICON_UNCHANGED when only the text, counts or states differ, null when
+     * the item needs a full rebind.
+     */
+    public Object getChangePayload(@NonNull final ListItem old) {
+        boolean isIconSame = iconResId == old.iconResId && isEqual(iconUrl, old.iconUrl);
+        return isIconSame && type == old.type ? ICON_UNCHANGED : null;
+    }
+
+    /** Return TRUE iff the given item (the same item) would be displayed exactly as this one. */
+    public boolean hasSameContent(@NonNull final ListItem other) {
+        return count == other.count && enabled == other.enabled && iconResId == other.iconResId
+                && nameResourceId == other.nameResourceId && selected == other.selected
+                && isEqual(name, other.name) && isEqual(text, other.text)
+                && isEqual(email, other.email) && isEqual(phone, other.phone)
+                && isEqual(iconUrl, other.iconUrl) && isEqual(mGroupKeyList, other.mGroupKeyList);
+    }
+
+    /**
+     * Return TRUE iff the given item represents the same thing (message, group, room, member,
+     * header, ...) as this one, possibly with different content.
+     */
+    public boolean isSameItem(@NonNull final ListItem other) {
+        if (type != other.type || nameResourceId != other.nameResourceId)
+            return false;
+        boolean hasKey = groupKey != null || roomKey != null || memberKey != null
+                || experienceKey != null || messageKey != null || email != null;
+        boolean isSame = isEqual(groupKey, other.groupKey) && isEqual(roomKey, other.roomKey)
+                && isEqual(memberKey, other.memberKey) && isEqual(messageKey, other.messageKey)
+                && isEqual(experienceKey, other.experienceKey) && isEqual(email, other.email);
+        return isSame && (hasKey || nameResourceId != 0 || isEqual(name, other.name));
+    }
+
     @Override public String toString() {
         return getDescription();
     }
 
     // Private instance methods.
 
+    /** Return TRUE iff the given values are equal or both null. */
+    private boolean isEqual(final Object value, final Object other) {
+        return value == null ? other == null : value.equals(other);
+    }
+
     /** Return a description for the item. */
     private String getDescription() {
         // Deal with a uninitialized type, a legacy type and a modern type in that order to provide
@@ -41,6 +41,12 @@ public class JoinState {
 
     // Private instance variables.
 
+    /**
+     * The time the User last saw the room (the room's read cursor), zero if never.  Messages
+     * created after this time are unseen.  Only meaningful in a member's room join state.
+     */
+    private long mSeenTime;
+
     /** The current join type. */
     private JoinType mType = inactive;
 
@@ -52,6 +58,11 @@ public class JoinState {
         return mType.name();
     }
 
+    /** Provide a getter for Firebase. */
+    public long getSeenTime() {
+        return mSeenTime;
+    }
+
     /** Return the current state a a JoinType. */
     @Exclude public JoinType getType() {
         return mType != null ? mType : inactive;
@@ -63,6 +74,11 @@ public class JoinState {
         mType = getType(value);
     }
 
+    /** Provide a setter for Firebase. */
+    public void setSeenTime(final long value) {
+        mSeenTime = value;
+    }
+
     /** Set the join type to the given value. */
     @Exclude public void setType(final JoinType value) {
         mType = value;
@@ -201,6 +201,7 @@ public enum AccountManager {
         account.groupKey = groupKey;
         path = String.format(Locale.US, ACCOUNT_PATH, account.key);
         DBUtils.updateChildren(path, account.toMap());
+        WriteScheduler.instance.flush();
 
         // Leave the breadcrumbs for the chaperone account in the database. This must be done after
         // the new account has been added, because the database authorization rules don't allow
@@ -213,7 +214,9 @@ public enum AccountManager {
             currentChaperone = null;
         }
 
-        // Update and persist the group profile.
+        // Update and persist the group profile, the member, the "me" room and its welcome message
+        // in a single batch.
+        WriteScheduler.instance.begin();
         List<String> rooms = new ArrayList<>();
         rooms.add(roomKey);
         List<String> members = new ArrayList<>();
@@ -242,6 +245,7 @@ public enum AccountManager {
         // Update the "me" room default message on the database.
         String text = DBUtils.instance.getResource(DBUtils.WELCOME_MESSAGE_KEY);
         MessageManager.instance.createMessage(text, SYSTEM, account, room);
+        WriteScheduler.instance.end();
     }
 
     /** Determine if the current account has a group with the specified name */
@@ -284,6 +288,11 @@ public enum AccountManager {
         return mCurrentAccountKey;
     }
 
+    /** Return null or the "me group" profile of the current account. */
+    public Group getMeGroup() {
+        return hasAccount() ? mGroup : null;
+    }
+
     /** Return null or the push key for the "me group" associated with the current account. */
     public String getMeGroupKey() {
         return hasAccount() ? mCurrentAccount.groupKey : null;
@@ -399,11 +408,15 @@ public enum AccountManager {
             AppEventManager.instance.post(new AuthenticationChangeEvent(event.account));
             AppEventManager.instance.post(new AuthenticationChangeHandled(event.account));
         } else {
-            // Detect a change to the account.  If found, set watchers on the me group and any
-            // joined groups.
-            if (event.account != null)
+            // Detect a change to the account.  If found, keep it (it replaces one loaded from the
+            // local snapshot, for example) and set watchers on the me group and any joined groups.
+            if (event.account != null) {
+                mCurrentAccount = event.account;
+                DatabaseRegistrar.instance.begin();
                 for (String key : event.account.joinMap.keySet())
                     GroupManager.instance.setWatcher(key);
+                DatabaseRegistrar.instance.end();
+            }
         }
 
         // Set watchers on any existing protected user accounts
@@ -444,9 +457,11 @@ public enum AccountManager {
     /** Deal with authentication sign-out changes. */
     @Subscribe public void onAuthStateChanged(@NonNull final AuthStateChangedEvent event) {
         // Deal with a User sign-out or a new user sign-in by un-registering the current account
-        // handler.
+        // handler.  The User the current account was loaded for (from the local snapshot) signing
+        // in is neither.
         String name = mCurrentAccount != null ? mCurrentAccount.email : null;
-        if (name != null) {
+        String uid = event.user != null ? event.user.getUid() : null;
+        if (name != null && !mCurrentAccount.key.equals(uid)) {
             String handler = DBUtils.getHandlerName(ACCOUNT_CHANGE_HANDLER, mCurrentAccount.key);
             DatabaseRegistrar.instance.unregisterHandler(handler);
             Log.i(TAG, "Authentication sign-out from: " + name);
@@ -521,7 +536,7 @@ public enum AccountManager {
         // watcher on it.
         if (!(event.room.getMemberIdList().contains(getCurrentAccountId()))
                 && event.room.type == PRIVATE) {
-            RoomManager.instance.roomMap.remove(event.room.key);
+            RoomManager.instance.removeRoomProfile(event.room.key);
             RoomManager.instance.removeWatcher(event.room.key);
         }
     }
@@ -20,16 +20,12 @@ package com.pajato.android.gamechat.database;
 import android.content.Context;
 import android.support.annotation.NonNull;
 
-import com.google.firebase.database.FirebaseDatabase;
 import com.pajato.android.gamechat.R;
-import com.pajato.android.gamechat.chat.model.Message;
 import com.pajato.android.gamechat.chat.model.Room;
-import com.pajato.android.gamechat.exp.Experience;
 
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Provide a class to manage the app interactions with the database for lists of members,
@@ -75,49 +71,42 @@ public enum DBUtils {
         return textBuilder.toString();
     }
 
+    /** Return the number of unseen experiences in a given group and update the given map. */
     public static int getUnseenExperienceCount(@NonNull final String groupKey,
                                                @NonNull final Map<String, Integer> map) {
-        int result = 0;
-        if (!ExperienceManager.instance.expGroupMap.containsKey(groupKey))
-            return result;
-        Set<Map.Entry<String, Map<String, Experience>>> expSet;
-        expSet = ExperienceManager.instance.expGroupMap.get(groupKey).entrySet();
-        for (Map.Entry<String, Map<String, Experience>> roomMap : expSet) {
-            int roomNewCount = 0;
-            for (Experience experience : roomMap.getValue().values())
-                if (ExperienceManager.instance.isNew(experience))
-                    roomNewCount++;
-            map.put(roomMap.getKey(), roomNewCount);
-            result += roomNewCount;
-        }
-        return result;
+        for (String roomKey : ExperienceManager.instance.getRoomKeys(groupKey))
+            map.put(roomKey, UnseenCountManager.instance.getExperienceCount(groupKey, roomKey));
+        return UnseenCountManager.instance.getExperienceCount(groupKey);
     }
 
     /** Return the number of unseen messages in a given group and update the given map. */
     public static int getUnseenMessageCount(@NonNull final String groupKey,
                                             @NonNull final Map<String, Integer> map) {
-        int result = 0;
-        // prevent null pointer exception: return immediately if the group message map is null
-        if (MessageManager.instance.messageMap.get(groupKey) == null)
-            return result;
-        Set<Map.Entry<String, Map<String, Message>>> messageSet =
-            MessageManager.instance.messageMap.get(groupKey).entrySet();
-        for (Map.Entry<String, Map<String, Message>> roomMap : messageSet) {
-            int roomNewCount = 0;
-            for (Message message : roomMap.getValue().values())
-                if (message.isUnseen())
-                    roomNewCount++;
-            map.put(roomMap.getKey(), roomNewCount);
-            result += roomNewCount;
-        }
-        return result;
+        for (String roomKey : MessageManager.instance.getRoomKeys(groupKey))
+            map.put(roomKey, UnseenCountManager.instance.getMessageCount(groupKey, roomKey));
+        return UnseenCountManager.instance.getMessageCount(groupKey);
+    }
+
+    /** Remove the value at the given path, batched with the writes issued at the same time. */
+    public static void removeValue(final String path) {
+        WriteScheduler.instance.write(path, null);
     }
 
-    /** Store an object on the database using a given path, pushKey, and properties. */
+    /**
+     * Store an object on the database using a given path, pushKey, and properties.  The write is
+     * batched with the others issued at the same time (see WriteScheduler).
+     */
     public static void updateChildren(final String path, final Map<String, Object> properties) {
-        Map<String, Object> childUpdates = new HashMap<>();
-        childUpdates.put(path, properties);
-        FirebaseDatabase.getInstance().getReference().updateChildren(childUpdates);
+        WriteScheduler.instance.write(path, properties);
+    }
+
+    /**
+     * Store an object on the database using a given path and properties, notifying the given
+     * listener when the batch carrying the write completes.
+     */
+    public static void updateChildren(final String path, final Map<String, Object> properties,
+                                      final WriteBatch.CompletionListener listener) {
+        WriteScheduler.instance.write(path, properties, listener);
     }
 
     // Public instance methods.
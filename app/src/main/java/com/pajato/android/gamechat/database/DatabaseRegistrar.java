@@ -17,38 +17,92 @@
 
 package com.pajato.android.gamechat.database;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
 import com.google.firebase.database.ValueEventListener;
 import com.pajato.android.gamechat.database.handler.DatabaseEventHandler;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
 /**
- * Provide a class to handle database listener/handler registrations.
+ * Provide a class to handle database listener/handler registrations.  Handlers naming a shared
+ * path (see DatabaseEventHandler.getSharedPath()) are multiplexed over one child listener on that
+ * path, reference counted by the handlers using it and released a short while after the last one
+ * goes, so that a handler registered again soon after is served without a new listener.  The
+ * handlers registered within a scope (begin() ... end()), such as the watchers on the members and
+ * rooms of a group, are attached together when the outermost scope ends.  The registrar is used
+ * from the main thread.
  *
  * @author Paul Michael Reilly
  */
 public enum DatabaseRegistrar {
     instance;
 
+    // Public class constants.
+
+    /** The time, in milliseconds, a shared listener outlives the last handler using it. */
+    public static final long RELEASE_DELAY = 10000;
+
     // Private class constants.
 
     // The logcat tag.
     private static final String TAG = DatabaseRegistrar.class.getSimpleName();
 
-    // Public instance variables.
+    // Private instance variables.
+
+    /** The depth of the scopes entered and not yet ended. */
+    private int mDepth;
+
+    /** The main thread handler running the deferred replays and releases. */
+    private Handler mHandler;
 
     /** The Firebase value event listener map. */
     private Map<String, DatabaseEventHandler> mHandlerMap = new HashMap<>();
 
+    /** The handlers registered within the current scope, waiting to be attached. */
+    private List<DatabaseEventHandler> mPendingList = new ArrayList<>();
+
+    /** The queries the handlers listening on their own locations are attached to, by name. */
+    private Map<String, Query> mQueryMap = new HashMap<>();
+
+    /** The shared listeners, keyed by the path they listen on. */
+    private Map<String, SharedListener> mSharedMap = new HashMap<>();
+
     // Public instance methods.
 
+    /**
+     * Begin a scope: the handlers registered until the matching end() are attached together.
+     * Scopes nest, the handlers being attached when the outermost scope ends.
+     */
+    public void begin() {
+        mDepth++;
+    }
+
+    /** End a scope, attaching the handlers registered within it if it is the outermost one. */
+    public void end() {
+        if (mDepth == 0)
+            throw new IllegalStateException("No registration scope to end.");
+        if (--mDepth == 0)
+            flush();
+    }
+
+    /** Return the number of database listeners attached on behalf of the registered handlers. */
+    public int getListenerCount() {
+        return mQueryMap.size() + mSharedMap.size();
+    }
+
     /** Return TRUE iff the a handler with the given name is registered. */
     public boolean isRegistered(String name) {
         return mHandlerMap.containsKey(name);
@@ -56,78 +110,205 @@ public enum DatabaseRegistrar {
 
     /** Register a given value event listener. */
     public void registerHandler(final DatabaseEventHandler handler) {
-        // Remove any previously registered handlers of the same name.
+        // Remove any previously registered handlers of the same name, then register the new one
+        // with the handler map and attach it, now or at the end of the current scope.
         String name = handler.name;
         Log.d(TAG, String.format(Locale.US, "Registering handler with name {%s}.", name));
-        DatabaseReference database = FirebaseDatabase.getInstance().getReference(handler.path);
-        DatabaseEventHandler registeredHandler = mHandlerMap.get(name);
-        removeEventListener(database, registeredHandler);
-
-        // Register the new listener both with the handler map and with Firebase.
+        unregisterHandler(name);
         mHandlerMap.put(name, handler);
-        ValueEventListener valueEventListener = handler instanceof ValueEventListener ?
-            (ValueEventListener) handler : null;
-        ChildEventListener childEventListener = handler instanceof ChildEventListener ?
-            (ChildEventListener) handler : null;
-        mHandlerMap.put(name, handler);
-        if (valueEventListener != null) {
-            database.addValueEventListener(valueEventListener);
-        }
-        if (childEventListener != null) {
-            database.addChildEventListener(childEventListener);
-        }
+        if (mDepth > 0)
+            mPendingList.add(handler);
+        else
+            attach(handler);
     }
 
     /** Unregister all listeners. */
     public void unregisterAll() {
-        // Walk the set of registered handlers to remove them.  Leave them cached for possible reuse.
-        DatabaseReference database;
-        DatabaseEventHandler handler;
+        // Walk the set of registered handlers to remove them, releasing the shared listeners now.
         Log.d(TAG, "Unregister all handlers.");
-        for (String name : mHandlerMap.keySet()) {
-            handler = mHandlerMap.get(name);
-            database = FirebaseDatabase.getInstance().getReference(handler.path);
-            removeEventListener(database, handler);
-        }
-        mHandlerMap.clear();
+        for (String name : new ArrayList<>(mHandlerMap.keySet()))
+            unregisterHandler(name);
+        for (SharedListener listener : new ArrayList<>(mSharedMap.values()))
+            release(listener);
     }
 
     /** Unregister a named listener. */
     public void unregisterHandler(final String name) {
-        // Determine if there is a handler registered by the given name.
+        // Determine if there is a handler registered by the given name.  If so, detach it from the
+        // query it listens to or from the listener it shares.
+        DatabaseEventHandler handler = mHandlerMap.remove(name);
+        if (handler == null)
+            return;
         Log.d(TAG, String.format(Locale.US, "Unregister handler with name {%s}.", name));
-        DatabaseEventHandler handler = mHandlerMap.get(name);
-        if (handler != null) {
-            // There is.  Remove it as a listener but keep it cached for possible reuse.
-            DatabaseReference database = FirebaseDatabase.getInstance().getReference(handler.path);
-            removeEventListener(database, handler);
-            mHandlerMap.remove(name);
+        mPendingList.remove(handler);
+        Query query = mQueryMap.remove(name);
+        if (query != null)
+            removeEventListener(query, handler);
+        String path = isShared(handler) ? handler.getSharedPath() : null;
+        SharedListener listener = path != null ? mSharedMap.get(path) : null;
+        if (listener != null && listener.handlerMap.get(handler.key) == handler) {
+            listener.handlerMap.remove(handler.key);
+            if (listener.handlerMap.isEmpty())
+                getHandler().postDelayed(listener.releaseTask, RELEASE_DELAY);
         }
     }
 
     // Private instance methods.
 
-    /** Remove the database event listener, if any is found associated with the given handler. */
-    private void removeEventListener(final DatabaseReference database,
-                                     final DatabaseEventHandler handler) {
-        ValueEventListener valueEventListener;
-        ChildEventListener childEventListener;
-        if (handler != null) {
-            // There is a handler found.  Remove it.
-            if (handler instanceof ValueEventListener) {
-                valueEventListener = (ValueEventListener) handler;
-                database.removeEventListener(valueEventListener);
-            } else if (handler instanceof ChildEventListener) {
-                childEventListener = (ChildEventListener) handler;
-                database.removeEventListener(childEventListener);
-            } else {
-                // Remove the funky entry, after logging it.
-                String format = "Removing an invalid event listener, %s/%s (name/type).";
-                String name = handler.name;
-                String type = handler.getClass().getSimpleName();
-                Log.e(TAG, String.format(Locale.getDefault(), format, name, type));
-            }
+    /** Attach the given handler to its own query or to the listener on its shared path. */
+    private void attach(final DatabaseEventHandler handler) {
+        // Determine if the handler listens on its own location.  If so, add it to the query there.
+        if (!isShared(handler)) {
+            Query query = handler.getQuery(getReference(handler.path));
+            mQueryMap.put(handler.name, query);
+            if (handler instanceof ValueEventListener)
+                query.addValueEventListener((ValueEventListener) handler);
+            if (handler instanceof ChildEventListener)
+                query.addChildEventListener((ChildEventListener) handler);
+            return;
+        }
+
+        // Add the handler to the listener on the shared path, attaching a new listener if there is
+        // none, or keeping the one waiting to be released and replaying the value it holds.
+        String path = handler.getSharedPath();
+        SharedListener listener = mSharedMap.get(path);
+        if (listener == null) {
+            listener = new SharedListener(path);
+            listener.handlerMap.put(handler.key, handler);
+            mSharedMap.put(path, listener);
+            listener.query.addChildEventListener(listener);
+            return;
+        }
+        getHandler().removeCallbacks(listener.releaseTask);
+        listener.handlerMap.put(handler.key, handler);
+        if (listener.snapshotMap.containsKey(handler.key))
+            getHandler().post(new ReplayTask(listener, handler));
+    }
+
+    /** Attach the handlers registered within the scope just ended. */
+    private void flush() {
+        List<DatabaseEventHandler> list = mPendingList;
+        mPendingList = new ArrayList<>();
+        for (DatabaseEventHandler handler : list)
+            attach(handler);
+    }
+
+    /** Return the main thread handler, creating it as necessary. */
+    private Handler getHandler() {
+        if (mHandler == null)
+            mHandler = new Handler(Looper.getMainLooper());
+        return mHandler;
+    }
+
+    /** Return the database reference at the given path. */
+    private DatabaseReference getReference(final String path) {
+        return FirebaseDatabase.getInstance().getReference(path);
+    }
+
+    /** Return TRUE iff the given handler shares a listener on a path with its sibling handlers. */
+    private boolean isShared(final DatabaseEventHandler handler) {
+        return handler.getSharedPath() != null && handler instanceof ValueEventListener;
+    }
+
+    /** Release the given shared listener, detaching it from the database. */
+    private void release(final SharedListener listener) {
+        getHandler().removeCallbacks(listener.releaseTask);
+        listener.query.removeEventListener(listener);
+        mSharedMap.remove(listener.path);
+        Log.d(TAG, String.format(Locale.US, "Released the listener on path {%s}.", listener.path));
+    }
+
+    /** Remove the given handler, as a database event listener, from the given query. */
+    private void removeEventListener(final Query query, final DatabaseEventHandler handler) {
+        if (handler instanceof ValueEventListener)
+            query.removeEventListener((ValueEventListener) handler);
+        if (handler instanceof ChildEventListener)
+            query.removeEventListener((ChildEventListener) handler);
+    }
+
+    // Private classes.
+
+    /** Replay the child value held by a shared listener to a handler registered late. */
+    private class ReplayTask implements Runnable {
+
+        /** The shared listener holding the value. */
+        private final SharedListener mListener;
+
+        /** The handler to replay the value to. */
+        private final DatabaseEventHandler mTarget;
+
+        /** Build a task replaying the given listener's value to the given handler. */
+        ReplayTask(final SharedListener listener, final DatabaseEventHandler handler) {
+            mListener = listener;
+            mTarget = handler;
+        }
+
+        /** Replay the value, unless the handler has been replaced or the value dropped since. */
+        @Override public void run() {
+            DataSnapshot snapshot = mListener.snapshotMap.get(mTarget.key);
+            if (snapshot != null && mListener.handlerMap.get(mTarget.key) == mTarget)
+                ((ValueEventListener) mTarget).onDataChange(snapshot);
         }
     }
 
+    /**
+     * A child listener on a shared path dispatching each child's value to the handler, if any,
+     * keyed by the child's key.  The latest child values are kept for handlers registered while
+     * the listener is attached.
+     */
+    private class SharedListener implements ChildEventListener {
+
+        /** The handlers using the listener, keyed by child key. */
+        final Map<String, DatabaseEventHandler> handlerMap = new HashMap<>();
+
+        /** The path listened on. */
+        final String path;
+
+        /** The query the listener is attached to. */
+        final Query query;
+
+        /** The task releasing the listener once no handler uses it. */
+        final Runnable releaseTask = new Runnable() {
+            @Override public void run() {
+                if (handlerMap.isEmpty())
+                    release(SharedListener.this);
+            }
+        };
+
+        /** The latest child values, keyed by child key. */
+        final Map<String, DataSnapshot> snapshotMap = new HashMap<>();
+
+        /** Build a listener on the given path. */
+        SharedListener(final String path) {
+            this.path = path;
+            this.query = getReference(path);
+        }
+
+        @Override public void onCancelled(final DatabaseError error) {
+            for (DatabaseEventHandler handler : new ArrayList<>(handlerMap.values()))
+                ((ValueEventListener) handler).onCancelled(error);
+        }
+
+        @Override public void onChildAdded(final DataSnapshot snapshot, final String previous) {
+            dispatch(snapshot);
+        }
+
+        @Override public void onChildChanged(final DataSnapshot snapshot, final String previous) {
+            dispatch(snapshot);
+        }
+
+        @Override public void onChildMoved(final DataSnapshot snapshot, final String previous) {}
+
+        @Override public void onChildRemoved(final DataSnapshot snapshot) {
+            snapshotMap.remove(snapshot.getKey());
+        }
+
+        /** Keep the given child value and pass it on to the handler for the child, if any. */
+        private void dispatch(final DataSnapshot snapshot) {
+            snapshotMap.put(snapshot.getKey(), snapshot);
+            DatabaseEventHandler handler = handlerMap.get(snapshot.getKey());
+            if (handler != null)
+                ((ValueEventListener) handler).onDataChange(snapshot);
+        }
+    }
 }
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Provide a normalized store of database entities (such as experiences or messages): each entity
+ * is held once, by its push key, and indexed by group, by room and, within a room, by modification
+ * time, newest first.  Putting an entity replaces any entity with the same key and re-indexes it
+ * using the keys and time it has at that point; removing it drops it from every index.  Queries
+ * return copies or read only views so that callers never mutate the indexes.
+ */
+class EntityStore<T> {
+
+    // Package private interfaces.
+
+    /** Provide the keys and the time by which an entity is stored and indexed. */
+    interface Indexer<T> {
+
+        /** Return the push key of the given entity. */
+        String getKey(T entity);
+
+        /** Return the push key of the group holding the given entity. */
+        String getGroupKey(T entity);
+
+        /** Return the push key of the room holding the given entity. */
+        String getRoomKey(T entity);
+
+        /** Return the time the given entity was last modified. */
+        long getModTime(T entity);
+    }
+
+    // Private instance variables.
+
+    /** The indexer providing the keys and time of each entity. */
+    private final Indexer<T> mIndexer;
+
+    /** The primary index: the entities by push key. */
+    private final Map<String, T> mEntityMap = new HashMap<>();
+
+    /** The index entry of each entity, as of when it was put, by push key. */
+    private final Map<String, Entry> mEntryMap = new HashMap<>();
+
+    /** The secondary index: the entries in each room, newest first, by group and room key. */
+    private final Map<String, Map<String, TreeSet<Entry>>> mGroupMap = new HashMap<>();
+
+    // Package private constructors.
+
+    /** Build an empty store using the given indexer. */
+    EntityStore(final Indexer<T> indexer) {
+        mIndexer = indexer;
+    }
+
+    // Package private instance methods.
+
+    /** Remove all the entities. */
+    void clear() {
+        mEntityMap.clear();
+        mEntryMap.clear();
+        mGroupMap.clear();
+    }
+
+    /** Return null or the entity with the given push key. */
+    T get(final String key) {
+        return mEntityMap.get(key);
+    }
+
+    /** Return a read only view of the keys of the groups holding at least one entity. */
+    Set<String> getGroupKeys() {
+        return Collections.unmodifiableSet(mGroupMap.keySet());
+    }
+
+    /** Return null or the most recently modified entity in the given group. */
+    T getLatest(final String groupKey) {
+        Map<String, TreeSet<Entry>> roomMap = mGroupMap.get(groupKey);
+        if (roomMap == null)
+            return null;
+        Entry result = null;
+        for (TreeSet<Entry> entries : roomMap.values())
+            if (result == null || entries.first().compareTo(result) < 0)
+                result = entries.first();
+        return result != null ? mEntityMap.get(result.key) : null;
+    }
+
+    /** Return null or the most recently modified entity in the given group and room. */
+    T getLatest(final String groupKey, final String roomKey) {
+        TreeSet<Entry> entries = getEntries(groupKey, roomKey);
+        return entries != null ? mEntityMap.get(entries.first().key) : null;
+    }
+
+    /** Return a possibly empty list of the entities in the given room, newest first. */
+    List<T> getList(final String groupKey, final String roomKey) {
+        List<T> result = new ArrayList<>();
+        TreeSet<Entry> entries = getEntries(groupKey, roomKey);
+        if (entries == null)
+            return result;
+        for (Entry entry : entries)
+            result.add(mEntityMap.get(entry.key));
+        return result;
+    }
+
+    /** Return a read only view of the keys of the rooms in a group holding at least one entity. */
+    Set<String> getRoomKeys(final String groupKey) {
+        Map<String, TreeSet<Entry>> roomMap = mGroupMap.get(groupKey);
+        if (roomMap == null)
+            return Collections.emptySet();
+        return Collections.unmodifiableSet(roomMap.keySet());
+    }
+
+    /** Add the given entity, or replace the one with the same key, returning null or the latter. */
+    T put(final T entity) {
+        String key = mIndexer.getKey(entity);
+        T result = remove(key);
+        Entry entry = new Entry(key, mIndexer.getGroupKey(entity), mIndexer.getRoomKey(entity),
+                mIndexer.getModTime(entity));
+        Map<String, TreeSet<Entry>> roomMap = mGroupMap.get(entry.groupKey);
+        if (roomMap == null) {
+            roomMap = new HashMap<>();
+            mGroupMap.put(entry.groupKey, roomMap);
+        }
+        TreeSet<Entry> entries = roomMap.get(entry.roomKey);
+        if (entries == null) {
+            entries = new TreeSet<>();
+            roomMap.put(entry.roomKey, entries);
+        }
+        entries.add(entry);
+        mEntryMap.put(key, entry);
+        mEntityMap.put(key, entity);
+        return result;
+    }
+
+    /** Remove the entity with the given key, returning null or the removed entity. */
+    T remove(final String key) {
+        // Remove the entry from the room it was indexed in, dropping the room and the group
+        // indexes when they become empty.
+        Entry entry = mEntryMap.remove(key);
+        if (entry == null)
+            return null;
+        Map<String, TreeSet<Entry>> roomMap = mGroupMap.get(entry.groupKey);
+        TreeSet<Entry> entries = roomMap.get(entry.roomKey);
+        entries.remove(entry);
+        if (entries.isEmpty())
+            roomMap.remove(entry.roomKey);
+        if (roomMap.isEmpty())
+            mGroupMap.remove(entry.groupKey);
+        return mEntityMap.remove(key);
+    }
+
+    /** Return the number of entities. */
+    int size() {
+        return mEntityMap.size();
+    }
+
+    // Private instance methods.
+
+    /** Return null or the non-empty set of entries in the given group and room. */
+    private TreeSet<Entry> getEntries(final String groupKey, final String roomKey) {
+        Map<String, TreeSet<Entry>> roomMap = mGroupMap.get(groupKey);
+        return roomMap != null ? roomMap.get(roomKey) : null;
+    }
+
+    // Private inner classes.
+
+    /** The index entry of an entity: its keys and time, ordered newest first, then by key. */
+    private static class Entry implements Comparable<Entry> {
+
+        /** The entity push key. */
+        final String key;
+
+        /** The group push key. */
+        final String groupKey;
+
+        /** The room push key. */
+        final String roomKey;
+
+        /** The modification time. */
+        final long modTime;
+
+        /** Build an entry with the given keys and time. */
+        Entry(final String key, final String groupKey, final String roomKey, final long modTime) {
+            this.key = key;
+            this.groupKey = groupKey;
+            this.roomKey = roomKey;
+            this.modTime = modTime;
+        }
+
+        @Override public int compareTo(final Entry other) {
+            if (modTime != other.modTime)
+                return modTime > other.modTime ? -1 : 1;
+            return key.compareTo(other.key);
+        }
+    }
+}
@@ -34,8 +34,11 @@ import com.pajato.android.gamechat.event.AuthenticationChangeEvent;
 import com.pajato.android.gamechat.event.ExpListChangeEvent;
 import com.pajato.android.gamechat.event.ExperienceChangeEvent;
 import com.pajato.android.gamechat.event.ExperienceDeleteEvent;
+import com.pajato.android.gamechat.exp.Board;
 import com.pajato.android.gamechat.exp.ExpType;
 import com.pajato.android.gamechat.exp.Experience;
+import com.pajato.android.gamechat.exp.model.Player;
+import com.pajato.android.gamechat.exp.model.TTTBoard;
 
 import org.greenrobot.eventbus.Subscribe;
 
@@ -74,16 +77,17 @@ public enum ExperienceManager {
     /** The experience profile change handler base name. */
     private static final String EXPERIENCE_LIST_CHANGE_HANDLER = "experienceListChangeHandler";
 
-    // Public instance variables.
-
-    /** The map associating group and room push keys with a map of experiences. */
-    public Map<String, Map<String, Map<String, Experience>>> expGroupMap = new HashMap<>();
-
-    /** The experience map associating an experience with its self reference key. */
-    public Map<String, Experience> experienceMap = new HashMap<>();
+    // Experience property names and board paths used by the move delta writes.
+    private static final String BOARD = "board";
+    private static final String PIECES_PATH = BOARD + "/pieces/";
+    private static final String POSSIBLE_MOVES_PATH = BOARD + "/possibleMoves";
+    private static final String SELECTED_POSITION_PATH = BOARD + "/selectedPosition";
 
     // Private instance variables.
 
+    /** The experiences, by push key, indexed by group, room and modification time. */
+    private final EntityStore<Experience> mStore = new EntityStore<>(new ExperienceIndexer());
+
     /** A map associating date header type values with lists of group push keys. */
     private Map<DateHeaderType, List<String>> mDateHeaderGroupMap = new HashMap<>();
 
@@ -94,11 +98,18 @@ public enum ExperienceManager {
     private Map<String, Map<String, Map<DateHeaderType, List<String>>>> mDateHeaderExpMap =
             new HashMap<>();
 
-    /** A map associating a group key with its most recently changed experience. */
-    private Map<String, Experience> mGroupToRecentMap = new HashMap<>();
+    /**
+     * The most recently persisted (written or received) top level values of each experience, as
+     * comparable copies, by experience key.  Chess and checkers boards are excluded: their changes
+     * are tracked cell by cell.
+     */
+    private Map<String, Map<String, Object>> mSnapshotMap = new HashMap<>();
 
-    /** A map of maps associating most recently modified experience in a room in a group. */
-    private Map<String, Map<String, Experience>> mRoomToRecentMap = new HashMap<>();
+    /** The board instance whose cells were most recently persisted, by experience key. */
+    private Map<String, Board> mBoardMap = new HashMap<>();
+
+    /** TRUE iff selection and highlight changes stay on this device. */
+    private boolean mLocalSelection = true;
 
     // Public instance methods.
 
@@ -117,58 +128,20 @@ public enum ExperienceManager {
         String key = experience.getExperienceKey();
         String path = String.format(Locale.US, EXPERIENCE_PATH, groupKey, roomKey, key);
         DBUtils.updateChildren(path, experience.toMap());
+        recordSnapshot(experience);
     }
 
     public void deleteExperience(final ListItem item) {
         // Delete experience from database
         String path = String.format(Locale.US, EXPERIENCE_PATH, item.groupKey, item.roomKey,
                 item.experienceKey);
-        FirebaseDatabase.getInstance().getReference().child(path).removeValue();
-
-        // Delete experience from various lists
-        experienceMap.remove(item.experienceKey);
-
-        if (expGroupMap.containsKey(item.groupKey)) {
-            Map<String, Map<String, Experience>> roomsMap = expGroupMap.get(item.groupKey);
-            if (roomsMap.containsKey(item.roomKey)) {
-                Map<String, Experience> experiencesMap = roomsMap.get(item.roomKey);
-                if (experiencesMap.containsKey(item.experienceKey)) {
-                    experiencesMap.remove(item.experienceKey);
-                }
-                if (experiencesMap.size() == 0) {
-                    roomsMap.remove(item.roomKey);
-                }
-            }
-            if (roomsMap.size() == 0)
-                expGroupMap.remove(item.groupKey);
-        }
-
-        Map<String, Map<DateHeaderType, List<String>>> groupMap = mDateHeaderExpMap.get(item.groupKey);
-        Map<DateHeaderType, List<String>> roomMap = groupMap.get(item.roomKey);
-        for (DateHeaderType dht : roomMap.keySet()) {
-            List<String> experiences = roomMap.get(dht);
-            if (experiences.contains(item.experienceKey)) {
-                experiences.remove(item.experienceKey);
-                if (experiences.size() == 0)
-                    roomMap.remove(dht);
-                else
-                    roomMap.put(dht, experiences);
-                break;
-            }
-        }
-        if (roomMap.size() == 0)
-            groupMap.remove(item.roomKey);
-        if (groupMap.size() == 0)
-            mDateHeaderExpMap.remove(item.groupKey);
-        Map<String, Experience> recentExpMap = mRoomToRecentMap.get(item.groupKey);
-        for(Map.Entry entry : recentExpMap.entrySet())
-            if (entry.getValue().equals(item.roomKey))
-                recentExpMap.remove(entry.getKey().toString());
+        DBUtils.removeValue(path);
 
+        // Delete the experience from the store and rebuild the date headers from what remains.
+        removeExperience(item.experienceKey);
+        updateHeaders();
         removeWatcher(item.experienceKey);
-
         AppEventManager.instance.post(new ExperienceDeleteEvent(item.experienceKey));
-
     }
 
     /** Return an experience push key to use with a subsequent room object persistence. */
@@ -178,44 +151,53 @@ public enum ExperienceManager {
 
     /** Return null or an experience based on the specified experience key */
     public Experience getExperience(@NonNull final String experienceKey) {
-        return experienceMap.get(experienceKey);
+        return mStore.get(experienceKey);
     }
 
     /** Return null or an experience of the given type from the given group and room. */
     public Experience getExperience(@NonNull final String groupKey, @NonNull final String roomKey,
                                     @NonNull final ExpType expType) {
-        // Determine if there are any experiences in the given room.  If not, return null.
-        Map<String, Map<String, Experience>> groupMap = expGroupMap.get(groupKey);
-        Map<String, Experience> roomMap;
-        roomMap = groupMap != null ? groupMap.get(roomKey) : null;
-        if (roomMap == null || roomMap.size() == 0)
-            return null;
-
         // Return the first experience of the given type in the room.  This imposes a one experience
         // per type per room model which seems reasonable.
-        for (Experience experience : roomMap.values())
+        for (Experience experience : mStore.getList(groupKey, roomKey))
             if (experience.getExperienceType() == expType)
                 return experience;
         return null;
     }
 
+    /** Return the number of experiences loaded. */
+    public int getExperienceCount() {
+        return mStore.size();
+    }
+
+    /** Return a possibly empty list of the experiences in a given room, most recent first. */
+    public List<Experience> getExperienceList(final String groupKey, final String roomKey) {
+        return mStore.getList(groupKey, roomKey);
+    }
+
+    /** Return a read only view of the keys of the groups with at least one experience. */
+    public Set<String> getGroupKeys() {
+        return mStore.getGroupKeys();
+    }
+
     /** Get the data as a set of list items for all groups. */
     public List<ListItem> getGroupListItemData() {
         // Determine whether to handle no groups (a set of welcome list items), one group (a set of
         // group rooms) or more than one group (a set of groups).
         List<ListItem> result = new ArrayList<>();
-        switch (expGroupMap.size()) {
+        Set<String> groupKeys = mStore.getGroupKeys();
+        switch (groupKeys.size()) {
             case 0:
                 return result;
             case 1:             // Get the experiences from the rooms in the joined group that have
                                 // experiences and the me room if it has any experiences.
-                String groupKey = expGroupMap.keySet().iterator().next();
+                String groupKey = groupKeys.iterator().next();
                 String meGroupKey = AccountManager.instance.getMeGroupKey();
                 String meRoomKey = AccountManager.instance.getMeRoomKey();
                 result.addAll(getItemListRooms(groupKey));
                 if (groupKey.equals(meRoomKey) || groupKey.equals(meGroupKey))
                     return result;
-                if (expGroupMap.containsKey(meGroupKey))
+                if (groupKeys.contains(meGroupKey))
                     result.addAll(getItemListRooms(meGroupKey));
                 return result;
             default:
@@ -225,6 +207,11 @@ public enum ExperienceManager {
         }
     }
 
+    /** Return a read only view of the keys of the rooms in a group with at least one experience. */
+    public Set<String> getRoomKeys(final String groupKey) {
+        return mStore.getRoomKeys(groupKey);
+    }
+
     /** Return a list of items showing the rooms in a given group. */
     public List<ListItem> getRoomListItemData(@NonNull final String groupKey) {
         List<ListItem> result = new ArrayList<>();
@@ -247,13 +234,12 @@ public enum ExperienceManager {
         // Determine if a User has been authenticated.  If so, do nothing, otherwise clear the
         // message list for the logged out User.
         if (event.account != null) return;
-        expGroupMap.clear();
-        experienceMap.clear();
-        mGroupToRecentMap.clear();
+        mStore.clear();
         mDateHeaderGroupMap.clear();
         mDateHeaderExpMap.clear();
         mDateHeaderRoomMap.clear();
-        mRoomToRecentMap.clear();
+        mSnapshotMap.clear();
+        mBoardMap.clear();
     }
 
     /** Handle an experience change event by updating the date headers. */
@@ -263,6 +249,40 @@ public enum ExperienceManager {
         AppEventManager.instance.post(new ExpListChangeEvent());
     }
 
+    /** Add the given experience, or replace the one with the same key, re-indexing it. */
+    public void putExperience(@NonNull final Experience experience) {
+        mStore.put(experience);
+    }
+
+    /**
+     * Record the given experience as persisted: subsequent move writes send only what changes
+     * from here.  Called for each experience written by this device or received from the database.
+     */
+    public void recordSnapshot(@NonNull final Experience experience) {
+        String key = experience.getExperienceKey();
+        if (key == null)
+            return;
+        Board board = experience.getBoard();
+        Map<String, Object> snapshot = new HashMap<>();
+        for (Map.Entry<String, Object> entry : experience.toMap().entrySet())
+            if (board == null || !entry.getKey().equals(BOARD))
+                snapshot.put(entry.getKey(), getComparable(entry.getValue()));
+        mSnapshotMap.put(key, snapshot);
+        if (board == null) {
+            mBoardMap.remove(key);
+            return;
+        }
+        board.clearChangedCells();
+        mBoardMap.put(key, board);
+    }
+
+    /** Remove the experience with the given key and the record of its last persisted state. */
+    public void removeExperience(final String experienceKey) {
+        mStore.remove(experienceKey);
+        mSnapshotMap.remove(experienceKey);
+        mBoardMap.remove(experienceKey);
+    }
+
     /** Remove a listener for experience changes in the given room */
     public void removeWatcher(final String roomKey) {
         String name = DBUtils.getHandlerName(EXPERIENCE_LIST_CHANGE_HANDLER, roomKey);
@@ -281,18 +301,74 @@ public enum ExperienceManager {
         DatabaseRegistrar.instance.registerHandler(handler);
     }
 
+    /** Set whether selection and highlight changes stay on this device (the default). */
+    public void setLocalSelection(final boolean value) {
+        mLocalSelection = value;
+    }
+
     /** Persist the experience. Handle offline behavior by short-circuiting the Firebase update. */
     public void updateExperience(final Experience experience) {
         experience.setModTime(new Date().getTime());
-        String groupKey = experience.getGroupKey();
-        String roomKey = experience.getRoomKey();
-        String expKey = experience.getExperienceKey();
-        if (groupKey == null && roomKey == null && expKey.equals(OFFLINE_EXPERIENCE_KEY)) {
+        if (isOffline(experience)) {
             AppEventManager.instance.post(new ExperienceChangeEvent(experience, CHANGED));
             return;
         }
-        String path = String.format(Locale.US, EXPERIENCE_PATH, groupKey, roomKey, expKey);
-        FirebaseDatabase.getInstance().getReference().child(path).setValue(experience.toMap());
+        DBUtils.updateChildren(getPath(experience), experience.toMap());
+        recordSnapshot(experience);
+    }
+
+    /**
+     * Persist the changes made by a move: the changed board cells, the selection and highlights,
+     * and whichever top level values (turn, state, castling flags, players, ...) differ from the
+     * last persisted snapshot, in a single batch.  The full experience is written
+     * when there is no snapshot to compare against.
+     */
+    public void updateMove(final Experience experience) {
+        String key = experience.getExperienceKey();
+        Map<String, Object> snapshot = key != null ? mSnapshotMap.get(key) : null;
+        if (snapshot == null || isOffline(experience)) {
+            updateExperience(experience);
+            return;
+        }
+
+        // Collect the changed top level values, then the board cells if the board is the one
+        // whose cells are being tracked; any other board (e.g. after a reset) is written whole.
+        experience.setModTime(new Date().getTime());
+        Board board = experience.getBoard();
+        boolean isTracked = board != null && board == mBoardMap.get(key);
+        Map<String, Object> delta = new HashMap<>();
+        for (Map.Entry<String, Object> entry : experience.toMap().entrySet()) {
+            String name = entry.getKey();
+            if (isTracked && name.equals(BOARD))
+                continue;
+            if (!isEqual(getComparable(entry.getValue()), snapshot.get(name)))
+                delta.put(name, entry.getValue());
+        }
+        if (isTracked) {
+            for (String cellKey : board.getChangedCells())
+                delta.put(PIECES_PATH + cellKey, board.getPiece(board.getPosition(cellKey)));
+            delta.put(POSSIBLE_MOVES_PATH, board.getPossibleMoves());
+            delta.put(SELECTED_POSITION_PATH, board.getSelectedPosition());
+        }
+        String path = getPath(experience);
+        WriteScheduler.instance.begin();
+        for (Map.Entry<String, Object> entry : delta.entrySet())
+            WriteScheduler.instance.write(path + entry.getKey(), entry.getValue());
+        WriteScheduler.instance.end();
+        recordSnapshot(experience);
+    }
+
+    /**
+     * Handle a selection (and highlight) change.  In the default local selection mode this never
+     * reaches the database: the app is simply notified of the change.  Otherwise the selection is
+     * persisted as a move delta.
+     */
+    public void updateSelection(final Experience experience) {
+        if (!mLocalSelection && !isOffline(experience)) {
+            updateMove(experience);
+            return;
+        }
+        AppEventManager.instance.post(new ExperienceChangeEvent(experience, CHANGED));
     }
 
     // Private instance methods.
@@ -315,7 +391,7 @@ public enum ExperienceManager {
                 result.add(new ListItem(itemType, room.groupKey, room.key, room.getName(), count, null));
                 break;
             case expList:
-                Experience exp = experienceMap.get(key);
+                Experience exp = mStore.get(key);
                 String groupKey = exp.getGroupKey();
                 String roomKey = exp.getRoomKey();
                 ListItem item = new ListItem(itemType, groupKey, roomKey, exp.getName(), 0, null);
@@ -328,6 +404,27 @@ public enum ExperienceManager {
         }
     }
 
+    /** Return a copy of the given value that can be compared with a later version of it. */
+    private Object getComparable(final Object value) {
+        if (value instanceof Map) {
+            Map<Object, Object> result = new HashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+                result.put(entry.getKey(), getComparable(entry.getValue()));
+            return result;
+        }
+        if (value instanceof List) {
+            List<Object> result = new ArrayList<>();
+            for (Object element : (List<?>) value)
+                result.add(getComparable(element));
+            return result;
+        }
+        if (value instanceof Player)
+            return getComparable(((Player) value).toMap());
+        if (value instanceof TTTBoard)
+            return getComparable(((TTTBoard) value).toMap());
+        return value;
+    }
+
     /** Return the icon resource id corresponding to the given experience type. */
     private int getIconResId(final ExpType type) {
         switch (type) {
@@ -379,6 +476,17 @@ public enum ExperienceManager {
         return result;
     }
 
+    /** Return the database path of the given experience. */
+    private String getPath(@NonNull final Experience experience) {
+        return String.format(Locale.US, EXPERIENCE_PATH, experience.getGroupKey(),
+                experience.getRoomKey(), experience.getExperienceKey());
+    }
+
+    /** Return TRUE iff the given (comparable) values are equal. */
+    private boolean isEqual(final Object value, final Object other) {
+        return value == null ? other == null : value.equals(other);
+    }
+
     /** Return TRUE iff this experience has a new move that has not been seen. */
     public boolean isNew(@NonNull final Experience experience) {
         // Return true iff the account holder's id is on the unseen list.
@@ -387,6 +495,12 @@ public enum ExperienceManager {
         return accountId == null || unseenList == null || unseenList.contains(accountId);
     }
 
+    /** Return TRUE iff the given experience is the offline experience, never persisted. */
+    private boolean isOffline(@NonNull final Experience experience) {
+        return experience.getGroupKey() == null && experience.getRoomKey() == null &&
+                OFFLINE_EXPERIENCE_KEY.equals(experience.getExperienceKey());
+    }
+
     /** Process all headers and associated items for a given map. Exclude the 'me' group. */
     private void processHeaders(final List<ListItem> result, ItemType itemType,
                                 final Map<DateHeaderType, List<String>> map) {
@@ -409,90 +523,46 @@ public enum ExperienceManager {
         }
      }
 
-    /** Update the timestamp ordered map of experiences in a given group and room. */
-    private void updateExpMap(@NonNull final String groupKey, @NonNull final String roomKey,
-                              final long nowTimestamp) {
-        // Ensure that the group map exists for the given group key.
-        Map<String, Map<DateHeaderType, List<String>>> groupMap = mDateHeaderExpMap.get(groupKey);
-        if (groupMap == null) {
-            groupMap = new HashMap<>();
-            mDateHeaderExpMap.put(groupKey, groupMap);
-        }
-
-        // Ensure that the room map exists for the given room key.
-        Map<DateHeaderType, List<String>> roomMap;
-        roomMap = groupMap.get(roomKey);
-        if (roomMap == null) {
-            roomMap = new HashMap<>();
-            groupMap.put(roomKey, roomMap);
-        }
-
-        // Associate each experience in the given group and room with the correct timestamp.
-        Map<String, Map<String, Experience>> expRoomMap = expGroupMap.get(groupKey);
-        Set<Map.Entry<String, Experience>> entrySet =
-                expRoomMap != null ? expRoomMap.get(roomKey).entrySet() : null;
-        if (entrySet == null)
-            return;
-        for (Map.Entry<String, Experience> entry : entrySet)
-            updateMap(nowTimestamp, entry.getValue().getModTime(), entry.getKey(), roomMap);
+    /** Update the various maps used to track experiences.  Package private for benchmarking. */
+    void updateAllMaps(final Experience experience, final int changeType) {
+        // Re-index a changed experience held in the store, as its modification time may have been
+        // changed in place (by a turn, for example), then rebuild the date headers.  A removed
+        // experience has already left the store.
+        String key = experience.getExperienceKey();
+        if (changeType != REMOVED && key != null && mStore.get(key) == experience)
+            mStore.put(experience);
+        updateHeaders();
     }
 
-    /** Update the various maps used to track experiences. */
-    private void updateAllMaps(final Experience experience, final int changeType) {
-        // Deal with a changed experience (like a turn, for example) by making the given experience
-        // the most recent in both the group and room recent experience maps. If the change was to
-        // remove the experience, delete it from various maps.
-        String groupKey = experience.getGroupKey();
-
-        // Remember the last updated experience in the group and room.
-        String roomKey = experience.getRoomKey();
-        if (changeType == REMOVED) {
-            Map<String, Map<String, Experience>> groupMap = expGroupMap.get(groupKey);
-            if (groupMap != null && groupMap.containsKey(groupKey)) {
-                groupMap.remove(groupKey);
-            }
-        } else
-            mGroupToRecentMap.put(groupKey, experience);
-
-        Map<String, Experience> roomMap = mRoomToRecentMap.get(groupKey);
-        if (changeType == REMOVED) {
-            if (roomMap != null && roomMap.containsKey(roomKey)) {
-                roomMap.remove(roomKey);
-            }
-        }  else {
-            if (roomMap == null)
-                roomMap = new HashMap<>();
-            roomMap.put(roomKey, experience);
-            mRoomToRecentMap.put(groupKey, roomMap);
-        }
-
-        // Update the group list headers for each group and room with at least one experience.
+    /** Rebuild the date headers of each group, room and experience from the store. */
+    private void updateHeaders() {
         mDateHeaderGroupMap.clear();
         mDateHeaderRoomMap.clear();
         mDateHeaderExpMap.clear();
         long nowTimestamp = new Date().getTime();
-        for (String key : mGroupToRecentMap.keySet())
-            updateHeaders(key, nowTimestamp);
+        for (String groupKey : mStore.getGroupKeys())
+            updateHeaders(groupKey, nowTimestamp);
     }
 
-    /** Update the headers for the given group and all of its rooms. */
+    /** Update the headers for the given group, all of its rooms and their experiences. */
     private void updateHeaders(final String groupKey, final long nowTimestamp) {
         // Determine which date header type the current group should be associated with using
-        // the time stamp from the most recent experience in the group.
-        long groupTimestamp = mGroupToRecentMap.get(groupKey).getModTime();
+        // the time stamp from the most recent experience in the group, then do the same for
+        // each room in the group and each experience in the room, most recent first.
+        long groupTimestamp = mStore.getLatest(groupKey).getModTime();
         updateMap(nowTimestamp, groupTimestamp, groupKey, mDateHeaderGroupMap);
-
-        // for all rooms in the group, update the mDateHeaderRoomMap
-        Map<String, Experience> map = mRoomToRecentMap.get(groupKey);
         Map<DateHeaderType, List<String>> roomMap = new HashMap<>();
-        for (String roomKey : map.keySet()) {
-            long roomTimestamp = map.get(roomKey).getModTime();
+        Map<String, Map<DateHeaderType, List<String>>> expRoomMap = new HashMap<>();
+        for (String roomKey : mStore.getRoomKeys(groupKey)) {
+            long roomTimestamp = mStore.getLatest(groupKey, roomKey).getModTime();
             updateMap(nowTimestamp, roomTimestamp, roomKey, roomMap);
-            if (roomMap.size() == 0)
-                continue;
-            updateExpMap(groupKey, roomKey, nowTimestamp);
+            Map<DateHeaderType, List<String>> expMap = new HashMap<>();
+            for (Experience exp : mStore.getList(groupKey, roomKey))
+                updateMap(nowTimestamp, exp.getModTime(), exp.getExperienceKey(), expMap);
+            expRoomMap.put(roomKey, expMap);
         }
         mDateHeaderRoomMap.put(groupKey, roomMap);
+        mDateHeaderExpMap.put(groupKey, expRoomMap);
     }
 
     /** Update a list in a map keyed by the closest matching time code. */
@@ -515,4 +585,25 @@ public enum ExperienceManager {
             }
         }
     }
+
+    // Private inner classes.
+
+    /** Index experiences by their group and room keys and their modification time. */
+    private static class ExperienceIndexer implements EntityStore.Indexer<Experience> {
+        @Override public String getKey(final Experience experience) {
+            return experience.getExperienceKey();
+        }
+
+        @Override public String getGroupKey(final Experience experience) {
+            return experience.getGroupKey();
+        }
+
+        @Override public String getRoomKey(final Experience experience) {
+            return experience.getRoomKey();
+        }
+
+        @Override public long getModTime(final Experience experience) {
+            return experience.getModTime();
+        }
+    }
 }
@@ -33,6 +33,7 @@ import com.pajato.android.gamechat.event.AuthenticationChangeEvent;
 import com.pajato.android.gamechat.event.ChatListChangeEvent;
 import com.pajato.android.gamechat.event.MessageChangeEvent;
 import com.pajato.android.gamechat.event.ProfileGroupChangeEvent;
+import com.pajato.android.gamechat.event.ProfileGroupDeleteEvent;
 
 import org.greenrobot.eventbus.Subscribe;
 
@@ -77,12 +78,18 @@ public enum GroupManager {
 
     // Private instance variables.
 
-    /** A map associating date header type values with lists of group push keys. */
-    private Map<ListItem.DateHeaderType, List<String>> mDateHeaderTypeToGroupListMap =
+    /**
+     * A map associating date header type values with lists of group push keys.  It is rebuilt
+     * off the main thread and replaced as a whole, never modified once published.
+     */
+    private volatile Map<ListItem.DateHeaderType, List<String>> mDateHeaderTypeToGroupListMap =
             new HashMap<>();
 
-    /** A map associating a group push key with it's most recent new message. */
-    private Map<String, Message> mGroupToLastNewMessageMap = new HashMap<>();
+    /**
+     * A map associating a group push key with it's most recent new message.  Guarded by this
+     * manager as it is updated on the background thread delivering message changes.
+     */
+    private final Map<String, Message> mGroupToLastNewMessageMap = new HashMap<>();
 
     // Public instance methods.
 
@@ -96,6 +103,17 @@ public enum GroupManager {
         setWatcher(group.key);
     }
 
+    /**
+     * Evict a group profile, loaded from the local snapshot, that the account holder no longer
+     * joins: forget it, stop watching it and tell the app.
+     */
+    public void evictGroupProfile(final String groupKey) {
+        groupMap.remove(groupKey);
+        removeDateHeaders(groupKey);
+        removeWatcher(groupKey);
+        AppEventManager.instance.post(new ProfileGroupDeleteEvent(groupKey));
+    }
+
     /** Return a room push key to use with a subsequent room object persistence. */
     public String getGroupKey() {
         return FirebaseDatabase.getInstance().getReference().child(GROUPS_PATH).push().getKey();
@@ -106,11 +124,6 @@ public enum GroupManager {
         return mDateHeaderTypeToGroupListMap.get(type);
     }
 
-    /** Get a map of messages by room in a given group. */
-    public Map<String, Map<String, Message>> getGroupMessages(final String groupKey) {
-        return MessageManager.instance.messageMap.get(groupKey);
-    }
-
     /** Return a name for the group with the given key, "Anonymous" if a name is not available. */
     public String getGroupName(final String groupKey) {
         Group group = groupMap.get(groupKey);
@@ -188,38 +201,44 @@ public enum GroupManager {
         // watchers on all groups the User has joined.
         if (event.account != null) {
             // Set up watchers on the User's private group profile and all groups the User has
-            // joined.
+            // joined, attaching them together.
+            DatabaseRegistrar.instance.begin();
             if (event.account.groupKey != null)
                 setWatcher(event.account.groupKey);
             for (String groupKey : event.account.joinMap.keySet())
                 setWatcher(groupKey);
+            DatabaseRegistrar.instance.end();
             return;
         }
 
         // There is no current User.  Clear the cached data, if any.
-        mDateHeaderTypeToGroupListMap.clear();
         groupMap.clear();
-        mGroupToLastNewMessageMap.clear();
+        removeDateHeaders(null);
     }
 
     /** Handle a joined group profile change by updating the map and ensuring watchers are set. */
     @Subscribe public void onGroupProfileChange(@NonNull final ProfileGroupChangeEvent event) {
         // Ensure that the group profile key and the group profile exist.  Abort if neither does,
-        // otherwise set watchers on all the room profiles in the group and cache the group profile
-        // as long as the group is not the me group.  The me group profile is handled by the account
-        // manager.
+        // otherwise set watchers on all the members and room profiles in the group, as one batch,
+        // and cache the group profile as long as the group is not the me group.  The me group
+        // profile is handled by the account manager.
         String groupKey = event.key;
         if (groupKey == null || event.group == null)
             return;
+        DatabaseRegistrar.instance.begin();
         for (String key : event.group.memberList)
             MemberManager.instance.setWatcher(groupKey, key);
         if (!groupKey.equals(AccountManager.instance.getMeGroupKey()))
             groupMap.put(event.key, event.group);
         for (String roomKey : event.group.roomList)
             RoomManager.instance.setWatcher(groupKey, roomKey);
+        DatabaseRegistrar.instance.end();
     }
 
-    /** Handle a message change event by adding the message into the correct room list.  */
+    /**
+     * Handle a message change event by adding the message into the correct room list.  Message
+     * changes are delivered on a background thread.
+     */
     @Subscribe public void onMessageListChange(@NonNull final MessageChangeEvent event) {
         // Update the date headers for this message and post an event to trigger an adapter refresh.
         updateDateHeaderMap(event.message);
@@ -233,14 +252,7 @@ public enum GroupManager {
         group.memberList = groupMembers;
         updateGroupProfile(group);
         groupMap.remove(group.key);
-        mGroupToLastNewMessageMap.remove(group.key);
-        // remove the group that is leaving from the date header type to group list map
-        for (ListItem.DateHeaderType dht : mDateHeaderTypeToGroupListMap.keySet()) {
-            List<String> groupList = mDateHeaderTypeToGroupListMap.get(dht);
-            for(String groupKey : groupList)
-                if (groupKey.equals(group.key))
-                    groupList.remove(group.key);
-        }
+        removeDateHeaders(group.key);
         removeWatcher(group.key);
     }
 
@@ -275,15 +287,14 @@ public enum GroupManager {
     private void addItem(@NonNull final List<ListItem> result, @NonNull final String groupKey) {
         String name = getGroupName(groupKey);
         Map<String, Integer> roomCountMap = new HashMap<>();
-        int count = getNewMessageCount(groupKey, roomCountMap);
+        int count = DBUtils.getUnseenMessageCount(groupKey, roomCountMap);
         String text = getGroupText(roomCountMap);
         result.add(new ListItem(chatGroup, groupKey, null, name, count, text));
     }
 
     /** Add a group list item for the given kind (chat message or game experience) and group. */
     private void addItem(@NonNull final List<ListItem> result, @NonNull final Room room) {
-        Map<String, Integer> unseenCountMap = new HashMap<>();
-        int count = DBUtils.getUnseenMessageCount(room.groupKey, unseenCountMap);
+        int count = UnseenCountManager.instance.getMessageCount(room.groupKey, room.key);
         result.add(new ListItem(chatRoom, room.groupKey, room.key, room.name, count, null));
     }
 
@@ -337,26 +348,6 @@ public enum GroupManager {
         return textBuilder.toString();
     }
 
-    /** Return 0 or the number of unseen messages in all the joined rooms for the given group. */
-    private int getNewMessageCount(@NonNull final String key,
-                                   @NonNull final Map<String, Integer> roomCountMap) {
-        // Return the total number of unseen messages in the joined rooms for the given group.
-        int result = 0;
-        Map<String, Map<String, Message>> map = GroupManager.instance.getGroupMessages(key);
-        String accountId = AccountManager.instance.getCurrentAccountId();
-        if (map == null || accountId == null)
-            return result;
-        for (String roomKey : map.keySet()) {
-            int roomNewCount = 0;
-            for (Message message : map.get(roomKey).values())
-                if (message.unseenList != null && message.unseenList.contains(accountId))
-                    roomNewCount++;
-            roomCountMap.put(roomKey, roomNewCount);
-            result += roomNewCount;
-        }
-        return result;
-    }
-
     /** Return an empty list of items or the items from the me group. */
     private List<ListItem> getMeGroupItemList() {
         // Determine if the me room exists.  If not, return with an empty list, otherwise return a
@@ -369,12 +360,11 @@ public enum GroupManager {
         return result;
     }
 
-    /** Update the headers used to bracket the messages in the main list. */
-    private void updateDateHeaderMap(final Message message) {
-        // Add the new message to be the last message emanating from
-        // the given group.  Then rebuild the lists of date header type to group list associations.
-        mGroupToLastNewMessageMap.put(message.groupKey, message);
-        mDateHeaderTypeToGroupListMap.clear();
+    /** Rebuild the date header map from the most recent message of each group. */
+    private void rebuildDateHeaderMap() {
+        // Build the lists of date header type to group list associations in a new map, then
+        // publish it: the main thread may be reading the current one.
+        Map<ListItem.DateHeaderType, List<String>> headerMap = new HashMap<>();
         long nowTimestamp = new Date().getTime();
         for (String key : mGroupToLastNewMessageMap.keySet()) {
             // Determine which date header type the current group should be associated with.
@@ -385,15 +375,33 @@ public enum GroupManager {
                 // work.
                 if (dht == old || nowTimestamp - groupTimestamp <= dht.limit) {
                     // This is the one.  Add this group to the associated list.
-                    List<String> list = mDateHeaderTypeToGroupListMap.get(dht);
+                    List<String> list = headerMap.get(dht);
                     if (list == null) {
                         list = new ArrayList<>();
-                        mDateHeaderTypeToGroupListMap.put(dht, list);
+                        headerMap.put(dht, list);
                     }
                     list.add(key);
                     break;
                 }
             }
         }
+        mDateHeaderTypeToGroupListMap = headerMap;
+    }
+
+    /** Remove the given group, or all groups given null, from the date headers. */
+    private synchronized void removeDateHeaders(final String groupKey) {
+        if (groupKey == null)
+            mGroupToLastNewMessageMap.clear();
+        else
+            mGroupToLastNewMessageMap.remove(groupKey);
+        rebuildDateHeaderMap();
+    }
+
+    /** Update the headers used to bracket the messages in the main list. */
+    private synchronized void updateDateHeaderMap(final Message message) {
+        // Add the new message to be the last message emanating from the given group.  Then
+        // rebuild the lists of date header type to group list associations.
+        mGroupToLastNewMessageMap.put(message.groupKey, message);
+        rebuildDateHeaderMap();
     }
 }
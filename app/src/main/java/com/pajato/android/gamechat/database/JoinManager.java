@@ -33,9 +33,11 @@ import com.pajato.android.gamechat.common.model.JoinState;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import static com.pajato.android.gamechat.chat.model.Message.STANDARD;
 import static com.pajato.android.gamechat.chat.model.Message.SYSTEM;
@@ -70,44 +72,17 @@ public enum JoinManager {
                 context.getString(R.string.JoinMemberRoomMessage));
     }
 
-    /** Join the current account holder to a room specified by a given item. */
+    /**
+     * Join the current account holder to a room specified by a given item, persisting the room,
+     * group and member changes and the join message in a single batch.
+     */
     public void joinRoom(@NonNull final ListItem item) {
-        // Ensure that the member object exists, aborting if not.
-        Room room = null;
-        Account member = MemberManager.instance.getMember(item.groupKey);
-        if (member == null)
-            return;
-
-        // Case on the item type to handle joining an existing public room or a new private room.
-        switch (item.type) {
-            case experience:
-            case selectUser:
-            case selectableMember:
-                // Create and persist the private chat room and get it's push key.
-                room = joinMember(item.groupKey, item.memberKey);
-                item.roomKey = room != null ? room.key : null;
-                break;
-            case selectableRoom:
-                // Update and persist the room.
-                room = joinRoom(item.groupKey, item.roomKey);
-                item.roomKey = room != null ? room.key : null;
-                break;
-            default:
-                break;
+        WriteScheduler.instance.begin();
+        try {
+            joinItem(item);
+        } finally {
+            WriteScheduler.instance.end();
         }
-
-        // Abort if the room wasn't returned or if the room has already been joined. Otherwise
-        // update and persist the member join list.
-        if (room == null || member.joinMap.keySet().contains(room.key))
-            return;
-        member.joinMap.put(room.key, new JoinState());
-        String path = String.format(Locale.US, MemberManager.MEMBERS_PATH, item.groupKey, member.key);
-        DBUtils.updateChildren(path, member.toMap());
-
-        // Post a message to the room announcing the user has joined
-        String format = mMessageMap.get(R.string.HasJoinedMessage);
-        String text = String.format(Locale.getDefault(), format, member.name);
-        MessageManager.instance.createMessage(text, STANDARD, member, room);
     }
 
     /** Return a set of explicit (public) and implicit (member) rooms the current User can join. */
@@ -160,39 +135,31 @@ public enum JoinManager {
 
     /** Return a list of member room entries excluding joined ones and disallowing duplicates */
     public List<ListItem> getAvailableMembers(final Dispatcher dispatcher) {
-        // Get a list of all members visible to the current User.
+        // Get a list of all members visible to the current User, each one once: a member in more
+        // than one of the groups gets a single item carrying all those groups.  Members seen in
+        // an earlier group are skipped.
         List<ListItem> items = new ArrayList<>();
         List<String> groupList = GroupManager.instance.getGroups(dispatcher.groupKey);
+        Set<String> groupSet = new HashSet<>(groupList);
+        Set<String> seenSet = new HashSet<>();
         String currentAccountId = AccountManager.instance.getCurrentAccountId();
         for (String groupKey : groupList) {
-            Map<String, Account> map = MemberManager.instance.memberMap.get(groupKey);
-            for (Account member : map.values()) {
-                if (member.key.equals(currentAccountId))
+            for (Account member : MemberManager.instance.getMemberList(groupKey)) {
+                if (member.key.equals(currentAccountId) || !seenSet.add(member.key))
                     continue;
 
                 // Don't add the member to the list of members if there is already a room which
                 // is private, contains only two members and they are the current account and
                 // the member we're considering now.
-                boolean canAdd = true;
-                for (Map.Entry<String, Room> entry : RoomManager.instance.roomMap.entrySet()) {
-                    Room room = entry.getValue();
-                    if (room.isMemberPrivateRoom(member.key, currentAccountId)) {
-                        canAdd = false;
-                        break;
-                    }
-                }
-                // Check for duplicate member (member in > 1 group)
-                for (ListItem anItem : items) {
-                    if (anItem.memberKey.equals(member.key)) {
-                        // modify the already added item and remember we can't add this one
-                        anItem.addGroupKey(groupKey);
-                        canAdd = false;
-                    }
-                }
-                if (canAdd)
-                    items.add(new ListItem(selectableMember, groupKey, member.key,
-                            member.getNickName(), GroupManager.instance.getGroupName(groupKey),
-                            member.url));
+                if (RoomManager.instance.hasPrivateRoom(member.key, currentAccountId))
+                    continue;
+                ListItem item = new ListItem(selectableMember, groupKey, member.key,
+                        member.getNickName(), GroupManager.instance.getGroupName(groupKey),
+                        member.url);
+                for (String key : MemberManager.instance.getGroupKeys(member.key))
+                    if (!key.equals(groupKey) && groupSet.contains(key))
+                        item.addGroupKey(key);
+                items.add(item);
             }
         }
 
@@ -236,6 +203,46 @@ public enum JoinManager {
         return result;
     }
 
+    /** Join the current account holder to a room specified by a given item. */
+    private void joinItem(@NonNull final ListItem item) {
+        // Ensure that the member object exists, aborting if not.
+        Room room = null;
+        Account member = MemberManager.instance.getMember(item.groupKey);
+        if (member == null)
+            return;
+
+        // Case on the item type to handle joining an existing public room or a new private room.
+        switch (item.type) {
+            case experience:
+            case selectUser:
+            case selectableMember:
+                // Create and persist the private chat room and get it's push key.
+                room = joinMember(item.groupKey, item.memberKey);
+                item.roomKey = room != null ? room.key : null;
+                break;
+            case selectableRoom:
+                // Update and persist the room.
+                room = joinRoom(item.groupKey, item.roomKey);
+                item.roomKey = room != null ? room.key : null;
+                break;
+            default:
+                break;
+        }
+
+        // Abort if the room wasn't returned or if the room has already been joined. Otherwise
+        // update and persist the member join list.
+        if (room == null || member.joinMap.keySet().contains(room.key))
+            return;
+        member.joinMap.put(room.key, new JoinState());
+        String path = String.format(Locale.US, MemberManager.MEMBERS_PATH, item.groupKey, member.key);
+        DBUtils.updateChildren(path, member.toMap());
+
+        // Post a message to the room announcing the user has joined
+        String format = mMessageMap.get(R.string.HasJoinedMessage);
+        String text = String.format(Locale.getDefault(), format, member.name);
+        MessageManager.instance.createMessage(text, STANDARD, member, room);
+    }
+
     /** Join the given member and the current User to a private room. */
     private Room joinMember(@NonNull final String groupKey, @NonNull final String memberKey) {
         // Ensure that a current account, member and group profile all exist. Abort if not,
@@ -19,9 +19,9 @@ package com.pajato.android.gamechat.database;
 
 import android.support.annotation.NonNull;
 
-import com.google.firebase.database.FirebaseDatabase;
 import com.pajato.android.gamechat.common.adapter.ListItem;
 import com.pajato.android.gamechat.common.model.Account;
+import com.pajato.android.gamechat.common.model.JoinState;
 import com.pajato.android.gamechat.database.handler.DatabaseEventHandler;
 import com.pajato.android.gamechat.database.handler.MemberChangeHandler;
 import com.pajato.android.gamechat.event.AuthenticationChangeEvent;
@@ -30,11 +30,14 @@ import com.pajato.android.gamechat.event.MemberChangeEvent;
 import org.greenrobot.eventbus.Subscribe;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Provide a fragment to handle the display of the rooms available to the current user.
@@ -48,6 +51,8 @@ public enum MemberManager {
 
     // Database paths, often used as format strings.
     public static final String MEMBERS_PATH = GroupManager.GROUPS_PATH + "%s/members/%s";
+    public static final String JOIN_PATH = MEMBERS_PATH + "/joinMap/%s";
+    public static final String SEEN_TIME_PATH = JOIN_PATH + "/seenTime";
 
     // Private class constants.
 
@@ -59,6 +64,11 @@ public enum MemberManager {
     /** The map associating a group with the members in that group. */
     public Map<String, Map<String, Account>> memberMap = new HashMap<>();
 
+    // Private instance variables.
+
+    /** The keys of the groups each member is known to be in, by member (account) push key. */
+    private Map<String, Set<String>> mGroupKeyMap = new HashMap<>();
+
     // Public instance methods.
 
     /** Persist the given member to the database. */
@@ -90,6 +100,14 @@ public enum MemberManager {
         return map.get(memberKey);
     }
 
+    /** Return a read only, possibly empty, set of the keys of the groups the given member is in. */
+    public Set<String> getGroupKeys(@NonNull final String memberKey) {
+        Set<String> result = mGroupKeyMap.get(memberKey);
+        if (result == null)
+            return Collections.emptySet();
+        return Collections.unmodifiableSet(result);
+    }
+
     /** Get a list of member items for a given group key. */
     public List<ListItem> getGroupMemberListItemData(final String groupKey) {
         // Generate a list of items to render in the member list
@@ -116,12 +134,23 @@ public enum MemberManager {
         return String.format(Locale.US, MEMBERS_PATH, groupKey, memberKey);
     }
 
+    /**
+     * Return the time the current account holder last saw the given room (the room's read
+     * cursor), zero if never.
+     */
+    public long getSeenTime(final String groupKey, final String roomKey) {
+        Account member = groupKey != null ? getMember(groupKey) : null;
+        JoinState state = member != null ? member.joinMap.get(roomKey) : null;
+        return state != null ? state.getSeenTime() : 0;
+    }
+
     /** Handle a account change event by setting up or clearing variables. */
     @Subscribe public void onAuthenticationChange(@NonNull final AuthenticationChangeEvent event) {
         // Determine if a User has been authenticated.  If so, do nothing, otherwise clear the
         // message list for the logged out User.
         if (event.account != null) return;
         memberMap.clear();
+        mGroupKeyMap.clear();
     }
 
     /** Handle changes to the list of joined rooms by capturing all group and room profiles. */
@@ -136,21 +165,33 @@ public enum MemberManager {
             return;
         map.put(event.member.key, event.member);
         memberMap.put(event.member.groupKey, map);
+        Set<String> groupKeys = mGroupKeyMap.get(event.member.key);
+        if (groupKeys == null) {
+            groupKeys = new LinkedHashSet<>();
+            mGroupKeyMap.put(event.member.key, groupKeys);
+        }
+        groupKeys.add(event.member.groupKey);
 
         // Determine if the payload is for the current account holder.  If so, set a message and
         // experience watcher on the joined rooms.
-        if (event.member.key.equals(AccountManager.instance.getCurrentAccountId()))
-            for (String roomKey : event.member.joinMap.keySet()) {
-                RoomManager.instance.setWatcher(event.member.groupKey, roomKey);
-                MessageManager.instance.setWatcher(event.member.groupKey, roomKey);
-                ExperienceManager.instance.setWatcher(event.member.groupKey, roomKey);
-            }
+        if (!event.member.key.equals(AccountManager.instance.getCurrentAccountId()))
+            return;
+        DatabaseRegistrar.instance.begin();
+        for (String roomKey : event.member.joinMap.keySet()) {
+            RoomManager.instance.setWatcher(event.member.groupKey, roomKey);
+            MessageManager.instance.setWatcher(event.member.groupKey, roomKey);
+            ExperienceManager.instance.setWatcher(event.member.groupKey, roomKey);
+        }
+        DatabaseRegistrar.instance.end();
     }
 
     /** Remove a member from a group and remove any watcher on that member */
     public void removeMember(final String groupKey, final String memberKey) {
         // Remove the member from the group in the member map
         Account member = memberMap.get(groupKey).remove(memberKey);
+        Set<String> groupKeys = mGroupKeyMap.get(memberKey);
+        if (groupKeys != null && groupKeys.remove(groupKey) && groupKeys.isEmpty())
+            mGroupKeyMap.remove(memberKey);
         removeWatcher(groupKey, memberKey);
         for (String roomKey : member.joinMap.keySet()) {
             RoomManager.instance.removeWatcher(roomKey);
@@ -160,7 +201,7 @@ public enum MemberManager {
 
         // Remove the member from the database
         String path = MemberManager.instance.getMembersPath(groupKey, memberKey);
-        FirebaseDatabase.getInstance().getReference().child(path).removeValue();
+        DBUtils.removeValue(path);
     }
 
     /** Remove the watcher for the specified member in the specified group */
@@ -190,6 +231,26 @@ public enum MemberManager {
         DBUtils.updateChildren(path, member.toMap());
     }
 
+    /**
+     * Move the current account holder's read cursor for the given joined room forward to the
+     * given time: the messages created up to that time have been seen.  Return TRUE iff the
+     * cursor moved.
+     */
+    public boolean updateSeenTime(@NonNull final String groupKey, @NonNull final String roomKey,
+                               final long seenTime) {
+        // Abort if the account holder has not joined the room or has seen it later, otherwise
+        // update the cursor locally and on the database.
+        Account member = getMember(groupKey);
+        JoinState state = member != null ? member.joinMap.get(roomKey) : null;
+        if (state == null || state.getSeenTime() >= seenTime)
+            return false;
+        state.setSeenTime(seenTime);
+        String path = String.format(Locale.US, SEEN_TIME_PATH, groupKey, member.key, roomKey);
+        WriteScheduler.instance.write(path, seenTime);
+        UnseenCountManager.instance.setCursor(groupKey, roomKey, seenTime);
+        return true;
+    }
+
     /** Return a possibly empty list of members in the given group. */
     public List<Account> getMemberList(@NonNull final String groupKey) {
         List<Account> result = new ArrayList<>();
@@ -18,35 +18,37 @@
 package com.pajato.android.gamechat.database;
 
 import android.support.annotation.NonNull;
+import android.util.Log;
 
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
 import com.pajato.android.gamechat.chat.model.Message;
 import com.pajato.android.gamechat.chat.model.Room;
 import com.pajato.android.gamechat.common.Dispatcher;
 import com.pajato.android.gamechat.common.adapter.ListItem;
-import com.pajato.android.gamechat.common.adapter.ListItem.DateHeaderType;
-import com.pajato.android.gamechat.common.adapter.ListItem.ItemType;
 import com.pajato.android.gamechat.common.model.Account;
 import com.pajato.android.gamechat.database.handler.DatabaseEventHandler;
 import com.pajato.android.gamechat.database.handler.MessageListChangeHandler;
+import com.pajato.android.gamechat.event.AppEventManager;
 import com.pajato.android.gamechat.event.AuthenticationChangeEvent;
+import com.pajato.android.gamechat.event.ChatListChangeEvent;
 
 import org.greenrobot.eventbus.Subscribe;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import static com.pajato.android.gamechat.chat.model.Message.SYSTEM;
-import static com.pajato.android.gamechat.common.adapter.ListItem.DateHeaderType.old;
-import static com.pajato.android.gamechat.common.adapter.ListItem.ItemType.date;
 
 /**
  * Provide a class to manage the app interactions with the database for lists of chat messages.
@@ -79,18 +81,34 @@ public enum MessageManager {
     public static final String MESSAGES_PATH = RoomManager.ROOMS_PATH + "%s/messages/";
     public static final String MESSAGE_PATH = MESSAGES_PATH + "%s/";
 
+    /** The number of messages loaded at a time: the most recent ones, then older pages. */
+    public static final int PAGE_SIZE = 50;
+
     // Private class constants.
 
     /** The message list change handler base name. */
     private static final String MESSAGE_LIST_CHANGE_HANDLER = "messageListChangeHandler";
 
-    // Public instance variables.
-
-    /** The map associating group and room push keys with a map of messages. */
-    public Map<String, Map<String, Map<String, Message>>> messageMap = new HashMap<>();
+    /** The logcat TAG. */
+    private static final String TAG = MessageManager.class.getSimpleName();
 
     // Private instance variables.
 
+    /** The rooms whose messages are all loaded, by room push key. */
+    private Set<String> mCompleteSet = new HashSet<>();
+
+    /** The loaded messages, by push key, indexed by group, room and creation time. */
+    private final EntityStore<Message> mStore = new EntityStore<>(new MessageIndexer());
+
+    /** The rooms with an older page of messages being loaded, by room push key. */
+    private Set<String> mLoadingSet = new HashSet<>();
+
+    /** The key of the oldest watched message in each watched room, by room push key. */
+    private Map<String, String> mStartKeyMap = new HashMap<>();
+
+    /** The message timeline of each watched room, by room push key. */
+    private Map<String, MessageTimeline> mTimelineMap = new HashMap<>();
+
     // Public instance methods.
 
     /** Persist a standard message (one sent from a standard user) to the database. */
@@ -110,42 +128,27 @@ public enum MessageManager {
         String systemUrl = "android.resource://com.pajato.android.gamechat/drawable/ic_launcher";
         String url = type == SYSTEM ? systemUrl : account.url;
         long tStamp = new Date().getTime();
-        List<String> members = new ArrayList<>();
-        members.addAll(room.getMemberIdList());
-        Message message = new Message(key, account.key, name, tStamp, text, type, url, members);
+        Message message = new Message(key, account.key, name, tStamp, text, type, url, null);
 
         // Persist (i.e. post) the message.
         path = String.format(Locale.US, MESSAGE_PATH, room.groupKey, room.key, key);
         DBUtils.updateChildren(path, message.toMap());
     }
 
-    /** Get a map of messages keyed by room push key in a given group. */
-    public Map<String, Map<String, Message>> getGroupMessages(final String groupKey) {
-        return messageMap.get(groupKey);
-    }
-
-    /** Return a possibly empty list of messages for a given group and room. */
-    @SuppressWarnings("unused")
+    /** Return a possibly empty list of the loaded messages in a given room, most recent first. */
     public List<Message> getMessageList(final String groupKey, final String roomKey) {
-        // Ensure there are some messages to be had in the group.  Return the empty list if none
-        // are found, otherwise return all messages in that room.
-        List<Message> result = new ArrayList<>();
-        Map<String, Map<String, Message>> roomMap = getGroupMessages(groupKey);
-        if (roomMap == null) return result;
-        result.addAll(roomMap.get(roomKey).values());
-        return result;
+        return mStore.getList(groupKey, roomKey);
     }
 
     /** Return a list of messages, an empty list if there are none to be had, for a given item. */
     public List<ListItem> getListItemData(@NonNull final Dispatcher dispatcher) {
-        // Generate a map of date header types to a list of messages, i.e. a chronological ordering
-        // of the messages.
+        // Return the items of the room's timeline: the messages in chronological order grouped
+        // under date headers.
         List<ListItem> result = new ArrayList<>();
-        String groupKey = dispatcher.groupKey;
         String roomKey = getRoomKey(dispatcher);
         if (roomKey == null)
             return result;
-        return getItems(getMessageMap(getGroupMessages(groupKey).get(roomKey)));
+        return getTimeline(roomKey).getItems(new Date().getTime());
     }
 
     /** Return the path to the messages for the given group and room keys. */
@@ -153,25 +156,104 @@ public enum MessageManager {
         return String.format(Locale.US, MESSAGES_PATH, groupKey, roomKey);
     }
 
+    /** Return a read only view of the keys of the rooms in a group with loaded messages. */
+    public Set<String> getRoomKeys(final String groupKey) {
+        return mStore.getRoomKeys(groupKey);
+    }
+
+    /** Return the message timeline for the given room, creating an empty one if need be. */
+    public MessageTimeline getTimeline(@NonNull final String roomKey) {
+        MessageTimeline result = mTimelineMap.get(roomKey);
+        if (result == null) {
+            result = new MessageTimeline();
+            mTimelineMap.put(roomKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * Return TRUE iff the given message, read from the database, is identical to the one already
+     * loaded, as is the echo of a write made locally (such as marking messages seen).
+     */
+    public boolean isUnchanged(@NonNull final Message message) {
+        Message known = mStore.get(message.key);
+        return known != null && known.toMap().equals(message.toMap());
+    }
+
+    /**
+     * Load the page of messages preceding the oldest one loaded in the room shown by the given
+     * dispatcher, unless all are loaded or a page is already on its way.
+     */
+    public void loadOlderMessages(@NonNull final Dispatcher dispatcher) {
+        // Determine the room and its oldest loaded message, aborting if there is nothing to load.
+        // Otherwise query the page ending at (and including) the oldest message.
+        String groupKey = dispatcher.groupKey;
+        String roomKey = getRoomKey(dispatcher);
+        if (roomKey == null || !mStartKeyMap.containsKey(roomKey) || mCompleteSet.contains(roomKey))
+            return;
+        MessageTimeline timeline = getTimeline(roomKey);
+        if (timeline.getSize() == 0 || !mLoadingSet.add(roomKey))
+            return;
+        String endKey = timeline.getMessage(0).key;
+        Query query = getReference(groupKey, roomKey).orderByKey().endAt(endKey);
+        query.limitToLast(PAGE_SIZE + 1)
+                .addListenerForSingleValueEvent(new PageListener(groupKey, roomKey, endKey));
+    }
+
+    /**
+     * Mark the messages in the given room as seen by the current account holder by moving the
+     * holder's read cursor for the room to the newest loaded message, and tell the app if it moved.
+     */
+    public void markSeen(@NonNull final String groupKey, @NonNull final String roomKey) {
+        MessageTimeline timeline = getTimeline(roomKey);
+        int size = timeline.getSize();
+        if (size == 0)
+            return;
+        long seenTime = timeline.getMessage(size - 1).createTime;
+        if (MemberManager.instance.updateSeenTime(groupKey, roomKey, seenTime))
+            AppEventManager.instance.post(new ChatListChangeEvent());
+    }
+
     /** Handle a account change event by setting up or clearing variables. */
     @Subscribe public void onAuthenticationChange(@NonNull final AuthenticationChangeEvent event) {
         // Determine if a User has been authenticated.  If so, do nothing, otherwise clear the
         // message list for the logged out User.
         if (event.account != null) return;
-        messageMap.clear();
+        mStore.clear();
+        mTimelineMap.clear();
+        mStartKeyMap.clear();
+        mCompleteSet.clear();
+        mLoadingSet.clear();
+    }
+
+    /** Add the given message (with its group and room keys set) or replace it if it is known. */
+    public void putMessage(@NonNull final Message message) {
+        mStore.put(message);
+        getTimeline(message.roomKey).put(message);
+    }
+
+    /** Remove the given message (with its group and room keys set). */
+    public void removeMessage(@NonNull final Message message) {
+        mStore.remove(message.key);
+        getTimeline(message.roomKey).remove(message.key);
     }
 
     /** Remove the listener for messages in the specified room */
     public void removeWatcher(final String roomKey) {
         String name = DBUtils.getHandlerName(MESSAGE_LIST_CHANGE_HANDLER, roomKey);
+        mLoadingSet.remove(roomKey);
+        mStartKeyMap.remove(roomKey);
         if (DatabaseRegistrar.instance.isRegistered(name)) {
             DatabaseRegistrar.instance.unregisterHandler(name);
         }
     }
 
-    /** Setup a Firebase child event listener for the messages in the given joined room. */
+    /**
+     * Setup a Firebase child event listener for the messages in the given joined room.  Only the
+     * most recent page of messages is watched, the page moving on as new messages arrive.
+     */
     public void setWatcher(final String groupKey, final String roomKey) {
-        // There is an active account.  Register it.
+        // Abort if the room is watched, otherwise register a handler on its most recent page.
         String name = DBUtils.getHandlerName(MESSAGE_LIST_CHANGE_HANDLER, roomKey);
         if (DatabaseRegistrar.instance.isRegistered(name))
             return;
@@ -179,6 +261,41 @@ public enum MessageManager {
         DatabaseRegistrar.instance.registerHandler(handler);
     }
 
+    /**
+     * Set the key of the oldest watched message in the given room, null if none is watched.  The
+     * older messages loaded are not watched; they are loaded and trimmed a page at a time.
+     */
+    public void setStartKey(@NonNull final String roomKey, final String key) {
+        if (key != null)
+            mStartKeyMap.put(roomKey, key);
+        else
+            mStartKeyMap.remove(roomKey);
+    }
+
+    /**
+     * Evict the loaded messages older than the watched ones in the room shown by the given
+     * dispatcher, keeping a page of them.  Used when those messages are well off screen.
+     */
+    public void trimMessages(@NonNull final Dispatcher dispatcher) {
+        // Determine the number of messages loaded ahead of the watched ones.  Abort if there is
+        // no more than a page of them, otherwise evict the oldest and tell the app.
+        String roomKey = getRoomKey(dispatcher);
+        String startKey = roomKey != null ? mStartKeyMap.get(roomKey) : null;
+        if (startKey == null)
+            return;
+        MessageTimeline timeline = getTimeline(roomKey);
+        int count = 0;
+        while (count < timeline.getSize() && timeline.getMessage(count).key.compareTo(startKey) < 0)
+            count++;
+        if (count <= PAGE_SIZE)
+            return;
+        for (int index = PAGE_SIZE; index < count; index++)
+            removeMessage(timeline.getMessage(0));
+        mCompleteSet.remove(roomKey);
+        mLoadingSet.remove(roomKey);
+        AppEventManager.instance.post(new ChatListChangeEvent());
+    }
+
     /** Update a message on the database. */
     public void updateMessage(Message message) {
         String groupKey = message.groupKey;
@@ -189,44 +306,9 @@ public enum MessageManager {
 
     // Private instance methods.
 
-    /** Return the date header type most closely associated with the given message timestamp. */
-    private DateHeaderType getDateHeaderType(final Message message) {
-        long now = new Date().getTime();
-        for (DateHeaderType type : DateHeaderType.values()) {
-            // Determine if this is the right dht value.
-            if (now - message.createTime <= type.limit) {
-                // This is the correct dht value to use. Done.
-                return type;
-            }
-        }
-        return old;
-    }
-
-    /** Return a list of ordered chat items from a map of chronologically ordered messages. */
-    private List<ListItem> getItems(final Map<DateHeaderType, List<Message>> messageMap) {
-        // Build the list of display items, in reverse order (oldest to newest).
-        List<ListItem> result = new ArrayList<>();
-        DateHeaderType[] types = DateHeaderType.values();
-        int size = types.length;
-        for (int index = size - 1; index >= 0; index--) {
-            // Add the header item followed by all the room messages.
-            DateHeaderType dht = types[index];
-            List<Message> list = messageMap.get(dht);
-            if (list == null)
-                continue;
-            result.add(new ListItem(date, dht.resId));
-            Collections.sort(list, new MessageComparator());
-            for (Message message : list) {
-                String groupKey = message.groupKey;
-                String roomKey = message.roomKey;
-                DateFormat dateFormat = SimpleDateFormat.getDateTimeInstance();
-                String tStamp = dateFormat.format(new Date(message.createTime));
-                String name = String.format(Locale.getDefault(), "%s  %s", message.name, tStamp);
-                result.add(new ListItem(ItemType.message, groupKey, roomKey, name, message.text,
-                        message.url, message.key));
-            }
-        }
-        return result;
+    /** Return the database reference to the messages in the given room. */
+    private DatabaseReference getReference(final String groupKey, final String roomKey) {
+        return FirebaseDatabase.getInstance().getReference(getMessagesPath(groupKey, roomKey));
     }
 
     /** Return null or a valid room key for the given configuration. */
@@ -238,31 +320,68 @@ public enum MessageManager {
         return dispatcher.roomKey;
     }
 
-    /** Sort lists of messages after they've been sorted into date categories. */
-    private class MessageComparator implements Comparator<Message> {
-        @Override public int compare(Message m1, Message m2) {
-            Date d1 = new Date(m1.createTime);
-            Date d2 = new Date(m2.createTime);
-            return d1.compareTo(d2);
+    // Private inner classes.
+
+    /** Index messages by their group and room keys and their creation time. */
+    private static class MessageIndexer implements EntityStore.Indexer<Message> {
+        @Override public String getKey(final Message message) {
+            return message.key;
+        }
+
+        @Override public String getGroupKey(final Message message) {
+            return message.groupKey;
+        }
+
+        @Override public String getRoomKey(final Message message) {
+            return message.roomKey;
+        }
+
+        @Override public long getModTime(final Message message) {
+            return message.createTime;
         }
     }
 
-    /** Return a map of the given messages, sorted into chronological buckets. */
-    private Map<DateHeaderType, List<Message>> getMessageMap(final Map<String, Message> messageList) {
-        // Stick the messages into a message map keyed by date header type.
-        Map<DateHeaderType, List<Message>> result = new HashMap<>();
-        for (Message message : messageList.values()) {
-            // Append the message to the list keyed by the date header type value associated with
-            // the message creation date.
-            DateHeaderType type = getDateHeaderType(message);
-            List<Message> list = result.get(type);
-            if (list == null) {
-                list = new ArrayList<>();
-                result.put(type, list);
+    /** Add a page of older messages, received for a given room, to the loaded messages. */
+    private class PageListener implements ValueEventListener {
+
+        /** The key of the oldest message loaded when the page was requested. */
+        private String mEndKey;
+
+        /** The group key. */
+        private String mGroupKey;
+
+        /** The room key. */
+        private String mRoomKey;
+
+        /** Build a listener for the page preceding the given message in the given room. */
+        PageListener(final String groupKey, final String roomKey, final String endKey) {
+            mGroupKey = groupKey;
+            mRoomKey = roomKey;
+            mEndKey = endKey;
+        }
+
+        @Override public void onDataChange(DataSnapshot snapshot) {
+            // Abort if the page is no longer wanted, otherwise add the messages (but the one the
+            // page ends with, already loaded) noting whether the page is the last one.
+            if (!mLoadingSet.remove(mRoomKey))
+                return;
+            if (snapshot.getChildrenCount() <= PAGE_SIZE)
+                mCompleteSet.add(mRoomKey);
+            for (DataSnapshot child : snapshot.getChildren()) {
+                Message message = child.getValue(Message.class);
+                if (message == null || mEndKey.equals(child.getKey()))
+                    continue;
+                message.groupKey = mGroupKey;
+                message.roomKey = mRoomKey;
+                putMessage(message);
+                UnseenCountManager.instance.update(message);
             }
-            list.add(message);
+            AppEventManager.instance.post(new ChatListChangeEvent());
         }
 
-        return result;
+        @Override public void onCancelled(DatabaseError error) {
+            mLoadingSet.remove(mRoomKey);
+            Log.w(TAG, "Failed to read older messages.", error.toException());
+        }
     }
 }
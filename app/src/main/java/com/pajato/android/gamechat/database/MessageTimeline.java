@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.database;
+
+import android.support.annotation.NonNull;
+
+import com.pajato.android.gamechat.chat.model.Message;
+import com.pajato.android.gamechat.common.adapter.ListItem;
+import com.pajato.android.gamechat.common.adapter.ListItem.DateHeaderType;
+import com.pajato.android.gamechat.common.adapter.ListItem.ItemType;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.pajato.android.gamechat.common.adapter.ListItem.ItemType.date;
+
+/**
+ * Provide an index of the messages in a room ordered by creation time, maintained incrementally as
+ * messages arrive, change or go away, along with the list of items (date headers and messages)
+ * rendering it.  Messages mostly arrive at the end of the timeline: such appends, and changes to
+ * existing messages, update the rendered list in place; anything else (an out of order arrival, a
+ * removal, or the date headers moving on as time passes) rebuilds it from the index.
+ */
+public class MessageTimeline {
+
+    // Private class constants.
+
+    /** The date header types in rendering order, oldest to newest. */
+    private static final DateHeaderType[] TYPES;
+    static {
+        DateHeaderType[] values = DateHeaderType.values();
+        TYPES = new DateHeaderType[values.length];
+        for (int index = 0; index < values.length; index++)
+            TYPES[index] = values[values.length - 1 - index];
+    }
+
+    // Private instance variables.
+
+    /**
+     * The start of each date header range in the messages (with the count of messages last)
+     * when the items were last rendered.  The ranges are those rendered, not the current ones.
+     */
+    private int[] mBounds = new int[TYPES.length + 1];
+
+    /** The formatter for message time stamps. */
+    private DateFormat mDateFormat = SimpleDateFormat.getDateTimeInstance();
+
+    /** TRUE iff the rendered items must be rebuilt from the index. */
+    private boolean mIsDirty;
+
+    /** The item rendering each message, by message key. */
+    private Map<String, ListItem> mItemMap = new HashMap<>();
+
+    /** The rendered items: date headers each followed by its messages. */
+    private List<ListItem> mItems = new ArrayList<>();
+
+    /** The messages ordered by creation time (then key). */
+    private List<Message> mMessages = new ArrayList<>();
+
+    /** The indexed messages by key. */
+    private Map<String, Message> mMessageMap = new HashMap<>();
+
+    // Public instance methods.
+
+    /** Return the rendered items as of the given time, updated for any change since last time. */
+    public List<ListItem> getItems(final long now) {
+        // Determine the current date header ranges.  If the ranges of the rendered messages are
+        // unchanged, only the new messages need rendering, otherwise render all of them.
+        int[] bounds = getBounds(now);
+        int rendered = mIsDirty ? 0 : mBounds[TYPES.length];
+        for (int index = 0; index < TYPES.length && rendered > 0; index++) {
+            boolean isRendered = mBounds[index] < rendered;
+            if (isRendered ? bounds[index] != mBounds[index] : bounds[index] < rendered)
+                rendered = 0;
+        }
+        if (rendered == 0)
+            mItems.clear();
+        for (int index = 0; index < TYPES.length; index++) {
+            int start = Math.max(bounds[index], rendered);
+            int end = bounds[index + 1];
+            if (start >= end)
+                continue;
+            if (bounds[index] >= rendered)
+                mItems.add(new ListItem(date, TYPES[index].resId));
+            for (int position = start; position < end; position++)
+                mItems.add(getItem(mMessages.get(position)));
+        }
+        mBounds = bounds;
+        mIsDirty = false;
+        return Collections.unmodifiableList(mItems);
+    }
+
+    /** Return the message at the given position, the oldest being at position 0. */
+    public Message getMessage(final int position) {
+        return mMessages.get(position);
+    }
+
+    /** Return the number of indexed messages. */
+    public int getSize() {
+        return mMessages.size();
+    }
+
+    /** Add the given message to the index, or replace the indexed message with the same key. */
+    public void put(@NonNull final Message message) {
+        // Replace a message created at the same time in place, including its rendered item.
+        // Otherwise remove the old message, if any, and insert the message, noting when it is
+        // not simply appended.
+        Message old = mMessageMap.put(message.key, message);
+        if (old != null && old.createTime == message.createTime) {
+            int position = indexOf(old);
+            mMessages.set(position, message);
+            ListItem item = createItem(message);
+            mItemMap.put(message.key, item);
+            if (!mIsDirty && position < mBounds[TYPES.length])
+                mItems.set(getItemPosition(position), item);
+            return;
+        }
+        if (old != null)
+            remove(old);
+        int position = getInsertPosition(message);
+        if (position < mMessages.size())
+            mIsDirty = true;
+        mMessages.add(position, message);
+    }
+
+    /** Remove the message with the given key from the index, if it is indexed. */
+    public void remove(final String key) {
+        Message old = mMessageMap.remove(key);
+        if (old != null)
+            remove(old);
+    }
+
+    // Private instance methods.
+
+    /** Return an item rendering the given message. */
+    private ListItem createItem(@NonNull final Message message) {
+        String tStamp = mDateFormat.format(new Date(message.createTime));
+        String name = String.format(Locale.getDefault(), "%s  %s", message.name, tStamp);
+        return new ListItem(ItemType.message, message.groupKey, message.roomKey, name,
+                message.text, message.url, message.key);
+    }
+
+    /** Return the start of each date header range, as of the given time, with the size last. */
+    private int[] getBounds(final long now) {
+        // The oldest type takes whatever the newer ones do not, so starts at the beginning; each
+        // newer one starts at the first message within its limit.
+        int[] result = new int[TYPES.length + 1];
+        for (int index = 1; index < TYPES.length; index++)
+            result[index] = getFirstAtOrAfter(now - TYPES[index].limit);
+        result[TYPES.length] = mMessages.size();
+        return result;
+    }
+
+    /** Return the position of the first message created at or after the given time. */
+    private int getFirstAtOrAfter(final long time) {
+        int low = 0;
+        int high = mMessages.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mMessages.get(middle).createTime < time)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /** Return the position at which to insert the given message, normally the end. */
+    private int getInsertPosition(@NonNull final Message message) {
+        int size = mMessages.size();
+        if (size == 0 || compare(mMessages.get(size - 1), message) <= 0)
+            return size;
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(mMessages.get(middle), message) <= 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /** Return the (cached) item rendering the given message. */
+    private ListItem getItem(@NonNull final Message message) {
+        ListItem result = mItemMap.get(message.key);
+        if (result == null) {
+            result = createItem(message);
+            mItemMap.put(message.key, result);
+        }
+        return result;
+    }
+
+    /** Return the position in the rendered items of the message at the given position. */
+    private int getItemPosition(final int position) {
+        // Account for the header of each non-empty range starting at or before the position.
+        int result = position;
+        for (int index = 0; index < TYPES.length; index++)
+            if (mBounds[index] <= position && mBounds[index] < mBounds[index + 1])
+                result++;
+        return result;
+    }
+
+    /** Return the position of the given indexed message. */
+    private int indexOf(@NonNull final Message message) {
+        int position = getFirstAtOrAfter(message.createTime);
+        while (mMessages.get(position) != message)
+            position++;
+        return position;
+    }
+
+    /** Remove the given indexed message. */
+    private void remove(@NonNull final Message message) {
+        mMessages.remove(indexOf(message));
+        mItemMap.remove(message.key);
+        mIsDirty = true;
+    }
+
+    /** Return the order of the given messages: by creation time, then by key. */
+    private int compare(@NonNull final Message m1, @NonNull final Message m2) {
+        if (m1.createTime != m2.createTime)
+            return m1.createTime < m2.createTime ? -1 : 1;
+        return m1.key.compareTo(m2.key);
+    }
+}
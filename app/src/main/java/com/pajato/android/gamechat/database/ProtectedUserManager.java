@@ -21,7 +21,6 @@ import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 import android.util.SparseArray;
 
-import com.google.firebase.database.FirebaseDatabase;
 import com.pajato.android.gamechat.R;
 import com.pajato.android.gamechat.chat.model.Group;
 import com.pajato.android.gamechat.chat.model.Room;
@@ -78,7 +77,7 @@ public enum ProtectedUserManager {
 
         // Delete the protected user's me group
         String path = String.format(GroupManager.GROUPS_PATH + "%s", protectedAccount.groupKey);
-        FirebaseDatabase.getInstance().getReference().child(path).removeValue();
+        DBUtils.removeValue(path);
 
         // Remove protected user account from all of its groups and rooms. If the protected user
         // owns a room, the room must be deleted. Otherwise, just remove the account from the room
@@ -110,7 +109,7 @@ public enum ProtectedUserManager {
         removeWatcher(accountId);
 
         path = String.format(AccountManager.ACCOUNT_PATH, accountId);
-        FirebaseDatabase.getInstance().getReference().child(path).removeValue();
+        DBUtils.removeValue(path);
 
         AccountManager.instance.updateAccount(parentAccount);
         AppEventManager.instance.post(new ProtectedUserDeleteEvent(protectedAccount));
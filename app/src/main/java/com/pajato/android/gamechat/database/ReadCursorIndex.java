@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index the items (such as messages) that may be unseen by the account holder in each room by
+ * their creation time.  The number of unseen items in a room, those created after the room's read
+ * cursor (the time the account holder last saw the room), is then found by a binary search.  The
+ * per-group totals are kept as items and cursors change.
+ */
+class ReadCursorIndex {
+
+    // Private instance variables.
+
+    /** The unseen item count of each group, by group key. */
+    private Map<String, Integer> mGroupCountMap = new HashMap<>();
+
+    /** The index of each room, by room id. */
+    private Map<String, RoomIndex> mRoomMap = new HashMap<>();
+
+    // Package private instance methods.
+
+    /** Forget all items and cursors. */
+    void clear() {
+        mGroupCountMap.clear();
+        mRoomMap.clear();
+    }
+
+    /** Return the number of unseen items in the given group. */
+    int getCount(final String groupKey) {
+        Integer count = mGroupCountMap.get(groupKey);
+        return count != null ? count : 0;
+    }
+
+    /** Return the number of unseen items in the given room. */
+    int getCount(final String groupKey, final String roomKey) {
+        RoomIndex room = mRoomMap.get(getRoomId(groupKey, roomKey));
+        return room != null ? room.mCount : 0;
+    }
+
+    /** Add the item with the given key and creation time, or move it if it is indexed. */
+    void put(final String groupKey, final String roomKey, final String key, final long time) {
+        RoomIndex room = getRoom(groupKey, roomKey);
+        room.remove(key);
+        room.mTimeMap.put(key, time);
+        room.mTimes.add(room.getUpperBound(time), time);
+        update(groupKey, room);
+    }
+
+    /** Remove the item with the given key, if it is indexed. */
+    void remove(final String groupKey, final String roomKey, final String key) {
+        RoomIndex room = mRoomMap.get(getRoomId(groupKey, roomKey));
+        if (room != null && room.remove(key))
+            update(groupKey, room);
+    }
+
+    /** Set the read cursor of the given room: items created after it are unseen. */
+    void setCursor(final String groupKey, final String roomKey, final long cursor) {
+        RoomIndex room = getRoom(groupKey, roomKey);
+        if (room.mCursor == cursor)
+            return;
+        room.mCursor = cursor;
+        update(groupKey, room);
+    }
+
+    // Private instance methods.
+
+    /** Return the index of the given room, creating it if need be. */
+    private RoomIndex getRoom(final String groupKey, final String roomKey) {
+        String roomId = getRoomId(groupKey, roomKey);
+        RoomIndex result = mRoomMap.get(roomId);
+        if (result == null) {
+            result = new RoomIndex();
+            mRoomMap.put(roomId, result);
+        }
+        return result;
+    }
+
+    /** Return the identifier of a room: room keys are unique, but rooms may be offline. */
+    private String getRoomId(final String groupKey, final String roomKey) {
+        return groupKey + "/" + roomKey;
+    }
+
+    /** Recount the unseen items in the given room and carry the difference to its group. */
+    private void update(final String groupKey, final RoomIndex room) {
+        int count = room.mTimes.size() - room.getUpperBound(room.mCursor);
+        if (count == room.mCount)
+            return;
+        mGroupCountMap.put(groupKey, getCount(groupKey) + count - room.mCount);
+        room.mCount = count;
+    }
+
+    // Private inner classes.
+
+    /** The items of a room, sorted by creation time, and its read cursor. */
+    private static class RoomIndex {
+
+        /** The number of items created after the cursor. */
+        int mCount;
+
+        /** The time the account holder last saw the room, zero if never. */
+        long mCursor;
+
+        /** The creation time of each item, by item key. */
+        Map<String, Long> mTimeMap = new HashMap<>();
+
+        /** The creation times of the items, in ascending order. */
+        List<Long> mTimes = new ArrayList<>();
+
+        /** Return the position of the first creation time later than the given time. */
+        int getUpperBound(final long time) {
+            int low = 0;
+            int high = mTimes.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (mTimes.get(middle) <= time)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+
+        /** Remove the item with the given key, returning TRUE iff it was indexed. */
+        boolean remove(final String key) {
+            Long time = mTimeMap.remove(key);
+            if (time == null)
+                return false;
+            mTimes.remove(getUpperBound(time) - 1);
+            return true;
+        }
+    }
+}
@@ -22,7 +22,6 @@ import android.support.annotation.NonNull;
 import com.google.firebase.database.FirebaseDatabase;
 import com.pajato.android.gamechat.R;
 import com.pajato.android.gamechat.chat.model.Group;
-import com.pajato.android.gamechat.chat.model.Message;
 import com.pajato.android.gamechat.chat.model.Room;
 import com.pajato.android.gamechat.common.adapter.ListItem;
 import com.pajato.android.gamechat.common.model.Account;
@@ -75,6 +74,14 @@ public enum RoomManager {
     /** The collection of room profiles for the joined rooms, keyed by the room push key. */
     public Map<String, Room> roomMap = new HashMap<>();
 
+    // Private instance variables.
+
+    /** The member pair key each indexed private room is filed under, by room push key. */
+    private Map<String, String> mPairKeyMap = new HashMap<>();
+
+    /** The private rooms of exactly two members, by member pair key and then group push key. */
+    private Map<String, Map<String, Room>> mPrivateRoomMap = new HashMap<>();
+
     // Public instance methods.
 
     /** Return a room push key resulting from persisting the given room on the database. */
@@ -100,10 +107,21 @@ public enum RoomManager {
                 MemberManager.instance.updateMember(member);
             }
         }
-        roomMap.remove(room.key);
+        removeRoomProfile(room.key);
         removeWatcher(room.key);
         String path = getRoomProfilePath(room.groupKey, room.key);
-        FirebaseDatabase.getInstance().getReference().child(path).removeValue();
+        DBUtils.removeValue(path);
+    }
+
+    /**
+     * Evict a room profile, loaded from the local snapshot, that its group no longer lists: forget
+     * it, stop watching it and tell the app.
+     */
+    public void evictRoomProfile(final String roomKey) {
+        removeRoomProfile(roomKey);
+        removeWatcher(roomKey);
+        MessageManager.instance.removeWatcher(roomKey);
+        AppEventManager.instance.post(new ProfileRoomDeleteEvent(roomKey));
     }
 
     /** Update the given room profile on the database. */
@@ -147,20 +165,16 @@ public enum RoomManager {
         // on the date header type ordering.
         String accountId = AccountManager.instance.getCurrentAccountId();
         List<ListItem> result = new ArrayList<>();
-        Map<String, Map<String, Message>> roomMap;
         for (ListItem.DateHeaderType dht : ListItem.DateHeaderType.values()) {
             List<String> groupList = GroupManager.instance.getGroupList(dht);
             if (groupList != null && groupList.size() > 0 && groupList.contains(groupKey)) {
                 // Add the header item followed by all the room items in the given group.
                 result.add(new ListItem(date, dht.resId));
-                roomMap = MessageManager.instance.messageMap.get(groupKey);
-                for (String key : roomMap.keySet()) {
+                for (String key : MessageManager.instance.getRoomKeys(groupKey)) {
                     Room room = RoomManager.instance.getRoomProfile(key);
                     if (room == null || !room.getMemberIdList().contains(accountId))
                         continue;
-                    Map<String, Integer> countMap = new HashMap<>();
-                    DBUtils.getUnseenMessageCount(room.groupKey, countMap);
-                    int count = countMap.containsKey(room.key) ? countMap.get(room.key) : 0;
+                    int count = UnseenCountManager.instance.getMessageCount(groupKey, room.key);
                     result.add(new ListItem(chatRoom, groupKey, room.key, room.name, count, null));
                 }
             }
@@ -194,7 +208,7 @@ public enum RoomManager {
         room.setMemberIdList(roomMembers);
         updateRoomProfile(room);
         // Remove the room from the room map and remove the watcher
-        roomMap.remove(room.key);
+        removeRoomProfile(room.key);
         removeWatcher(room.key);
         AppEventManager.instance.post(new ProfileRoomDeleteEvent(room.key));
     }
@@ -205,16 +219,32 @@ public enum RoomManager {
         // message list for the logged out User.
         if (event.account != null) return;
         roomMap.clear();
+        mPairKeyMap.clear();
+        mPrivateRoomMap.clear();
     }
 
     /** Handle a room profile change by updating the map. */
     @Subscribe public void onRoomProfileChange(@NonNull final ProfileRoomChangeEvent event) {
+        removeRoomProfile(event.key);
         roomMap.put(event.key, event.room);
+        indexPrivateRoom(event.key, event.room);
         // Set watchers on all the members in the room (for use when deleting)
         for (String memberId : event.room.getMemberIdList())
             MemberManager.instance.setWatcher(event.room.groupKey, memberId);
     }
 
+    /** Forget the room profile with the given key.  The room is not removed from the database. */
+    public void removeRoomProfile(final String roomKey) {
+        Room room = roomMap.remove(roomKey);
+        String pairKey = mPairKeyMap.remove(roomKey);
+        Map<String, Room> groupMap = pairKey != null ? mPrivateRoomMap.get(pairKey) : null;
+        if (room == null || groupMap == null || groupMap.get(room.groupKey) != room)
+            return;
+        groupMap.remove(room.groupKey);
+        if (groupMap.isEmpty())
+            mPrivateRoomMap.remove(pairKey);
+    }
+
     /** Remove database listener for the room profile and experience profiles in the room */
     public void removeWatcher(final String roomKey) {
         // Determine if the room has a profile change watcher.  If so, remove it.
@@ -246,10 +276,21 @@ public enum RoomManager {
         for (Account account : members)
             if (account == null)
                 return null;
-        for (Room room : roomMap.values())
-            if (room.type == PRIVATE && room.groupKey.equals(group.key) && contains(room, members))
-                return room;
-        return null;
+        String pairKey = getPairKey(members[0].key, members[1].key);
+        Map<String, Room> groupMap = mPrivateRoomMap.get(pairKey);
+        Room room = groupMap != null ? groupMap.get(group.key) : null;
+        return room != null && contains(room, members) ? room : null;
+    }
+
+    /** Return TRUE iff the two given members share a private room, in any group. */
+    public boolean hasPrivateRoom(@NonNull final String member1, @NonNull final String member2) {
+        Map<String, Room> groupMap = mPrivateRoomMap.get(getPairKey(member1, member2));
+        if (groupMap == null)
+            return false;
+        for (Room room : groupMap.values())
+            if (room.isMemberPrivateRoom(member1, member2))
+                return true;
+        return false;
     }
 
     // Private instance methods.
@@ -258,4 +299,24 @@ public enum RoomManager {
     private boolean contains(@NonNull final Room room, final Account... members) {
         return room.isMemberPrivateRoom(members[0].key, members[1].key);
     }
+
+    /** Return the key of the given pair of members, the same in either order. */
+    private String getPairKey(@NonNull final String member1, @NonNull final String member2) {
+        return member1.compareTo(member2) <= 0 ? member1 + "/" + member2 : member2 + "/" + member1;
+    }
+
+    /** Index the given room by its pair of members if it is a private room for two. */
+    private void indexPrivateRoom(@NonNull final String roomKey, @NonNull final Room room) {
+        List<String> memberList = room.getMemberIdList();
+        if (room.type != PRIVATE || memberList == null || memberList.size() != 2)
+            return;
+        String pairKey = getPairKey(memberList.get(0), memberList.get(1));
+        Map<String, Room> groupMap = mPrivateRoomMap.get(pairKey);
+        if (groupMap == null) {
+            groupMap = new HashMap<>();
+            mPrivateRoomMap.put(pairKey, groupMap);
+        }
+        groupMap.put(room.groupKey, room);
+        mPairKeyMap.put(roomKey, pairKey);
+    }
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.database;
+
+import com.pajato.android.gamechat.chat.model.Group;
+import com.pajato.android.gamechat.chat.model.Message;
+import com.pajato.android.gamechat.chat.model.Room;
+import com.pajato.android.gamechat.chat.model.Room.RoomType;
+import com.pajato.android.gamechat.common.model.Account;
+import com.pajato.android.gamechat.common.model.JoinState;
+import com.pajato.android.gamechat.database.model.Base;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provide the local snapshot of the data an account holder last had loaded: the account, its
+ * group, room and member profiles and the most recent messages in each room.  The snapshot is
+ * written in a compact binary form, field by field, and read back into the same model classes the
+ * database provides.
+ */
+class Snapshot {
+
+    // Private class constants.
+
+    /** The snapshot format version.  A snapshot written in any other format is not read. */
+    private static final int VERSION = 1;
+
+    /** The character set used to write strings. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Package private instance variables.
+
+    /** The account. */
+    final Account account;
+
+    /** The group profiles, including the me group. */
+    final List<Group> groups = new ArrayList<>();
+
+    /** The room profiles. */
+    final List<Room> rooms = new ArrayList<>();
+
+    /** The members of each group. */
+    final List<Account> members = new ArrayList<>();
+
+    /** The most recent messages in each room. */
+    final List<Message> messages = new ArrayList<>();
+
+    // Package private constructors.
+
+    /** Build an empty snapshot for the given account. */
+    Snapshot(final Account account) {
+        this.account = account;
+    }
+
+    // Package private class methods.
+
+    /** Return the snapshot read from the given input, null if it has a different version. */
+    static Snapshot read(final DataInput in) throws IOException {
+        if (in.readInt() != VERSION)
+            return null;
+        Snapshot result = new Snapshot(readAccount(in));
+        for (int count = in.readInt(); count > 0; count--)
+            result.groups.add(readGroup(in));
+        for (int count = in.readInt(); count > 0; count--)
+            result.rooms.add(readRoom(in));
+        for (int count = in.readInt(); count > 0; count--)
+            result.members.add(readAccount(in));
+        for (int count = in.readInt(); count > 0; count--)
+            result.messages.add(readMessage(in));
+        return result;
+    }
+
+    // Package private instance methods.
+
+    /** Write the snapshot to the given output. */
+    void write(final DataOutput out) throws IOException {
+        out.writeInt(VERSION);
+        writeAccount(out, account);
+        out.writeInt(groups.size());
+        for (Group group : groups)
+            writeGroup(out, group);
+        out.writeInt(rooms.size());
+        for (Room room : rooms)
+            writeRoom(out, room);
+        out.writeInt(members.size());
+        for (Account member : members)
+            writeAccount(out, member);
+        out.writeInt(messages.size());
+        for (Message message : messages)
+            writeMessage(out, message);
+    }
+
+    // Private class methods.
+
+    /** Return an account (or member) read from the given input. */
+    private static Account readAccount(final DataInput in) throws IOException {
+        Account result = new Account();
+        readBase(in, result);
+        result.email = readString(in);
+        result.chaperone = readString(in);
+        List<String> protectedUsers = readList(in);
+        if (protectedUsers != null)
+            result.protectedUsers.addAll(protectedUsers);
+        result.groupKey = readString(in);
+        for (int count = in.readInt(); count > 0; count--) {
+            String key = readString(in);
+            JoinState state = new JoinState();
+            state.setJoinState(readString(in));
+            state.setSeenTime(in.readLong());
+            result.joinMap.put(key, state);
+        }
+        result.nickname = readString(in);
+        result.type = readString(in);
+        result.url = readString(in);
+        return result;
+    }
+
+    /** Read the common model values from the given input into the given model object. */
+    private static void readBase(final DataInput in, final Base base) throws IOException {
+        base.key = readString(in);
+        base.owner = readString(in);
+        base.name = readString(in);
+        base.createTime = in.readLong();
+        base.modTime = in.readLong();
+    }
+
+    /** Return a group profile read from the given input. */
+    private static Group readGroup(final DataInput in) throws IOException {
+        Group result = new Group();
+        readBase(in, result);
+        result.commonRoomKey = readString(in);
+        result.memberList = readList(in);
+        result.roomList = readList(in);
+        return result;
+    }
+
+    /** Return null or a list of strings read from the given input. */
+    private static List<String> readList(final DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0)
+            return null;
+        List<String> result = new ArrayList<>(size);
+        for (int index = 0; index < size; index++)
+            result.add(readString(in));
+        return result;
+    }
+
+    /** Return a message read from the given input. */
+    private static Message readMessage(final DataInput in) throws IOException {
+        Message result = new Message();
+        readBase(in, result);
+        result.groupKey = readString(in);
+        result.roomKey = readString(in);
+        result.text = readString(in);
+        result.type = in.readInt();
+        result.unseenList = readList(in);
+        result.url = readString(in);
+        return result;
+    }
+
+    /** Return a room profile read from the given input. */
+    private static Room readRoom(final DataInput in) throws IOException {
+        Room result = new Room();
+        readBase(in, result);
+        result.groupKey = readString(in);
+        List<String> memberIdList = readList(in);
+        if (memberIdList != null)
+            result.setMemberIdList(memberIdList);
+        for (int count = in.readInt(); count > 0; count--) {
+            String key = readString(in);
+            result.memberTokenMap.put(key, readList(in));
+        }
+        String type = readString(in);
+        result.type = type != null ? RoomType.valueOf(type) : null;
+        return result;
+    }
+
+    /** Return null or a string read from the given input. */
+    private static String readString(final DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /** Write the given account (or member) to the given output. */
+    private static void writeAccount(final DataOutput out, final Account account)
+            throws IOException {
+        writeBase(out, account);
+        writeString(out, account.email);
+        writeString(out, account.chaperone);
+        writeList(out, account.protectedUsers);
+        writeString(out, account.groupKey);
+        out.writeInt(account.joinMap.size());
+        for (Map.Entry<String, JoinState> entry : account.joinMap.entrySet()) {
+            JoinState state = entry.getValue();
+            writeString(out, entry.getKey());
+            writeString(out, state != null ? state.getJoinState() : null);
+            out.writeLong(state != null ? state.getSeenTime() : 0);
+        }
+        writeString(out, account.nickname);
+        writeString(out, account.type);
+        writeString(out, account.url);
+    }
+
+    /** Write the common values of the given model object to the given output. */
+    private static void writeBase(final DataOutput out, final Base base) throws IOException {
+        writeString(out, base.key);
+        writeString(out, base.owner);
+        writeString(out, base.name);
+        out.writeLong(base.createTime);
+        out.writeLong(base.modTime);
+    }
+
+    /** Write the given group profile to the given output. */
+    private static void writeGroup(final DataOutput out, final Group group) throws IOException {
+        writeBase(out, group);
+        writeString(out, group.commonRoomKey);
+        writeList(out, group.memberList);
+        writeList(out, group.roomList);
+    }
+
+    /** Write the given, possibly null, list of strings to the given output. */
+    private static void writeList(final DataOutput out, final List<String> list)
+            throws IOException {
+        out.writeInt(list != null ? list.size() : -1);
+        if (list != null)
+            for (String value : list)
+                writeString(out, value);
+    }
+
+    /** Write the given message to the given output. */
+    private static void writeMessage(final DataOutput out, final Message message)
+            throws IOException {
+        writeBase(out, message);
+        writeString(out, message.groupKey);
+        writeString(out, message.roomKey);
+        writeString(out, message.text);
+        out.writeInt(message.type);
+        writeList(out, message.unseenList);
+        writeString(out, message.url);
+    }
+
+    /** Write the given room profile to the given output. */
+    private static void writeRoom(final DataOutput out, final Room room) throws IOException {
+        writeBase(out, room);
+        writeString(out, room.groupKey);
+        writeList(out, room.getMemberIdList());
+        Map<String, List<String>> tokenMap = room.memberTokenMap;
+        out.writeInt(tokenMap != null ? tokenMap.size() : 0);
+        if (tokenMap != null)
+            for (Map.Entry<String, List<String>> entry : tokenMap.entrySet()) {
+                writeString(out, entry.getKey());
+                writeList(out, entry.getValue());
+            }
+        writeString(out, room.type != null ? room.type.name() : null);
+    }
+
+    /** Write the given, possibly null, string to the given output. */
+    private static void writeString(final DataOutput out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.database;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.pajato.android.gamechat.chat.model.Group;
+import com.pajato.android.gamechat.chat.model.Message;
+import com.pajato.android.gamechat.chat.model.Room;
+import com.pajato.android.gamechat.common.model.Account;
+import com.pajato.android.gamechat.event.AccountChangeEvent;
+import com.pajato.android.gamechat.event.AppEventManager;
+import com.pajato.android.gamechat.event.AuthenticationChangeEvent;
+import com.pajato.android.gamechat.event.ChatListChangeEvent;
+import com.pajato.android.gamechat.event.MemberChangeEvent;
+import com.pajato.android.gamechat.event.MessageChangeEvent;
+import com.pajato.android.gamechat.event.ProfileGroupChangeEvent;
+import com.pajato.android.gamechat.event.ProfileRoomChangeEvent;
+
+import org.greenrobot.eventbus.Subscribe;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.pajato.android.gamechat.event.AppEventManager.Delivery.backgroundOrdered;
+import static com.pajato.android.gamechat.event.BaseChangeEvent.NEW;
+
+/**
+ * Manage the local snapshot of the signed in account holder's chat data, kept on disk so that a
+ * cold start can show the groups, rooms and recent messages before the database has synced.  The
+ * snapshot is written when the app stops and read, on a background thread, when it starts.  If
+ * the snapshot belongs to the User Firebase has restored, it is replayed through the same events
+ * the database handlers post.  The live data then replaces it as it arrives: groups the live
+ * account no longer joins and rooms a live group profile no longer lists are evicted.
+ */
+public enum SnapshotManager {
+    instance;
+
+    // Private class constants.
+
+    /** The snapshot directory, on internal storage. */
+    private static final String SNAPSHOT_DIR = "snapshot";
+
+    /** The snapshot file name format, one file per account. */
+    private static final String SNAPSHOT_FORMAT = "%s.bin";
+
+    /** The logcat TAG. */
+    private static final String TAG = SnapshotManager.class.getSimpleName();
+
+    /** The thread reading and writing snapshots, one at a time and in order. */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    // Private instance variables.
+
+    /** The key of the current account, null if there is none. */
+    private String mAccountKey;
+
+    /** The snapshot directory, null until the manager is initialized. */
+    private File mDir;
+
+    /** The keys of the replayed groups not yet reconciled with the live account. */
+    private Set<String> mGroupKeys = new HashSet<>();
+
+    /** TRUE while a snapshot is being replayed. */
+    private boolean mReplaying;
+
+    /** The keys of the replayed rooms not yet reconciled with the live group, by group key. */
+    private Map<String, Set<String>> mRoomKeyMap = new HashMap<>();
+
+    // Public instance methods.
+
+    /** Initialize the manager, loading the snapshot of the User restored by Firebase, if any. */
+    public void init(@NonNull final Context context) {
+        mDir = new File(context.getFilesDir(), SNAPSHOT_DIR);
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null)
+            return;
+        final File file = getFile(user.getUid());
+        final Handler handler = new Handler(Looper.getMainLooper());
+        EXECUTOR.execute(new Runnable() {
+            @Override public void run() {
+                final Snapshot snapshot = read(file);
+                if (snapshot == null)
+                    return;
+                handler.post(new Runnable() {
+                    @Override public void run() {
+                        replay(snapshot);
+                    }
+                });
+            }
+        });
+    }
+
+    /** Handle a live account change by evicting the replayed groups the account has left. */
+    @Subscribe public void onAccountChange(@NonNull final AccountChangeEvent event) {
+        Account account = event.account;
+        if (mReplaying || account == null || mGroupKeys.isEmpty())
+            return;
+        for (String groupKey : mGroupKeys)
+            if (!groupKey.equals(account.groupKey) && !account.joinMap.containsKey(groupKey))
+                GroupManager.instance.evictGroupProfile(groupKey);
+        mGroupKeys.clear();
+    }
+
+    /** Handle a sign in or out, deleting the signed out account holder's snapshot. */
+    @Subscribe public void onAuthenticationChange(@NonNull final AuthenticationChangeEvent event) {
+        if (event.account != null) {
+            mAccountKey = event.account.key;
+            return;
+        }
+        mGroupKeys.clear();
+        mRoomKeyMap.clear();
+        if (mAccountKey == null || mDir == null)
+            return;
+        final File file = getFile(mAccountKey);
+        mAccountKey = null;
+        EXECUTOR.execute(new Runnable() {
+            @Override public void run() {
+                if (file.exists() && !file.delete())
+                    Log.w(TAG, "Failed to delete the snapshot: " + file.getPath());
+            }
+        });
+    }
+
+    /** Handle a live group profile change by evicting the replayed rooms it no longer lists. */
+    @Subscribe public void onGroupProfileChange(@NonNull final ProfileGroupChangeEvent event) {
+        Set<String> roomKeys = mReplaying ? null : mRoomKeyMap.remove(event.key);
+        if (roomKeys == null || event.group == null || event.group.roomList == null)
+            return;
+        for (String roomKey : roomKeys)
+            if (!event.group.roomList.contains(roomKey))
+                RoomManager.instance.evictRoomProfile(roomKey);
+    }
+
+    /**
+     * Save a snapshot of the current account holder's data.  The snapshot is encoded on the
+     * calling (main) thread, as the data is only changed there, and written in the background.
+     */
+    public void save() {
+        // Abort if there is no account or the manager has not been initialized.
+        Account account = AccountManager.instance.getCurrentAccount();
+        if (account == null || mDir == null)
+            return;
+
+        // Collect the profiles, the members and the most recent page of messages in each room.
+        Snapshot snapshot = new Snapshot(account);
+        Group meGroup = AccountManager.instance.getMeGroup();
+        if (meGroup != null)
+            snapshot.groups.add(meGroup);
+        snapshot.groups.addAll(GroupManager.instance.groupMap.values());
+        snapshot.rooms.addAll(RoomManager.instance.roomMap.values());
+        for (Map<String, Account> map : MemberManager.instance.memberMap.values())
+            snapshot.members.addAll(map.values());
+        for (Room room : snapshot.rooms) {
+            List<Message> list = MessageManager.instance.getMessageList(room.groupKey, room.key);
+            int size = Math.min(list.size(), MessageManager.PAGE_SIZE);
+            snapshot.messages.addAll(list.subList(0, size));
+        }
+
+        // Encode the snapshot and write it out.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            snapshot.write(new DataOutputStream(bytes));
+        } catch (IOException exc) {
+            Log.e(TAG, exc.getMessage(), exc);
+            return;
+        }
+        final byte[] data = bytes.toByteArray();
+        final File file = getFile(account.key);
+        EXECUTOR.execute(new Runnable() {
+            @Override public void run() {
+                write(file, data);
+            }
+        });
+    }
+
+    // Private instance methods.
+
+    /** Close the given stream quietly. */
+    private void close(final Closeable stream) {
+        if (stream == null)
+            return;
+        try {
+            stream.close();
+        } catch (IOException exc) {
+            Log.w(TAG, exc.getMessage(), exc);
+        }
+    }
+
+    /** Return the snapshot file of the given account. */
+    private File getFile(final String accountKey) {
+        return new File(mDir, String.format(Locale.US, SNAPSHOT_FORMAT, accountKey));
+    }
+
+    /** Return the set of replayed room keys in the given group, creating it if need be. */
+    private Set<String> getRoomKeys(final String groupKey) {
+        Set<String> result = mRoomKeyMap.get(groupKey);
+        if (result == null) {
+            result = new HashSet<>();
+            mRoomKeyMap.put(groupKey, result);
+        }
+        return result;
+    }
+
+    /** Return null or the snapshot read from the given file, deleting the file if unreadable. */
+    private Snapshot read(final File file) {
+        if (!file.exists())
+            return null;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            return Snapshot.read(in);
+        } catch (IOException | RuntimeException exc) {
+            Log.w(TAG, "Discarding an unreadable snapshot: " + file.getPath(), exc);
+            if (!file.delete())
+                Log.w(TAG, "Failed to delete the snapshot: " + file.getPath());
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Replay the given snapshot through the events the database handlers post, unless the live
+     * account got here first or the snapshot is not that of the User Firebase has restored.
+     */
+    private void replay(@NonNull final Snapshot snapshot) {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        String key = snapshot.account.key;
+        if (AccountManager.instance.hasAccount() || user == null || !user.getUid().equals(key))
+            return;
+        mReplaying = true;
+        AppEventManager.instance.post(new AccountChangeEvent(snapshot.account));
+        for (Group group : snapshot.groups) {
+            mGroupKeys.add(group.key);
+            AppEventManager.instance.post(new ProfileGroupChangeEvent(group.key, group));
+        }
+        for (Room room : snapshot.rooms) {
+            getRoomKeys(room.groupKey).add(room.key);
+            AppEventManager.instance.post(new ProfileRoomChangeEvent(room.key, room));
+        }
+        for (Account member : snapshot.members)
+            AppEventManager.instance.post(
+                    new MemberChangeEvent(member.key, member.groupKey, member));
+        for (Message message : snapshot.messages) {
+            MessageManager.instance.putMessage(message);
+            AppEventManager.instance.post(new MessageChangeEvent(message, NEW), backgroundOrdered);
+        }
+        AppEventManager.instance.post(new ChatListChangeEvent());
+        mReplaying = false;
+    }
+
+    /** Write the given data to the given file, replacing it in one step. */
+    private void write(final File file, final byte[] data) {
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs())
+            return;
+        File temp = new File(dir, file.getName() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            out.write(data);
+        } catch (IOException exc) {
+            Log.e(TAG, exc.getMessage(), exc);
+            return;
+        } finally {
+            close(out);
+        }
+        if (!temp.renameTo(file))
+            Log.w(TAG, "Failed to replace the snapshot: " + file.getPath());
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.database;
+
+import android.support.annotation.NonNull;
+
+import com.pajato.android.gamechat.chat.model.Message;
+import com.pajato.android.gamechat.common.model.Account;
+import com.pajato.android.gamechat.common.model.JoinState;
+import com.pajato.android.gamechat.event.AppEventManager;
+import com.pajato.android.gamechat.event.AuthenticationChangeEvent;
+import com.pajato.android.gamechat.event.ChatListChangeEvent;
+import com.pajato.android.gamechat.event.ExperienceChangeEvent;
+import com.pajato.android.gamechat.event.MemberChangeEvent;
+import com.pajato.android.gamechat.event.MessageChangeEvent;
+import com.pajato.android.gamechat.exp.Experience;
+
+import org.greenrobot.eventbus.Subscribe;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static com.pajato.android.gamechat.event.BaseChangeEvent.CHANGED;
+import static com.pajato.android.gamechat.event.BaseChangeEvent.NEW;
+import static com.pajato.android.gamechat.event.BaseChangeEvent.REMOVED;
+
+/**
+ * Maintain the number of unseen messages and experiences (those with a move not yet seen) per room
+ * and per group, updated incrementally as messages and experiences change, so that the group and
+ * room lists can show them without rescanning the messages and experiences.  Messages are unseen
+ * when created after the account holder's read cursor for their room.  Message changes are
+ * delivered on a background thread, hence the counts are guarded by this manager.
+ */
+public enum UnseenCountManager {
+    instance;
+
+    // Private instance variables.
+
+    /** The unseen experience counts. */
+    private Counter mExperienceCounter = new Counter();
+
+    /** The messages that may be unseen, indexed by creation time. */
+    private ReadCursorIndex mMessageIndex = new ReadCursorIndex();
+
+    // Public instance methods.
+
+    /** Return the number of unseen experiences in the given group. */
+    public synchronized int getExperienceCount(final String groupKey) {
+        return mExperienceCounter.getCount(groupKey);
+    }
+
+    /** Return the number of unseen experiences in the given room. */
+    public synchronized int getExperienceCount(final String groupKey, final String roomKey) {
+        return mExperienceCounter.getCount(groupKey, roomKey);
+    }
+
+    /** Return the number of unseen messages in the given group. */
+    public synchronized int getMessageCount(final String groupKey) {
+        return mMessageIndex.getCount(groupKey);
+    }
+
+    /** Return the number of unseen messages in the given room. */
+    public synchronized int getMessageCount(final String groupKey, final String roomKey) {
+        return mMessageIndex.getCount(groupKey, roomKey);
+    }
+
+    /** Handle an account change by clearing the counts: they belong to the account holder. */
+    @Subscribe public synchronized void onAuthenticationChange(
+            @NonNull final AuthenticationChangeEvent event) {
+        mExperienceCounter.clear();
+        mMessageIndex.clear();
+    }
+
+    /** Handle an experience change by counting or discounting it. */
+    @Subscribe public synchronized void onExperienceChange(
+            @NonNull final ExperienceChangeEvent event) {
+        Experience experience = event.experience;
+        if (experience == null || experience.getExperienceKey() == null)
+            return;
+        boolean isUnseen = event.changeType != REMOVED
+                && ExperienceManager.instance.isNew(experience);
+        if (event.changeType == NEW || event.changeType == CHANGED || event.changeType == REMOVED)
+            mExperienceCounter.update(experience.getGroupKey(), experience.getRoomKey(),
+                    experience.getExperienceKey(), isUnseen);
+    }
+
+    /** Handle a change to the account holder's membership by moving the room read cursors. */
+    @Subscribe public synchronized void onMemberChange(@NonNull final MemberChangeEvent event) {
+        Account member = event.member;
+        String accountId = AccountManager.instance.getCurrentAccountId();
+        if (member == null || member.key == null || !member.key.equals(accountId))
+            return;
+        for (Map.Entry<String, JoinState> entry : member.joinMap.entrySet())
+            setCursor(member.groupKey, entry.getKey(), entry.getValue().getSeenTime());
+    }
+
+    /** Handle a message change by counting or discounting it, then refresh the lists. */
+    @Subscribe public synchronized void onMessageChange(@NonNull final MessageChangeEvent event) {
+        if (event.message == null || event.message.key == null)
+            return;
+        if (event.changeType == REMOVED)
+            mMessageIndex.remove(event.message.groupKey, event.message.roomKey, event.message.key);
+        else if (event.changeType == NEW || event.changeType == CHANGED)
+            update(event.message);
+        AppEventManager.instance.post(new ChatListChangeEvent());
+    }
+
+    /** Set the account holder's read cursor for the given room. */
+    public synchronized void setCursor(final String groupKey, final String roomKey,
+                                       final long seenTime) {
+        mMessageIndex.setCursor(groupKey, roomKey, seenTime);
+    }
+
+    /** Count or discount a message added outside of a change event (e.g. in an older page). */
+    public synchronized void update(@NonNull final Message message) {
+        // Index the message if the account holder would not have seen it without a read cursor,
+        // i.e. it was posted by someone else and is not marked seen by a legacy unseen list.
+        if (message.key == null)
+            return;
+        if (message.isUnseen(Long.MIN_VALUE))
+            mMessageIndex.put(message.groupKey, message.roomKey, message.key, message.createTime);
+        else
+            mMessageIndex.remove(message.groupKey, message.roomKey, message.key);
+    }
+
+    // Private inner classes.
+
+    /** Count unseen items per room and per group. */
+    private static class Counter {
+
+        /** The unseen item count of each group, by group key. */
+        private Map<String, Integer> mGroupCountMap = new HashMap<>();
+
+        /** The keys of the unseen items in each room, by room key. */
+        private Map<String, Set<String>> mRoomItemMap = new HashMap<>();
+
+        /** Forget all counts. */
+        void clear() {
+            mGroupCountMap.clear();
+            mRoomItemMap.clear();
+        }
+
+        /** Return the number of unseen items in the given group. */
+        int getCount(final String groupKey) {
+            Integer count = mGroupCountMap.get(groupKey);
+            return count != null ? count : 0;
+        }
+
+        /** Return the number of unseen items in the given room. */
+        int getCount(final String groupKey, final String roomKey) {
+            Set<String> items = mRoomItemMap.get(getRoomId(groupKey, roomKey));
+            return items != null ? items.size() : 0;
+        }
+
+        /** Count the given item as unseen or not, adjusting the counts if that is a change. */
+        void update(final String groupKey, final String roomKey, final String key,
+                    final boolean isUnseen) {
+            String roomId = getRoomId(groupKey, roomKey);
+            Set<String> items = mRoomItemMap.get(roomId);
+            if (items == null) {
+                if (!isUnseen)
+                    return;
+                items = new HashSet<>();
+                mRoomItemMap.put(roomId, items);
+            }
+            boolean isChanged = isUnseen ? items.add(key) : items.remove(key);
+            if (isChanged)
+                mGroupCountMap.put(groupKey, getCount(groupKey) + (isUnseen ? 1 : -1));
+        }
+
+        /** Return the identifier of a room: room keys are unique, but rooms may be offline. */
+        private String getRoomId(final String groupKey, final String roomKey) {
+            return groupKey + "/" + roomKey;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collect database writes into a single multi-path update.  Each write sets the value at a path;
+ * a later write to the same path, or to an ancestor of it, supersedes the earlier one, and a later
+ * write below a path already in the batch is merged into that path's value, so the paths in the
+ * batch never overlap (the database rejects an update whose paths overlap).  Only maps are merged
+ * into: a write below a model object or a list already in the batch is refused, leaving the
+ * caller to commit the batch first, as merging would drop the object's fields.
+ */
+public class WriteBatch {
+
+    // Public interfaces.
+
+    /** The interface notified once the batch has been committed, successfully or not. */
+    public interface CompletionListener {
+        /** Handle the completion of the given batch, the error is null on success. */
+        void onComplete(WriteBatch batch, String error);
+    }
+
+    // Private instance variables.
+
+    /** The number of writes merged into, or superseded by, a later write. */
+    private int mCoalescedCount;
+
+    /** The time the batch was committed, 0 if it has not been. */
+    private long mCommitTime;
+
+    /** The time the batch was completed, 0 if it has not been. */
+    private long mCompleteTime;
+
+    /** The time the first write was added. */
+    private long mCreateTime;
+
+    /** The listeners to notify on completion. */
+    private List<CompletionListener> mListeners = new ArrayList<>();
+
+    /** The values to write, keyed by path, in the order they were first written. */
+    private Map<String, Object> mUpdates = new LinkedHashMap<>();
+
+    /** The number of writes added to the batch. */
+    private int mWriteCount;
+
+    // Public instance methods.
+
+    /** Add a listener to be notified when the batch completes. */
+    public void addListener(final CompletionListener listener) {
+        if (listener != null)
+            mListeners.add(listener);
+    }
+
+    /** Return the number of writes merged into, or superseded by, a later write. */
+    public int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /** Return the time the first write was added to the batch. */
+    public long getCreateTime() {
+        return mCreateTime;
+    }
+
+    /** Return the time from commit to completion, 0 if the batch has not completed. */
+    public long getLatency() {
+        return mCompleteTime > 0 ? mCompleteTime - mCommitTime : 0;
+    }
+
+    /** Return the update map: the value to write keyed by (non-overlapping) path. */
+    public Map<String, Object> getUpdates() {
+        return mUpdates;
+    }
+
+    /** Return the number of writes added to the batch. */
+    public int getWriteCount() {
+        return mWriteCount;
+    }
+
+    /** Return TRUE iff no write has been added to the batch. */
+    public boolean isEmpty() {
+        return mUpdates.isEmpty();
+    }
+
+    /**
+     * Add a write of the given value at the given path, at the given time.  Return FALSE, leaving
+     * the batch unchanged, if the write lies below a model object or a list in the batch.
+     */
+    public boolean put(final String path, final Object value, final long time) {
+        // Refuse a write that cannot be merged, drop the writes at or below the path, then merge
+        // the value into a write above the path if there is one, otherwise add it.
+        String key = normalize(path);
+        for (Map.Entry<String, Object> entry : mUpdates.entrySet()) {
+            if (!key.startsWith(entry.getKey() + "/"))
+                continue;
+            String relativePath = key.substring(entry.getKey().length() + 1);
+            if (!isMergeable(entry.getValue(), relativePath.split("/")))
+                return false;
+        }
+        if (mWriteCount++ == 0)
+            mCreateTime = time;
+        Iterator<String> iterator = mUpdates.keySet().iterator();
+        while (iterator.hasNext()) {
+            String updateKey = iterator.next();
+            if (!updateKey.equals(key) && !updateKey.startsWith(key + "/"))
+                continue;
+            iterator.remove();
+            mCoalescedCount++;
+        }
+        for (Map.Entry<String, Object> entry : mUpdates.entrySet()) {
+            if (!key.startsWith(entry.getKey() + "/"))
+                continue;
+            String relativePath = key.substring(entry.getKey().length() + 1);
+            entry.setValue(merge(entry.getValue(), relativePath.split("/"), 0, value));
+            mCoalescedCount++;
+            return true;
+        }
+        mUpdates.put(key, value);
+        return true;
+    }
+
+    // Package private instance methods.
+
+    /** Record the commit time of the batch. */
+    void commit(final long time) {
+        mCommitTime = time;
+    }
+
+    /** Record the completion of the batch and notify the listeners. */
+    void complete(final String error, final long time) {
+        mCompleteTime = time;
+        for (CompletionListener listener : mListeners)
+            listener.onComplete(this, error);
+    }
+
+    // Private instance methods.
+
+    /**
+     * Return TRUE iff a value can be merged into the given (parent) value at the path given by the
+     * segments: each value along the path must be a map, a scalar (which the write replaces) or
+     * absent.
+     */
+    private boolean isMergeable(final Object parent, final String[] segments) {
+        Object node = parent;
+        for (String segment : segments) {
+            if (node == null || isScalar(node))
+                return true;
+            if (!(node instanceof Map))
+                return false;
+            node = ((Map<?, ?>) node).get(segment);
+        }
+        return true;
+    }
+
+    /** Return TRUE iff the given value is a leaf database value. */
+    private boolean isScalar(final Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean;
+    }
+
+    /**
+     * Return a copy of the given (parent) value with the given value set at the path given by the
+     * segments, starting at the given index.  A null value removes the child.  The given parent
+     * value, which may belong to the caller, is never modified.  The path must be mergeable (see
+     * isMergeable()).
+     */
+    private Object merge(final Object parent, final String[] segments, final int index,
+                         final Object value) {
+        Map<String, Object> result = new HashMap<>();
+        if (parent instanceof Map)
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) parent).entrySet())
+                result.put(String.valueOf(entry.getKey()), entry.getValue());
+        String segment = segments[index];
+        Object child = index + 1 < segments.length
+                ? merge(result.get(segment), segments, index + 1, value) : value;
+        if (child == null)
+            result.remove(segment);
+        else
+            result.put(segment, child);
+        return result;
+    }
+
+    /** Return the given path without leading, trailing or repeated separators. */
+    private String normalize(final String path) {
+        StringBuilder builder = new StringBuilder();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty())
+                continue;
+            if (builder.length() > 0)
+                builder.append('/');
+            builder.append(segment);
+        }
+        return builder.toString();
+    }
+}
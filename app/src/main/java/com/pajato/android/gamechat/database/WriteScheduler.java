@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.database;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.Locale;
+
+/**
+ * Schedule database writes so that those issued together reach the database as one atomic
+ * multi-path update.  Writes issued within a short window of each other are coalesced into a
+ * batch, as are all the writes issued within an explicit scope (begin() ... end()), such as
+ * creating a group with its default room and member.  As a batch is atomic, a write the database
+ * rejects fails the others in its batch too; each of them is then logged.  The scheduler is used
+ * from the main thread.
+ */
+public enum WriteScheduler {
+    instance;
+
+    // Public class constants.
+
+    /** The time, in milliseconds, writes issued outside of a scope wait for more to batch with. */
+    public static final long WINDOW = 30;
+
+    // Private class constants.
+
+    /** The logcat TAG. */
+    private static final String TAG = WriteScheduler.class.getSimpleName();
+
+    /** The batch metrics log format. */
+    private static final String LOG_FORMAT = "Batch of %d writes (%d coalesced) to %d paths: %s"
+            + " in %d ms.";
+
+    /** The format logging each write lost with a failed batch. */
+    private static final String LOST_FORMAT = "Write to %s lost: %s.";
+
+    // Private instance variables.
+
+    /** The batch being collected, null if there is none. */
+    private WriteBatch mBatch;
+
+    /** The number of batches committed. */
+    private int mBatchCount;
+
+    /** The number of writes merged into, or superseded by, a later write. */
+    private int mCoalescedCount;
+
+    /** The depth of the explicit scopes entered and not yet ended. */
+    private int mDepth;
+
+    /** The number of batches that failed. */
+    private int mFailureCount;
+
+    /** The task committing the batch at the end of the window. */
+    private Runnable mFlushTask = new Runnable() {
+        @Override public void run() {
+            mIsScheduled = false;
+            if (mDepth == 0)
+                flush();
+        }
+    };
+
+    /** The main thread handler running the flush task. */
+    private Handler mHandler;
+
+    /** TRUE iff the flush task is scheduled. */
+    private boolean mIsScheduled;
+
+    /** The longest time from commit to completion of a batch. */
+    private long mMaxLatency;
+
+    /** The number of paths committed. */
+    private int mPathCount;
+
+    /** The total time from commit to completion of the completed batches. */
+    private long mTotalLatency;
+
+    /** The number of writes scheduled. */
+    private int mWriteCount;
+
+    // Public instance methods.
+
+    /**
+     * Begin a scope: the writes issued until the matching end() are committed together.  Scopes
+     * nest, the batch being committed when the outermost scope ends.
+     */
+    public void begin() {
+        mDepth++;
+    }
+
+    /** End a scope, committing the batch if it is the outermost one. */
+    public void end() {
+        end(null);
+    }
+
+    /**
+     * End a scope, notifying the given listener when the batch, including the writes issued
+     * within the scope, completes.  The batch is committed if this is the outermost scope.
+     */
+    public void end(final WriteBatch.CompletionListener listener) {
+        if (mDepth == 0)
+            throw new IllegalStateException("No write scope to end.");
+        if (mBatch != null)
+            mBatch.addListener(listener);
+        if (--mDepth == 0)
+            flush();
+    }
+
+    /** Commit the pending writes now, if there are any. */
+    public void flush() {
+        // Cancel the scheduled commit then commit the current batch, if there is one, accounting
+        // for it in the metrics when the database completes it.
+        cancel();
+        if (mBatch == null || mBatch.isEmpty())
+            return;
+        final WriteBatch batch = mBatch;
+        mBatch = null;
+        mBatchCount++;
+        mWriteCount += batch.getWriteCount();
+        mCoalescedCount += batch.getCoalescedCount();
+        mPathCount += batch.getUpdates().size();
+        batch.commit(System.currentTimeMillis());
+        DatabaseReference.CompletionListener listener = new DatabaseReference.CompletionListener() {
+            @Override public void onComplete(DatabaseError error, DatabaseReference reference) {
+                complete(batch, error != null ? error.getMessage() : null);
+            }
+        };
+        FirebaseDatabase.getInstance().getReference().updateChildren(batch.getUpdates(), listener);
+    }
+
+    /** Return the number of batches committed. */
+    public int getBatchCount() {
+        return mBatchCount;
+    }
+
+    /** Return the number of writes merged into, or superseded by, a later write. */
+    public int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /** Return the number of batches that failed. */
+    public int getFailureCount() {
+        return mFailureCount;
+    }
+
+    /** Return the longest time from commit to completion of a batch. */
+    public long getMaxLatency() {
+        return mMaxLatency;
+    }
+
+    /** Return the number of paths committed. */
+    public int getPathCount() {
+        return mPathCount;
+    }
+
+    /** Return the total time from commit to completion of the completed batches. */
+    public long getTotalLatency() {
+        return mTotalLatency;
+    }
+
+    /** Return the number of writes scheduled. */
+    public int getWriteCount() {
+        return mWriteCount;
+    }
+
+    /** Schedule a write of the given value at the given path. */
+    public void write(final String path, final Object value) {
+        write(path, value, null);
+    }
+
+    /**
+     * Schedule a write of the given value at the given path, notifying the given listener when the
+     * batch carrying the write completes.
+     */
+    public void write(final String path, final Object value,
+                      final WriteBatch.CompletionListener listener) {
+        // Commit the batch first when the write lies below a model object in it, as the object
+        // cannot be merged into without losing its fields.
+        long time = System.currentTimeMillis();
+        if (mBatch != null && !mBatch.put(path, value, time))
+            flush();
+        if (mBatch == null) {
+            mBatch = new WriteBatch();
+            mBatch.put(path, value, time);
+        }
+        mBatch.addListener(listener);
+        if (mDepth == 0)
+            schedule();
+    }
+
+    // Private instance methods.
+
+    /** Cancel the scheduled commit, if there is one. */
+    private void cancel() {
+        if (!mIsScheduled)
+            return;
+        mHandler.removeCallbacks(mFlushTask);
+        mIsScheduled = false;
+    }
+
+    /** Account for, log and notify the completion of the given batch. */
+    private void complete(final WriteBatch batch, final String error) {
+        batch.complete(error, System.currentTimeMillis());
+        long latency = batch.getLatency();
+        mTotalLatency += latency;
+        mMaxLatency = Math.max(mMaxLatency, latency);
+        if (error != null)
+            mFailureCount++;
+        String result = error != null ? error : "ok";
+        Log.d(TAG, String.format(Locale.US, LOG_FORMAT, batch.getWriteCount(),
+                batch.getCoalescedCount(), batch.getUpdates().size(), result, latency));
+        if (error == null)
+            return;
+
+        // The batch is atomic, so one rejected write fails them all: log each of them.
+        for (String path : batch.getUpdates().keySet())
+            Log.w(TAG, String.format(Locale.US, LOST_FORMAT, path, error));
+    }
+
+    /** Schedule the commit of the current batch at the end of the window, if not already. */
+    private void schedule() {
+        if (mIsScheduled)
+            return;
+        if (mHandler == null)
+            mHandler = new Handler(Looper.getMainLooper());
+        mHandler.postDelayed(mFlushTask, WINDOW);
+        mIsScheduled = true;
+    }
+}
@@ -17,6 +17,9 @@
 
 package com.pajato.android.gamechat.database.handler;
 
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+
 /**
  * Provide a base class to encapsulate a name and Firebase path.  Subclasses will implement a
  * Firebase value or child event listener.
@@ -47,4 +50,21 @@ public abstract class  DatabaseEventHandler {
         this.key = key;
     }
 
+    /**
+     * Return the query to listen to at the given path reference: by default the whole location.
+     * Subclasses listening to part of a location (a page of messages, say) override this.  The
+     * query must be the same each time the handler is asked.
+     */
+    public Query getQuery(final DatabaseReference reference) {
+        return reference;
+    }
+
+    /**
+     * Return the path of the parent location this handler shares a single listener on with the
+     * handlers for its sibling locations, or null (the default) if it listens on its own.  Only
+     * value handlers whose key is the last segment of their path can share a listener.
+     */
+    public String getSharedPath() {
+        return null;
+    }
 }
@@ -29,9 +29,7 @@ import com.pajato.android.gamechat.event.ExperienceChangeEvent;
 import com.pajato.android.gamechat.exp.ExpType;
 import com.pajato.android.gamechat.exp.Experience;
 
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 
 import static com.pajato.android.gamechat.event.MessageChangeEvent.CHANGED;
 import static com.pajato.android.gamechat.event.MessageChangeEvent.MOVED;
@@ -110,41 +108,12 @@ public class ExperiencesChangeHandler extends DatabaseEventHandler implements Ch
         return result;
     }
 
-    /** Return a map of experiences for the room and group in the given experience. */
-    private Map<String, Experience> getExpMap(final Experience experience, int type) {
-        // Ensure that the room map exists for the group in the master map, creating it if need be.
-        Map<String, Experience> expMap = new HashMap<>();
-        Map<String, Map<String, Experience>> roomMap;
-        roomMap = ExperienceManager.instance.expGroupMap.get(experience.getGroupKey());
-        if (roomMap == null) {
-            if (type == REMOVED)
-                return expMap;
-            // This would be the first room map entry for the group.  Create an empty room map and
-            // associate it with the group key.
-            roomMap = new HashMap<>();
-            ExperienceManager.instance.expGroupMap.put(experience.getGroupKey(), roomMap);
-        }
-
-        // The room map now exists if it did not before.  Determine if the experience map needs to
-        // be created.
-        expMap = roomMap.get(experience.getRoomKey());
-        if (expMap == null) {
-            expMap = new HashMap<>();
-            if (type == REMOVED)
-                return expMap;
-            // The profile map needs to be created.  Do it now and associate it with the room.
-            roomMap.put(experience.getRoomKey(), expMap);
-        }
-        return expMap;
-    }
-
     /** Process the change by updating the database list and notifying the app. */
     private void process(final DataSnapshot snapshot, final int type) {
         // Validate the snapshot and the experience.  Abort if either is invalid.
         Log.d(TAG, "Processing a data snapshot.");
         Experience experience = snapshot.exists() ? getExperience(snapshot) : null;
-        Map<String, Experience> expMap = experience != null ? getExpMap(experience, type) : null;
-        if (expMap == null) return;
+        if (experience == null) return;
 
         // A snapshot exists with a valid experience. Case on the change type to update the cached
         // model.
@@ -152,17 +121,14 @@ public class ExperiencesChangeHandler extends DatabaseEventHandler implements Ch
         switch (type) {
             case NEW:
             case CHANGED:
-                // Add the experience to the list manager (or replace it if it already exists.) in
-                // two places: 1) a flat map associating an experience key with an experience
-                // object, and 2) a group map associating a group, room, and experience key with
-                // the experience object.
-                expMap.put(key, experience);
-                ExperienceManager.instance.experienceMap.put(key, experience);
+                // Add the experience to the experience manager store (or replace it if it already
+                // exists), which indexes it by group, room and modification time.
+                ExperienceManager.instance.putExperience(experience);
+                ExperienceManager.instance.recordSnapshot(experience);
                 break;
             case REMOVED:
-                // Update the database list experience profile map by removing the entry (key).
-                expMap.remove(key);
-                ExperienceManager.instance.experienceMap.remove(key);
+                // Remove the experience from the store and from every index.
+                ExperienceManager.instance.removeExperience(key);
                 break;
             case MOVED:
             default:
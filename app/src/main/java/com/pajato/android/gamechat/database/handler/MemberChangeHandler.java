@@ -24,9 +24,12 @@ import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.ValueEventListener;
 import com.pajato.android.gamechat.common.model.Account;
+import com.pajato.android.gamechat.database.MemberManager;
 import com.pajato.android.gamechat.event.AppEventManager;
 import com.pajato.android.gamechat.event.MemberChangeEvent;
 
+import java.util.Locale;
+
 /**
  * Provide a class to handle changes to an account by posting an app event.
  *
@@ -53,6 +56,11 @@ public class MemberChangeHandler extends DatabaseEventHandler implements ValueEv
         this.groupKey = groupKey;
     }
 
+    /** Share a listener on the group's members with the handlers for the other members. */
+    @Override public String getSharedPath() {
+        return String.format(Locale.US, MemberManager.MEMBERS_PATH, groupKey, "");
+    }
+
     /** Get the current generic profile. */
     @Override public void onDataChange(@NonNull final DataSnapshot dataSnapshot) {
         // Ensure that some data exists.
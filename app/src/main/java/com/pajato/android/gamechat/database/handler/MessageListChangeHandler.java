@@ -22,24 +22,28 @@ import android.util.Log;
 import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
 import com.pajato.android.gamechat.chat.model.Message;
 import com.pajato.android.gamechat.database.MessageManager;
 import com.pajato.android.gamechat.event.AppEventManager;
 import com.pajato.android.gamechat.event.ChatListChangeEvent;
 import com.pajato.android.gamechat.event.MessageChangeEvent;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
+import static com.pajato.android.gamechat.event.AppEventManager.Delivery.backgroundOrdered;
 import static com.pajato.android.gamechat.event.MessageChangeEvent.CHANGED;
 import static com.pajato.android.gamechat.event.MessageChangeEvent.MOVED;
 import static com.pajato.android.gamechat.event.MessageChangeEvent.NEW;
 import static com.pajato.android.gamechat.event.MessageChangeEvent.REMOVED;
 
 /**
- * Provide a class to handle changes to the messages node.
+ * Provide a class to handle changes to the most recent page of the messages node: older messages
+ * are loaded a page at a time by the message manager.  The page is a live window that moves on as
+ * new messages arrive; the first page delivered is the room's initial load.
  *
  * @author Paul Michael Reilly
  */
@@ -61,19 +65,30 @@ public class MessageListChangeHandler extends DatabaseEventHandler implements Ch
     /** The room key. */
     private String mRoomKey;
 
+    /** The keys of the messages in the window. */
+    private SortedSet<String> mKeySet = new TreeSet<>();
+
     // Public constructors.
 
-    /** Build a handler with the given name and path. */
-    public MessageListChangeHandler(final String name, final String groupKey, final String roomKey) {
+    /** Build a handler with the given name watching the most recent messages in a given room. */
+    public MessageListChangeHandler(final String name, final String groupKey,
+                                    final String roomKey) {
         super(name, MessageManager.instance.getMessagesPath(groupKey, roomKey));
         mGroupKey = groupKey;
         mRoomKey = roomKey;
     }
 
-    /** Deal with a new message. */
+    /** Return the query watching the most recent page of messages. */
+    @Override public Query getQuery(final DatabaseReference reference) {
+        return reference.orderByKey().limitToLast(MessageManager.PAGE_SIZE);
+    }
+
+    /** Deal with a new message, or an older one brought into the window. */
     @Override public void onChildAdded(DataSnapshot dataSnapshot, String s) {
-        // Log the event and determine if the data snapshot exists, aborting if it does not.
+        // Log the event, track the window's oldest message and process the message.
         Log.d(TAG, String.format(Locale.US, LOG_FORMAT, "onChildAdded", dataSnapshot, s));
+        mKeySet.add(dataSnapshot.getKey());
+        MessageManager.instance.setStartKey(mRoomKey, mKeySet.first());
         process(dataSnapshot, NEW);
     }
 
@@ -83,9 +98,14 @@ public class MessageListChangeHandler extends DatabaseEventHandler implements Ch
         process(dataSnapshot, CHANGED);
     }
 
+    /**
+     * Deal with a message leaving the window, pushed out by a newer one (the app does not delete
+     * single messages), by keeping it loaded but no longer watched.
+     */
     @Override public void onChildRemoved(DataSnapshot dataSnapshot) {
         Log.d(TAG, String.format(Locale.US, LOG_FORMAT, "onChildRemoved", dataSnapshot, null));
-        process(dataSnapshot, REMOVED);
+        mKeySet.remove(dataSnapshot.getKey());
+        MessageManager.instance.setStartKey(mRoomKey, mKeySet.isEmpty() ? null : mKeySet.first());
     }
 
     @Override public void onChildMoved(DataSnapshot dataSnapshot, String s) {
@@ -101,39 +121,6 @@ public class MessageListChangeHandler extends DatabaseEventHandler implements Ch
 
     // Private instance methods.
 
-    /** Return a map of messages for the room in the given message. */
-    private Map<String, Message> getMessageMap() {
-        // Ensure that the room map exists for the group in the master map, creating it if need be.
-        Map<String, Message> messageMap;
-        Map<String, Map<String, Message>> roomMap;
-        if (!MessageManager.instance.messageMap.containsKey(mGroupKey)) {
-            // This would be the first entry for the group.  Create an empty room map and associate
-            // it with the group key.
-            roomMap = new HashMap<>();
-            MessageManager.instance.messageMap.put(mGroupKey, roomMap);
-        } else {
-            // This would be an additional profile for the group.  Determine if it is the first for
-            // the room.
-            roomMap = MessageManager.instance.messageMap.get(mGroupKey);
-            if (roomMap == null) {
-                // It is the first profile for the room.  Create a map for the room and associate it
-                // with the group.
-                roomMap = new HashMap<>();
-                MessageManager.instance.messageMap.put(mGroupKey, roomMap);
-            }
-        }
-
-        // The room map exists.  Determine if the message map needs to be created.
-        messageMap = roomMap.get(mRoomKey);
-        if (messageMap == null) {
-            // The message map needs to be created.  Do it now and associate it with the room.
-            messageMap = new HashMap<>();
-            roomMap.put(mRoomKey, messageMap);
-        }
-
-        return messageMap;
-    }
-
     /** Process the change by updating the database list and notifying the app. */
     private void process(final DataSnapshot snapshot, final int type) {
         // Abort if the data snapshot does not exist.
@@ -145,25 +132,24 @@ public class MessageListChangeHandler extends DatabaseEventHandler implements Ch
         Message message = snapshot.getValue(Message.class);
         message.groupKey = mGroupKey;
         message.roomKey = mRoomKey;
-        if (message.unseenList == null)
-            message.unseenList = new ArrayList<>();
-        Map<String, Message> messageMap = getMessageMap();
+        if (type == CHANGED && MessageManager.instance.isUnchanged(message))
+            return;
         switch (type) {
             case NEW:
             case CHANGED:
                 // Add the profile to the list manager (or replace it if it already exists.)
-                messageMap.put(message.key, message);
+                MessageManager.instance.putMessage(message);
                 break;
             case REMOVED:
                 // Update the database list experience profile map by removing the entry (key).
-                messageMap.remove(message.key);
+                MessageManager.instance.removeMessage(message);
                 break;
             case MOVED:
             default:
                 // Not sure what a moved change means or what to do about it, so do nothing for now.
                 break;
         }
-        AppEventManager.instance.post(new MessageChangeEvent(message, type));
+        AppEventManager.instance.post(new MessageChangeEvent(message, type), backgroundOrdered);
         AppEventManager.instance.post(new ChatListChangeEvent());
     }
 }
@@ -17,34 +17,116 @@
 
 package com.pajato.android.gamechat.event;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.view.Choreographer;
+
+import com.pajato.android.gamechat.BuildConfig;
 
 import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.pajato.android.gamechat.event.RegistrationChangeEvent.REGISTERED;
 import static com.pajato.android.gamechat.event.RegistrationChangeEvent.UNREGISTERED;
 
 /**
- * Provide a thin veneer over the GreenRobot EventBus facility.
+ * Provide a thin veneer over the GreenRobot EventBus facility.  Events are delivered in one of
+ * several modes: on the posting thread, on background threads, ordered or not, or on the main
+ * thread where coalesced events (those that only say something changed) are collapsed by class and
+ * delivered at most once per frame.
  *
  * @author Paul Michael Reilly
  */
 public enum AppEventManager {
     instance;
 
+    /** Provide the ways an event can be delivered to its subscribers. */
+    public enum Delivery {
+        backgroundOrdered,          // On a single background thread, in the order posted.
+        backgroundParallel,         // On a pool of background threads, in no particular order.
+        mainCoalesced,              // On the main thread, at most once per class and frame.
+        posting                     // On the posting thread, before the post returns.
+    }
+
     // Private class constants.
 
+    /** The format used to log the delivery of the coalesced events. */
+    private static final String FRAME_FORMAT = "Delivered %d coalesced event(s) for %d posted.";
+
+    /** TRUE iff each post is to be logged: never in a release build. */
+    private static final boolean LOG_POSTS = BuildConfig.DEBUG;
+
+    /** TRUE iff the event metrics are to be recorded: never in a release build. */
+    private static final boolean RECORD_METRICS = BuildConfig.DEBUG;
+
+    /** The single thread delivering the background ordered events. */
+    private static final ExecutorService ORDERED_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /** The threads delivering the background parallel events. */
+    private static final ExecutorService PARALLEL_EXECUTOR =
+            Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
     /** The logcat tag. */
     private static final String TAG = AppEventManager.class.getSimpleName();
 
-    // Public instance variables.
+    // Private instance variables.
+
+    /** The number of coalesced events merged into one already pending. */
+    private int mCoalescedCount;
+
+    /** The nesting level of the post being delivered on each thread, 0 outside of any post. */
+    private ThreadLocal<int[]> mDepth = new ThreadLocal<int[]>() {
+        @Override protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    /** The number of coalesced events delivered. */
+    private int mDeliveredCount;
+
+    /** The callback delivering the pending coalesced events on the next frame. */
+    private Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override public void doFrame(final long frameTimeNanos) {
+            deliverPending();
+        }
+    };
+
+    /** The main thread handler, used to schedule a frame from another thread. */
+    private Handler mHandler;
+
+    /** The EventBus event listener map, read when delivering on background threads. */
+    private Map<String, Object> mHandlerMap = new ConcurrentHashMap<>();
 
-    /** The EventBus event listener map. */
-    private Map<String, Object> mHandlerMap = new HashMap<>();
+    /** The post counts, fan-out, nesting and delivery times of each event type. */
+    private EventMetrics mMetrics = new EventMetrics();
+
+    /** The coalesced events waiting for the next frame, by class, in the order first posted. */
+    private Map<Class<?>, Object> mPendingMap = new LinkedHashMap<>();
+
+    /** The number of coalesced events posted since the last delivery. */
+    private int mPostedCount;
+
+    /** The names of the subscribers to each event class, while the registrations are unchanged. */
+    private Map<Class<?>, List<String>> mSubscriberMap = new HashMap<>();
+
+    /** The task scheduling the next frame from the main thread. */
+    private Runnable mScheduleTask = new Runnable() {
+        @Override public void run() {
+            schedule();
+        }
+    };
 
     // Public instance methods.
 
@@ -54,18 +136,54 @@ public enum AppEventManager {
         EventBus.getDefault().cancelEventDelivery(event);
     }
 
+    /** Return the number of coalesced events merged into one already waiting for a frame. */
+    public int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /** Return the number of coalesced events delivered. */
+    public int getDeliveredCount() {
+        return mDeliveredCount;
+    }
+
+    /** Return the event metrics, for a debug screen or a dump file; empty in a release build. */
+    public EventMetrics getMetrics() {
+        return mMetrics;
+    }
+
     /** Return TRUE iff the given class name is registered to receive events. */
     public boolean isRegistered(final String name) {
         return mHandlerMap.containsKey(name);
     }
 
-    /** Post an event using the GreenRobot library. */
+    /**
+     * Post an event using the GreenRobot library: a coalesced event is delivered on the main
+     * thread at the next frame, any other on the posting thread.
+     */
     public void post(final Object event) {
-        // Maintain the posting level using a stack; report the start and end of the post.
-        String name = event != null ? event.getClass().getSimpleName() : "null";
-        Log.d(TAG, String.format(Locale.US, "Posting event {%s(%s)}.", name, event));
-        EventBus.getDefault().post(event);
-        Log.d(TAG, String.format(Locale.US, "Posted event {%s(%s)}.", name, event));
+        post(event, event instanceof CoalescedEvent ? Delivery.mainCoalesced : Delivery.posting);
+    }
+
+    /**
+     * Post an event to be delivered in the given mode.  Subscribers to events delivered on a
+     * background thread must guard the state they share with the main thread.
+     */
+    public void post(final Object event, final Delivery delivery) {
+        switch (delivery) {
+            case backgroundOrdered:
+                ORDERED_EXECUTOR.execute(new PostTask(event));
+                break;
+            case backgroundParallel:
+                PARALLEL_EXECUTOR.execute(new PostTask(event));
+                break;
+            case mainCoalesced:
+                hold(event);
+                break;
+            case posting:
+            default:
+                deliver(event);
+                break;
+        }
     }
 
     /** Register a given value event listener. */
@@ -77,6 +195,7 @@ public enum AppEventManager {
             // registration to anyone who cares.
             mHandlerMap.put(name, handler);
             EventBus.getDefault().register(handler);
+            clearSubscribers();
             post(new RegistrationChangeEvent(name, REGISTERED));
             Log.d(TAG, String.format(Locale.US, "Registered app event listener {%s}.", name));
         }
@@ -90,10 +209,12 @@ public enum AppEventManager {
             // There is.  Remove it both from the map and as a listener.
             EventBus.getDefault().unregister(handler);
             mHandlerMap.remove(name);
+            clearSubscribers();
             post(new RegistrationChangeEvent(name, UNREGISTERED));
             Log.d(TAG, String.format(Locale.US, "Unregistered app event listener {%s}.", name));
         }
     }
+
     /** Unregister all named listeners. */
     public void unregisterAll() {
         // Remove all registered listeners and clear the map.
@@ -103,7 +224,139 @@ public enum AppEventManager {
             EventBus.getDefault().unregister(handler);
         }
         mHandlerMap.clear();
+        clearSubscribers();
         Log.d(TAG, "Unregistered all app event listeners.");
     }
 
+    // Private instance methods.
+
+    /** Forget the subscribers to each event class: the registrations have changed. */
+    private synchronized void clearSubscribers() {
+        mSubscriberMap.clear();
+    }
+
+    /**
+     * Deliver the given event on this thread, reporting the start and end of the delivery and
+     * recording its metrics in a debug build.
+     */
+    private void deliver(final Object event) {
+        // Only format the report when posts are logged and only look up the subscribers when the
+        // metrics are recorded: posting is on the hot path.
+        boolean isLogged = LOG_POSTS && Log.isLoggable(TAG, Log.DEBUG);
+        String name = event != null ? event.getClass().getSimpleName() : "null";
+        if (isLogged)
+            Log.d(TAG, String.format(Locale.US, "Posting event {%s(%s)}.", name, event));
+        if (RECORD_METRICS)
+            deliverMeasured(name, event);
+        else
+            EventBus.getDefault().post(event);
+        if (isLogged)
+            Log.d(TAG, String.format(Locale.US, "Posted event {%s(%s)}.", name, event));
+    }
+
+    /** Deliver the given (named) event on this thread, recording its metrics. */
+    private void deliverMeasured(final String name, final Object event) {
+        int[] depth = mDepth.get();
+        depth[0]++;
+        long startTime = System.nanoTime();
+        try {
+            EventBus.getDefault().post(event);
+        } finally {
+            long time = System.nanoTime() - startTime;
+            List<String> subscribers = event != null ? getSubscribers(event.getClass()) : null;
+            if (subscribers != null)
+                mMetrics.record(name, subscribers, depth[0], time);
+            depth[0]--;
+        }
+    }
+
+    /** Deliver the pending coalesced events, each of which may cause more to be held. */
+    private void deliverPending() {
+        List<Object> events;
+        int postedCount;
+        synchronized (this) {
+            events = new ArrayList<>(mPendingMap.values());
+            postedCount = mPostedCount;
+            mPendingMap.clear();
+            mPostedCount = 0;
+            mDeliveredCount += events.size();
+        }
+        if (LOG_POSTS && Log.isLoggable(TAG, Log.DEBUG))
+            Log.d(TAG, String.format(Locale.US, FRAME_FORMAT, events.size(), postedCount));
+        for (Object event : events)
+            deliver(event);
+    }
+
+    /** Return the names of the registered subscribers to the given event class. */
+    private synchronized List<String> getSubscribers(final Class<?> eventClass) {
+        List<String> result = mSubscriberMap.get(eventClass);
+        if (result != null)
+            return result;
+        result = new ArrayList<>();
+        for (Object handler : mHandlerMap.values())
+            if (isSubscriber(handler.getClass(), eventClass))
+                result.add(handler.getClass().getSimpleName());
+        mSubscriberMap.put(eventClass, result);
+        return result;
+    }
+
+    /** Hold the given event for the next frame, unless one of its class is held. */
+    private synchronized void hold(final Object event) {
+        mPostedCount++;
+        if (mPendingMap.containsKey(event.getClass())) {
+            mCoalescedCount++;
+            return;
+        }
+        mPendingMap.put(event.getClass(), event);
+        if (mPendingMap.size() == 1)
+            schedule();
+    }
+
+    /** Return TRUE iff the given handler class has a subscriber method for the event class. */
+    private boolean isSubscriber(final Class<?> handlerClass, final Class<?> eventClass) {
+        // Look at the methods of the handler class and its app superclasses, as EventBus does.
+        for (Class<?> type = handlerClass; type != null; type = type.getSuperclass()) {
+            String name = type.getName();
+            boolean isSystem = name.startsWith("java.") || name.startsWith("javax.");
+            if (isSystem || name.startsWith("android."))
+                return false;
+            for (Method method : type.getDeclaredMethods()) {
+                Class<?>[] parameterTypes = method.getParameterTypes();
+                if (method.isAnnotationPresent(Subscribe.class) && parameterTypes.length == 1
+                        && parameterTypes[0].isAssignableFrom(eventClass))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /** Schedule the delivery of the pending coalesced events on the next frame. */
+    private void schedule() {
+        // Frame callbacks must be posted from the main thread: hop to it if need be.
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+            return;
+        }
+        if (mHandler == null)
+            mHandler = new Handler(Looper.getMainLooper());
+        mHandler.post(mScheduleTask);
+    }
+
+    // Private inner classes.
+
+    /** Deliver an event on the thread running the task. */
+    private class PostTask implements Runnable {
+
+        /** The event to deliver. */
+        private final Object mEvent;
+
+        /** Build the task for the given event. */
+        PostTask(final Object event) {
+            mEvent = event;
+        }
+
+        @Override public void run() {
+            deliver(mEvent);
+        }
+    }
 }
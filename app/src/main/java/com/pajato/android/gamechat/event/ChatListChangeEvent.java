@@ -24,6 +24,6 @@ package com.pajato.android.gamechat.event;
  *
  * @author Paul Michael Reilly
  */
-public class ChatListChangeEvent {
+public class ChatListChangeEvent implements CoalescedEvent {
     // No data is needed as it is all contained in the DatabaseListManager class.
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Record, per event type, how often events are posted, to how many subscribers, how deeply posts
+ * nest and how long delivering them takes, so that the handlers making the UI drop frames can be
+ * found.  Delivery times include any posts nested within the delivery.  Times are per event type,
+ * covering all of its subscribers, not per subscriber: EventBus calls the subscribers itself and
+ * offers no hook around each call.  The subscribers of each type are listed to narrow the search.
+ */
+public class EventMetrics {
+
+    // Package private class constants.
+
+    /** The number of most recent delivery times kept per event type to estimate percentiles. */
+    static final int SAMPLE_SIZE = 256;
+
+    // Private class constants.
+
+    /** The format of a report line. */
+    private static final String LINE_FORMAT =
+            "%s: posts %d, fan-out %d, depth %d, p50 %.2f ms, p99 %.2f ms, max %.2f ms, "
+                    + "total %.1f ms%n    subscribers %s%n";
+
+    /** The number of nanoseconds in a millisecond. */
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    // Private instance variables.
+
+    /** The metrics of each event type, by event class simple name. */
+    private Map<String, TypeMetrics> mTypeMap = new HashMap<>();
+
+    // Public instance methods.
+
+    /**
+     * Return the delivery time, in nanoseconds, under which the given percentage of the recent
+     * deliveries of the given event type took place, zero if there were none.
+     */
+    public synchronized long getPercentile(final String type, final int percent) {
+        TypeMetrics metrics = mTypeMap.get(type);
+        return metrics != null ? metrics.getPercentile(percent) : 0;
+    }
+
+    /** Return the number of events of the given type posted, zero if none. */
+    public synchronized int getPostCount(final String type) {
+        TypeMetrics metrics = mTypeMap.get(type);
+        return metrics != null ? metrics.mPostCount : 0;
+    }
+
+    /** Return a report of the metrics, the event types costing the most time first. */
+    public synchronized String getReport() {
+        List<TypeMetrics> list = new ArrayList<>(mTypeMap.values());
+        Collections.sort(list, new Comparator<TypeMetrics>() {
+            @Override public int compare(final TypeMetrics m1, final TypeMetrics m2) {
+                return m1.mTotalTime == m2.mTotalTime ? 0 : m1.mTotalTime > m2.mTotalTime ? -1 : 1;
+            }
+        });
+        StringBuilder builder = new StringBuilder();
+        for (TypeMetrics m : list)
+            builder.append(String.format(Locale.US, LINE_FORMAT, m.mType, m.mPostCount,
+                    m.mSubscribers.size(), m.mMaxDepth, m.getPercentile(50) / NANOS_PER_MILLI,
+                    m.getPercentile(99) / NANOS_PER_MILLI, m.mMaxTime / NANOS_PER_MILLI,
+                    m.mTotalTime / NANOS_PER_MILLI, m.mSubscribers));
+        return builder.toString();
+    }
+
+    /** Record the delivery of an event of the given type to the given subscribers. */
+    public synchronized void record(final String type, final List<String> subscribers,
+                                    final int depth, final long time) {
+        TypeMetrics metrics = mTypeMap.get(type);
+        if (metrics == null) {
+            metrics = new TypeMetrics(type);
+            mTypeMap.put(type, metrics);
+        }
+        metrics.mSamples[metrics.mPostCount % SAMPLE_SIZE] = time;
+        metrics.mPostCount++;
+        metrics.mSubscribers = subscribers;
+        metrics.mMaxDepth = Math.max(metrics.mMaxDepth, depth);
+        metrics.mMaxTime = Math.max(metrics.mMaxTime, time);
+        metrics.mTotalTime += time;
+    }
+
+    /** Forget all metrics. */
+    public synchronized void reset() {
+        mTypeMap.clear();
+    }
+
+    // Private inner classes.
+
+    /** The metrics of one event type. */
+    private static class TypeMetrics {
+
+        /** The deepest nesting level at which an event of this type was posted, 1 at the top. */
+        int mMaxDepth;
+
+        /** The longest delivery time, in nanoseconds. */
+        long mMaxTime;
+
+        /** The number of events posted. */
+        int mPostCount;
+
+        /** The most recent delivery times, in nanoseconds, in a ring. */
+        long[] mSamples = new long[SAMPLE_SIZE];
+
+        /** The names of the subscribers to this event type at the last post. */
+        List<String> mSubscribers = new ArrayList<>();
+
+        /** The sum of the delivery times, in nanoseconds. */
+        long mTotalTime;
+
+        /** The event type, i.e. the event class simple name. */
+        String mType;
+
+        /** Build the metrics for the given event type. */
+        TypeMetrics(final String type) {
+            mType = type;
+        }
+
+        /** Return the recent delivery time under which the given percentage of them fall. */
+        long getPercentile(final int percent) {
+            int size = Math.min(mPostCount, SAMPLE_SIZE);
+            if (size == 0)
+                return 0;
+            long[] times = Arrays.copyOf(mSamples, size);
+            Arrays.sort(times);
+            int index = (int) Math.ceil(percent * size / 100.0) - 1;
+            return times[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+}
@@ -59,7 +59,6 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 import static com.pajato.android.gamechat.common.FragmentType.checkers;
 import static com.pajato.android.gamechat.common.FragmentType.chess;
@@ -135,12 +134,11 @@ public abstract class BaseExperienceFragment extends BaseFragment {
             return;
         String menuItemText = ((TextView) event.view).getText().toString();
         if (menuItemText.equals(getActivity().getString(R.string.PlayModeComputerMenuTitle))) {
-            showFutureFeatureMessage(R.string.PlayModeComputerMenuTitle);
-            PlayModeManager.instance.closePlayModeMenu();
+            PlayModeManager.instance.handlePlayModeComputerSelection(this);
             return;
         }
         if (menuItemText.equals(getActivity().getString(R.string.PlayModeLocalMenuTitle))) {
-            PlayModeManager.instance.closePlayModeMenu();
+            PlayModeManager.instance.handlePlayModeLocalSelection(this);
             return;
         }
         PlayModeManager.instance.handlePlayModeUserSelection(event.view, this);
@@ -153,6 +151,12 @@ public abstract class BaseExperienceFragment extends BaseFragment {
         PlayLocationManager.instance.handlePlayLocationSelection(event.view, this);
     }
 
+    /** Return TRUE iff the computer can play the experience, by default using its engine. */
+    public boolean hasComputerOpponent() {
+        Engine engine = mExperience.getExperienceType().getEngine();
+        return engine != null && engine.hasComputerOpponent();
+    }
+
     @Subscribe public void onExperienceListChange(ExpListChangeEvent event) {
         if (mActive)
             updateAdapterList();
@@ -195,6 +199,13 @@ public abstract class BaseExperienceFragment extends BaseFragment {
         mTileClickHandler = new TileClickHandler(getString(R.string.friend), getString(R.string.you));
     }
 
+    /** Start the computer's move if it is its turn, by default using the experience engine. */
+    public void startComputerMove() {
+        Engine engine = mExperience.getExperienceType().getEngine();
+        if (engine != null)
+            engine.startComputerMove();
+    }
+
     // Protected instance methods.
 
     /** Provide a base implementation that does nothing. */
@@ -450,15 +461,11 @@ public abstract class BaseExperienceFragment extends BaseFragment {
                 DispatchManager.instance.dispatchToFragment(this, type, null, item);
                 break;
             case expRoom: // Show the list of experiences in a room or the one experience.
-                Map<String, Map<String, Experience>> groupMap;
-                Map<String, Experience> roomMap;
-                String key = item.groupKey;
-                groupMap = key != null ? ExperienceManager.instance.expGroupMap.get(key) : null;
-                key = groupMap != null && item.roomKey != null ? item.roomKey : null;
-                roomMap = key != null ? groupMap.get(key) : null;
-                if (roomMap == null || roomMap.size() == 0)
+                List<Experience> list;
+                list = ExperienceManager.instance.getExperienceList(item.groupKey, item.roomKey);
+                if (list.size() == 0)
                     return;
-                type = roomMap.size() > 1 ? experienceList : getType(roomMap, item);
+                type = list.size() > 1 ? experienceList : getType(list, item);
                 DispatchManager.instance.dispatchToFragment(this, type, null, item);
                 break;
             default:
@@ -528,9 +535,9 @@ public abstract class BaseExperienceFragment extends BaseFragment {
     }
 
     /** Return the fragment type corresponding to the sole experience in the map. */
-    private FragmentType getType(@NonNull final Map<String, Experience> map, final ListItem item) {
-        // Extract the experience from the map and add the key to the item.
-        Experience experience = map.values().iterator().next();
+    private FragmentType getType(@NonNull final List<Experience> list, final ListItem item) {
+        // Extract the experience from the list and add the key to the item.
+        Experience experience = list.get(0);
         item.experienceKey = experience.getExperienceKey();
         return experience.getExperienceType().getFragmentType();
     }
@@ -29,12 +29,18 @@ import java.util.Set;
 
 public interface Board {
 
+    /** Forget the changed cells, once they have been persisted. */
+    void clearChangedCells();
+
     /** Clear the selected piece. */
     void clearSelectedPiece();
 
     /** Return and remove the piece at the given position from the board. */
     Piece delete(int position);
 
+    /** Return the keys of the cells added or deleted since the changed cells were cleared. */
+    Set<String> getChangedCells();
+
     /** Return a set of position keys in the board model. */
     Set<String> getKeySet();
 
@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.support.v4.widget.ExploreByTouchHelper;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.pajato.android.gamechat.R.color.colorLightGray;
+import static com.pajato.android.gamechat.R.string.BoardCellEmpty;
+import static com.pajato.android.gamechat.R.string.BoardCellFormat;
+
+/**
+ * Provide a view drawing an 8x8 board, its highlights and its piece glyphs on a single canvas.
+ * Each cell is drawn from the state kept here; setting a cell to the state it already has is free
+ * and any other change invalidates just that cell.  The glyph layouts are built once per glyph and
+ * cell size.  Touches are hit-tested to the position of the cell touched.  For accessibility
+ * services each cell is exposed as a virtual view describing its piece and position (e.g. "primary
+ * king, e1") which can be clicked like the cell itself.
+ */
+public class BoardView extends View {
+
+    // Public class constants.
+
+    /** The number of cells on the board. */
+    public static final int CELL_COUNT = 64;
+
+    /** The number of cells on a side of the board. */
+    public static final int SIDE = 8;
+
+    // Private class constants.
+
+    /** The size of a glyph relative to the size of a cell. */
+    private static final float GLYPH_SCALE = 0.9f;
+
+    // Public interfaces.
+
+    /** The listener for clicks on the board cells. */
+    public interface OnTileClickListener {
+        /** Handle a click on the cell at the given position. */
+        void onTileClick(int position);
+    }
+
+    // Private instance variables.
+
+    /** The size of a cell, in pixels. */
+    private int mCellSize;
+
+    /** The cell bounds used while drawing. */
+    private final Rect mCellRect = new Rect();
+
+    /** The clip bounds used while drawing. */
+    private final Rect mClipRect = new Rect();
+
+    /** The background color of the dark cells. */
+    private int mDarkColor;
+
+    /** The spoken description of the piece in each cell, null if the cell is empty. */
+    private final String[] mDescription = new String[CELL_COUNT];
+
+    /** The position touched down on, -1 if none. */
+    private int mDownPosition = -1;
+
+    /** The glyph layouts, keyed by typeface style and glyph text. */
+    private final Map<String, StaticLayout> mGlyphMap = new HashMap<>();
+
+    /** The highlight color of each cell, 0 if the cell is not highlighted. */
+    private final int[] mHighlight = new int[CELL_COUNT];
+
+    /** The background color of the light cells. */
+    private int mLightColor;
+
+    /** The listener for clicks on the board cells. */
+    private OnTileClickListener mListener;
+
+    /** The paint used to fill the cells. */
+    private final Paint mSquarePaint = new Paint();
+
+    /** The helper exposing the cells to accessibility services. */
+    private CellAccessHelper mAccessHelper;
+
+    /** The glyph color of each cell. */
+    private final int[] mTextColor = new int[CELL_COUNT];
+
+    /** The glyph paints, indexed by typeface style. */
+    private final TextPaint[] mTextPaint = new TextPaint[4];
+
+    /** The glyph text of each cell, null if the cell is empty. */
+    private final String[] mText = new String[CELL_COUNT];
+
+    /** The glyph typeface style of each cell. */
+    private final int[] mTypeface = new int[CELL_COUNT];
+
+    // Public constructors.
+
+    /** Build an instance for the given context. */
+    public BoardView(final Context context) {
+        super(context);
+        init(context);
+    }
+
+    /** Build an instance for the given context and layout attributes. */
+    public BoardView(final Context context, final AttributeSet attrs) {
+        super(context, attrs);
+        init(context);
+    }
+
+    /** Build an instance for the given context, layout attributes and default style. */
+    public BoardView(final Context context, final AttributeSet attrs, final int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(context);
+    }
+
+    // Public instance methods.
+
+    /** Clear the pieces and highlights from all the cells and redraw the board. */
+    public void clear() {
+        for (int position = 0; position < CELL_COUNT; position++) {
+            mText[position] = null;
+            mDescription[position] = null;
+            mHighlight[position] = 0;
+        }
+        mAccessHelper.invalidateRoot();
+        invalidate();
+    }
+
+    /** Let accessibility services explore the cells by touch. */
+    @Override public boolean dispatchHoverEvent(final MotionEvent event) {
+        return mAccessHelper.dispatchHoverEvent(event) || super.dispatchHoverEvent(event);
+    }
+
+    /** Let accessibility services move between the cells with a keyboard. */
+    @Override public boolean dispatchKeyEvent(final KeyEvent event) {
+        return mAccessHelper.dispatchKeyEvent(event) || super.dispatchKeyEvent(event);
+    }
+
+    /** Return the position of the cell at the given view coordinates, -1 if there is none. */
+    public int getPosition(final float x, final float y) {
+        if (mCellSize <= 0)
+            return -1;
+        int column = (int) Math.floor((x - getPaddingLeft()) / mCellSize);
+        int row = (int) Math.floor((y - getPaddingTop()) / mCellSize);
+        if (column < 0 || column >= SIDE || row < 0 || row >= SIDE)
+            return -1;
+        return row * SIDE + column;
+    }
+
+    /** Handle a touch by reporting a click when it goes up on the cell it went down on. */
+    @Override public boolean onTouchEvent(final MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mDownPosition = getPosition(event.getX(), event.getY());
+                return true;
+            case MotionEvent.ACTION_UP:
+                int position = getPosition(event.getX(), event.getY());
+                boolean isClick = position != -1 && position == mDownPosition;
+                mDownPosition = -1;
+                if (isClick) {
+                    performClick();
+                    clickCell(position);
+                }
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                mDownPosition = -1;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /** Let accessibility services see the clicks reported by onTouchEvent(). */
+    @Override public boolean performClick() {
+        return super.performClick();
+    }
+
+    /** Set the size of a cell, in pixels, laying the board out again if it changes. */
+    public void setCellSize(final int size) {
+        if (size == mCellSize)
+            return;
+        mCellSize = size;
+        mGlyphMap.clear();
+        for (TextPaint paint : mTextPaint)
+            if (paint != null)
+                paint.setTextSize(size * GLYPH_SCALE);
+        requestLayout();
+        invalidate();
+    }
+
+    /** Set the highlight color at the given position, 0 to show the cell's own color. */
+    public void setHighlight(final int position, final int color) {
+        if (mHighlight[position] == color)
+            return;
+        mHighlight[position] = color;
+        invalidateCell(position);
+    }
+
+    /** Set the listener for clicks on the board cells. */
+    public void setOnTileClickListener(final OnTileClickListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Set the glyph, and the spoken description of the piece it shows, at the given position,
+     * clearing the cell if the text is null or empty.
+     */
+    public void setPiece(final int position, final String text, final int color,
+                         final int typeface, final String description) {
+        String value = text == null || text.isEmpty() ? null : text;
+        String spoken = value != null ? description : null;
+        boolean isSameDescription = spoken == null ? mDescription[position] == null
+                : spoken.equals(mDescription[position]);
+        boolean isSame = value == null ? mText[position] == null
+                : (value.equals(mText[position]) && mTextColor[position] == color
+                        && mTypeface[position] == typeface);
+        if (isSame && isSameDescription)
+            return;
+        mText[position] = value;
+        mTextColor[position] = color;
+        mTypeface[position] = typeface;
+        mDescription[position] = spoken;
+        mAccessHelper.invalidateVirtualView(position);
+        invalidateCell(position);
+    }
+
+    // Protected instance methods.
+
+    /** Keep the accessibility focus in step with the view focus. */
+    @Override protected void onFocusChanged(final boolean gainFocus, final int direction,
+                                            final Rect previouslyFocusedRect) {
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+        mAccessHelper.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+    }
+
+    /** Draw the cells within the clip bounds: their background, highlight and glyph. */
+    @Override protected void onDraw(final Canvas canvas) {
+        if (mCellSize <= 0 || !canvas.getClipBounds(mClipRect))
+            return;
+        for (int position = 0; position < CELL_COUNT; position++) {
+            setCellRect(position);
+            if (!Rect.intersects(mCellRect, mClipRect))
+                continue;
+            mSquarePaint.setColor(mHighlight[position] != 0 ? mHighlight[position]
+                    : isLight(position) ? mLightColor : mDarkColor);
+            canvas.drawRect(mCellRect, mSquarePaint);
+            if (mText[position] != null)
+                drawGlyph(canvas, position);
+        }
+    }
+
+    /** Size the board to hold eight cells a side within its padding. */
+    @Override protected void onMeasure(final int widthMeasureSpec, final int heightMeasureSpec) {
+        int width = mCellSize * SIDE + getPaddingLeft() + getPaddingRight();
+        int height = mCellSize * SIDE + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec),
+                resolveSize(height, heightMeasureSpec));
+    }
+
+    // Private instance methods.
+
+    /** Report a click on the cell at the given position to the listener and accessibility. */
+    private void clickCell(final int position) {
+        if (mListener != null)
+            mListener.onTileClick(position);
+        mAccessHelper.sendEventForVirtualView(position, AccessibilityEvent.TYPE_VIEW_CLICKED);
+    }
+
+    /** Draw the glyph at the given position, centered in and clipped to the cell bounds. */
+    private void drawGlyph(final Canvas canvas, final int position) {
+        StaticLayout layout = getGlyph(mText[position], mTypeface[position]);
+        layout.getPaint().setColor(mTextColor[position]);
+        canvas.save();
+        canvas.clipRect(mCellRect);
+        canvas.translate(mCellRect.left, mCellRect.top + (mCellSize - layout.getHeight()) / 2);
+        layout.draw(canvas);
+        canvas.restore();
+    }
+
+    /** Return the layout of the given glyph text in the given typeface style, building it once. */
+    private StaticLayout getGlyph(final String text, final int typeface) {
+        String key = typeface + text;
+        StaticLayout result = mGlyphMap.get(key);
+        if (result != null)
+            return result;
+        result = new StaticLayout(text, getTextPaint(typeface), mCellSize,
+                Layout.Alignment.ALIGN_CENTER, 1.0f, 0.0f, false);
+        mGlyphMap.put(key, result);
+        return result;
+    }
+
+    /** Return the glyph paint for the given typeface style, building it once. */
+    private TextPaint getTextPaint(final int typeface) {
+        int style = typeface >= 0 && typeface < mTextPaint.length ? typeface : Typeface.NORMAL;
+        if (mTextPaint[style] == null) {
+            TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+            paint.setTypeface(Typeface.defaultFromStyle(style));
+            paint.setTextSize(mCellSize * GLYPH_SCALE);
+            mTextPaint[style] = paint;
+        }
+        return mTextPaint[style];
+    }
+
+    /** Initialize the cell colors from the given context and expose the cells to accessibility. */
+    private void init(final Context context) {
+        mLightColor = ContextCompat.getColor(context, android.R.color.white);
+        mDarkColor = ContextCompat.getColor(context, colorLightGray);
+        mAccessHelper = new CellAccessHelper(this);
+        ViewCompat.setAccessibilityDelegate(this, mAccessHelper);
+    }
+
+    /** Invalidate the bounds of the cell at the given position. */
+    private void invalidateCell(final int position) {
+        setCellRect(position);
+        invalidate(mCellRect.left, mCellRect.top, mCellRect.right, mCellRect.bottom);
+    }
+
+    /** Return TRUE iff the cell at the given position has the light color. */
+    private boolean isLight(final int position) {
+        return (position / SIDE) % 2 == position % 2;
+    }
+
+    /** Set the cell rectangle to the bounds of the cell at the given position. */
+    private void setCellRect(final int position) {
+        int left = getPaddingLeft() + (position % SIDE) * mCellSize;
+        int top = getPaddingTop() + (position / SIDE) * mCellSize;
+        mCellRect.set(left, top, left + mCellSize, top + mCellSize);
+    }
+
+    // Private inner classes.
+
+    /** Expose each cell as a virtual view describing its piece and position. */
+    private class CellAccessHelper extends ExploreByTouchHelper {
+
+        /** Build a helper for the given (board) view. */
+        CellAccessHelper(final View host) {
+            super(host);
+        }
+
+        /** Return the position of the cell at the given coordinates, INVALID_ID if none. */
+        @Override protected int getVirtualViewAt(final float x, final float y) {
+            int position = getPosition(x, y);
+            return position != -1 ? position : INVALID_ID;
+        }
+
+        /** Add every cell position, in reading order. */
+        @Override protected void getVisibleVirtualViews(final List<Integer> virtualViewIds) {
+            for (int position = 0; position < CELL_COUNT; position++)
+                virtualViewIds.add(position);
+        }
+
+        /** Click the given cell on behalf of an accessibility service. */
+        @Override protected boolean onPerformActionForVirtualView(final int virtualViewId,
+                final int action, final Bundle arguments) {
+            if (action != AccessibilityNodeInfoCompat.ACTION_CLICK)
+                return false;
+            clickCell(virtualViewId);
+            return true;
+        }
+
+        /** Describe the given cell by its piece and position, bound it and make it clickable. */
+        @Override protected void onPopulateNodeForVirtualView(final int virtualViewId,
+                final AccessibilityNodeInfoCompat node) {
+            String piece = mDescription[virtualViewId] != null ? mDescription[virtualViewId]
+                    : getContext().getString(BoardCellEmpty);
+            String cell = String.format(Locale.US, "%c%d", (char) ('a' + virtualViewId % SIDE),
+                    SIDE - virtualViewId / SIDE);
+            node.setContentDescription(getContext().getString(BoardCellFormat, piece, cell));
+            setCellRect(virtualViewId);
+            node.setBoundsInParent(mCellRect);
+            node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+            node.setClickable(true);
+        }
+    }
+}
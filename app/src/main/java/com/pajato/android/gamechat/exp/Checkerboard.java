@@ -21,22 +21,22 @@ import android.content.Context;
 import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
 import android.util.DisplayMetrics;
-import android.view.Gravity;
 import android.view.View;
-import android.widget.GridLayout;
-import android.widget.TextView;
 
 import com.pajato.android.gamechat.common.BaseFragment;
 
 import java.util.List;
+import java.util.Locale;
 
-import static android.util.TypedValue.COMPLEX_UNIT_SP;
-import static com.pajato.android.gamechat.R.color.colorLightGray;
 import static com.pajato.android.gamechat.R.id.board;
 import static com.pajato.android.gamechat.R.id.expFragmentContainer;
+import static com.pajato.android.gamechat.R.string.BoardPieceFormat;
+import static com.pajato.android.gamechat.R.string.primaryTeam;
+import static com.pajato.android.gamechat.R.string.secondaryTeam;
 
 /**
- * Provide a checkerboard class to be used for chess and checkers.
+ * Provide a checkerboard class to be used for chess and checkers.  The board is drawn by a single
+ * board view; this class sizes it and maps pieces and highlights onto its cells.
  *
  * @author Paul Michael Reilly on 2/12/17.
  * @author Bryan Scott on 6/25/17
@@ -45,8 +45,8 @@ import static com.pajato.android.gamechat.R.id.expFragmentContainer;
 public class Checkerboard {
     // Private instance variables.
 
-    /** The GridLayout used to build the checkerboard UI. */
-    private GridLayout mGrid;
+    /** The view drawing the checkerboard UI. */
+    private BoardView mBoard;
 
     // Public constructor.
 
@@ -57,79 +57,56 @@ public class Checkerboard {
 
     // Public instance methods.
 
-    /** Return the cell at a given position. */
-    public TextView getCell(final int position) {
-        return (TextView) mGrid.getChildAt(position);
+    /** Clear the piece, if any, at a given position. */
+    public void clearCell(final int position) {
+        if (mBoard != null)
+            mBoard.setPiece(position, null, 0, 0, null);
     }
 
-    /** Initialize the checkerboard by finding the grid layout and computing the cell size. */
-    public void init(@NonNull BaseFragment fragment, final View.OnClickListener handler) {
-        mGrid = (GridLayout) fragment.getActivity().findViewById(board);
+    /** Initialize the checkerboard by finding the board view and computing the cell size. */
+    public void init(@NonNull BaseFragment fragment, final BoardView.OnTileClickListener handler) {
+        mBoard = (BoardView) fragment.getActivity().findViewById(board);
         View gameArea = fragment.getActivity().findViewById(expFragmentContainer);
-        if (mGrid == null || gameArea == null)
+        if (mBoard == null || gameArea == null)
             return;
 
-        int cellSize = getCellSize(gameArea);
-        // Reset the grid layout.
-        // There appears to be a bug with GridLayout in that if the row and column counts are not
-        // specified, an illegal argument exception can occur, so explicitly set the row and column
-        // counts.
-        mGrid.removeAllViews();
-        mGrid.setRowCount(8);
-        mGrid.setColumnCount(8);
-        for (int i = 0; i < 64; i++) {
-            TextView currentTile = getCellView(fragment.getContext(), i, cellSize);
-            currentTile.setOnClickListener(handler);
-            mGrid.addView(currentTile);
-        }
-    }
-
-    /** Set the background for the tile at the given position. */
-    void handleTileBackground(final Context context, final int position) {
-        // Handle the checkerboard positions (where 'checkerboard' means the background pattern).
-        boolean isEven = (position % 2 == 0);
-        boolean isOdd = (position % 2 == 1);
-        boolean evenRowEvenColumn = ((position / 8) % 2 == 0) && isEven;
-        boolean oddRowOddColumn = ((position / 8) % 2 == 1) && isOdd;
-
-        // Create the checkerboard pattern on the button backgrounds.
-        TextView tile = getCell(position);
-        if (evenRowEvenColumn || oddRowOddColumn)
-            tile.setBackgroundColor(ContextCompat.getColor(context, android.R.color.white));
-        else
-            tile.setBackgroundColor(ContextCompat.getColor(context, colorLightGray));
+        // Reset the board view: size it to the game area and clear it.
+        mBoard.setCellSize(getCellSize(gameArea));
+        mBoard.setOnTileClickListener(handler);
+        mBoard.clear();
     }
 
-    /**
-     * A utility method that facilitates keeping the board's checker pattern in place throughout the
-     * highlighting and de-highlighting process. It accepts a tile and sets its background to white
-     * or dark grey, depending on its location in the board.
-     *
-     * @param context The fragment context used to obtain resources.
-     * @param index the index of the tile, used to determine the color of the background.
-     * @param tile the tile whose color we are changing.
-     */
-    private void handleTileBackground(final Context context, final int index, final TextView tile) {
-        // Handle the checkerboard positions (where 'checkerboard' means the background pattern).
-        boolean isEven = (index % 2 == 0);
-        boolean isOdd = (index % 2 == 1);
-        boolean evenRowEvenColumn = ((index / 8) % 2 == 0) && isEven;
-        boolean oddRowOddColumn = ((index / 8) % 2 == 1) && isOdd;
-
-        // Create the checkerboard pattern on the button backgrounds.
-        if (evenRowEvenColumn || oddRowOddColumn)
-            tile.setBackgroundColor(ContextCompat.getColor(context, android.R.color.white));
-        else
-            tile.setBackgroundColor(ContextCompat.getColor(context, colorLightGray));
+    /** Show the given piece, or an empty cell if it is null, at a given position. */
+    public void setPiece(final int position, final Piece piece) {
+        if (mBoard == null)
+            return;
+        if (piece == null) {
+            clearCell(position);
+            return;
+        }
+        Context context = mBoard.getContext();
+        int color = ContextCompat.getColor(context, piece.getTeam().color);
+        int team = piece.getTeam() == Team.PRIMARY ? primaryTeam : secondaryTeam;
+        String description = context.getString(BoardPieceFormat, context.getString(team),
+                piece.getName().toLowerCase(Locale.US));
+        mBoard.setPiece(position, piece.getText(), color, piece.getTypeface(), description);
     }
 
-    /** Set the highlight at a given position using a given color resource id. */
-    void setHighlight(Context context, int position, List<Integer> possibleMoves) {
-        if (position != -1)
-            setHighlight(context, position, android.R.color.holo_red_dark);
+    /** Highlight the selected position and the possible moves, clearing any other highlight. */
+    void setHighlight(int position, List<Integer> possibleMoves) {
+        if (mBoard == null)
+            return;
+        Context context = mBoard.getContext();
+        int selectedColor = ContextCompat.getColor(context, android.R.color.holo_red_dark);
+        int possibleColor = ContextCompat.getColor(context, android.R.color.holo_red_light);
+        int[] colors = new int[BoardView.CELL_COUNT];
         for (int possiblePosition : possibleMoves)
             if (possiblePosition != -1)
-                setHighlight(context, possiblePosition, android.R.color.holo_red_light);
+                colors[possiblePosition] = possibleColor;
+        if (position != -1)
+            colors[position] = selectedColor;
+        for (int index = 0; index < BoardView.CELL_COUNT; index++)
+            mBoard.setHighlight(index, colors[index]);
     }
 
     // Private instance methods.
@@ -159,33 +136,6 @@ public class Checkerboard {
         return Math.min(cellSizeHorizontal, cellSizeVertical) / 8;
     }
 
-    /** Return a text view representing a cell at a given index of a given size. */
-    private TextView getCellView(final Context context, final int index, final int cellSize) {
-        // Set up the gridlayout params, so that each cell is functionally identical.
-        TextView cellView = new TextView(context);
-        GridLayout.LayoutParams param = new GridLayout.LayoutParams();
-        param.height = cellSize;
-        param.width = cellSize;
-        param.rightMargin = 0;
-        param.topMargin = 0;
-        param.setGravity(Gravity.CENTER);
-
-        // Set up the cell specific information.
-        cellView.setLayoutParams(param);
-        cellView.setTag(String.valueOf(index));
-        float sp = cellSize / context.getResources().getDisplayMetrics().scaledDensity;
-        cellView.setTextSize(COMPLEX_UNIT_SP, (float)(sp * 0.9));
-        cellView.setGravity(Gravity.CENTER);
-        cellView.setText("");
-        handleTileBackground(context, index, cellView);
-        return cellView;
-    }
-
-    /** Set the highlight at a given position using a given color resource id. */
-    private void setHighlight(Context context, int position, final int colorResId) {
-        mGrid.getChildAt(position).setBackgroundColor(ContextCompat.getColor(context, colorResId));
-    }
-
     /** Convert a given pixel number to dps. */
     private int getDips(final DisplayMetrics metrics, final int px) {
         return (px * DisplayMetrics.DENSITY_DEFAULT) / metrics.densityDpi;
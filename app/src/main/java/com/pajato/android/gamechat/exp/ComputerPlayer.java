@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs computer opponent move searches on a single, bounded background thread and plays the
+ * chosen moves back on the UI thread.  Each search is time-boxed so that the computer answers
+ * promptly, and only the most recent request is honored: a request made while another is still
+ * waiting replaces it, and a result arriving after a newer request (or a cancel) is dropped.
+ */
+public enum ComputerPlayer {
+    instance;
+
+    // Private class constants.
+
+    /** The logcat tag. */
+    private static final String TAG = ComputerPlayer.class.getSimpleName();
+
+    /** The time allowed for each search, in milliseconds. */
+    private static final long THINK_TIME = 1500L;
+
+    // Private instance variables.
+
+    /** The request generation, advanced by each request and each cancel. */
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    /** The single search thread with room for one waiting request; older requests are dropped. */
+    private final ThreadPoolExecutor mExecutor = new ThreadPoolExecutor(1, 1, 0L,
+            TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1), new SearchThreadFactory(),
+            new ThreadPoolExecutor.DiscardOldestPolicy());
+
+    /** The UI thread handler used to play the chosen moves, created on first use. */
+    private Handler mHandler;
+
+    // Public instance methods.
+
+    /** Drop any pending or running search result. */
+    public void cancel() {
+        mGeneration.incrementAndGet();
+    }
+
+    /** Run the given search in the background and play its move on the UI thread. */
+    public void play(final MoveSearch search) {
+        if (mHandler == null)
+            mHandler = new Handler(Looper.getMainLooper());
+        final int generation = mGeneration.incrementAndGet();
+        mExecutor.execute(new Runnable() {
+            @Override public void run() {
+                // Abandon stale requests, otherwise search until the deadline and post the move.
+                if (generation != mGeneration.get())
+                    return;
+                long start = System.currentTimeMillis();
+                final long move = search.search(start + THINK_TIME);
+                String format = "Computer move search took %d ms.";
+                Log.d(TAG, String.format(Locale.US, format, System.currentTimeMillis() - start));
+                mHandler.post(new Runnable() {
+                    @Override public void run() {
+                        if (generation == mGeneration.get())
+                            search.play(move);
+                    }
+                });
+            }
+        });
+    }
+
+    // Private inner classes.
+
+    /** Provide background priority daemon threads for the searches. */
+    private static class SearchThreadFactory implements ThreadFactory {
+        @Override public Thread newThread(final Runnable runnable) {
+            Thread result = new Thread(new Runnable() {
+                @Override public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, TAG);
+            result.setDaemon(true);
+            return result;
+        }
+    }
+}
@@ -32,6 +32,12 @@ public interface Engine {
     /** Handle a move of the selected piece to the given position. */
     void handleMove(int position);
 
+    /** Return TRUE iff this engine can play as a computer opponent. */
+    boolean hasComputerOpponent();
+
+    /** Start the computer opponent's move if it is the computer's turn, otherwise do nothing. */
+    void startComputerMove();
+
     /** Start a move using the given position as the selected position. */
     void startMove(int position);
 }
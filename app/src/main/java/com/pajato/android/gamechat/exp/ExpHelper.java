@@ -5,7 +5,6 @@ import android.content.Intent;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
-import android.support.v4.content.ContextCompat;
 import android.support.v4.content.res.ResourcesCompat;
 import android.util.Log;
 import android.view.View;
@@ -82,8 +81,8 @@ public class ExpHelper {
     }
 
     /** Process a tile click to establish or clear the selected position and the possible moves. */
-    static void processTileClick(final int position, @NonNull final Experience model,
-                                 @NonNull final Engine engine) {
+    public static void processTileClick(final int position, @NonNull final Experience model,
+                                        @NonNull final Engine engine) {
         // Determine if a selection is active.  If so, and the click occurred on a possible move
         // position then handle the move.  Otherwise start a move by marking the selected
         // position and establishing the possible moves.
@@ -115,7 +114,7 @@ public class ExpHelper {
 
     /** Update the move on the database and generate notifications to room members. */
     public static void updateModel(@NonNull Experience model) {
-        ExperienceManager.instance.updateExperience(model);
+        ExperienceManager.instance.updateMove(model);
         BaseFragment fragment = getBaseFragment(model);
         Intent intent = new Intent(fragment.getActivity(), MainService.class);
         //intent.putExtra(MainService.NOTIFICATION_KEY, getJsonData(model));
@@ -123,6 +122,11 @@ public class ExpHelper {
         fragment.getContext().startService(intent);
     }
 
+    /** Update a selection (and its highlighted moves), by default on this device only. */
+    public static void updateSelection(@NonNull Experience model) {
+        ExperienceManager.instance.updateSelection(model);
+    }
+
     // Private class methods.
 
     private static TextView getTextView(final Experience model, final int resId) {
@@ -133,29 +137,20 @@ public class ExpHelper {
     }
 
     /** Set the virtual board (UI) from the data model. */
-    private static void setBoard(@NonNull final Context context, @NonNull final Experience model,
+    private static void setBoard(@NonNull final Experience model,
                                  @NonNull final Checkerboard board) {
-        // Reset all the cells to showing empty text with correct highlighting from the data model.
-        int selectedPosition = model.getBoard().getSelectedPosition();
-        if (selectedPosition != -1)
-            board.handleTileBackground(context, selectedPosition);
-        for (int index = 0; index < 64; index++) {
-            board.getCell(index).setText("");
-            board.handleTileBackground(context, index);
-        }
-        board.setHighlight(context, selectedPosition, model.getBoard().getPossibleMoves());
-
-        // Add the pieces from the data model.
+        // Set the highlighting and then every cell's piece, or none, from the data model.  The
+        // board redraws only the cells that change.
+        board.setHighlight(model.getBoard().getSelectedPosition(),
+                model.getBoard().getPossibleMoves());
+        Piece[] pieces = new Piece[BoardView.CELL_COUNT];
         for (String key : model.getBoard().getKeySet()) {
             int position = model.getBoard().getPosition(key);
-            if (position == -1)
-                continue;
-            TextView view = board.getCell(position);
-            Piece piece = model.getBoard().getPiece(position);
-            view.setText(piece.getText());
-            view.setTextColor(ContextCompat.getColor(context, piece.getTeam().color));
-            view.setTypeface(null, piece.getTypeface());
+            if (position >= 0 && position < BoardView.CELL_COUNT)
+                pieces[position] = model.getBoard().getPiece(position);
         }
+        for (int index = 0; index < BoardView.CELL_COUNT; index++)
+            board.setPiece(index, pieces[index]);
     }
 
     /** Set the name for a given player index. */
@@ -242,7 +237,7 @@ public class ExpHelper {
         setWinCount(R.id.player1WinCount, 0, model);
         setWinCount(R.id.player2WinCount, 1, model);
         setPlayerControls(model);
-        setBoard(context, model, board);
+        setBoard(model, board);
         setState(model);
     }
 }
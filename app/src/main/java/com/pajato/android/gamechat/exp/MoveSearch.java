@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp;
+
+/**
+ * Provides a computer opponent move search interface.  The search runs on a background thread
+ * (see ComputerPlayer) against a snapshot of the game position and the chosen move is then played
+ * on the UI thread.
+ */
+public interface MoveSearch {
+
+    /**
+     * Return the best move found by the given deadline (as given by System.currentTimeMillis()).
+     * Called on a background thread, so implementations must not touch the experience model.
+     * Moves are longs so that each game can use its own encoding (a checkers move carries the
+     * set of squares it captures).
+     */
+    long search(long deadline);
+
+    /** Play the given move, as returned by search(). Called on the UI thread. */
+    void play(long move);
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp;
+
+/**
+ * Provide a fixed size, allocation free cache of game positions, keyed by the Zobrist hash the
+ * engines maintain on their boards.  Each entry holds the legal moves (engine encoded ints) and
+ * some flags, such as check, for the position, so that highlighting a piece's moves, testing for
+ * the end of the game and starting a computer search in a position seen before cost a lookup
+ * rather than a move generation.
+ *
+ * The table is two-way set associative: a position may live in either slot of its pair and a new
+ * position replaces the less recently used of the two.  Positions with more than MOVE_CAPACITY
+ * moves are not cached.  Access is synchronized as the computer player's thread shares the cache
+ * with the UI thread.
+ */
+public class PositionCache {
+
+    // Public class constants.
+
+    /** The count returned for a position that is not in the cache. */
+    public static final int NOT_FOUND = -1;
+
+    /** The flag marking a position in which the side to move is in check. */
+    public static final int IN_CHECK = 1;
+
+    /** The largest number of moves an entry holds. */
+    public static final int MOVE_CAPACITY = 128;
+
+    // Private instance variables.
+
+    /** The mask selecting the first slot of a position's pair. */
+    private final int mMask;
+
+    /** The entry keys, move counts (NOT_FOUND when empty), flags and last use stamps. */
+    private final long[] mKeys;
+    private final int[] mCounts;
+    private final int[] mFlags;
+    private final long[] mStamps;
+
+    /** The entry moves, MOVE_CAPACITY per entry. */
+    private final int[] mMoves;
+
+    /** The use counter providing the stamps. */
+    private long mClock;
+
+    // Public constructors.
+
+    /** Build a cache holding the given number (a power of two, at least two) of positions. */
+    public PositionCache(final int size) {
+        mMask = (size - 1) & ~1;
+        mKeys = new long[size];
+        mCounts = new int[size];
+        mFlags = new int[size];
+        mStamps = new long[size];
+        mMoves = new int[size * MOVE_CAPACITY];
+        clear();
+    }
+
+    // Public instance methods.
+
+    /** Remove all positions from the cache. */
+    public synchronized void clear() {
+        for (int index = 0; index < mCounts.length; index++)
+            mCounts[index] = NOT_FOUND;
+    }
+
+    /**
+     * Copy the moves cached for the given position into the given array and return their number,
+     * or return NOT_FOUND if the position is not cached.
+     */
+    public synchronized int get(final long key, final int[] moves) {
+        int slot = find(key);
+        if (slot == NOT_FOUND)
+            return NOT_FOUND;
+        mStamps[slot] = ++mClock;
+        System.arraycopy(mMoves, slot * MOVE_CAPACITY, moves, 0, mCounts[slot]);
+        return mCounts[slot];
+    }
+
+    /** Return the flags cached for the given position, or NOT_FOUND if it is not cached. */
+    public synchronized int getFlags(final long key) {
+        int slot = find(key);
+        return slot == NOT_FOUND ? NOT_FOUND : mFlags[slot];
+    }
+
+    /** Cache the given moves and flags for the given position. */
+    public synchronized void put(final long key, final int[] moves, final int count,
+                                 final int flags) {
+        if (count > MOVE_CAPACITY)
+            return;
+        int slot = find(key);
+        if (slot == NOT_FOUND)
+            slot = getVictim((int) key & mMask);
+        mKeys[slot] = key;
+        mCounts[slot] = count;
+        mFlags[slot] = flags;
+        mStamps[slot] = ++mClock;
+        System.arraycopy(moves, 0, mMoves, slot * MOVE_CAPACITY, count);
+    }
+
+    // Private instance methods.
+
+    /** Return the slot of the pair starting at the given slot to replace: empty, else older. */
+    private int getVictim(final int first) {
+        int second = first + 1;
+        if (mCounts[first] == NOT_FOUND)
+            return first;
+        if (mCounts[second] == NOT_FOUND)
+            return second;
+        return mStamps[first] <= mStamps[second] ? first : second;
+    }
+
+    /** Return the slot holding the given position or NOT_FOUND if it is not cached. */
+    private int find(final long key) {
+        int first = (int) key & mMask;
+        if (mCounts[first] != NOT_FOUND && mKeys[first] == key)
+            return first;
+        int second = first + 1;
+        return mCounts[second] != NOT_FOUND && mKeys[second] == key ? second : NOT_FOUND;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp;
+
+/**
+ * Identify the position a computer move search was started for, by experience key and board
+ * position key, so that the move found can be checked before it is played.  The experience model
+ * object itself is no identity: each database change (including the echo of the User's own move)
+ * delivers a new but equal model, and a search must survive that.  A search is stale only when
+ * the experience or the position differs, as after a new game or a move made in the meantime.
+ */
+public class SearchOrigin {
+
+    // Private instance variables.
+
+    /** The key of the experience being searched. */
+    private final String mExperienceKey;
+
+    /** The key of the position being searched. */
+    private final long mPositionKey;
+
+    // Public constructors.
+
+    /** Build an origin for the given experience and position keys. */
+    public SearchOrigin(final String experienceKey, final long positionKey) {
+        mExperienceKey = experienceKey;
+        mPositionKey = positionKey;
+    }
+
+    // Public instance methods.
+
+    /** Return TRUE iff the given experience and position keys are the ones searched. */
+    public boolean isCurrent(final String experienceKey, final long positionKey) {
+        if (positionKey != mPositionKey)
+            return false;
+        if (mExperienceKey == null)
+            return experienceKey == null;
+        return mExperienceKey.equals(experienceKey);
+    }
+}
@@ -17,12 +17,11 @@
 
 package com.pajato.android.gamechat.exp;
 
-import android.view.View;
-
 import com.pajato.android.gamechat.R;
 import com.pajato.android.gamechat.common.BaseFragment;
 import com.pajato.android.gamechat.common.DispatchManager;
 import com.pajato.android.gamechat.common.FragmentType;
+import com.pajato.android.gamechat.common.PlayModeManager;
 import com.pajato.android.gamechat.database.AccountManager;
 import com.pajato.android.gamechat.exp.model.Player;
 
@@ -32,9 +31,9 @@ import static com.pajato.android.gamechat.exp.NotificationManager.NotifyType.exp
 import static com.pajato.android.gamechat.main.NetworkManager.OFFLINE_EXPERIENCE_KEY;
 
 /**
- * A View.OnClickListener that is called whenever a board tile is clicked.
+ * A BoardView.OnTileClickListener that is called whenever a board tile is clicked.
  */
-public class TileClickHandler implements View.OnClickListener {
+public class TileClickHandler implements BoardView.OnTileClickListener {
 
     // Private instance variables.
 
@@ -57,7 +56,7 @@ public class TileClickHandler implements View.OnClickListener {
     // Public instance methods.
 
     /** Handle a click event by validating the player doing the click and processing the move. */
-    @Override public void onClick(final View v) {
+    @Override public void onTileClick(final int position) {
         // If the player is not a valid player, then notify them that they need to make or join
         // their own game via a snackbar and abort.
         if (isNotAPlayer()) {
@@ -68,9 +67,9 @@ public class TileClickHandler implements View.OnClickListener {
             return;
         }
 
-        // Detect a player playing out of turn.  If so, notify politely with a snackbar and abort.
-        int position = Integer.parseInt((String)v.getTag());
-        if (isPlayingOutOfTurn(position)) {
+        // Detect a player playing out of turn, including during the computer's turn.  If so,
+        // notify politely with a snackbar and abort.
+        if (PlayModeManager.instance.isComputerTurn(mModel) || isPlayingOutOfTurn(position)) {
             FragmentType fragmentType = mModel.getExperienceType().getFragmentType();
             BaseFragment fragment = DispatchManager.instance.getFragment(fragmentType);
             int id = R.string.PlayOutOfTurnMessageText;
@@ -124,6 +123,8 @@ public class TileClickHandler implements View.OnClickListener {
             } else if (player.id == null && player.name.equals(youName)) {
                 playerTeam = team;
                 break;
+            } else if (player.id == null) {
+                continue;
             } else if(player.id.equals(AccountManager.instance.getCurrentAccountId())) {
                 playerTeam = Team.valueOf(player.team.toUpperCase(Locale.getDefault()));
             }
@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp.checkers;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Provide a primitive, allocation free checkers board used by the checkers engine to generate
+ * moves and by the computer opponent to search.  Only the 32 dark cells are playable, so each
+ * side's men and kings are held as 32 bit sets over those cells (squares).  Square n is the
+ * n-th dark cell counting from the top left: square = position / 2 for the 0->63 cell indexing
+ * used by CheckersBoard, with the secondary team at the top and the primary team moving "up".
+ *
+ * A move is encoded as a long holding the from and to squares and the set of captured squares
+ * (see getMove()), so a multi-jump is a single move.  Captures are mandatory: when a side can
+ * jump, only its jumps are generated, and a jump must continue while the piece can jump again,
+ * unless a man is crowned, which ends the move.  Moves are applied and reverted with makeMove()
+ * and unmakeMove(), and a Zobrist hash of the position is maintained as they are.
+ *
+ * This class has no Android or Firebase dependencies so that it can be exercised on the JVM.
+ */
+public class CheckersBitboard {
+
+    // Package private class constants.
+
+    /** The side indexes. */
+    static final int PRIMARY_SIDE = 0;
+    static final int SECONDARY_SIDE = 1;
+
+    /** The number of playable squares. */
+    static final int SQUARES = 32;
+
+    /** The largest number of moves generated for any position. */
+    static final int MAX_MOVES = 128;
+
+    /** The largest number of squares visited by a move, including the from square. */
+    static final int MAX_PATH = 16;
+
+    // Private class constants.
+
+    /** The direction indexes; primary men move up, secondary men move down. */
+    private static final int UP_LEFT = 0;
+    private static final int UP_RIGHT = 1;
+    private static final int DOWN_LEFT = 2;
+    private static final int DOWN_RIGHT = 3;
+
+    /** The row and column deltas for each direction. */
+    private static final int[] ROW_DELTA = {-1, -1, 1, 1};
+    private static final int[] COL_DELTA = {-1, 1, -1, 1};
+
+    /** The squares on which each side's men are crowned. */
+    private static final int[] CROWN_ROW = {0x0000000F, 0xF0000000};
+
+    /** The adjacent square and the jump landing square in each direction, or -1 if off board. */
+    private static final int[][] NEIGHBORS = new int[4][SQUARES];
+    private static final int[][] JUMPS = new int[4][SQUARES];
+
+    /** The Zobrist keys for each side's men and kings on each square, and the side to move. */
+    private static final long[][] MAN_KEYS = new long[2][SQUARES];
+    private static final long[][] KING_KEYS = new long[2][SQUARES];
+    private static final long SIDE_KEY;
+
+    /** The number of ints saved per move on the undo stack. */
+    private static final int UNDO_FIELDS = 4;
+
+    /** The initial capacity, in moves, of the undo stack. */
+    private static final int UNDO_CAPACITY = 64;
+
+    static {
+        for (int square = 0; square < SQUARES; square++) {
+            int position = toPosition(square);
+            int row = position >> 3;
+            int col = position & 7;
+            for (int dir = 0; dir < 4; dir++) {
+                NEIGHBORS[dir][square] = getSquare(row + ROW_DELTA[dir], col + COL_DELTA[dir]);
+                JUMPS[dir][square] = getSquare(row + 2 * ROW_DELTA[dir], col + 2 * COL_DELTA[dir]);
+            }
+        }
+
+        // Use a fixed seed so that keys (and hence search results) are reproducible.
+        Random random = new Random(0xC4EC4E55L);
+        for (int side = 0; side < 2; side++)
+            for (int square = 0; square < SQUARES; square++) {
+                MAN_KEYS[side][square] = random.nextLong();
+                KING_KEYS[side][square] = random.nextLong();
+            }
+        SIDE_KEY = random.nextLong();
+    }
+
+    // Package private instance variables.
+
+    /** The men and kings of each side, as sets of squares. */
+    final int[] men = new int[2];
+    final int[] kings = new int[2];
+
+    /** The side whose turn it is to move. */
+    int sideToMove = PRIMARY_SIDE;
+
+    // Private instance variables.
+
+    /** The Zobrist hash of the pieces on the board. */
+    private long mHash;
+
+    /** The undo stack: the piece sets and hash before each move. */
+    private int[] mUndoSets = new int[UNDO_CAPACITY * UNDO_FIELDS];
+    private long[] mUndoHashes = new long[UNDO_CAPACITY];
+
+    /** The number of moves on the undo stack. */
+    private int mUndoSize;
+
+    // Package private class methods.
+
+    /** Return the square of the given (dark) board position. */
+    static int toSquare(final int position) {
+        return position >> 1;
+    }
+
+    /** Return the board position of the given square. */
+    static int toPosition(final int square) {
+        int row = square >> 2;
+        return row * 8 + 2 * (square & 3) + ((row & 1) == 0 ? 1 : 0);
+    }
+
+    /** Return TRUE iff the given board position is a playable (dark) cell. */
+    static boolean isPlayable(final int position) {
+        return position >= 0 && position < 64 && (((position >> 3) + position) & 1) == 1;
+    }
+
+    /** Return a move from and to the given squares capturing the given set of squares. */
+    static long getMove(final int from, final int to, final int captured) {
+        return from | (to << 5) | ((captured & 0xFFFFFFFFL) << 10);
+    }
+
+    /** Return the from square of the given move. */
+    static int getFrom(final long move) {
+        return (int) move & 31;
+    }
+
+    /** Return the to square of the given move. */
+    static int getTo(final long move) {
+        return (int) (move >> 5) & 31;
+    }
+
+    /** Return the set of squares captured by the given move. */
+    static int getCaptured(final long move) {
+        return (int) (move >>> 10);
+    }
+
+    // Package private instance methods.
+
+    /** Remove all pieces from the board. */
+    void clear() {
+        men[PRIMARY_SIDE] = men[SECONDARY_SIDE] = 0;
+        kings[PRIMARY_SIDE] = kings[SECONDARY_SIDE] = 0;
+        sideToMove = PRIMARY_SIDE;
+        mHash = 0L;
+        mUndoSize = 0;
+    }
+
+    /** Copy the full state of the given board into this board. */
+    void copyFrom(final CheckersBitboard other) {
+        System.arraycopy(other.men, 0, men, 0, 2);
+        System.arraycopy(other.kings, 0, kings, 0, 2);
+        sideToMove = other.sideToMove;
+        mHash = other.mHash;
+        mUndoSize = 0;
+    }
+
+    /** Put a man or king of the given side on the given (empty) square. */
+    void put(final int square, final int side, final boolean isKing) {
+        if (isKing) {
+            kings[side] |= 1 << square;
+            mHash ^= KING_KEYS[side][square];
+        } else {
+            men[side] |= 1 << square;
+            mHash ^= MAN_KEYS[side][square];
+        }
+    }
+
+    /** Return the set of squares holding the given side's pieces. */
+    int getPieces(final int side) {
+        return men[side] | kings[side];
+    }
+
+    /** Return the set of occupied squares. */
+    int getOccupied() {
+        return getPieces(PRIMARY_SIDE) | getPieces(SECONDARY_SIDE);
+    }
+
+    /** Return the Zobrist key of the position: the pieces and the side to move. */
+    long getKey() {
+        return sideToMove == PRIMARY_SIDE ? mHash : mHash ^ SIDE_KEY;
+    }
+
+    /**
+     * Generate the legal moves for the side to move into the given array (which must hold at least
+     * MAX_MOVES entries) and return the number of moves generated.  Only jumps are generated when
+     * the side has a jump.
+     */
+    int generateMoves(final long[] moves) {
+        int count = 0;
+        for (int own = getPieces(sideToMove); own != 0; own &= own - 1)
+            count = addJumps(moves, count, Integer.numberOfTrailingZeros(own));
+        if (count > 0)
+            return count;
+        int empty = ~getOccupied();
+        for (int own = getPieces(sideToMove); own != 0; own &= own - 1) {
+            int from = Integer.numberOfTrailingZeros(own);
+            boolean isKing = (kings[sideToMove] & (1 << from)) != 0;
+            for (int dir = 0; dir < 4; dir++) {
+                int to = NEIGHBORS[dir][from];
+                if (to >= 0 && canMove(sideToMove, isKing, dir) && (empty & (1 << to)) != 0)
+                    moves[count++] = getMove(from, to, 0);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Generate the jumps available to the piece on the given square, whatever the side to move,
+     * into the given array and return the number of jumps generated.
+     */
+    int generateJumps(final long[] moves, final int square) {
+        return addJumps(moves, 0, square);
+    }
+
+    /**
+     * Return the squares visited by the given move, starting with the from square, in the given
+     * array and return their number.  A multi-jump is retraced through its captured squares, so
+     * the move must not yet have been made.
+     */
+    int getPath(final long move, final int[] path) {
+        int from = getFrom(move);
+        path[0] = from;
+        int captured = getCaptured(move);
+        if (captured == 0) {
+            path[1] = getTo(move);
+            return 2;
+        }
+        int side = (getPieces(PRIMARY_SIDE) & (1 << from)) != 0 ? PRIMARY_SIDE : SECONDARY_SIDE;
+        boolean isKing = (kings[side] & (1 << from)) != 0;
+        int occupied = getOccupied() & ~(1 << from);
+        return tracePath(path, 1, from, captured, getTo(move), side, isKing, occupied);
+    }
+
+    /**
+     * Apply the given move, saving the state needed to revert it with unmakeMove().  The move is
+     * assumed to be legal.
+     */
+    void makeMove(final long move) {
+        pushUndo();
+        int side = sideToMove;
+        int opponent = 1 - side;
+        int from = getFrom(move);
+        int to = getTo(move);
+        int captured = getCaptured(move);
+
+        // Move the piece, crowning a man reaching the far row, and remove the captured pieces.
+        boolean isKing = (kings[side] & (1 << from)) != 0;
+        if (isKing) {
+            kings[side] &= ~(1 << from);
+            mHash ^= KING_KEYS[side][from];
+        } else {
+            men[side] &= ~(1 << from);
+            mHash ^= MAN_KEYS[side][from];
+        }
+        put(to, side, isKing || (CROWN_ROW[side] & (1 << to)) != 0);
+        for (int bits = captured; bits != 0; bits &= bits - 1) {
+            int square = Integer.numberOfTrailingZeros(bits);
+            if ((kings[opponent] & (1 << square)) != 0)
+                mHash ^= KING_KEYS[opponent][square];
+            else
+                mHash ^= MAN_KEYS[opponent][square];
+        }
+        men[opponent] &= ~captured;
+        kings[opponent] &= ~captured;
+        sideToMove = opponent;
+    }
+
+    /** Revert the most recent move applied with makeMove(). */
+    void unmakeMove() {
+        mUndoSize--;
+        int base = mUndoSize * UNDO_FIELDS;
+        men[PRIMARY_SIDE] = mUndoSets[base];
+        men[SECONDARY_SIDE] = mUndoSets[base + 1];
+        kings[PRIMARY_SIDE] = mUndoSets[base + 2];
+        kings[SECONDARY_SIDE] = mUndoSets[base + 3];
+        mHash = mUndoHashes[mUndoSize];
+        sideToMove = 1 - sideToMove;
+    }
+
+    // Private class methods.
+
+    /** Return the square at the given row and column, or -1 if it is off the board. */
+    private static int getSquare(final int row, final int col) {
+        if (row < 0 || row > 7 || col < 0 || col > 7)
+            return -1;
+        return toSquare(row * 8 + col);
+    }
+
+    /** Return TRUE iff a piece of the given side and rank may move in the given direction. */
+    private static boolean canMove(final int side, final boolean isKing, final int dir) {
+        if (isKing)
+            return true;
+        return side == PRIMARY_SIDE ? dir == UP_LEFT || dir == UP_RIGHT
+                : dir == DOWN_LEFT || dir == DOWN_RIGHT;
+    }
+
+    // Private instance methods.
+
+    /** Add the jumps of the piece on the given square to the given moves; return the new count. */
+    private int addJumps(final long[] moves, final int count, final int from) {
+        int side = (getPieces(PRIMARY_SIDE) & (1 << from)) != 0 ? PRIMARY_SIDE : SECONDARY_SIDE;
+        boolean isKing = (kings[side] & (1 << from)) != 0;
+        return addJumps(moves, count, from, from, 0, side, isKing);
+    }
+
+    /**
+     * Add the jumps continuing from the given square, with the given squares already captured, to
+     * the given moves and return the new count.  Captured pieces stay on the board (they cannot be
+     * jumped twice and still block) until the move completes; the moving piece has left its square.
+     */
+    private int addJumps(final long[] moves, final int count, final int from, final int square,
+                         final int captured, final int side, final boolean isKing) {
+        int result = count;
+        int opponents = getPieces(1 - side) & ~captured;
+        int occupied = getOccupied() & ~(1 << from);
+        boolean isExtended = false;
+        for (int dir = 0; dir < 4; dir++) {
+            int over = NEIGHBORS[dir][square];
+            int land = JUMPS[dir][square];
+            if (land < 0 || !canMove(side, isKing, dir) || (opponents & (1 << over)) == 0 ||
+                    (occupied & (1 << land)) != 0)
+                continue;
+            isExtended = true;
+            int nowCaptured = captured | (1 << over);
+            boolean isCrowned = !isKing && (CROWN_ROW[side] & (1 << land)) != 0;
+            if (isCrowned && result < moves.length)
+                moves[result++] = getMove(from, land, nowCaptured);
+            else if (!isCrowned)
+                result = addJumps(moves, result, from, land, nowCaptured, side, isKing);
+        }
+        if (!isExtended && captured != 0 && result < moves.length)
+            moves[result++] = getMove(from, square, captured);
+        return result;
+    }
+
+    /** Push the piece sets and hash onto the undo stack. */
+    private void pushUndo() {
+        if (mUndoSize == mUndoHashes.length) {
+            mUndoSets = Arrays.copyOf(mUndoSets, mUndoSets.length * 2);
+            mUndoHashes = Arrays.copyOf(mUndoHashes, mUndoHashes.length * 2);
+        }
+        int base = mUndoSize * UNDO_FIELDS;
+        mUndoSets[base] = men[PRIMARY_SIDE];
+        mUndoSets[base + 1] = men[SECONDARY_SIDE];
+        mUndoSets[base + 2] = kings[PRIMARY_SIDE];
+        mUndoSets[base + 3] = kings[SECONDARY_SIDE];
+        mUndoHashes[mUndoSize] = mHash;
+        mUndoSize++;
+    }
+
+    /**
+     * Retrace a multi-jump from the given square through the remaining captured squares to the
+     * given target over empty squares, recording the landing squares in the path from the given
+     * length on, and return the path length, or -1 if there is no such route from here.
+     */
+    private int tracePath(final int[] path, final int length, final int square,
+                          final int remaining, final int to, final int side,
+                          final boolean isKing, final int occupied) {
+        if (remaining == 0)
+            return square == to ? length : -1;
+        for (int dir = 0; dir < 4; dir++) {
+            int over = NEIGHBORS[dir][square];
+            int land = JUMPS[dir][square];
+            if (land < 0 || !canMove(side, isKing, dir) || (remaining & (1 << over)) == 0 ||
+                    (occupied & (1 << land)) != 0 || length >= path.length)
+                continue;
+            path[length] = land;
+            int result = tracePath(path, length + 1, land, remaining & ~(1 << over), to, side,
+                    isKing, occupied);
+            if (result != -1)
+                return result;
+        }
+        return -1;
+    }
+}
@@ -27,8 +27,10 @@ import com.pajato.android.gamechat.exp.checkers.CheckersPiece.PieceType;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import static com.pajato.android.gamechat.exp.Team.PRIMARY;
@@ -44,7 +46,8 @@ import static com.pajato.android.gamechat.exp.Team.SECONDARY;
  *
  * So, this class is essentially a wrapper around a HashMap which handles the conversion of an
  * integer index to a string and provides some convenience methods to determine piece type and team
- * for a given cell on the board.
+ * for a given cell on the board.  A Zobrist hash of the pieces is maintained as pieces are added
+ * and deleted so that the engine can cache per position data (see getKey()).
  *
  * @author Sandy Scott on 1/9/2017
  * @author Paul Michael Reilly on 2/17/2017
@@ -59,6 +62,19 @@ import static com.pajato.android.gamechat.exp.Team.SECONDARY;
     @SuppressWarnings("unused")
     private static final String TAG = CheckersBoard.class.getSimpleName();
 
+    /** The Zobrist keys for each team and piece type at each position, and for the turn. */
+    private static final long[][] PIECE_KEYS = new long[4][64];
+    private static final long TURN_KEY;
+
+    static {
+        // Use a fixed seed so that keys are reproducible.
+        Random random = new Random(0xC4EC4E5L);
+        for (long[] keys : PIECE_KEYS)
+            for (int position = 0; position < 64; position++)
+                keys[position] = random.nextLong();
+        TURN_KEY = random.nextLong();
+    }
+
     // Private instance variables.
 
     private Map<String, CheckersPiece> mPieceMap = new HashMap<>();
@@ -69,6 +85,12 @@ import static com.pajato.android.gamechat.exp.Team.SECONDARY;
     /** The currently selected piece's position. */
     private int mSelectedPosition = -1;
 
+    /** The Zobrist hash of the pieces on the board. */
+    private long mHash;
+
+    /** The keys of the cells changed since they were last persisted. */
+    private Set<String> mChangedCells = new HashSet<>();
+
     // Public constructors.
 
     /** Provide a no-arg constructor for Firebase. */
@@ -78,12 +100,19 @@ import static com.pajato.android.gamechat.exp.Team.SECONDARY;
 
     /** Add a piece of the given type and team to board at the given position. */
     public void add(final int index, final PieceType type, final Team team) {
-        mPieceMap.put(makeCellId(index), new CheckersPiece(type, team));
+        add(index, new CheckersPiece(type, team));
     }
 
     /** Add a particular piece to the board at the given position. */
     public void add(final int index, final CheckersPiece p) {
-        mPieceMap.put(makeCellId(index), p);
+        CheckersPiece previous = mPieceMap.put(makeCellId(index), p);
+        mChangedCells.add(makeCellId(index));
+        mHash ^= getPieceKey(previous, index) ^ getPieceKey(p, index);
+    }
+
+    /** Implement the interface to forget the changed cells. */
+    @Override public void clearChangedCells() {
+        mChangedCells.clear();
     }
 
     /** Implement the interface to clear the selected piece. */
@@ -93,7 +122,20 @@ import static com.pajato.android.gamechat.exp.Team.SECONDARY;
 
     /** Implement the interface by returning and removing the piece at the given position. */
     @Override public CheckersPiece delete(final int index) {
-        return mPieceMap.remove(makeCellId(index));
+        CheckersPiece result = mPieceMap.remove(makeCellId(index));
+        mChangedCells.add(makeCellId(index));
+        mHash ^= getPieceKey(result, index);
+        return result;
+    }
+
+    /** Return the keys of the cells changed since they were last persisted. */
+    @Exclude @Override public Set<String> getChangedCells() {
+        return mChangedCells;
+    }
+
+    /** Return the Zobrist key of the board with the primary team (turn) or secondary to move. */
+    @Exclude public long getKey(final boolean turn) {
+        return turn ? mHash : mHash ^ TURN_KEY;
     }
 
     /** Return a set of position keys representing active pieces on the board. */
@@ -176,6 +218,9 @@ import static com.pajato.android.gamechat.exp.Team.SECONDARY;
     @SuppressWarnings("unused")
     public void setPieces(final Map<String, CheckersPiece> pieceMap) {
         mPieceMap = pieceMap;
+        mHash = 0L;
+        for (Map.Entry<String, CheckersPiece> entry : pieceMap.entrySet())
+            mHash ^= getPieceKey(entry.getValue(), getPosition(entry.getKey()));
     }
 
     /** Provide a setter for the possible moves to satisfy Firebase. */
@@ -189,6 +234,18 @@ import static com.pajato.android.gamechat.exp.Team.SECONDARY;
         mSelectedPosition = position;
     }
 
+    // Private class methods.
+
+    /** Return the Zobrist key for the given (possibly null) piece at the given position. */
+    private static long getPieceKey(final CheckersPiece piece, final int position) {
+        if (piece == null || piece.getTeam() == null || piece.getPieceType() == null ||
+                position < 0 || position > 63)
+            return 0L;
+        int team = piece.getTeam() == PRIMARY ? 0 : 2;
+        int type = piece.getPieceType() == PieceType.KING ? 1 : 0;
+        return PIECE_KEYS[team + type][position];
+    }
+
     // Private instance methods.
 
     /** Generate a Firebase safe position key (not a pure integer). */
@@ -200,6 +257,6 @@ import static com.pajato.android.gamechat.exp.Team.SECONDARY;
     private void setPiecesForTeam(final Team team, final int... positions) {
         CheckersPiece piece = new CheckersPiece(PieceType.PIECE, team);
         for (int position : positions)
-            mPieceMap.put(CELL_ID + String.valueOf(position), piece);
+            add(position, piece);
     }
 }
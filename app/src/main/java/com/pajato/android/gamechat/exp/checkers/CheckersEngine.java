@@ -17,10 +17,15 @@
 
 package com.pajato.android.gamechat.exp.checkers;
 
+import com.pajato.android.gamechat.common.PlayModeManager;
 import com.pajato.android.gamechat.exp.Checkerboard;
+import com.pajato.android.gamechat.exp.ComputerPlayer;
 import com.pajato.android.gamechat.exp.Engine;
 import com.pajato.android.gamechat.exp.ExpHelper;
 import com.pajato.android.gamechat.exp.Experience;
+import com.pajato.android.gamechat.exp.MoveSearch;
+import com.pajato.android.gamechat.exp.PositionCache;
+import com.pajato.android.gamechat.exp.SearchOrigin;
 import com.pajato.android.gamechat.exp.Team;
 import com.pajato.android.gamechat.exp.TileClickHandler;
 import com.pajato.android.gamechat.exp.model.Checkers;
@@ -33,10 +38,13 @@ import static com.pajato.android.gamechat.exp.State.secondary_wins;
 import static com.pajato.android.gamechat.exp.Team.PRIMARY;
 import static com.pajato.android.gamechat.exp.Team.SECONDARY;
 import static com.pajato.android.gamechat.exp.checkers.CheckersPiece.PieceType.KING;
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboard.PRIMARY_SIDE;
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboard.SECONDARY_SIDE;
 import static com.pajato.android.gamechat.exp.checkers.CheckersPiece.PieceType.PIECE;
 
 /**
- * Provides a class to support playing chess alone, against another User and against the computer.
+ * Provides a class to support playing checkers alone, against another User and against the
+ * computer.
  *
  * Terminology:
  *
@@ -49,6 +57,11 @@ import static com.pajato.android.gamechat.exp.checkers.CheckersPiece.PieceType.P
 public enum CheckersEngine implements Engine {
     instance;
 
+    // Private class constants.
+
+    /** The number of positions held by the position cache. */
+    private static final int CACHE_SIZE = 512;
+
     // Private instance variables.
 
     /** The underlying UI board model class. */
@@ -57,55 +70,78 @@ public enum CheckersEngine implements Engine {
     /** The experience model class. */
     private Checkers mModel;
 
+    /** The moves (encoded as from | first hop << 6) available to each side in recent positions. */
+    private final PositionCache mCache = new PositionCache(CACHE_SIZE);
+
+    /** The moves of the most recently looked up position. */
+    private final int[] mMoves = new int[PositionCache.MOVE_CAPACITY];
+
+    /** The bitboard used to generate moves on the UI thread, and its move and path lists. */
+    private final CheckersBitboard mBitboard = new CheckersBitboard();
+    private final long[] mBitboardMoves = new long[CheckersBitboard.MAX_MOVES];
+    private final int[] mPath = new int[CheckersBitboard.MAX_PATH];
+
+    /** The computer opponent's search, which keeps its transposition table across moves. */
+    private final CheckersSearch mSearch = new CheckersSearch();
+
+    /** The position of a piece part way through a multi-jump, or -1 if none. */
+    private int mJumpingPosition = -1;
+
+    /** The board key at the time the multi-jump reached the jumping position. */
+    private long mJumpingKey;
+
     // Public instance methods.
 
     /** Handle a move of the selected piece to the given position. */
     @Override public void handleMove(final int position) {
         // Check to see if our piece becomes a king piece and put its value into the board.
         CheckersPiece selectedPiece = mModel.board.getSelectedPiece();
-        if (position < 8 && selectedPiece.isPiece(PIECE, PRIMARY))
-            mModel.board.add(position, KING, PRIMARY);
-        else if (position > 55 && selectedPiece.isPiece(PIECE, SECONDARY))
-            mModel.board.add(position, KING, SECONDARY);
+        boolean isCrowned = (position < 8 && selectedPiece.isPiece(PIECE, PRIMARY)) ||
+                (position > 55 && selectedPiece.isPiece(PIECE, SECONDARY));
+        if (isCrowned)
+            mModel.board.add(position, KING, selectedPiece.getTeam());
         else
             mModel.board.add(position, selectedPiece);
 
         // Determine if the clicked position is a capture.  If so, remove the piece at the position.
         int selectedPosition = mModel.board.getSelectedPosition();
-        boolean finishedJumping = true;
-        if ((position > 9 + selectedPosition) || (position < selectedPosition - 9)) {
+        boolean isJump = (position > 9 + selectedPosition) || (position < selectedPosition - 9);
+        if (isJump) {
             int pieceCapturedIndex = (position + selectedPosition) / 2;
-            mBoard.getCell(pieceCapturedIndex).setText("");
+            mBoard.clearCell(pieceCapturedIndex);
             if (mModel.board.hasPiece(pieceCapturedIndex))
                 mModel.board.delete(pieceCapturedIndex);
-
-            // If there are no more jumps, change turns. If there is at least one jump left, don't.
-            List<Integer> possibleJumps = getPossibleMoves(position);
-            for (int possiblePosition: possibleJumps) {
-                if (possiblePosition != -1 && ((possiblePosition > 9 + position) ||
-                                               (possiblePosition < position - 9))) {
-                    finishedJumping = false;
-                }
-            }
         }
 
-        // Test to see if jumping is finished.  If not, then start another move, otherwise change
-        // turns, look for a finished state and update the database.
+        // A jump continues while the piece can jump again, unless it was just crowned.  If it
+        // continues, start another move with the same piece, otherwise change turns, look for a
+        // finished state and update the database.
         mModel.board.clearSelectedPiece();
         mModel.board.getPossibleMoves().clear();
         mModel.board.delete(selectedPosition);
-        if (!finishedJumping)
+        mJumpingPosition = isJump && !isCrowned && canJump(position) ? position : -1;
+        if (mJumpingPosition != -1) {
+            mJumpingKey = mModel.board.getKey(mModel.turn);
             startMove(position);
-        else {
+        } else {
             mModel.toggleTurn();
             if (noMovesAvailable())
                 mModel.setStateType(mModel.turn ? secondary_wins : primary_wins);
             checkFinished();
         }
         ExpHelper.updateModel(mModel);
+        startComputerMove();
+    }
+
+    /** Return TRUE as checkers supports a computer opponent. */
+    @Override public boolean hasComputerOpponent() {
+        return true;
     }
 
-    /** Establish the experience model (chess) and board for this handler. */
+    /**
+     * Establish the experience model (checkers) and board for this handler and, as each database
+     * change delivers a new model, (re)start the computer's search when it is the computer's turn.
+     */
     @Override public void init(final Experience model, final Checkerboard board,
                                final TileClickHandler handler) {
         if (!(model instanceof Checkers))
@@ -114,110 +150,217 @@ public enum CheckersEngine implements Engine {
         mBoard = board;
         board.init(ExpHelper.getBaseFragment(model), handler);
         handler.setModel(model);
+        startComputerMove();
+    }
+
+    /** Search for the computer's move in the background when it is the computer's turn. */
+    @Override public void startComputerMove() {
+        if (mModel == null || mModel.state.isDone() || isJumping() ||
+                !PlayModeManager.instance.isComputerTurn(mModel))
+            return;
+        ComputerPlayer.instance.play(new ComputerMove(mModel, getBitboard(mModel.board,
+                getTurnTeam())));
     }
 
     /** Start a move by marking the given position as the selected position and get a move list. */
     @Override public void startMove(final int position) {
         // Ignore clicks on invalid positions.  If the position represents a valid piece then
-        // mark it as the selected piece and get a list of possible move positions that exclude
-        // the possibility of putting the moving player into check.
-        mModel.board.setSelectedPosition(position);
+        // mark it as the selected piece and get a list of possible move positions, honoring
+        // forced captures.  Part way through a multi-jump, only the jumping piece may move.
+        int selected = isJumping() ? mJumpingPosition : position;
+        mModel.board.setSelectedPosition(selected);
         mModel.board.getPossibleMoves().clear();
-        if (mModel.board.hasPiece(position))
-            mModel.board.getPossibleMoves().addAll(getPossibleMoves(position));
+        if (isJumping())
+            mModel.board.getPossibleMoves().addAll(getJumps(selected));
+        else if (mModel.board.hasPiece(selected))
+            mModel.board.getPossibleMoves().addAll(getCachedMoves(selected));
         else
             mModel.board.clearSelectedPiece();
-        ExpHelper.updateModel(mModel);
+        ExpHelper.updateSelection(mModel);
+    }
+
+    // Package private instance methods.
+
+    /**
+     * Return the legal first hops of the piece at the given position, taking captures anywhere on
+     * its side into account.
+     *
+     * @param board the board holding the piece.
+     * @param position the index containing the highlighted piece.
+     */
+    List<Integer> getPossibleMoves(final CheckersBoard board, final int position) {
+        List<Integer> result = new ArrayList<>();
+        CheckersBitboard bitboard = getBitboard(board, board.getTeam(position));
+        int count = bitboard.generateMoves(mBitboardMoves);
+        int square = CheckersBitboard.toSquare(position);
+        for (int index = 0; index < count; index++) {
+            if (CheckersBitboard.getFrom(mBitboardMoves[index]) != square)
+                continue;
+            int hop = getFirstHop(bitboard, mBitboardMoves[index]);
+            if (!result.contains(hop))
+                result.add(hop);
+        }
+        return result;
     }
 
     // Private instance methods.
 
+    /** Return TRUE iff the piece at the given position can jump (again). */
+    private boolean canJump(final int position) {
+        CheckersBitboard bitboard = getBitboard(mModel.board, mModel.board.getTeam(position));
+        return bitboard.generateJumps(mBitboardMoves, CheckersBitboard.toSquare(position)) > 0;
+    }
+
     /** Return TRUE iff the game is over because there is a winner. */
     private boolean checkFinished() {
         return hasNoPieces(PRIMARY) || hasNoPieces(SECONDARY);
     }
 
-    /** Return TRUE iff the given team has no pieces on the board. */
-    private boolean hasNoPieces(final Team team) {
-        for (CheckersPiece piece : mModel.board.getPieces().values())
-            if (piece.getTeam() == team)
-                return false;
-        return true;
+    /**
+     * Return the primitive board for the pieces on the given board, with the given team to move.
+     * The board returned is shared, so it must only be used on the UI thread.
+     */
+    private CheckersBitboard getBitboard(final CheckersBoard board, final Team team) {
+        mBitboard.clear();
+        for (String cellKey : board.getKeySet()) {
+            int position = board.getPosition(cellKey);
+            CheckersPiece piece = board.getPiece(position);
+            if (piece == null || !CheckersBitboard.isPlayable(position))
+                continue;
+            int side = piece.getTeam() == PRIMARY ? PRIMARY_SIDE : SECONDARY_SIDE;
+            mBitboard.put(CheckersBitboard.toSquare(position), side,
+                    piece.getPieceType() == KING);
+        }
+        mBitboard.sideToMove = team == PRIMARY ? PRIMARY_SIDE : SECONDARY_SIDE;
+        return mBitboard;
+    }
+
+    /** Return the possible moves of the piece at the given position, using the position cache. */
+    private List<Integer> getCachedMoves(final int position) {
+        List<Integer> result = new ArrayList<>();
+        int count = getMoves(mModel.board.getTeam(position));
+        for (int index = 0; index < count; index++)
+            if ((mMoves[index] & 63) == position)
+                result.add(mMoves[index] >> 6);
+        return result;
     }
 
-    /** Finds the "jumpable" pieces that the piece at the given position could capture. */
-    private void findJumpables(final List<Integer> possibleMoves, final int position,
-                               final int basePosition, final int offset) {
-        // Ensure that the base position contains a piece and check to see if the piece being
-        // jumped is an ally and is on the board.
-        int jumpPosition = basePosition + offset;
-        if (mModel.board.hasPiece(basePosition)) {
-            boolean breaksBorders = jumpPosition < 0 || jumpPosition > 63
-                    || (position % 8 == 1 && jumpPosition % 8 == 7)
-                    || (position % 8 == 6 && jumpPosition % 8 == 0);
-            CheckersPiece highlightedPiece = mModel.board.getPiece(position);
-            int jumpedIndex = (position + jumpPosition) / 2;
-            CheckersPiece jumpedPiece = mModel.board.getPiece(jumpedIndex);
-            boolean jumpsAlly = highlightedPiece.getTeam() == jumpedPiece.getTeam();
-            if (!mModel.board.hasPiece(jumpPosition) && !breaksBorders && !jumpsAlly)
-                possibleMoves.add(jumpPosition);
-        } else if (basePosition > -1 && basePosition < 64)
-            possibleMoves.add(basePosition);
+    /** Return the board position of the first square the given move lands on. */
+    private int getFirstHop(final CheckersBitboard bitboard, final long move) {
+        bitboard.getPath(move, mPath);
+        return CheckersBitboard.toPosition(mPath[1]);
     }
 
-    /**
-     * Locates the possible moves of the piece that is about to be highlighted.
-     *
-     * @param position the index containing the highlighted piece.
-     */
-    private List<Integer> getPossibleMoves(final int position) {
+    /** Return the positions the piece at the given position can reach with its next jump. */
+    private List<Integer> getJumps(final int position) {
         List<Integer> result = new ArrayList<>();
-        CheckersPiece highlightedPiece = mModel.board.getPiece(position);
-        //String highlightedPieceType = board.get(String.valueOf(position));
-
-        // Get the possible positions, post-move, for the piece.
-        int upLeft = position - 9;
-        int upRight = position - 7;
-        int downLeft = position + 7;
-        int downRight = position + 9;
-
-        // Handle vertical edges of the board and non-king pieces.
-        if (position / 8 == 0 || highlightedPiece.isPiece(PIECE, SECONDARY)) {
-            upLeft = -1;
-            upRight = -1;
-        } else if (position / 8 == 7 || highlightedPiece.isPiece(PIECE, PRIMARY)) {
-            downLeft = -1;
-            downRight = -1;
+        CheckersBitboard bitboard = getBitboard(mModel.board, mModel.board.getTeam(position));
+        int count = bitboard.generateJumps(mBitboardMoves, CheckersBitboard.toSquare(position));
+        for (int index = 0; index < count; index++) {
+            int hop = getFirstHop(bitboard, mBitboardMoves[index]);
+            if (!result.contains(hop))
+                result.add(hop);
         }
+        return result;
+    }
 
-        // Handle horizontal edges of the board.
-        if (position % 8 == 0) {
-            upLeft = -1;
-            downLeft = -1;
-        } else if( position % 8 == 7) {
-            upRight = -1;
-            downRight = -1;
+    /**
+     * Return the number of moves, stored in mMoves, available to the given team on the board.
+     * The position cache is consulted first; a position not found there is generated and cached.
+     * Each move is encoded as its from position and the position of its first hop.
+     */
+    private int getMoves(final Team team) {
+        CheckersBoard board = mModel.board;
+        long key = board.getKey(team == PRIMARY);
+        int result = mCache.get(key, mMoves);
+        if (result != PositionCache.NOT_FOUND)
+            return result;
+        result = 0;
+        CheckersBitboard bitboard = getBitboard(board, team);
+        int count = bitboard.generateMoves(mBitboardMoves);
+        for (int index = 0; index < count && result < mMoves.length; index++) {
+            long move = mBitboardMoves[index];
+            int from = CheckersBitboard.toPosition(CheckersBitboard.getFrom(move));
+            int encoded = from | getFirstHop(bitboard, move) << 6;
+            if (!contains(mMoves, result, encoded))
+                mMoves[result++] = encoded;
         }
-
-        // Handle tiles that already contain other pieces. You can jump over enemy pieces,
-        // but not allied pieces.
-        findJumpables(result, position, upLeft, -9);
-        findJumpables(result, position, upRight, -7);
-        findJumpables(result, position, downLeft, 7);
-        findJumpables(result, position, downRight, 9);
+        mCache.put(key, mMoves, result, 0);
         return result;
     }
 
+    /** Return the team whose turn it is. */
+    private Team getTurnTeam() {
+        return mModel.turn ? PRIMARY : SECONDARY;
+    }
+
+    /** Return TRUE iff the given team has no pieces on the board. */
+    private boolean hasNoPieces(final Team team) {
+        for (CheckersPiece piece : mModel.board.getPieces().values())
+            if (piece.getTeam() == team)
+                return false;
+        return true;
+    }
+
+    /** Return TRUE iff the current board is part way through a multi-jump. */
+    private boolean isJumping() {
+        return mJumpingPosition != -1 && mModel.board.getKey(mModel.turn) == mJumpingKey;
+    }
+
     /** Test for the case where a play has been made and the other team has no moves. */
     private boolean noMovesAvailable() {
         // Establish the team being scrutinized and check for at least one move from all the players
         // on that team.
-        Team team = mModel.turn ? PRIMARY : SECONDARY;
-        for (String key : mModel.board.getKeySet()) {
-            int position = mModel.board.getPosition(key);
-            if (mModel.board.getTeam(position) == team && getPossibleMoves(position).size() != 0)
-                return false;
+        return getMoves(getTurnTeam()) == 0;
+    }
+
+    // Private class methods.
+
+    /** Return TRUE iff the given value is among the first count values of the given array. */
+    private static boolean contains(final int[] values, final int count, final int value) {
+        for (int index = 0; index < count; index++)
+            if (values[index] == value)
+                return true;
+        return false;
+    }
+
+    // Private inner classes.
+
+    /** Provide a computer move search on a snapshot of the position to move in. */
+    private class ComputerMove implements MoveSearch {
+
+        /** The experience and position the search was started for. */
+        private final SearchOrigin mOrigin;
+
+        /** The snapshot of the position, owned by the search thread. */
+        private final CheckersBitboard mPosition = new CheckersBitboard();
+
+        /** Build a search of the given model's position. */
+        ComputerMove(final Checkers model, final CheckersBitboard board) {
+            mOrigin = new SearchOrigin(model.key, board.getKey());
+            mPosition.copyFrom(board);
+        }
+
+        /** Play the given move, hop by hop, if the experience and position are still current. */
+        @Override public void play(final long move) {
+            if (move == CheckersSearch.NO_MOVE || isJumping())
+                return;
+            CheckersBitboard bitboard = getBitboard(mModel.board, getTurnTeam());
+            if (!mOrigin.isCurrent(mModel.key, bitboard.getKey()))
+                return;
+            int[] path = new int[CheckersBitboard.MAX_PATH];
+            int length = bitboard.getPath(move, path);
+            if (length < 0)
+                return;
+            mModel.board.clearSelectedPiece();
+            for (int index = 0; index < length; index++)
+                ExpHelper.processTileClick(CheckersBitboard.toPosition(path[index]), mModel,
+                        CheckersEngine.this);
+        }
+
+        /** Return the best move found in the position snapshot by the deadline. */
+        @Override public long search(final long deadline) {
+            return mSearch.findBestMove(mPosition, deadline);
         }
-        return true;
     }
 }
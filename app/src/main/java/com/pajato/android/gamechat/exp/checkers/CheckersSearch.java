@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp.checkers;
+
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboard.MAX_MOVES;
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboard.PRIMARY_SIDE;
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboard.SECONDARY_SIDE;
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboard.SQUARES;
+
+/**
+ * Provide the computer opponent's checkers move search: a negamax alpha-beta search with
+ * iterative deepening, a transposition table and move ordering (hash move, captures by the number
+ * of pieces taken, killer moves, then the history heuristic).  As captures are mandatory, a node
+ * at the search horizon with a capture pending is searched further until the position is quiet.
+ *
+ * The search is time-boxed: it stops at the deadline given to findBestMove() and returns the best
+ * move of the deepest completed iteration.  An instance is not thread safe; the engine uses one
+ * instance from a single background thread so that the transposition table persists across moves.
+ */
+class CheckersSearch {
+
+    // Package private class constants.
+
+    /** The score of a win at the root; wins further away score lower. */
+    static final int WIN = 30000;
+
+    /** The move returned when the side to move has no legal move. */
+    static final long NO_MOVE = -1L;
+
+    // Private class constants.
+
+    /** The bound larger than any score. */
+    private static final int INFINITY = 32000;
+
+    /** The deepest ply searched, including the capture extensions. */
+    private static final int MAX_PLY = 64;
+
+    /** The number of transposition table entries, a power of two. */
+    private static final int TABLE_SIZE = 1 << 16;
+
+    /** The transposition table score bound types. */
+    private static final byte EXACT = 0;
+    private static final byte LOWER = 1;
+    private static final byte UPPER = 2;
+
+    /** The number of nodes searched between deadline checks, less one. */
+    private static final int CHECK_MASK = 1023;
+
+    /** The move ordering scores for the hash move, captures and killer moves. */
+    private static final int HASH_MOVE_ORDER = 1 << 30;
+    private static final int CAPTURE_ORDER = 1 << 28;
+    private static final int KILLER_ORDER = 1 << 27;
+
+    /** The material values of a man and a king. */
+    private static final int MAN_VALUE = 100;
+    private static final int KING_VALUE = 160;
+
+    /** The bonus for each row a man has advanced. */
+    private static final int ADVANCE_BONUS = 3;
+
+    /** The bonus for a man guarding its own back row and for a piece on a center square. */
+    private static final int GUARD_BONUS = 8;
+    private static final int CENTER_BONUS = 4;
+
+    /** The back rows of each side and the center squares. */
+    private static final int[] BACK_ROW = {0xF0000000, 0x0000000F};
+    private static final int CENTER = 0x00666600;
+
+    // Private instance variables.
+
+    /** The transposition table: position keys, best moves, scores, depths and bound types. */
+    private final long[] mKeys = new long[TABLE_SIZE];
+    private final long[] mMoves = new long[TABLE_SIZE];
+    private final int[] mScores = new int[TABLE_SIZE];
+    private final byte[] mDepths = new byte[TABLE_SIZE];
+    private final byte[] mBounds = new byte[TABLE_SIZE];
+
+    /** The move and move ordering score lists, one pair per ply. */
+    private final long[][] mMoveLists = new long[MAX_PLY][MAX_MOVES];
+    private final int[][] mOrderLists = new int[MAX_PLY][MAX_MOVES];
+
+    /** The two most recent quiet moves causing a cutoff at each ply. */
+    private final long[][] mKillers = new long[MAX_PLY][2];
+
+    /** The history heuristic scores for quiet moves, indexed by from and to squares. */
+    private final int[][] mHistory = new int[SQUARES][SQUARES];
+
+    /** The board being searched. */
+    private CheckersBitboard mBoard;
+
+    /** The time (as given by System.currentTimeMillis()) at which the search must stop. */
+    private long mDeadline;
+
+    /** The number of nodes searched by the current call to findBestMove(). */
+    private long mNodes;
+
+    /** TRUE iff the search ran out of time. */
+    private boolean mStopped;
+
+    /** The score of the best move found by the most recent root search. */
+    private int mScore;
+
+    // Package private instance methods.
+
+    /**
+     * Return the best move found for the side to move on the given board by the given deadline,
+     * or NO_MOVE if the side to move has no legal move.  The board is restored before returning.
+     */
+    long findBestMove(final CheckersBitboard board, final long deadline) {
+        mBoard = board;
+        mDeadline = deadline;
+        mNodes = 0;
+        mStopped = false;
+        for (long[] killers : mKillers)
+            killers[0] = killers[1] = NO_MOVE;
+        for (int[] history : mHistory)
+            for (int to = 0; to < SQUARES; to++)
+                history[to] /= 8;
+
+        // Deepen the search one ply at a time, keeping the best move of the last completed
+        // iteration (or of an interrupted iteration, whose first move is the previous best).
+        int count = mBoard.generateMoves(mMoveLists[0]);
+        if (count == 0)
+            return NO_MOVE;
+        long result = mMoveLists[0][0];
+        if (count == 1)
+            return result;
+        for (int depth = 1; depth < MAX_PLY && !mStopped; depth++) {
+            long best = searchRoot(depth, result);
+            if (best != NO_MOVE)
+                result = best;
+            if (mStopped || Math.abs(mScore) >= WIN - MAX_PLY)
+                break;
+        }
+        return result;
+    }
+
+    /** Return the number of nodes searched by the most recent call to findBestMove(). */
+    long getNodes() {
+        return mNodes;
+    }
+
+    /** Return the static evaluation of the board from the point of view of the side to move. */
+    int evaluate(final CheckersBitboard board) {
+        int score = getScore(board, PRIMARY_SIDE) - getScore(board, SECONDARY_SIDE);
+        return board.sideToMove == PRIMARY_SIDE ? score : -score;
+    }
+
+    // Private instance methods.
+
+    /** Return the best root move for a search to the given depth, NO_MOVE if out of time. */
+    private long searchRoot(final int depth, final long previousBest) {
+        int count = mBoard.generateMoves(mMoveLists[0]);
+        orderMoves(0, count, previousBest);
+        int alpha = -INFINITY;
+        long result = NO_MOVE;
+        for (int index = 0; index < count; index++) {
+            long move = nextMove(0, index, count);
+            mBoard.makeMove(move);
+            int score = -search(depth - 1, 1, -INFINITY, -alpha);
+            mBoard.unmakeMove();
+            if (mStopped)
+                break;
+            if (score > alpha) {
+                alpha = score;
+                result = move;
+            }
+        }
+        if (result != NO_MOVE)
+            store(mBoard.getKey(), result, alpha, depth, EXACT, 0);
+        mScore = alpha;
+        return result;
+    }
+
+    /** Return the negamax score of the board searched to the given depth within a window. */
+    private int search(final int depth, final int ply, final int alpha, final int beta) {
+        if (isOutOfTime())
+            return 0;
+
+        // A side with no legal move has lost.  At the horizon, stop unless a capture is pending.
+        long[] moves = mMoveLists[ply];
+        int count = mBoard.generateMoves(moves);
+        if (count == 0)
+            return -WIN + ply;
+        boolean isCapture = CheckersBitboard.getCaptured(moves[0]) != 0;
+        if ((depth <= 0 && !isCapture) || ply >= MAX_PLY - 1)
+            return evaluate(mBoard);
+
+        // Use the transposition table entry to cut the search off or to order the moves.
+        long key = mBoard.getKey();
+        int slot = getIndex(key);
+        long hashMove = NO_MOVE;
+        if (mKeys[slot] == key) {
+            hashMove = mMoves[slot];
+            int score = fromTable(mScores[slot], ply);
+            byte bound = mBounds[slot];
+            if (mDepths[slot] >= depth && (bound == EXACT || (bound == LOWER && score >= beta) ||
+                    (bound == UPPER && score <= alpha)))
+                return score;
+        }
+
+        // Search each legal move, not reducing the depth past the horizon while capturing.
+        orderMoves(ply, count, hashMove);
+        int nextDepth = depth <= 0 ? 0 : depth - 1;
+        int best = -INFINITY;
+        long bestMove = NO_MOVE;
+        int low = alpha;
+        for (int index = 0; index < count; index++) {
+            long move = nextMove(ply, index, count);
+            mBoard.makeMove(move);
+            int score = -search(nextDepth, ply + 1, -beta, -low);
+            mBoard.unmakeMove();
+            if (mStopped)
+                return 0;
+            if (score <= best)
+                continue;
+            best = score;
+            bestMove = move;
+            if (score > low)
+                low = score;
+            if (score >= beta) {
+                recordCutoff(move, ply, depth);
+                break;
+            }
+        }
+        byte bound = best >= beta ? LOWER : best > alpha ? EXACT : UPPER;
+        store(key, bestMove, best, Math.max(depth, 0), bound, ply);
+        return best;
+    }
+
+    /** Return the material and positional score of the given side's pieces. */
+    private int getScore(final CheckersBitboard board, final int side) {
+        int men = board.men[side];
+        int result = Integer.bitCount(men) * MAN_VALUE;
+        result += Integer.bitCount(board.kings[side]) * KING_VALUE;
+        result += Integer.bitCount(men & BACK_ROW[side]) * GUARD_BONUS;
+        result += Integer.bitCount(board.getPieces(side) & CENTER) * CENTER_BONUS;
+        for (int bits = men; bits != 0; bits &= bits - 1) {
+            int row = Integer.numberOfTrailingZeros(bits) >> 2;
+            result += (side == PRIMARY_SIDE ? 7 - row : row) * ADVANCE_BONUS;
+        }
+        return result;
+    }
+
+    /** Return the transposition table index for the given key. */
+    private int getIndex(final long key) {
+        return (int) key & (TABLE_SIZE - 1);
+    }
+
+    /** Return a table score (relative to the node) as a score relative to the root. */
+    private int fromTable(final int score, final int ply) {
+        if (score >= WIN - MAX_PLY)
+            return score - ply;
+        return score <= -WIN + MAX_PLY ? score + ply : score;
+    }
+
+    /** Return TRUE iff the search must stop, checking the clock every few nodes. */
+    private boolean isOutOfTime() {
+        if ((++mNodes & CHECK_MASK) == 0 &&
+                (System.currentTimeMillis() >= mDeadline || Thread.currentThread().isInterrupted()))
+            mStopped = true;
+        return mStopped;
+    }
+
+    /** Return the move at the given index after swapping the best remaining move into place. */
+    private long nextMove(final int ply, final int index, final int count) {
+        long[] moves = mMoveLists[ply];
+        int[] order = mOrderLists[ply];
+        int best = index;
+        for (int next = index + 1; next < count; next++)
+            if (order[next] > order[best])
+                best = next;
+        long move = moves[best];
+        moves[best] = moves[index];
+        moves[index] = move;
+        int score = order[best];
+        order[best] = order[index];
+        order[index] = score;
+        return move;
+    }
+
+    /** Score the moves at the given ply for ordering: hash move, captures, killers, history. */
+    private void orderMoves(final int ply, final int count, final long hashMove) {
+        long[] moves = mMoveLists[ply];
+        int[] order = mOrderLists[ply];
+        for (int index = 0; index < count; index++) {
+            long move = moves[index];
+            int captured = CheckersBitboard.getCaptured(move);
+            if (move == hashMove)
+                order[index] = HASH_MOVE_ORDER;
+            else if (captured != 0)
+                order[index] = CAPTURE_ORDER + Integer.bitCount(captured);
+            else if (move == mKillers[ply][0] || move == mKillers[ply][1])
+                order[index] = KILLER_ORDER;
+            else
+                order[index] = mHistory[CheckersBitboard.getFrom(move)][
+                        CheckersBitboard.getTo(move)];
+        }
+    }
+
+    /** Remember a quiet move that caused a beta cutoff as a killer and in the history table. */
+    private void recordCutoff(final long move, final int ply, final int depth) {
+        if (CheckersBitboard.getCaptured(move) != 0)
+            return;
+        if (mKillers[ply][0] != move) {
+            mKillers[ply][1] = mKillers[ply][0];
+            mKillers[ply][0] = move;
+        }
+        int[] history = mHistory[CheckersBitboard.getFrom(move)];
+        int to = CheckersBitboard.getTo(move);
+        history[to] = Math.min(history[to] + depth * depth, KILLER_ORDER - 1);
+    }
+
+    /** Store a search result, replacing any shallower entry in the same slot. */
+    private void store(final long key, final long move, final int score, final int depth,
+                       final byte bound, final int ply) {
+        int index = getIndex(key);
+        if (mKeys[index] == key && mDepths[index] > depth)
+            return;
+        int tableScore = score;
+        if (score >= WIN - MAX_PLY)
+            tableScore = score + ply;
+        else if (score <= -WIN + MAX_PLY)
+            tableScore = score - ply;
+        mKeys[index] = key;
+        mMoves[index] = move;
+        mScores[index] = tableScore;
+        mDepths[index] = (byte) depth;
+        mBounds[index] = bound;
+    }
+}
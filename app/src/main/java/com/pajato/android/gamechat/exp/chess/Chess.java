@@ -35,6 +35,9 @@ import static com.pajato.android.gamechat.exp.State.active;
     /** The creation timestamp. */
     public long createTime;
 
+    /** The position a pawn skipped over on the previous move (-1 if none), for en passant. */
+    public int enPassantPosition = -1;
+
     /** The group push key. */
     public String groupKey;
 
@@ -273,6 +276,7 @@ import static com.pajato.android.gamechat.exp.State.active;
         Map<String, Object> result = new HashMap<>();
         result.put("board", board);
         result.put("createTime", createTime);
+        result.put("enPassantPosition", enPassantPosition);
         result.put("key", key);
         result.put("level", level);
         result.put("groupKey", groupKey);
@@ -309,5 +313,12 @@ import static com.pajato.android.gamechat.exp.State.active;
         board.init();
         state = active;
         turn = true;
+        enPassantPosition = -1;
+        primaryQueenSideRookHasMoved = false;
+        primaryKingSideRookHasMoved = false;
+        primaryKingHasMoved = false;
+        secondaryQueenSideRookHasMoved = false;
+        secondaryKingSideRookHasMoved = false;
+        secondaryKingHasMoved = false;
     }
 }
@@ -0,0 +1,608 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp.chess;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Provide a primitive, allocation free chess board used by the chess engine to generate moves and
+ * to detect check.  The board is twelve piece sets (one long per side and piece kind) plus
+ * occupancy masks, with a mailbox array mirroring the sets for constant time piece lookups.
+ *
+ * Bit n of every set corresponds to board position n, using the same 0->63 cell indexing as
+ * ChessBoard: position 0 is the top left corner (the secondary team's back rank) and the primary
+ * team moves "up", toward lower positions.
+ *
+ * Moves are encoded as ints (see getMove()) and are applied and reverted with makeMove() and
+ * unmakeMove(), which save the captured piece, castling rights and en passant position on an undo
+ * stack so that a search never has to copy or rebuild the board.  A Zobrist hash of the pieces is
+ * maintained as pieces are put and removed; getKey() folds in the rest of the position state.
+ *
+ * This class has no Android or Firebase dependencies so that it can be exercised on the JVM.
+ */
+public class ChessBitboard {
+
+    // Package private class constants.
+
+    /** The side indexes. */
+    static final int PRIMARY_SIDE = 0;
+    static final int SECONDARY_SIDE = 1;
+
+    /** The piece kind indexes. A piece index is computed as side * KIND_COUNT + kind. */
+    static final int PAWN = 0;
+    static final int KNIGHT = 1;
+    static final int BISHOP = 2;
+    static final int ROOK = 3;
+    static final int QUEEN = 4;
+    static final int KING = 5;
+    static final int KIND_COUNT = 6;
+
+    /** The mailbox value for an empty cell. */
+    static final int EMPTY = -1;
+
+    /** The castling right bits. */
+    static final int PRIMARY_KING_SIDE = 1;
+    static final int PRIMARY_QUEEN_SIDE = 2;
+    static final int SECONDARY_KING_SIDE = 4;
+    static final int SECONDARY_QUEEN_SIDE = 8;
+    static final int ALL_CASTLING_RIGHTS = 15;
+
+    /** The largest number of legal moves possible in any chess position. */
+    static final int MAX_MOVES = 256;
+
+    // Private class constants.
+
+    /** The ray direction indexes; the first four run toward higher positions. */
+    private static final int EAST = 0;
+    private static final int SOUTH_WEST = 1;
+    private static final int SOUTH = 2;
+    private static final int SOUTH_EAST = 3;
+    private static final int WEST = 4;
+    private static final int NORTH_EAST = 5;
+    private static final int NORTH = 6;
+    private static final int NORTH_WEST = 7;
+
+    /** The row and column deltas for each ray direction. */
+    private static final int[] RAY_ROW_DELTA = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] RAY_COL_DELTA = {1, -1, 0, 1, -1, 1, 0, -1};
+
+    /** The precomputed attack tables. */
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+    private static final long[][] RAYS = new long[8][64];
+
+    /** The lines (rank, file and diagonals) through each position. */
+    private static final long[] LINES = new long[64];
+
+    /** The castling rights that survive a move from or to each position. */
+    private static final int[] CASTLING_MASK = new int[64];
+
+    /** The initial capacity of the undo stack. */
+    private static final int UNDO_CAPACITY = 64;
+
+    /** The Zobrist keys for each piece index and position, side to move, rights and en passant. */
+    private static final long[][] PIECE_KEYS = new long[2 * KIND_COUNT][64];
+    private static final long SIDE_KEY;
+    private static final long[] CASTLING_KEYS = new long[ALL_CASTLING_RIGHTS + 1];
+    private static final long[] EN_PASSANT_KEYS = new long[64];
+
+    static {
+        int[][] knightDeltas = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1},
+                {2, 1}};
+        for (int square = 0; square < 64; square++) {
+            int row = square >> 3;
+            int col = square & 7;
+            for (int[] delta : knightDeltas)
+                KNIGHT_ATTACKS[square] |= getBit(row + delta[0], col + delta[1]);
+            for (int rowDelta = -1; rowDelta <= 1; rowDelta++)
+                for (int colDelta = -1; colDelta <= 1; colDelta++)
+                    if (rowDelta != 0 || colDelta != 0)
+                        KING_ATTACKS[square] |= getBit(row + rowDelta, col + colDelta);
+            PAWN_ATTACKS[PRIMARY_SIDE][square] = getBit(row - 1, col - 1) | getBit(row - 1, col + 1);
+            PAWN_ATTACKS[SECONDARY_SIDE][square] = getBit(row + 1, col - 1) |
+                    getBit(row + 1, col + 1);
+            for (int dir = 0; dir < 8; dir++)
+                for (int r = row + RAY_ROW_DELTA[dir], c = col + RAY_COL_DELTA[dir];
+                     r >= 0 && r < 8 && c >= 0 && c < 8;
+                     r += RAY_ROW_DELTA[dir], c += RAY_COL_DELTA[dir])
+                    RAYS[dir][square] |= 1L << (r * 8 + c);
+            for (int dir = 0; dir < 8; dir++)
+                LINES[square] |= RAYS[dir][square];
+            CASTLING_MASK[square] = ALL_CASTLING_RIGHTS;
+        }
+        CASTLING_MASK[60] &= ~(PRIMARY_KING_SIDE | PRIMARY_QUEEN_SIDE);
+        CASTLING_MASK[63] &= ~PRIMARY_KING_SIDE;
+        CASTLING_MASK[56] &= ~PRIMARY_QUEEN_SIDE;
+        CASTLING_MASK[4] &= ~(SECONDARY_KING_SIDE | SECONDARY_QUEEN_SIDE);
+        CASTLING_MASK[7] &= ~SECONDARY_KING_SIDE;
+        CASTLING_MASK[0] &= ~SECONDARY_QUEEN_SIDE;
+
+        // Use a fixed seed so that keys (and hence search results) are reproducible.
+        Random random = new Random(0x5EED5EEDL);
+        for (long[] keys : PIECE_KEYS)
+            for (int square = 0; square < 64; square++)
+                keys[square] = random.nextLong();
+        SIDE_KEY = random.nextLong();
+        for (int rights = 1; rights <= ALL_CASTLING_RIGHTS; rights++)
+            CASTLING_KEYS[rights] = random.nextLong();
+        for (int square = 0; square < 64; square++)
+            EN_PASSANT_KEYS[square] = random.nextLong();
+    }
+
+    // Package private instance variables.
+
+    /** The piece sets, indexed by side * KIND_COUNT + kind. */
+    final long[] pieces = new long[2 * KIND_COUNT];
+
+    /** The occupancy masks for each side. */
+    final long[] sides = new long[2];
+
+    /** The piece index (or EMPTY) at each position. */
+    final int[] mailbox = new int[64];
+
+    /** The side whose turn it is to move. */
+    int sideToMove = PRIMARY_SIDE;
+
+    /** The castling rights, some combination of the castling right bits. */
+    int castlingRights;
+
+    /** The position a pawn skipped over on the previous move, or -1 if there is none. */
+    int enPassantPosition = -1;
+
+    /** The Zobrist hash of the pieces on the board. */
+    long pieceHash;
+
+    // Private instance variables.
+
+    /** The undo stack: the move, captured piece, castling rights and en passant position. */
+    private int[] mUndoMoves = new int[UNDO_CAPACITY];
+    private int[] mUndoCaptures = new int[UNDO_CAPACITY];
+    private int[] mUndoRights = new int[UNDO_CAPACITY];
+    private int[] mUndoEnPassant = new int[UNDO_CAPACITY];
+
+    /** The number of moves on the undo stack. */
+    private int mUndoSize;
+
+    // Package private constructors.
+
+    /** Build an empty board. */
+    ChessBitboard() {
+        clear();
+    }
+
+    // Package private class methods.
+
+    /** Return the side owning the given piece index. */
+    static int getSide(final int piece) {
+        return piece / KIND_COUNT;
+    }
+
+    /** Return the kind of the given piece index. */
+    static int getKind(final int piece) {
+        return piece % KIND_COUNT;
+    }
+
+    /** Return a move of a piece between the given positions, promoting to a kind (or PAWN). */
+    static int getMove(final int from, final int to, final int promotion) {
+        return from | (to << 6) | (promotion << 12);
+    }
+
+    /** Return the from position of the given move. */
+    static int getFrom(final int move) {
+        return move & 63;
+    }
+
+    /** Return the to position of the given move. */
+    static int getTo(final int move) {
+        return (move >> 6) & 63;
+    }
+
+    /** Return the kind the given move promotes a pawn to, or PAWN if it is not a promotion. */
+    static int getPromotion(final int move) {
+        return move >> 12;
+    }
+
+    /** Add the given set of positions to the given list, in ascending order. */
+    static void addPositions(final long positions, final List<Integer> list) {
+        for (long bits = positions; bits != 0; bits &= bits - 1)
+            list.add(Long.numberOfTrailingZeros(bits));
+    }
+
+    // Package private instance methods.
+
+    /** Remove all pieces and rights from the board. */
+    void clear() {
+        for (int index = 0; index < pieces.length; index++)
+            pieces[index] = 0L;
+        sides[PRIMARY_SIDE] = 0L;
+        sides[SECONDARY_SIDE] = 0L;
+        for (int index = 0; index < 64; index++)
+            mailbox[index] = EMPTY;
+        sideToMove = PRIMARY_SIDE;
+        castlingRights = 0;
+        enPassantPosition = -1;
+        pieceHash = 0L;
+        mUndoSize = 0;
+    }
+
+    /** Copy the full state of the given board into this board. */
+    void copyFrom(final ChessBitboard other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.mailbox, 0, mailbox, 0, mailbox.length);
+        sides[PRIMARY_SIDE] = other.sides[PRIMARY_SIDE];
+        sides[SECONDARY_SIDE] = other.sides[SECONDARY_SIDE];
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        enPassantPosition = other.enPassantPosition;
+        pieceHash = other.pieceHash;
+        mUndoSize = 0;
+    }
+
+    /** Return the set of occupied positions. */
+    long getOccupied() {
+        return sides[PRIMARY_SIDE] | sides[SECONDARY_SIDE];
+    }
+
+    /** Return the Zobrist key of the full position: pieces, side to move, rights and en passant. */
+    long getKey() {
+        long key = pieceHash ^ CASTLING_KEYS[castlingRights];
+        if (sideToMove == SECONDARY_SIDE)
+            key ^= SIDE_KEY;
+        return enPassantPosition == -1 ? key : key ^ EN_PASSANT_KEYS[enPassantPosition];
+    }
+
+    /** Return the piece index (or EMPTY) at the given position. */
+    int getPiece(final int position) {
+        return mailbox[position];
+    }
+
+    /** Put the given piece index on the given (empty) position. */
+    void put(final int position, final int piece) {
+        long bit = 1L << position;
+        pieces[piece] |= bit;
+        sides[getSide(piece)] |= bit;
+        mailbox[position] = piece;
+        pieceHash ^= PIECE_KEYS[piece][position];
+    }
+
+    /** Remove and return the piece index (or EMPTY) at the given position. */
+    int remove(final int position) {
+        int piece = mailbox[position];
+        if (piece == EMPTY)
+            return EMPTY;
+        long bit = ~(1L << position);
+        pieces[piece] &= bit;
+        sides[getSide(piece)] &= bit;
+        mailbox[position] = EMPTY;
+        pieceHash ^= PIECE_KEYS[piece][position];
+        return piece;
+    }
+
+    /** Return the set of positions the piece on the given position attacks. */
+    long getAttacks(final int position) {
+        int piece = mailbox[position];
+        if (piece == EMPTY)
+            return 0L;
+        long occupied = getOccupied();
+        switch (getKind(piece)) {
+            case PAWN: return PAWN_ATTACKS[getSide(piece)][position];
+            case KNIGHT: return KNIGHT_ATTACKS[position];
+            case BISHOP: return getBishopAttacks(position, occupied);
+            case ROOK: return getRookAttacks(position, occupied);
+            case QUEEN:
+                return getBishopAttacks(position, occupied) | getRookAttacks(position, occupied);
+            default: return KING_ATTACKS[position];
+        }
+    }
+
+    /** Return the position of the given side's king or -1 if there is none. */
+    int getKingPosition(final int side) {
+        long king = pieces[side * KIND_COUNT + KING];
+        return king == 0 ? -1 : Long.numberOfTrailingZeros(king);
+    }
+
+    /**
+     * Return the pseudo-legal target positions for the piece at the given position, i.e. the
+     * moves that obey the piece movement rules without regard to exposing the moving side's king.
+     */
+    long getTargets(final int position) {
+        int piece = mailbox[position];
+        if (piece == EMPTY)
+            return 0L;
+        int side = getSide(piece);
+        long own = sides[side];
+        switch (getKind(piece)) {
+            case PAWN:
+                return getPawnTargets(position, side);
+            case KING:
+                return (KING_ATTACKS[position] & ~own) | getCastlingTargets(side);
+            default:
+                return getAttacks(position) & ~own;
+        }
+    }
+
+    /** Return the legal target positions for the piece at the given position. */
+    long getLegalTargets(final int position) {
+        int piece = mailbox[position];
+        if (piece == EMPTY)
+            return 0L;
+        boolean inCheck = isInCheck(getSide(piece));
+        long result = 0L;
+        for (long bits = getTargets(position); bits != 0; bits &= bits - 1) {
+            int target = Long.numberOfTrailingZeros(bits);
+            if (isLegal(getMove(position, target, getPromotionKind(piece, target)), inCheck))
+                result |= 1L << target;
+        }
+        return result;
+    }
+
+    /**
+     * Generate the legal moves for the side to move into the given array (which must hold at least
+     * MAX_MOVES entries) and return the number of moves generated.
+     */
+    int generateLegalMoves(final int[] moves) {
+        boolean inCheck = isInCheck(sideToMove);
+        int count = 0;
+        for (long own = sides[sideToMove]; own != 0; own &= own - 1) {
+            int from = Long.numberOfTrailingZeros(own);
+            int piece = mailbox[from];
+            for (long bits = getTargets(from); bits != 0; bits &= bits - 1) {
+                int to = Long.numberOfTrailingZeros(bits);
+                int promotion = getPromotionKind(piece, to);
+                if (!isLegal(getMove(from, to, promotion), inCheck))
+                    continue;
+                if (promotion == PAWN) {
+                    moves[count++] = getMove(from, to, PAWN);
+                    continue;
+                }
+                for (int kind = QUEEN; kind >= KNIGHT; kind--)
+                    moves[count++] = getMove(from, to, kind);
+            }
+        }
+        return count;
+    }
+
+    /** Return TRUE iff the given side has at least one legal move. */
+    boolean hasLegalMove(final int side) {
+        boolean inCheck = isInCheck(side);
+        for (long own = sides[side]; own != 0; own &= own - 1) {
+            int from = Long.numberOfTrailingZeros(own);
+            int piece = mailbox[from];
+            for (long bits = getTargets(from); bits != 0; bits &= bits - 1) {
+                int to = Long.numberOfTrailingZeros(bits);
+                if (isLegal(getMove(from, to, getPromotionKind(piece, to)), inCheck))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Apply the given move, saving the state needed to revert it with unmakeMove().  The move is
+     * assumed to be at least pseudo-legal.  Castling and en passant captures are recognized from
+     * the move of the king or pawn.
+     */
+    void makeMove(final int move) {
+        int from = getFrom(move);
+        int to = getTo(move);
+        int piece = mailbox[from];
+        int side = getSide(piece);
+        int kind = getKind(piece);
+
+        // Save the irreversible state, then remove any captured piece (en passant captures remove
+        // the pawn behind the target position) and move the piece, promoting it as needed.
+        pushUndo(move);
+        int captured = remove(to);
+        if (kind == PAWN && to == enPassantPosition)
+            captured = remove(to + (side == PRIMARY_SIDE ? 8 : -8));
+        mUndoCaptures[mUndoSize - 1] = captured;
+        remove(from);
+        int promotion = getPromotion(move);
+        put(to, promotion == PAWN ? piece : side * KIND_COUNT + promotion);
+
+        // Move the rook when castling, then update the rights, en passant position and turn.
+        if (kind == KING && to - from == 2) {
+            put(from + 1, remove(from + 3));
+        } else if (kind == KING && from - to == 2) {
+            put(from - 1, remove(from - 4));
+        }
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        enPassantPosition = kind == PAWN && Math.abs(to - from) == 16 ? (from + to) / 2 : -1;
+        sideToMove = 1 - sideToMove;
+    }
+
+    /** Revert the most recent move applied with makeMove(). */
+    void unmakeMove() {
+        mUndoSize--;
+        int move = mUndoMoves[mUndoSize];
+        int from = getFrom(move);
+        int to = getTo(move);
+        int piece = remove(to);
+        int side = getSide(piece);
+        int kind = getKind(piece);
+        sideToMove = side;
+        castlingRights = mUndoRights[mUndoSize];
+        enPassantPosition = mUndoEnPassant[mUndoSize];
+
+        // Restore the moving piece (as a pawn if it was promoted), any castled rook and any
+        // captured piece, which sits behind the target position for an en passant capture.
+        put(from, getPromotion(move) == PAWN ? piece : side * KIND_COUNT + PAWN);
+        if (kind == KING && to - from == 2) {
+            put(from + 3, remove(from + 1));
+        } else if (kind == KING && from - to == 2) {
+            put(from - 4, remove(from - 1));
+        }
+        int captured = mUndoCaptures[mUndoSize];
+        if (captured == EMPTY)
+            return;
+        boolean isEnPassant = getPromotion(move) == PAWN && kind == PAWN &&
+                to == enPassantPosition;
+        put(isEnPassant ? to + (side == PRIMARY_SIDE ? 8 : -8) : to, captured);
+    }
+
+    /** Return TRUE iff the given position is attacked by any piece of the given side. */
+    boolean isAttacked(final int position, final int bySide) {
+        int base = bySide * KIND_COUNT;
+        long occupied = getOccupied();
+        long queens = pieces[base + QUEEN];
+        return (KNIGHT_ATTACKS[position] & pieces[base + KNIGHT]) != 0
+                || (KING_ATTACKS[position] & pieces[base + KING]) != 0
+                || (PAWN_ATTACKS[1 - bySide][position] & pieces[base + PAWN]) != 0
+                || (getBishopAttacks(position, occupied) & (pieces[base + BISHOP] | queens)) != 0
+                || (getRookAttacks(position, occupied) & (pieces[base + ROOK] | queens)) != 0;
+    }
+
+    /** Return TRUE iff the given side's king is attacked. */
+    boolean isInCheck(final int side) {
+        int king = getKingPosition(side);
+        return king != -1 && isAttacked(king, 1 - side);
+    }
+
+    /** Return TRUE iff moving the piece at the given position to the target exposes its king. */
+    boolean exposesKing(final int position, final int target) {
+        int piece = mailbox[position];
+        if (piece == EMPTY)
+            return false;
+        int move = getMove(position, target, getPromotionKind(piece, target));
+        return !isLegal(move, isInCheck(getSide(piece)));
+    }
+
+    // Private class methods.
+
+    /** Return the bit for the given row and column or 0 if the row or column is off the board. */
+    private static long getBit(final int row, final int col) {
+        return row < 0 || row > 7 || col < 0 || col > 7 ? 0L : 1L << (row * 8 + col);
+    }
+
+    /** Return the sliding attacks along a given ray, stopping at (and including) a blocker. */
+    private static long getRayAttacks(final int dir, final int position, final long occupied) {
+        long ray = RAYS[dir][position];
+        long blockers = ray & occupied;
+        if (blockers == 0)
+            return ray;
+        int blocker = dir < WEST ? Long.numberOfTrailingZeros(blockers)
+                : 63 - Long.numberOfLeadingZeros(blockers);
+        return ray ^ RAYS[dir][blocker];
+    }
+
+    /** Return the bishop attacks from the given position for the given occupancy. */
+    private static long getBishopAttacks(final int position, final long occupied) {
+        return getRayAttacks(SOUTH_WEST, position, occupied)
+                | getRayAttacks(SOUTH_EAST, position, occupied)
+                | getRayAttacks(NORTH_EAST, position, occupied)
+                | getRayAttacks(NORTH_WEST, position, occupied);
+    }
+
+    /** Return the rook attacks from the given position for the given occupancy. */
+    private static long getRookAttacks(final int position, final long occupied) {
+        return getRayAttacks(EAST, position, occupied)
+                | getRayAttacks(SOUTH, position, occupied)
+                | getRayAttacks(WEST, position, occupied)
+                | getRayAttacks(NORTH, position, occupied);
+    }
+
+    // Private instance methods.
+
+    /** Return QUEEN if moving the given piece to the given position promotes it, PAWN if not. */
+    private int getPromotionKind(final int piece, final int to) {
+        boolean isLastRow = to < 8 || to > 55;
+        return getKind(piece) == PAWN && isLastRow ? QUEEN : PAWN;
+    }
+
+    /**
+     * Return TRUE iff the given pseudo-legal move does not leave the mover's king attacked.  A
+     * side that is not in check can only expose its king by moving the king, by moving a piece
+     * off a line through the king, or by an en passant capture; every other move is accepted
+     * without being made.
+     */
+    private boolean isLegal(final int move, final boolean inCheck) {
+        int from = getFrom(move);
+        int piece = mailbox[from];
+        int side = getSide(piece);
+        int king = getKingPosition(side);
+        boolean isKingMove = from == king;
+        boolean isEnPassant = getKind(piece) == PAWN && getTo(move) == enPassantPosition;
+        if (!inCheck && !isKingMove && !isEnPassant && king != -1 &&
+                (LINES[king] & (1L << from)) == 0)
+            return true;
+        makeMove(move);
+        boolean result = !isInCheck(side);
+        unmakeMove();
+        return result;
+    }
+
+    /** Push the given move and the current irreversible state onto the undo stack. */
+    private void pushUndo(final int move) {
+        if (mUndoSize == mUndoMoves.length) {
+            int capacity = mUndoSize * 2;
+            mUndoMoves = Arrays.copyOf(mUndoMoves, capacity);
+            mUndoCaptures = Arrays.copyOf(mUndoCaptures, capacity);
+            mUndoRights = Arrays.copyOf(mUndoRights, capacity);
+            mUndoEnPassant = Arrays.copyOf(mUndoEnPassant, capacity);
+        }
+        mUndoMoves[mUndoSize] = move;
+        mUndoRights[mUndoSize] = castlingRights;
+        mUndoEnPassant[mUndoSize] = enPassantPosition;
+        mUndoSize++;
+    }
+
+    /** Return the castling target positions available to the given side's king. */
+    private long getCastlingTargets(final int side) {
+        // Castling requires the right, an unmoved rook in the corner, empty cells between the king
+        // and the rook, and that the king neither starts on, crosses nor lands on an attacked cell.
+        int kingSide = side == PRIMARY_SIDE ? PRIMARY_KING_SIDE : SECONDARY_KING_SIDE;
+        int queenSide = side == PRIMARY_SIDE ? PRIMARY_QUEEN_SIDE : SECONDARY_QUEEN_SIDE;
+        int home = side == PRIMARY_SIDE ? 60 : 4;
+        int rook = side * KIND_COUNT + ROOK;
+        long occupied = getOccupied();
+        long result = 0L;
+        if ((castlingRights & (kingSide | queenSide)) == 0 ||
+                mailbox[home] != side * KIND_COUNT + KING || isAttacked(home, 1 - side))
+            return result;
+        if ((castlingRights & kingSide) != 0 && mailbox[home + 3] == rook &&
+                (occupied & (3L << (home + 1))) == 0 &&
+                !isAttacked(home + 1, 1 - side) && !isAttacked(home + 2, 1 - side))
+            result |= 1L << (home + 2);
+        if ((castlingRights & queenSide) != 0 && mailbox[home - 4] == rook &&
+                (occupied & (7L << (home - 3))) == 0 &&
+                !isAttacked(home - 1, 1 - side) && !isAttacked(home - 2, 1 - side))
+            result |= 1L << (home - 2);
+        return result;
+    }
+
+    /** Return the pseudo-legal pawn targets for a pawn of the given side on the given position. */
+    private long getPawnTargets(final int position, final int side) {
+        long empty = ~getOccupied();
+        long result = PAWN_ATTACKS[side][position] & sides[1 - side];
+        if (side == sideToMove && enPassantPosition != -1)
+            result |= PAWN_ATTACKS[side][position] & (1L << enPassantPosition);
+        int step = side == PRIMARY_SIDE ? -8 : 8;
+        int single = position + step;
+        if (single < 0 || single > 63 || (empty & (1L << single)) == 0)
+            return result;
+        result |= 1L << single;
+        int startRow = side == PRIMARY_SIDE ? 6 : 1;
+        int twice = single + step;
+        if (position >> 3 == startRow && (empty & (1L << twice)) != 0)
+            result |= 1L << twice;
+        return result;
+    }
+}
@@ -27,6 +27,7 @@ import com.pajato.android.gamechat.exp.chess.ChessPiece.PieceType;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -52,6 +53,10 @@ import static com.pajato.android.gamechat.exp.chess.ChessPiece.PieceType.ROOK;
  * integer index to a string and provides some convenience methods to determine piece type and team
  * for a given cell on the board.
  *
+ * The HashMap is the persisted (Firebase) form of the board.  Move generation and check detection
+ * use a primitive bitboard mirror of the map (see ChessBitboard) which is built on demand and kept
+ * in sync by the add and delete methods.
+ *
  * @author Sandy Scott on 1/9/2017
  * @author Paul Michael Reilly on 2/17/2017
  */
@@ -76,6 +81,12 @@ import static com.pajato.android.gamechat.exp.chess.ChessPiece.PieceType.ROOK;
     /** The list of highlighted positions.  These reflect possible moves. */
     private List<Integer> mPossibleMoves = new ArrayList<>();
 
+    /** The primitive mirror of the piece map used by the engine, or null if not yet built. */
+    private ChessBitboard mBitboard;
+
+    /** The keys of the cells changed since they were last persisted. */
+    private Set<String> mChangedCells = new HashSet<>();
+
     // Public constructors.
 
     /** Build the no-arg instance for Firebase. */
@@ -85,12 +96,22 @@ import static com.pajato.android.gamechat.exp.chess.ChessPiece.PieceType.ROOK;
 
     /** Add a piece of the given type and team to board at the given position. */
     public void add(final int position, final PieceType type, final Team team) {
-        mPieceMap.put(CELL_ID + String.valueOf(position), new ChessPiece(type, team));
+        add(position, new ChessPiece(type, team));
     }
 
     /** Add a particular piece to the board at the given position. */
     public void add(final int position, final ChessPiece p) {
         mPieceMap.put(CELL_ID + String.valueOf(position), p);
+        mChangedCells.add(CELL_ID + String.valueOf(position));
+        if (mBitboard == null)
+            return;
+        mBitboard.remove(position);
+        mBitboard.put(position, getPieceIndex(p));
+    }
+
+    /** Implement the interface to forget the changed cells. */
+    @Override public void clearChangedCells() {
+        mChangedCells.clear();
     }
 
     /** Implement the interface to clear the selected piece. */
@@ -100,9 +121,30 @@ import static com.pajato.android.gamechat.exp.chess.ChessPiece.PieceType.ROOK;
 
     /** Implement the interface by returning and removing the piece at the given position. */
     @Override public ChessPiece delete(final int position) {
+        if (mBitboard != null)
+            mBitboard.remove(position);
+        mChangedCells.add(CELL_ID + String.valueOf(position));
         return mPieceMap.remove(CELL_ID + String.valueOf(position));
     }
 
+    /** Return the bitboard mirroring the piece map, building it if necessary. */
+    @Exclude ChessBitboard getBitboard() {
+        if (mBitboard != null)
+            return mBitboard;
+        mBitboard = new ChessBitboard();
+        for (Map.Entry<String, ChessPiece> entry : mPieceMap.entrySet()) {
+            int position = getPosition(entry.getKey());
+            if (position >= 0 && position < 64)
+                mBitboard.put(position, getPieceIndex(entry.getValue()));
+        }
+        return mBitboard;
+    }
+
+    /** Return the keys of the cells changed since they were last persisted. */
+    @Exclude @Override public Set<String> getChangedCells() {
+        return mChangedCells;
+    }
+
     /** Return a set of position keys representing active pieces on the board. */
     @Exclude @Override public Set<String> getKeySet() {
         return mPieceMap.keySet();
@@ -171,6 +213,7 @@ import static com.pajato.android.gamechat.exp.chess.ChessPiece.PieceType.ROOK;
         // Set the primary pieces:
         setPiecesForTeamUsingOffsets(SECONDARY, 0, 8);
         setPiecesForTeamUsingOffsets(PRIMARY, 56, 48);
+        mBitboard = null;
     }
 
     /** Implement the interface to return TRUE iff the given piece position is highlighted. */
@@ -182,6 +225,7 @@ import static com.pajato.android.gamechat.exp.chess.ChessPiece.PieceType.ROOK;
     @SuppressWarnings("unused")
     public void setPieces(final Map<String, ChessPiece> pieceMap) {
         mPieceMap = pieceMap;
+        mBitboard = null;
     }
 
     /** Provide a setter for the possible moves to satisfy Firebase. */
@@ -195,6 +239,24 @@ import static com.pajato.android.gamechat.exp.chess.ChessPiece.PieceType.ROOK;
         mSelectedPosition = position;
     }
 
+    // Private class methods.
+
+    /** Return the bitboard piece index for a given chess piece. */
+    private static int getPieceIndex(@NonNull final ChessPiece piece) {
+        int side = piece.getTeam() == PRIMARY ? ChessBitboard.PRIMARY_SIDE
+                : ChessBitboard.SECONDARY_SIDE;
+        int kind;
+        switch (piece.getPieceType()) {
+            case PAWN: kind = ChessBitboard.PAWN; break;
+            case KNIGHT: kind = ChessBitboard.KNIGHT; break;
+            case BISHOP: kind = ChessBitboard.BISHOP; break;
+            case ROOK: kind = ChessBitboard.ROOK; break;
+            case QUEEN: kind = ChessBitboard.QUEEN; break;
+            default: kind = ChessBitboard.KING; break;
+        }
+        return side * ChessBitboard.KIND_COUNT + kind;
+    }
+
     // Private instance methods.
 
     /** Initialize the pieces for a given team using the given offset to calculate positions. */
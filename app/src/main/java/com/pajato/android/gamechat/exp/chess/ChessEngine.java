@@ -26,12 +26,16 @@ import android.widget.TextView;
 
 import com.pajato.android.gamechat.R;
 import com.pajato.android.gamechat.common.BaseFragment;
+import com.pajato.android.gamechat.common.PlayModeManager;
 import com.pajato.android.gamechat.exp.Checkerboard;
+import com.pajato.android.gamechat.exp.ComputerPlayer;
 import com.pajato.android.gamechat.exp.Engine;
 import com.pajato.android.gamechat.exp.ExpHelper;
 import com.pajato.android.gamechat.exp.Experience;
+import com.pajato.android.gamechat.exp.MoveSearch;
+import com.pajato.android.gamechat.exp.SearchOrigin;
 import com.pajato.android.gamechat.exp.NotificationManager;
-import com.pajato.android.gamechat.exp.Piece;
+import com.pajato.android.gamechat.exp.PositionCache;
 import com.pajato.android.gamechat.exp.Team;
 import com.pajato.android.gamechat.exp.TileClickHandler;
 
@@ -64,6 +68,11 @@ import static com.pajato.android.gamechat.exp.chess.ChessPiece.PieceType.ROOK;
 public enum ChessEngine implements Engine {
     instance;
 
+    // Private class constants.
+
+    /** The number of positions held by the position cache. */
+    private static final int CACHE_SIZE = 512;
+
     // Private instance variables.
 
     /** The underlying UI board model class. */
@@ -72,6 +81,21 @@ public enum ChessEngine implements Engine {
     /** The experience model class. */
     private Chess mModel;
 
+    /** The legal moves and check status of recent positions, shared with the search. */
+    private final PositionCache mCache = new PositionCache(CACHE_SIZE);
+
+    /** The legal moves of the most recently looked up position. */
+    private final int[] mMoves = new int[ChessBitboard.MAX_MOVES];
+
+    /** The check status of the most recently looked up position. */
+    private boolean mInCheck;
+
+    /** The computer opponent's search, only ever used on the computer player's thread. */
+    private final ChessSearch mSearch = new ChessSearch(mCache);
+
+    /** The bitboard kind a computer pawn promotion produces. */
+    private int mComputerPromotion = ChessBitboard.QUEEN;
+
     // Public instance methods.
 
     /** Handle a move of the selected piece to the given position. */
@@ -81,10 +105,15 @@ public enum ChessEngine implements Engine {
         if (isCapture)
             mModel.board.delete(position);
 
-        // Deal with pawn promotion and castling.
+        // Deal with en passant captures, pawn promotion and castling.
         Team team = mModel.board.getSelectedPiece().getTeam();
         ChessPiece piece = mModel.board.getSelectedPiece();
-        if (piece.isType(PAWN) && (position < 8 || position > 55))
+        if (piece.isType(PAWN) && position == mModel.enPassantPosition)
+            capturePassedPawn(position, team);
+        boolean isPromotion = piece.isType(PAWN) && (position < 8 || position > 55);
+        if (isPromotion && PlayModeManager.instance.isComputerTurn(mModel))
+            mModel.board.add(position, getPieceType(mComputerPromotion), team);
+        else if (isPromotion)
             promotePawn(position, team);
         else
             mModel.board.add(position, mModel.board.getSelectedPiece());
@@ -95,6 +124,8 @@ public enum ChessEngine implements Engine {
         mModel.board.delete(selectedPosition);
         mModel.board.clearSelectedPiece();
         mModel.board.getPossibleMoves().clear();
+        boolean isDoubleStep = piece.isType(PAWN) && Math.abs(position - selectedPosition) == 16;
+        mModel.enPassantPosition = isDoubleStep ? (position + selectedPosition) / 2 : -1;
 
         // Test to see if the move is a win, a draw or puts the opposing King in check.  If so
         // update the data model.
@@ -104,9 +135,18 @@ public enum ChessEngine implements Engine {
         }
         mModel.toggleTurn();
         ExpHelper.updateModel(mModel);
+        startComputerMove();
     }
 
-    /** Establish the experience model (chess) and board for this handler. */
+    /** Return TRUE as chess supports a computer opponent. */
+    @Override public boolean hasComputerOpponent() {
+        return true;
+    }
+
+    /**
+     * Establish the experience model (chess) and board for this handler and, as each database
+     * change delivers a new model, (re)start the computer's search when it is the computer's turn.
+     */
     @Override public void init(final Experience model, final Checkerboard board,
                                final TileClickHandler handler) {
         if (!(model instanceof Chess))
@@ -115,6 +155,15 @@ public enum ChessEngine implements Engine {
         mBoard = board;
         board.init(ExpHelper.getBaseFragment(model), handler);
         handler.setModel(model);
+        startComputerMove();
+    }
+
+    /** Search for the computer's move in the background when it is the computer's turn. */
+    @Override public void startComputerMove() {
+        if (mModel == null || mModel.state.isDone() ||
+                !PlayModeManager.instance.isComputerTurn(mModel))
+            return;
+        ComputerPlayer.instance.play(new ComputerMove(mModel, getBitboard()));
     }
 
     /** Start a move by marking the given position as the selected position and get a move list. */
@@ -126,12 +175,11 @@ public enum ChessEngine implements Engine {
         mModel.board.getPossibleMoves().clear();
         if (mModel.board.hasPiece(position)) {
             List<Integer> possibleMoves = getPossibleMoves(position);
-            removeCheckExposingMoves(possibleMoves, mModel.board.getSelectedPosition());
             mModel.board.getPossibleMoves().addAll(possibleMoves);
         } else {
             mModel.board.clearSelectedPiece();
         }
-        ExpHelper.updateModel(mModel);
+        ExpHelper.updateSelection(mModel);
     }
 
     // Private instance methods.
@@ -140,7 +188,7 @@ public enum ChessEngine implements Engine {
     private boolean isWinner() {
         // Generate win conditions. If one side runs out of moves, the other side wins.
         Team team = mModel.turn ? SECONDARY : PRIMARY;
-        boolean outOfMoves = isInCheck(team) && getAllMoves(team).isEmpty();
+        boolean outOfMoves = getLegalMoves(team) == 0 && mInCheck;
         if (!outOfMoves)
             return false;
 
@@ -154,24 +202,30 @@ public enum ChessEngine implements Engine {
         return true;
     }
 
-    /** Returns a list containing the end position for all valid moves for the given team. */
-    private List<Integer> getAllMoves(Team team) {
-        List<Integer> allMoves = new ArrayList<>();
-
-        // Deep copy the key set to allow our helper methods to modify the board while we iterate
-        // through it.
-        List<String> keys = new ArrayList<>(mModel.board.getKeySet());
+    /** Remove the pawn captured en passant by a pawn of the given team moving to a position. */
+    private void capturePassedPawn(final int position, final Team team) {
+        int passedPosition = team == PRIMARY ? position + 8 : position - 8;
+        mModel.board.delete(passedPosition);
+        mBoard.clearCell(passedPosition);
+    }
 
-        // Get all valid moves. Note that this does not get moves that would put the user in check.
-        for (String key : keys) {
-            int position = mModel.board.getPosition(key);
-            if (!mModel.board.getPiece(position).isTeam(team))
-                continue;
-            List<Integer> possibleMoves = getPossibleMoves(position);
-            removeCheckExposingMoves(possibleMoves, position);
-            allMoves.addAll(possibleMoves);
-        }
-        return allMoves;
+    /** Return the engine's bitboard, synchronized with the model's turn and castling state. */
+    private ChessBitboard getBitboard() {
+        ChessBitboard bitboard = mModel.board.getBitboard();
+        bitboard.sideToMove = mModel.turn ? ChessBitboard.PRIMARY_SIDE
+                : ChessBitboard.SECONDARY_SIDE;
+        bitboard.enPassantPosition = mModel.enPassantPosition;
+        int rights = 0;
+        if (!mModel.primaryKingHasMoved && !mModel.primaryKingSideRookHasMoved)
+            rights |= ChessBitboard.PRIMARY_KING_SIDE;
+        if (!mModel.primaryKingHasMoved && !mModel.primaryQueenSideRookHasMoved)
+            rights |= ChessBitboard.PRIMARY_QUEEN_SIDE;
+        if (!mModel.secondaryKingHasMoved && !mModel.secondaryKingSideRookHasMoved)
+            rights |= ChessBitboard.SECONDARY_KING_SIDE;
+        if (!mModel.secondaryKingHasMoved && !mModel.secondaryQueenSideRookHasMoved)
+            rights |= ChessBitboard.SECONDARY_QUEEN_SIDE;
+        bitboard.castlingRights = rights;
+        return bitboard;
     }
 
     /** Return a done message text to show in a snackbar.  The given model provides the state. */
@@ -185,41 +239,62 @@ public enum ChessEngine implements Engine {
         return message != null ? message : fragment.getString(R.string.TieMessageNotification);
     }
 
-    /** Returns a list of possible moves for a highlighted piece at a given position. */
+    /**
+     * Return the number of legal moves, stored in mMoves, for the given team in the current
+     * position and set mInCheck to the team's check status.  The position cache is consulted
+     * first; a position not found there is generated and cached.
+     */
+    private int getLegalMoves(final Team team) {
+        ChessBitboard bitboard = getBitboard();
+        bitboard.sideToMove = getSide(team);
+        long key = bitboard.getKey();
+        int result = mCache.get(key, mMoves);
+        if (result != PositionCache.NOT_FOUND) {
+            int flags = mCache.getFlags(key);
+            mInCheck = flags == PositionCache.NOT_FOUND ? bitboard.isInCheck(bitboard.sideToMove)
+                    : (flags & PositionCache.IN_CHECK) != 0;
+            return result;
+        }
+        result = bitboard.generateLegalMoves(mMoves);
+        mInCheck = bitboard.isInCheck(bitboard.sideToMove);
+        mCache.put(key, mMoves, result, mInCheck ? PositionCache.IN_CHECK : 0);
+        return result;
+    }
+
+    /** Returns a list of legal moves for a highlighted piece at a given position. */
     private List<Integer> getPossibleMoves(final int position) {
-        // Validate the position.  Abort if is invalid, otherwise get the moves available to the
-        // piece.
+        // Collect the targets of the piece's legal moves, i.e. those that do not expose the
+        // piece's King to check, counting each promotion once.  An empty position yields an empty
+        // list.
         List<Integer> result = new ArrayList<>();
         ChessPiece piece = mModel.board.getPiece(position);
-        if (piece == null)
-            return result;
-        switch (mModel.board.getPiece(position).getPieceType()) {
-            case PAWN:
-                ChessHelper.getPawnThreatRange(result, position, mModel.board);
-                break;
-            case ROOK:
-                ChessHelper.getRookThreatRange(result, position, mModel.board);
-                break;
-            case KNIGHT:
-                ChessHelper.getKnightThreatRange(result, position, mModel.board);
-                break;
-            case BISHOP:
-                ChessHelper.getBishopThreatRange(result, position, mModel.board);
-                break;
-            case QUEEN:
-                ChessHelper.getQueenThreatRange(result, position, mModel.board);
-                break;
-            case KING:
-                boolean[] castlingBooleans = {mModel.primaryQueenSideRookHasMoved,
-                        mModel.primaryKingSideRookHasMoved, mModel.primaryKingHasMoved,
-                        mModel.secondaryQueenSideRookHasMoved, mModel.secondaryKingSideRookHasMoved,
-                        mModel.secondaryKingHasMoved};
-                ChessHelper.getKingThreatRange(result, position, mModel.board, castlingBooleans);
-                break;
+        int count = piece != null ? getLegalMoves(piece.getTeam()) : 0;
+        for (int index = 0; index < count; index++) {
+            int move = mMoves[index];
+            int promotion = ChessBitboard.getPromotion(move);
+            boolean isPromotion = promotion != ChessBitboard.PAWN;
+            if (ChessBitboard.getFrom(move) == position &&
+                    (!isPromotion || promotion == ChessBitboard.QUEEN))
+                result.add(ChessBitboard.getTo(move));
         }
         return result;
     }
 
+    /** Return the piece type corresponding to a given (non-pawn, non-king) bitboard kind. */
+    private ChessPiece.PieceType getPieceType(final int kind) {
+        switch (kind) {
+            case ChessBitboard.KNIGHT: return ChessPiece.PieceType.KNIGHT;
+            case ChessBitboard.BISHOP: return ChessPiece.PieceType.BISHOP;
+            case ChessBitboard.ROOK: return ROOK;
+            default: return ChessPiece.PieceType.QUEEN;
+        }
+    }
+
+    /** Return the bitboard side corresponding to a given team. */
+    private int getSide(final Team team) {
+        return team == PRIMARY ? ChessBitboard.PRIMARY_SIDE : ChessBitboard.SECONDARY_SIDE;
+    }
+
     /** Handle castling for the piece at the given position. */
     private void handleCastling(final int clickedPosition) {
         // Handle the movement of the Rook for Castling
@@ -230,7 +305,7 @@ public enum ChessEngine implements Engine {
         // ...
         int selectedPosition = mModel.board.getSelectedPosition();
         boolean castlingKingSide = clickedPosition == selectedPosition + 2;
-        boolean castlingQueenSide = clickedPosition == selectedPosition - 3;
+        boolean castlingQueenSide = clickedPosition == selectedPosition - 2;
         boolean isCastling = selectedPiece.isType(KING) && (castlingKingSide || castlingQueenSide);
         if (isCastling) {
             int rookPrevIndex;
@@ -241,20 +316,15 @@ public enum ChessEngine implements Engine {
                 rookFutureIndex = selectedPosition + 1;
             } else {
                 rookPrevIndex = selectedPosition - 4;
-                rookFutureIndex = selectedPosition - 2;
+                rookFutureIndex = selectedPosition - 1;
             }
 
             // Put a rook at the new rook position.
             mModel.board.add(rookFutureIndex, ROOK, selectedPiece.getTeam());
-            TextView futureRook = mBoard.getCell(rookFutureIndex);
-
-            // Handle the player-dependent pieces of the castle (color)
-            futureRook.setText(mModel.board.getPiece(rookFutureIndex).getText());
-            futureRook.setTextColor(mModel.board.getTeam(rookFutureIndex).color);
+            mBoard.setPiece(rookFutureIndex, mModel.board.getPiece(rookFutureIndex));
 
             // Get rid of the old rook.
-            TextView previousRook = mBoard.getCell(rookPrevIndex);
-            previousRook.setText("");
+            mBoard.clearCell(rookPrevIndex);
             mModel.board.delete(rookPrevIndex);
         }
 
@@ -264,35 +334,23 @@ public enum ChessEngine implements Engine {
         else if (selectedPiece.isPiece(KING, SECONDARY))
             mModel.secondaryKingHasMoved = true;
         else if (selectedPiece.isPiece(ROOK, PRIMARY)) {
-            if (selectedPosition == 0)
+            if (selectedPosition == 56)
                 mModel.primaryQueenSideRookHasMoved = true;
-            else if (selectedPosition == 7)
+            else if (selectedPosition == 63)
                 mModel.primaryKingSideRookHasMoved = true;
         } else if (selectedPiece.isPiece(ROOK, SECONDARY))
-            if (selectedPosition == 56)
+            if (selectedPosition == 0)
                 mModel.secondaryQueenSideRookHasMoved = true;
-            else if (selectedPosition == 63)
+            else if (selectedPosition == 7)
                 mModel.secondaryKingSideRookHasMoved = true;
     }
 
     /** Return true iff the given team's King is in check. */
     private boolean isInCheck(final Team team) {
-        // Determine if the given team's King is now in check.  Check all pieces on opposing team to
-        // see if any of them threaten the King.  Get each player piece from the data model
-        // filtering out the passive player's pieces.  Get the possible moves for each of these
-        // pieces to see if the passive King can be captured.  If so return true.
-        for (String key : mModel.board.getKeySet()) {
-            int position = mModel.board.getPosition(key);
-            if (mModel.board.getPiece(position).isTeam(team))
-                continue;
-            List<Integer> possibleMoves = getPossibleMoves(position);
-            for (int possiblePosition : possibleMoves) {
-                Piece piece = mModel.board.getPiece(possiblePosition);
-                if (piece != null && piece.isPiece(KING, team))
-                    return true;
-            }
-        }
-        return false;
+        // Look up (or generate) the position with the given team to move, which establishes its
+        // check status.
+        getLegalMoves(team);
+        return mInCheck;
     }
 
     /** Handles the promotion of a pawn at the given position for the given team. */
@@ -352,43 +410,44 @@ public enum ChessEngine implements Engine {
         }
     }
 
-    /** Remove any possible moves that would result in placing the active King in check. */
-    private void removeCheckExposingMoves(final List<Integer> possibleMoves, final int piecePosition) {
-        // Collect the rejected moves for removal after all possible positions have been tested.
-        List<Integer> exposedMoves = new ArrayList<>();
-        for (int possiblePosition : possibleMoves)
-            if (testForCheck(possiblePosition, piecePosition))
-                exposedMoves.add(possiblePosition);
-        for (int position : exposedMoves)
-            possibleMoves.remove(Integer.valueOf(position));
-    }
+    // Private inner classes.
 
-    /** Return true if moving the selected piece to the given position would expose a check. */
-    private boolean testForCheck(final int position, final int selectedPosition) {
-        // Ensure that there is a selected piece.  Abort if not.
-        boolean result;
-        ChessBoard board = mModel.board;
-        ChessPiece savedSelectedPiece = board.delete(selectedPosition);
-        if (savedSelectedPiece == null)
-            return false;
+    /**
+     * Provide the computer's move search on a snapshot of the position and play the chosen move by
+     * clicking its from and to cells, as a User would.  A move found for a position that has since
+     * changed (a new game, say) is dropped.
+     */
+    private class ComputerMove implements MoveSearch {
 
-        // Move the selected piece to the given position after saving the piece, if any, at that
-        // position and test to see if the associated King would be in check.
-        ChessPiece savedMovePiece = board.hasPiece(position) ? board.getPiece(position) : null;
-        board.add(position, savedSelectedPiece);
-        Team team = savedSelectedPiece.getTeam();
-        result = isInCheck(team);
-
-        // Restore the board pieces that may have been removed or moved.
-        board.add(selectedPosition, savedSelectedPiece);
-        if (savedMovePiece != null)
-            board.add(position, savedMovePiece);
-        else
-            board.delete(position);
-        return result;
-    }
+        /** The experience and position the search was started for. */
+        private final SearchOrigin mOrigin;
 
-    // Private inner classes.
+        /** The snapshot of the position, owned by the search thread. */
+        private final ChessBitboard mPosition = new ChessBitboard();
+
+        /** Build a search of the given model's position. */
+        ComputerMove(final Chess model, final ChessBitboard board) {
+            mOrigin = new SearchOrigin(model.key, board.getKey());
+            mPosition.copyFrom(board);
+        }
+
+        /** Play the given move if the experience and position are still the ones searched. */
+        @Override public void play(final long move) {
+            boolean isStale = !mOrigin.isCurrent(mModel.key, getBitboard().getKey());
+            if (move == ChessSearch.NO_MOVE || isStale)
+                return;
+            int chessMove = (int) move;
+            mComputerPromotion = ChessBitboard.getPromotion(chessMove);
+            mModel.board.clearSelectedPiece();
+            ExpHelper.processTileClick(ChessBitboard.getFrom(chessMove), mModel, ChessEngine.this);
+            ExpHelper.processTileClick(ChessBitboard.getTo(chessMove), mModel, ChessEngine.this);
+        }
+
+        /** Return the best move found in the position snapshot by the deadline. */
+        @Override public long search(final long deadline) {
+            return mSearch.findBestMove(mPosition, deadline);
+        }
+    }
 
     private class Promoter implements View.OnClickListener {
         AlertDialog mDialog;
@@ -427,9 +486,7 @@ public enum ChessEngine implements Engine {
 
             ChessBoard board = mModel.board;
             board.add(position, pieceType, team);
-            TextView promotedPieceTile = mBoard.getCell(position);
-            promotedPieceTile.setText(board.getPiece(position).getText());
-            promotedPieceTile.setTextColor(board.getTeam(position).color);
+            mBoard.setPiece(position, board.getPiece(position));
 
             mDialog.dismiss();
         }
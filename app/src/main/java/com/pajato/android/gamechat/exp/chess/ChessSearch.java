@@ -0,0 +1,426 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp.chess;
+
+import com.pajato.android.gamechat.exp.PositionCache;
+
+import static com.pajato.android.gamechat.exp.chess.ChessBitboard.EMPTY;
+import static com.pajato.android.gamechat.exp.chess.ChessBitboard.MAX_MOVES;
+import static com.pajato.android.gamechat.exp.chess.ChessBitboard.PAWN;
+import static com.pajato.android.gamechat.exp.chess.ChessBitboard.PRIMARY_SIDE;
+
+/**
+ * Provide the computer opponent's move search: a negamax alpha-beta search with iterative
+ * deepening, a quiescence search over captures, a transposition table and move ordering (hash
+ * move, captures by most valuable victim, killer moves, then the history heuristic).
+ *
+ * The search is time-boxed: it stops at the deadline given to findBestMove() and returns the best
+ * move of the deepest completed iteration.  An instance is not thread safe; the engine uses one
+ * instance from a single background thread so that the transposition table persists across moves.
+ */
+class ChessSearch {
+
+    // Package private class constants.
+
+    /** The score of a mate at the root; mates further away score lower. */
+    static final int MATE = 30000;
+
+    /** The move returned when the side to move has no legal move. */
+    static final int NO_MOVE = 0;
+
+    // Private class constants.
+
+    /** The bound larger than any score. */
+    private static final int INFINITY = 32000;
+
+    /** The deepest ply searched, including the quiescence search. */
+    private static final int MAX_PLY = 64;
+
+    /** The number of transposition table entries, a power of two. */
+    private static final int TABLE_SIZE = 1 << 16;
+
+    /** The transposition table score bound types. */
+    private static final byte EXACT = 0;
+    private static final byte LOWER = 1;
+    private static final byte UPPER = 2;
+
+    /** The number of nodes searched between deadline checks, less one. */
+    private static final int CHECK_MASK = 1023;
+
+    /** The move ordering scores for the hash move, captures and killer moves. */
+    private static final int HASH_MOVE_ORDER = 1 << 30;
+    private static final int CAPTURE_ORDER = 1 << 28;
+    private static final int KILLER_ORDER = 1 << 27;
+
+    /** The material value of each piece kind. */
+    private static final int[] VALUES = {100, 320, 330, 500, 900, 0};
+
+    /**
+     * The piece-square bonuses for each kind, laid out from the primary side's point of view
+     * (position 0 is the secondary team's back rank).  Secondary positions are mirrored.
+     */
+    private static final int[][] SQUARE_BONUS = {
+            {0, 0, 0, 0, 0, 0, 0, 0, 50, 50, 50, 50, 50, 50, 50, 50, 10, 10, 20, 30, 30, 20, 10, 10,
+                    5, 5, 10, 25, 25, 10, 5, 5, 0, 0, 0, 20, 20, 0, 0, 0, 5, -5, -10, 0, 0, -10,
+                    -5, 5, 5, 10, 10, -20, -20, 10, 10, 5, 0, 0, 0, 0, 0, 0, 0, 0},
+            {-50, -40, -30, -30, -30, -30, -40, -50, -40, -20, 0, 0, 0, 0, -20, -40, -30, 0, 10,
+                    15, 15, 10, 0, -30, -30, 5, 15, 20, 20, 15, 5, -30, -30, 0, 15, 20, 20, 15, 0,
+                    -30, -30, 5, 10, 15, 15, 10, 5, -30, -40, -20, 0, 5, 5, 0, -20, -40, -50, -40,
+                    -30, -30, -30, -30, -40, -50},
+            {-20, -10, -10, -10, -10, -10, -10, -20, -10, 0, 0, 0, 0, 0, 0, -10, -10, 0, 5, 10,
+                    10, 5, 0, -10, -10, 5, 5, 10, 10, 5, 5, -10, -10, 0, 10, 10, 10, 10, 0, -10,
+                    -10, 10, 10, 10, 10, 10, 10, -10, -10, 5, 0, 0, 0, 0, 5, -10, -20, -10, -10,
+                    -10, -10, -10, -10, -20},
+            {0, 0, 0, 0, 0, 0, 0, 0, 5, 10, 10, 10, 10, 10, 10, 5, -5, 0, 0, 0, 0, 0, 0, -5, -5,
+                    0, 0, 0, 0, 0, 0, -5, -5, 0, 0, 0, 0, 0, 0, -5, -5, 0, 0, 0, 0, 0, 0, -5, -5, 0,
+                    0, 0, 0, 0, 0, -5, 0, 0, 0, 5, 5, 0, 0, 0},
+            {-20, -10, -10, -5, -5, -10, -10, -20, -10, 0, 0, 0, 0, 0, 0, -10, -10, 0, 5, 5, 5, 5,
+                    0, -10, -5, 0, 5, 5, 5, 5, 0, -5, 0, 0, 5, 5, 5, 5, 0, -5, -10, 5, 5, 5, 5, 5,
+                    0, -10, -10, 0, 5, 0, 0, 0, 0, -10, -20, -10, -10, -5, -5, -10, -10, -20},
+            {-30, -40, -40, -50, -50, -40, -40, -30, -30, -40, -40, -50, -50, -40, -40, -30, -30,
+                    -40, -40, -50, -50, -40, -40, -30, -30, -40, -40, -50, -50, -40, -40, -30, -20,
+                    -30, -30, -40, -40, -30, -30, -20, -10, -20, -20, -20, -20, -20, -20, -10, 20,
+                    20, 0, 0, 0, 0, 20, 20, 20, 30, 10, 0, 0, 10, 30, 20}};
+
+    // Private instance variables.
+
+    /** The transposition table: position keys, best moves, scores, depths and bound types. */
+    private final long[] mKeys = new long[TABLE_SIZE];
+    private final int[] mMoves = new int[TABLE_SIZE];
+    private final int[] mScores = new int[TABLE_SIZE];
+    private final byte[] mDepths = new byte[TABLE_SIZE];
+    private final byte[] mBounds = new byte[TABLE_SIZE];
+
+    /** The move and move ordering score lists, one pair per ply. */
+    private final int[][] mMoveLists = new int[MAX_PLY][MAX_MOVES];
+    private final int[][] mOrderLists = new int[MAX_PLY][MAX_MOVES];
+
+    /** The two most recent quiet moves causing a cutoff at each ply. */
+    private final int[][] mKillers = new int[MAX_PLY][2];
+
+    /** The history heuristic scores for quiet moves, indexed by from and to positions. */
+    private final int[][] mHistory = new int[64][64];
+
+    /** The legal move cache shared with the engine, used for the root position. */
+    private final PositionCache mCache;
+
+    /** The board being searched. */
+    private ChessBitboard mBoard;
+
+    /** The time (as given by System.currentTimeMillis()) at which the search must stop. */
+    private long mDeadline;
+
+    /** The number of nodes searched by the current call to findBestMove(). */
+    private long mNodes;
+
+    /** TRUE iff the search ran out of time. */
+    private boolean mStopped;
+
+    /** The score of the best move found by the most recent root search. */
+    private int mScore;
+
+    // Package private constructors.
+
+    /** Build a search using the given position cache for the root moves. */
+    ChessSearch(final PositionCache cache) {
+        mCache = cache;
+    }
+
+    // Package private instance methods.
+
+    /**
+     * Return the best move found for the side to move on the given board by the given deadline,
+     * or NO_MOVE if the side to move has no legal move.  The board is restored before returning.
+     */
+    int findBestMove(final ChessBitboard board, final long deadline) {
+        mBoard = board;
+        mDeadline = deadline;
+        mNodes = 0;
+        mStopped = false;
+        for (int[] killers : mKillers)
+            killers[0] = killers[1] = NO_MOVE;
+        for (int[] history : mHistory)
+            for (int to = 0; to < 64; to++)
+                history[to] /= 8;
+
+        // Deepen the search one ply at a time, keeping the best move of the last completed
+        // iteration (or of an interrupted iteration, whose first move is the previous best).
+        int[] moves = mMoveLists[0];
+        int count = getRootMoves();
+        if (count == 0)
+            return NO_MOVE;
+        int result = moves[0];
+        if (count == 1)
+            return result;
+        for (int depth = 1; depth < MAX_PLY && !mStopped; depth++) {
+            int best = searchRoot(depth, result);
+            if (best != NO_MOVE)
+                result = best;
+            if (mStopped || Math.abs(mScore) >= MATE - MAX_PLY)
+                break;
+        }
+        return result;
+    }
+
+    /** Return the number of nodes searched by the most recent call to findBestMove(). */
+    long getNodes() {
+        return mNodes;
+    }
+
+    /** Return the static evaluation of the board from the point of view of the side to move. */
+    int evaluate(final ChessBitboard board) {
+        int score = 0;
+        for (long bits = board.getOccupied(); bits != 0; bits &= bits - 1) {
+            int position = Long.numberOfTrailingZeros(bits);
+            int piece = board.mailbox[position];
+            int kind = ChessBitboard.getKind(piece);
+            int square = ChessBitboard.getSide(piece) == PRIMARY_SIDE ? position : position ^ 56;
+            int value = VALUES[kind] + SQUARE_BONUS[kind][square];
+            score += ChessBitboard.getSide(piece) == board.sideToMove ? value : -value;
+        }
+        return score;
+    }
+
+    // Private instance methods.
+
+    /** Return the best root move for a search to the given depth, NO_MOVE if out of time. */
+    private int searchRoot(final int depth, final int previousBest) {
+        int count = getRootMoves();
+        orderMoves(0, count, previousBest);
+        int alpha = -INFINITY;
+        int result = NO_MOVE;
+        for (int index = 0; index < count; index++) {
+            int move = nextMove(0, index, count);
+            mBoard.makeMove(move);
+            int score = -search(depth - 1, 1, -INFINITY, -alpha);
+            mBoard.unmakeMove();
+            if (mStopped)
+                break;
+            if (score > alpha) {
+                alpha = score;
+                result = move;
+            }
+        }
+        if (result != NO_MOVE)
+            store(mBoard.getKey(), result, alpha, depth, EXACT, 0);
+        mScore = alpha;
+        return result;
+    }
+
+    /** Return the negamax score of the board searched to the given depth within a window. */
+    private int search(final int depth, final int ply, final int alpha, final int beta) {
+        if (isOutOfTime())
+            return 0;
+        boolean inCheck = mBoard.isInCheck(mBoard.sideToMove);
+        if (depth <= 0 && !inCheck)
+            return quiesce(ply, alpha, beta);
+        if (ply >= MAX_PLY - 1)
+            return evaluate(mBoard);
+
+        // Use the transposition table entry to cut the search off or to order the moves.
+        long key = mBoard.getKey();
+        int slot = getIndex(key);
+        int hashMove = NO_MOVE;
+        if (mKeys[slot] == key) {
+            hashMove = mMoves[slot];
+            int score = fromTable(mScores[slot], ply);
+            byte bound = mBounds[slot];
+            if (mDepths[slot] >= depth && (bound == EXACT || (bound == LOWER && score >= beta) ||
+                    (bound == UPPER && score <= alpha)))
+                return score;
+        }
+
+        // Search each legal move, extending the search by a ply when in check.  A side with no
+        // legal move is either mated or stalemated.
+        int[] moves = mMoveLists[ply];
+        int count = mBoard.generateLegalMoves(moves);
+        if (count == 0)
+            return inCheck ? -MATE + ply : 0;
+        orderMoves(ply, count, hashMove);
+        int nextDepth = inCheck ? depth : depth - 1;
+        int best = -INFINITY;
+        int bestMove = NO_MOVE;
+        int low = alpha;
+        for (int index = 0; index < count; index++) {
+            int move = nextMove(ply, index, count);
+            mBoard.makeMove(move);
+            int score = -search(nextDepth, ply + 1, -beta, -low);
+            mBoard.unmakeMove();
+            if (mStopped)
+                return 0;
+            if (score <= best)
+                continue;
+            best = score;
+            bestMove = move;
+            if (score > low)
+                low = score;
+            if (score >= beta) {
+                recordCutoff(move, ply, depth);
+                break;
+            }
+        }
+        byte bound = best >= beta ? LOWER : best > alpha ? EXACT : UPPER;
+        store(key, bestMove, best, depth, bound, ply);
+        return best;
+    }
+
+    /** Return the score of the board after resolving captures (and promotions). */
+    private int quiesce(final int ply, final int alpha, final int beta) {
+        if (isOutOfTime())
+            return 0;
+        int standPat = evaluate(mBoard);
+        if (standPat >= beta || ply >= MAX_PLY - 1)
+            return standPat;
+        int low = Math.max(alpha, standPat);
+        int[] moves = mMoveLists[ply];
+        int count = mBoard.generateLegalMoves(moves);
+        int captures = 0;
+        for (int index = 0; index < count; index++)
+            if (isTactical(moves[index]))
+                moves[captures++] = moves[index];
+        orderMoves(ply, captures, NO_MOVE);
+        for (int index = 0; index < captures; index++) {
+            int move = nextMove(ply, index, captures);
+            mBoard.makeMove(move);
+            int score = -quiesce(ply + 1, -beta, -low);
+            mBoard.unmakeMove();
+            if (mStopped)
+                return 0;
+            if (score >= beta)
+                return score;
+            if (score > low)
+                low = score;
+        }
+        return low;
+    }
+
+    /** Return the number of legal root moves, stored at ply zero, using the position cache. */
+    private int getRootMoves() {
+        int[] moves = mMoveLists[0];
+        long key = mBoard.getKey();
+        int result = mCache.get(key, moves);
+        if (result != PositionCache.NOT_FOUND)
+            return result;
+        result = mBoard.generateLegalMoves(moves);
+        boolean inCheck = mBoard.isInCheck(mBoard.sideToMove);
+        mCache.put(key, moves, result, inCheck ? PositionCache.IN_CHECK : 0);
+        return result;
+    }
+
+    /** Return the transposition table index for the given key. */
+    private int getIndex(final long key) {
+        return (int) key & (TABLE_SIZE - 1);
+    }
+
+    /** Return a table score (relative to the node) as a score relative to the root. */
+    private int fromTable(final int score, final int ply) {
+        if (score >= MATE - MAX_PLY)
+            return score - ply;
+        return score <= -MATE + MAX_PLY ? score + ply : score;
+    }
+
+    /** Return TRUE iff the search must stop, checking the clock every few nodes. */
+    private boolean isOutOfTime() {
+        if ((++mNodes & CHECK_MASK) == 0 &&
+                (System.currentTimeMillis() >= mDeadline || Thread.currentThread().isInterrupted()))
+            mStopped = true;
+        return mStopped;
+    }
+
+    /** Return TRUE iff the given move captures a piece or promotes a pawn. */
+    private boolean isTactical(final int move) {
+        int to = ChessBitboard.getTo(move);
+        int piece = mBoard.mailbox[ChessBitboard.getFrom(move)];
+        boolean isEnPassant = ChessBitboard.getKind(piece) == PAWN &&
+                to == mBoard.enPassantPosition;
+        boolean isPromotion = ChessBitboard.getPromotion(move) != PAWN;
+        return mBoard.mailbox[to] != EMPTY || isEnPassant || isPromotion;
+    }
+
+    /** Return the move at the given index after swapping the best remaining move into place. */
+    private int nextMove(final int ply, final int index, final int count) {
+        int[] moves = mMoveLists[ply];
+        int[] order = mOrderLists[ply];
+        int best = index;
+        for (int next = index + 1; next < count; next++)
+            if (order[next] > order[best])
+                best = next;
+        int move = moves[best];
+        moves[best] = moves[index];
+        moves[index] = move;
+        int score = order[best];
+        order[best] = order[index];
+        order[index] = score;
+        return move;
+    }
+
+    /** Score the moves at the given ply for ordering: hash move, captures, killers, history. */
+    private void orderMoves(final int ply, final int count, final int hashMove) {
+        int[] moves = mMoveLists[ply];
+        int[] order = mOrderLists[ply];
+        for (int index = 0; index < count; index++) {
+            int move = moves[index];
+            int from = ChessBitboard.getFrom(move);
+            int to = ChessBitboard.getTo(move);
+            int victim = mBoard.mailbox[to];
+            int attacker = ChessBitboard.getKind(mBoard.mailbox[from]);
+            if (move == hashMove)
+                order[index] = HASH_MOVE_ORDER;
+            else if (victim != EMPTY)
+                order[index] = CAPTURE_ORDER + VALUES[ChessBitboard.getKind(victim)] * 8 -
+                        VALUES[attacker] / 100;
+            else if (ChessBitboard.getPromotion(move) != PAWN)
+                order[index] = CAPTURE_ORDER + VALUES[ChessBitboard.getPromotion(move)];
+            else if (move == mKillers[ply][0] || move == mKillers[ply][1])
+                order[index] = KILLER_ORDER;
+            else
+                order[index] = mHistory[from][to];
+        }
+    }
+
+    /** Remember a quiet move that caused a beta cutoff as a killer and in the history table. */
+    private void recordCutoff(final int move, final int ply, final int depth) {
+        if (isTactical(move))
+            return;
+        if (mKillers[ply][0] != move) {
+            mKillers[ply][1] = mKillers[ply][0];
+            mKillers[ply][0] = move;
+        }
+        int[] history = mHistory[ChessBitboard.getFrom(move)];
+        int to = ChessBitboard.getTo(move);
+        history[to] = Math.min(history[to] + depth * depth, KILLER_ORDER - 1);
+    }
+
+    /** Store a search result, replacing any shallower entry in the same slot. */
+    private void store(final long key, final int move, final int score, final int depth,
+                       final byte bound, final int ply) {
+        int index = getIndex(key);
+        if (mKeys[index] == key && mDepths[index] > depth)
+            return;
+        int tableScore = score;
+        if (score >= MATE - MAX_PLY)
+            tableScore = score + ply;
+        else if (score <= -MATE + MAX_PLY)
+            tableScore = score - ply;
+        mKeys[index] = key;
+        mMoves[index] = move;
+        mScores[index] = tableScore;
+        mDepths[index] = (byte) depth;
+        mBounds[index] = bound;
+    }
+}
@@ -174,7 +174,7 @@ public class CheckersFragment extends BaseExperienceFragment {
         super.onStart();
         FabManager.game.setMenu(CHECKERS_FAM_KEY, getCheckersMenu());
         ToolbarManager.instance.init(this, helpAndFeedback, settings, chat, invite);
-        mBoard.init(this, mTileClickHandler); // = (GridLayout) mLayout.findViewById(board);
+        mBoard.init(this, mTileClickHandler);
 
         // Color the player icons and create a tile click handler.
         ImageView playerOneIcon = (ImageView) mLayout.findViewById(player1Icon);
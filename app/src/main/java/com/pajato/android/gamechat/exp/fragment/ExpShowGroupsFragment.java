@@ -74,7 +74,7 @@ public class ExpShowGroupsFragment extends BaseExperienceFragment {
     public String getToolbarTitle() {
         // If the experiences are in more than one group (including the me group) use a groups
         // toolbar title, otherwise use a rooms toolbar title.
-        if (ExperienceManager.instance.expGroupMap.size() > 1)
+        if (ExperienceManager.instance.getGroupKeys().size() > 1)
             return getString(R.string.ExpGroupsToolbarTitle);
         return getString(R.string.MyGameRoomToolbarTitle);
     }
@@ -36,6 +36,7 @@ import com.pajato.android.gamechat.common.DispatchManager;
 import com.pajato.android.gamechat.common.Dispatcher;
 import com.pajato.android.gamechat.common.FabManager;
 import com.pajato.android.gamechat.common.InvitationManager;
+import com.pajato.android.gamechat.common.PlayModeManager;
 import com.pajato.android.gamechat.common.ToolbarManager;
 import com.pajato.android.gamechat.common.adapter.ListItem;
 import com.pajato.android.gamechat.common.adapter.MenuEntry;
@@ -54,33 +55,27 @@ import com.pajato.android.gamechat.exp.NotificationManager;
 import com.pajato.android.gamechat.exp.model.Player;
 import com.pajato.android.gamechat.exp.model.TTTBoard;
 import com.pajato.android.gamechat.exp.model.TicTacToe;
+import com.pajato.android.gamechat.exp.tictactoe.TTTBitboard;
+import com.pajato.android.gamechat.exp.tictactoe.TTTSolver;
 import com.pajato.android.gamechat.main.PaneManager;
 
 import org.greenrobot.eventbus.Subscribe;
 
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 
 import static com.pajato.android.gamechat.common.FragmentType.selectGroupsRooms;
 import static com.pajato.android.gamechat.common.ToolbarManager.MenuItemType.chat;
 import static com.pajato.android.gamechat.common.ToolbarManager.MenuItemType.helpAndFeedback;
+import static com.pajato.android.gamechat.common.ToolbarManager.MenuItemType.hint;
 import static com.pajato.android.gamechat.common.ToolbarManager.MenuItemType.invite;
 import static com.pajato.android.gamechat.common.ToolbarManager.MenuItemType.settings;
 import static com.pajato.android.gamechat.common.model.JoinState.JoinType.exp;
 import static com.pajato.android.gamechat.event.BaseChangeEvent.REMOVED;
 import static com.pajato.android.gamechat.exp.ExpHelper.getBaseFragment;
 import static com.pajato.android.gamechat.exp.ExpType.tttET;
-import static com.pajato.android.gamechat.exp.model.TTTBoard.BEG_COL;
-import static com.pajato.android.gamechat.exp.model.TTTBoard.BOT_ROW;
-import static com.pajato.android.gamechat.exp.model.TTTBoard.END_COL;
-import static com.pajato.android.gamechat.exp.model.TTTBoard.LEFT_DIAG;
-import static com.pajato.android.gamechat.exp.model.TTTBoard.MID_COL;
-import static com.pajato.android.gamechat.exp.model.TTTBoard.MID_ROW;
-import static com.pajato.android.gamechat.exp.model.TTTBoard.RIGHT_DIAG;
-import static com.pajato.android.gamechat.exp.model.TTTBoard.TOP_ROW;
 import static com.pajato.android.gamechat.exp.model.TicTacToe.ACTIVE;
 import static com.pajato.android.gamechat.main.NetworkManager.OFFLINE_EXPERIENCE_KEY;
 
@@ -105,6 +100,14 @@ public class TTTFragment extends BaseExperienceFragment implements View.OnClickL
     /** The logcat TAG. */
     private static final String TAG = TTTFragment.class.getSimpleName();
 
+    /** The time, in milliseconds, a hinted button is shown pressed. */
+    private static final long HINT_TIME = 750L;
+
+    // Private instance variables.
+
+    /** The perfect play solver used by the computer opponent and for hints. */
+    private final TTTSolver mSolver = new TTTSolver();
+
     // Public instance methods.
 
     /** Satisfy base class */
@@ -146,11 +149,27 @@ public class TTTFragment extends BaseExperienceFragment implements View.OnClickL
             handleNewGame();
     }
 
+    /** Return TRUE as the solver can play tictactoe. */
+    @Override public boolean hasComputerOpponent() {
+        return true;
+    }
+
     /** Handle a TTT board tile click. */
     @Override public void onClick(final View view) {
+        // Ignore clicks during the computer's turn, other than one starting a new game, which
+        // the computer then opens.
         Object tag = view.getTag();
-        if (tag instanceof String && ((String) tag).startsWith("button"))
-            handleClick((String) tag);
+        if (!(tag instanceof String) || !((String) tag).startsWith("button"))
+            return;
+        TicTacToe model = getModel();
+        if (model != null && PlayModeManager.instance.isComputerTurn(model)) {
+            if (model.state == ACTIVE)
+                NotificationManager.instance.notify(this, R.string.PlayOutOfTurnMessageText);
+            else
+                handleNewGame();
+            return;
+        }
+        handleClick((String) tag);
     }
 
     /** Handle a menu item selection. */
@@ -159,6 +178,9 @@ public class TTTFragment extends BaseExperienceFragment implements View.OnClickL
             return;
         // Case on the item resource id if there is one to be had.
         switch (event.item != null ? event.item.getItemId() : -1) {
+            case R.string.MenuItemHint:
+                showHint();
+                break;
             case R.string.InviteFriendMessage:
                 // If not on a tablet, make sure that we switch to the chat perspective
                 if (!PaneManager.instance.isTablet()) {
@@ -235,7 +257,7 @@ public class TTTFragment extends BaseExperienceFragment implements View.OnClickL
         super.onStart();
         FabManager.game.setMenu(TIC_TAC_TOE_FAM_KEY, getTTTMenu());
         FabManager.game.init(this);
-        ToolbarManager.instance.init(this, helpAndFeedback, settings, chat, invite);
+        ToolbarManager.instance.init(this, hint, helpAndFeedback, settings, chat, invite);
 
         // Place a click listener on each button in the grid.
         final String format = "Invalid tag found on button with tag {%s}";
@@ -250,6 +272,17 @@ public class TTTFragment extends BaseExperienceFragment implements View.OnClickL
             }
     }
 
+    /** Play the solver's move at once when it is the computer's turn. */
+    @Override public void startComputerMove() {
+        TicTacToe model = getModel();
+        boolean isComputerTurn = model != null && PlayModeManager.instance.isComputerTurn(model);
+        if (!isComputerTurn || model.state != ACTIVE)
+            return;
+        int cell = getBestMove(model);
+        if (cell != TTTBitboard.NO_CELL)
+            play(model, TTTBitboard.getTag(cell));
+    }
+
     // Protected instance methods.
 
     /** Create a default, partially populated, TicTacToe experience. */
@@ -342,54 +375,33 @@ public class TTTFragment extends BaseExperienceFragment implements View.OnClickL
         return (TicTacToe) mExperience;
     }
 
-    /** Return the game state after applying the given button move to the data model. */
-    private int getState(@NonNull final TicTacToe model, String buttonTag) {
-        // Check to see if the game is a tie, with all moves exhausted.
-        if (model.state == ACTIVE && model.board.grid.size() == 9) return TicTacToe.TIE;
-
-        // Not a tie.  Determine the winner state based on the current play given by the button tag.
-        int value = model.getSymbolValue();
-        if (model.state == ACTIVE) return getState(model, value, buttonTag);
-
-        return model.state;
-    }
-
-    /** Return the game state after applying the given button move to the data model. */
-    private int getState(@NonNull final TicTacToe model, final int value, final String buttonTag) {
-        // Case on the button tag to update the appropriate tallies.
-        switch (buttonTag) {
-            case "button00": return getState(model, value, TOP_ROW, BEG_COL, LEFT_DIAG);
-            case "button01": return getState(model, value, TOP_ROW, MID_COL);
-            case "button02": return getState(model, value, TOP_ROW, END_COL, RIGHT_DIAG);
-            case "button10": return getState(model, value, MID_ROW, BEG_COL);
-            case "button11": return getState(model, value, MID_ROW, MID_COL, LEFT_DIAG, RIGHT_DIAG);
-            case "button12": return getState(model, value, MID_ROW, END_COL);
-            case "button20": return getState(model, value, BOT_ROW, BEG_COL, RIGHT_DIAG);
-            case "button21": return getState(model, value, BOT_ROW, MID_COL);
-            case "button22": return getState(model, value, BOT_ROW, END_COL, LEFT_DIAG);
-            default: break;
-        }
+    /** Return the best cell for the player to move, NO_CELL if the game is over. */
+    private int getBestMove(@NonNull final TicTacToe model) {
+        int xMask = getMask(model, 0);
+        int oMask = getMask(model, 1);
+        return mSolver.getBestMove(xMask, oMask, model.turn);
+    }
 
-        return model.state;
-    }
-
-    /** Return the game state after updating the given tallies. */
-    private int getState(@NonNull final TicTacToe model, final int value, final String... tallyKeys) {
-        // Ensure that the tallies map exists, creating it if it doesn't and apply the value to each
-        // of the keys and return the state.
-        final int X_WIN_VALUE = 3;
-        final int O_WIN_VALUE = 12;
-        if (model.board.tallies == null) model.board.tallies = new HashMap<>();
-        for (String key : tallyKeys) {
-            // Ensure that the entry exists.
-            int tally = model.board.tallies.containsKey(key) ? model.board.tallies.get(key) : 0;
-            tally += value;
-            model.board.tallies.put(key, tally);
-            if (tally == X_WIN_VALUE) return TicTacToe.X_WINS;
-            if (tally == O_WIN_VALUE) return TicTacToe.O_WINS;
-        }
+    /** Return the mask of the cells holding the symbol of the player at the given index. */
+    private int getMask(@NonNull final TicTacToe model, final int index) {
+        if (model.board == null)
+            return 0;
+        return TTTBitboard.getMask(model.board.grid, model.players.get(index).symbol);
+    }
 
-        return ACTIVE;
+    /**
+     * Return the game state after the player to move has played on the grid, rewriting the wire
+     * form tallies as a side effect.
+     */
+    private int getState(@NonNull final TicTacToe model) {
+        if (model.state != ACTIVE)
+            return model.state;
+        int xMask = getMask(model, 0);
+        int oMask = getMask(model, 1);
+        model.board.updateTallies(xMask, oMask);
+        if (TTTBitboard.isWin(model.turn ? xMask : oMask))
+            return model.turn ? TicTacToe.X_WINS : TicTacToe.O_WINS;
+        return (xMask | oMask) == TTTBitboard.FULL ? TicTacToe.TIE : ACTIVE;
     }
 
     /** Return the FAM menu (empty) - the FAB operates as a button here. */
@@ -426,13 +438,9 @@ public class TTTFragment extends BaseExperienceFragment implements View.OnClickL
                 break;
         }
 
-        // Update the database with the collected changes.
-        if (model.board == null) model.board = new TTTBoard();
-        model.board.grid.put(buttonTag, model.getSymbolText());
-        model.state = getState(model, buttonTag);
-        model.setWinCount();
-        model.toggleTurn();
-        ExpHelper.updateModel(mExperience);
+        // Play the move and let the computer answer it.
+        play(model, buttonTag);
+        startComputerMove();
     }
 
     /** Handle a new game by resetting the data model. */
@@ -445,9 +453,11 @@ public class TTTFragment extends BaseExperienceFragment implements View.OnClickL
         }
 
         // Reset the data model, update the database and clear the notification manager one-shot.
+        // Let the computer open the new game if it is its turn.
         model.board = null;
         model.state = ACTIVE;
         ExpHelper.updateModel(mExperience);
+        startComputerMove();
     }
 
     /** Initialize the board model and values and clear the winner text. */
@@ -471,6 +481,16 @@ public class TTTFragment extends BaseExperienceFragment implements View.OnClickL
         }
     }
 
+    /** Play the given button for the player to move and update the database. */
+    private void play(@NonNull final TicTacToe model, final String buttonTag) {
+        if (model.board == null) model.board = new TTTBoard();
+        model.board.grid.put(buttonTag, model.getSymbolText());
+        model.state = getState(model);
+        model.setWinCount();
+        model.toggleTurn();
+        ExpHelper.updateModel(mExperience);
+    }
+
     /** Process a resumption by testing and waiting for the experience. */
     private void resume() {
         if (mExperience == null) {
@@ -564,6 +584,24 @@ public class TTTFragment extends BaseExperienceFragment implements View.OnClickL
         winCount.setText(String.valueOf(model.players.get(index).winCount));
     }
 
+    /** Show the solver's move for the player to move by briefly pressing its button. */
+    private void showHint() {
+        TicTacToe model = getModel();
+        if (model == null || model.state != ACTIVE || mLayout == null)
+            return;
+        int cell = getBestMove(model);
+        final View button = cell != TTTBitboard.NO_CELL
+                ? mLayout.findViewWithTag(TTTBitboard.getTag(cell)) : null;
+        if (button == null)
+            return;
+        button.setPressed(true);
+        button.postDelayed(new Runnable() {
+            @Override public void run() {
+                button.setPressed(false);
+            }
+        }, HINT_TIME);
+    }
+
     /** Update the game state. */
     private void setState(final TicTacToe model) {
         // Generate a message string appropriate for a win or tie, or nothing if the game is active.
@@ -29,6 +29,9 @@ public class Player {
     /** The player account id; may be null if player is local friend or computer */
     public String id;
 
+    /** TRUE iff the computer plays for this (local) player, kept so that it resumes its games. */
+    public boolean computer;
+
     /** The player's symbol (either X or O for tictactoe - not used for chessET or checkersET). */
     public String symbol;
 
@@ -70,6 +73,7 @@ public class Player {
         result.put("team", team);
         result.put("winCount", winCount);
         result.put("id", id);
+        result.put("computer", computer);
         return result;
     }
 
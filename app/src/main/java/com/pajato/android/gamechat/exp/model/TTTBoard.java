@@ -17,6 +17,8 @@
 
 package com.pajato.android.gamechat.exp.model;
 
+import com.pajato.android.gamechat.exp.tictactoe.TTTBitboard;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -31,6 +33,9 @@ import java.util.Map;
  *
  * Credit for the basic algorithm goes to Bryan Scott.
  *
+ * The maps are the wire form only: the game is evaluated on TTTBitboard masks and the tallies
+ * are rewritten from those masks as each move is played.
+ *
  * @author Paul Michael Reilly
  */
 public class TTTBoard {
@@ -77,6 +82,16 @@ public class TTTBoard {
         tallies.clear();
     }
 
+    /** Rewrite the (non-zero) tallies from the given masks of X and O symbols. */
+    public void updateTallies(final int xMask, final int oMask) {
+        tallies.clear();
+        for (int index = 0; index < TTTBitboard.LINES.length; index++) {
+            int tally = TTTBitboard.getTally(TTTBitboard.LINES[index], xMask, oMask);
+            if (tally != 0)
+                tallies.put(TTTBitboard.LINE_KEYS[index], tally);
+        }
+    }
+
     /** Provide a default map for a Firebase create/update. */
     public Map<String, Object> toMap() {
         Map<String, Object> result = new HashMap<>();
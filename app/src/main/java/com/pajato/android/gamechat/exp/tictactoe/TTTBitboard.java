@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp.tictactoe;
+
+import java.util.Locale;
+import java.util.Map;
+
+import static com.pajato.android.gamechat.exp.model.TTTBoard.BEG_COL;
+import static com.pajato.android.gamechat.exp.model.TTTBoard.BOT_ROW;
+import static com.pajato.android.gamechat.exp.model.TTTBoard.END_COL;
+import static com.pajato.android.gamechat.exp.model.TTTBoard.LEFT_DIAG;
+import static com.pajato.android.gamechat.exp.model.TTTBoard.MID_COL;
+import static com.pajato.android.gamechat.exp.model.TTTBoard.MID_ROW;
+import static com.pajato.android.gamechat.exp.model.TTTBoard.RIGHT_DIAG;
+import static com.pajato.android.gamechat.exp.model.TTTBoard.TOP_ROW;
+
+/**
+ * Provide a primitive tictactoe board encoding: each player's symbols are a 9 bit mask over the
+ * cells, cell = row * 3 + column, so that a win is a single lookup in a precomputed 512 entry
+ * table.  The Firebase grid and tallies maps (see TTTBoard) remain the wire form; this class
+ * converts between the two.
+ *
+ * This class has no Android or Firebase dependencies so that it can be exercised on the JVM.
+ */
+public class TTTBitboard {
+
+    // Public class constants.
+
+    /** The number of cells on the board. */
+    public static final int CELLS = 9;
+
+    /** The mask of a full board. */
+    public static final int FULL = (1 << CELLS) - 1;
+
+    /** The cell value denoting no cell (no move). */
+    public static final int NO_CELL = -1;
+
+    /** The eight win lines, in the same order as their tally keys. */
+    public static final int[] LINES = {0x007, 0x038, 0x1C0, 0x049, 0x092, 0x124, 0x111, 0x054};
+
+    /** The wire form tally key of each win line. */
+    public static final String[] LINE_KEYS =
+            {TOP_ROW, MID_ROW, BOT_ROW, BEG_COL, MID_COL, END_COL, LEFT_DIAG, RIGHT_DIAG};
+
+    // Private class constants.
+
+    /** The button tag prefix of each grid cell. */
+    private static final String TAG_PREFIX = "button";
+
+    /** TRUE for each mask of symbols that holds a complete line. */
+    private static final boolean[] WINS = new boolean[1 << CELLS];
+
+    static {
+        for (int mask = 0; mask <= FULL; mask++)
+            for (int line : LINES)
+                if ((mask & line) == line)
+                    WINS[mask] = true;
+    }
+
+    // Public class methods.
+
+    /** Return the cell of the given button tag ("buttonRC"), or NO_CELL if it is not a cell. */
+    public static int getCell(final String buttonTag) {
+        if (buttonTag == null || buttonTag.length() != TAG_PREFIX.length() + 2 ||
+                !buttonTag.startsWith(TAG_PREFIX))
+            return NO_CELL;
+        int row = buttonTag.charAt(TAG_PREFIX.length()) - '0';
+        int col = buttonTag.charAt(TAG_PREFIX.length() + 1) - '0';
+        return row >= 0 && row < 3 && col >= 0 && col < 3 ? row * 3 + col : NO_CELL;
+    }
+
+    /** Return the mask of the cells in the given grid holding the given symbol. */
+    public static int getMask(final Map<String, String> grid, final String symbol) {
+        int result = 0;
+        if (grid == null)
+            return result;
+        for (Map.Entry<String, String> entry : grid.entrySet()) {
+            int cell = getCell(entry.getKey());
+            if (cell != NO_CELL && entry.getValue() != null && entry.getValue().equals(symbol))
+                result |= 1 << cell;
+        }
+        return result;
+    }
+
+    /** Return the button tag of the given cell. */
+    public static String getTag(final int cell) {
+        return String.format(Locale.US, "%s%d%d", TAG_PREFIX, cell / 3, cell % 3);
+    }
+
+    /** Return the wire form tally of the given line: 1 per X symbol and 4 per O symbol. */
+    public static int getTally(final int line, final int xMask, final int oMask) {
+        return Integer.bitCount(xMask & line) + 4 * Integer.bitCount(oMask & line);
+    }
+
+    /** Return TRUE iff the given mask of symbols holds a complete line. */
+    public static boolean isWin(final int mask) {
+        return WINS[mask & FULL];
+    }
+}
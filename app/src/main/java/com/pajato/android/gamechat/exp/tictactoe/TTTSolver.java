@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp.tictactoe;
+
+import java.util.Arrays;
+
+import static com.pajato.android.gamechat.exp.tictactoe.TTTBitboard.CELLS;
+import static com.pajato.android.gamechat.exp.tictactoe.TTTBitboard.FULL;
+import static com.pajato.android.gamechat.exp.tictactoe.TTTBitboard.NO_CELL;
+
+/**
+ * Provide a perfect play tictactoe solver: a negamax search memoised over every position, so
+ * each of the 5,478 positions reachable from an empty board (and their counterparts with O to
+ * move first) is solved at most once and every later query is a table lookup.  Positions are
+ * indexed by their base 3 encoding (0 empty, 1 X, 2 O per cell) and the side to move.
+ *
+ * Scores are from the point of view of the side to move: zero for a draw, otherwise one more
+ * than the number of empty cells left when the game is won (positive) or lost (negative), so
+ * that quicker wins and slower losses are preferred.  An instance is not thread safe.
+ */
+public class TTTSolver {
+
+    // Private class constants.
+
+    /** The number of base 3 encodings of a board. */
+    private static final int ENCODINGS = 19683;
+
+    /** The score marking an unsolved position. */
+    private static final byte UNSOLVED = Byte.MIN_VALUE;
+
+    /** The base 3 encoding of the cells of each mask, with each cell counting one. */
+    private static final int[] BASE_THREE = new int[1 << CELLS];
+
+    static {
+        for (int mask = 1; mask <= FULL; mask++) {
+            int cell = Integer.numberOfTrailingZeros(mask);
+            int power = 1;
+            for (int index = 0; index < cell; index++)
+                power *= 3;
+            BASE_THREE[mask] = BASE_THREE[mask & (mask - 1)] + power;
+        }
+    }
+
+    // Private instance variables.
+
+    /** The solved scores, indexed by encoding and then by the side to move. */
+    private final byte[] mScores = new byte[2 * ENCODINGS];
+
+    /** The number of positions solved. */
+    private int mSolvedCount;
+
+    // Public constructors.
+
+    /** Build a solver with no positions solved yet. */
+    public TTTSolver() {
+        Arrays.fill(mScores, UNSOLVED);
+    }
+
+    // Public instance methods.
+
+    /**
+     * Return the best cell for the side to move to play, or NO_CELL if the game is over.  Ties
+     * go to the lowest cell so that the choice is deterministic.
+     */
+    public int getBestMove(final int xMask, final int oMask, final boolean xToMove) {
+        if (isOver(xMask, oMask))
+            return NO_CELL;
+        int result = NO_CELL;
+        int best = Integer.MIN_VALUE;
+        for (int empty = FULL & ~(xMask | oMask); empty != 0; empty &= empty - 1) {
+            int cell = 1 << Integer.numberOfTrailingZeros(empty);
+            int score = xToMove ? -getScore(xMask | cell, oMask, false)
+                    : -getScore(xMask, oMask | cell, true);
+            if (score > best) {
+                best = score;
+                result = Integer.numberOfTrailingZeros(cell);
+            }
+        }
+        return result;
+    }
+
+    /** Return the score of the given position for the side to move. */
+    public int getScore(final int xMask, final int oMask, final boolean xToMove) {
+        int index = BASE_THREE[xMask] + 2 * BASE_THREE[oMask] + (xToMove ? 0 : ENCODINGS);
+        if (mScores[index] != UNSOLVED)
+            return mScores[index];
+        int empties = CELLS - Integer.bitCount(xMask | oMask);
+        int result;
+        if (TTTBitboard.isWin(xMask) || TTTBitboard.isWin(oMask))
+            // The side that just moved has won.
+            result = -(empties + 1);
+        else if (empties == 0)
+            result = 0;
+        else {
+            result = Integer.MIN_VALUE;
+            for (int empty = FULL & ~(xMask | oMask); empty != 0; empty &= empty - 1) {
+                int cell = 1 << Integer.numberOfTrailingZeros(empty);
+                int score = xToMove ? -getScore(xMask | cell, oMask, false)
+                        : -getScore(xMask, oMask | cell, true);
+                result = Math.max(result, score);
+            }
+        }
+        mScores[index] = (byte) result;
+        mSolvedCount++;
+        return result;
+    }
+
+    // Package private instance methods.
+
+    /** Return the number of positions solved so far. */
+    int getSolvedCount() {
+        return mSolvedCount;
+    }
+
+    // Private instance methods.
+
+    /** Return TRUE iff the game is over: a line is complete or the board is full. */
+    private boolean isOver(final int xMask, final int oMask) {
+        return TTTBitboard.isWin(xMask) || TTTBitboard.isWin(oMask) || (xMask | oMask) == FULL;
+    }
+}
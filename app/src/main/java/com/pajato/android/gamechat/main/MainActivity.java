@@ -54,6 +54,8 @@ import com.pajato.android.gamechat.database.MemberManager;
 import com.pajato.android.gamechat.database.MessageManager;
 import com.pajato.android.gamechat.database.ProtectedUserManager;
 import com.pajato.android.gamechat.database.RoomManager;
+import com.pajato.android.gamechat.database.SnapshotManager;
+import com.pajato.android.gamechat.database.UnseenCountManager;
 import com.pajato.android.gamechat.event.AppEventManager;
 import com.pajato.android.gamechat.event.AuthStateChangedEvent;
 import com.pajato.android.gamechat.event.AuthenticationChangeEvent;
@@ -291,6 +293,11 @@ public class MainActivity extends BaseActivity
             NavigationManager.instance.toggleAccountSwitchState(this);
             AuthenticationManager.signOut(this, item.getTitle().toString());
             handled = true;
+        } else if (item.getItemId() == R.id.eventMetrics) {
+            // Show the event bus metrics (debug builds only).
+            String report = AppEventManager.instance.getMetrics().getReport();
+            showAlertDialog(item.getTitle().toString(), report, false, null, null);
+            handled = true;
         }
 
         // Close the navigation drawer and treat all unhandled menu item clicks as future features.
@@ -394,6 +401,8 @@ public class MainActivity extends BaseActivity
         AppEventManager.instance.register(NavigationManager.instance);
         AppEventManager.instance.register(InvitationManager.instance);
         AppEventManager.instance.register(ProtectedUserManager.instance);
+        AppEventManager.instance.register(UnseenCountManager.instance);
+        AppEventManager.instance.register(SnapshotManager.instance);
 
         // Deal with initial sign in via the intro activity and then normal processing.
         processIntroPage();
@@ -401,6 +410,12 @@ public class MainActivity extends BaseActivity
         init();
     }
 
+    /** Save the local snapshot of the account holder's data for the next cold start. */
+    @Override protected void onStop() {
+        SnapshotManager.instance.save();
+        super.onStop();
+    }
+
     // Private class methods.
 
     /** Return a name for the given request. */
@@ -459,6 +474,7 @@ public class MainActivity extends BaseActivity
         ProgressManager.instance.init();
         JoinManager.instance.init(this);
         NavigationManager.instance.init(this, (Toolbar) findViewById(R.id.toolbar));
+        SnapshotManager.instance.init(this);
 
         // Register the first of many app event listeners.
         AppEventManager.instance.register(AccountManager.instance);
@@ -17,54 +17,173 @@
 
 package com.pajato.android.gamechat.main;
 
-import android.app.IntentService;
+import android.app.Service;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
 import android.util.Log;
 
+import com.pajato.android.gamechat.R;
+import com.pajato.android.gamechat.chat.model.Room;
 import com.pajato.android.gamechat.database.AccountManager;
+import com.pajato.android.gamechat.database.RoomManager;
+
+import java.util.Locale;
 
 /**
- * Provide an intent service to have the Firebase Cloud Messaging servers notify interested room
- * members of a new message or a game move using push messaging.  If a member has the room open in
- * the foreground then that member is not notified.  Nor is the member sending the message.
+ * Provide a service to have the Firebase Cloud Messaging servers notify interested room members of
+ * a new message or a game move using push messaging.  If a member has the room open in the
+ * foreground then that member is not notified.  Nor is the member sending the message.  Requests
+ * are queued with a notification dispatcher, coalesced per room for a short window and then
+ * dispatched on a background thread; the service stops itself once the queue is drained.  The
+ * scheduling state and the decision to stop are kept on the main thread, where start requests
+ * arrive, so that a request can never be queued behind a stop.
  *
  * @author Paul Michael Reilly on 3/15/17
  */
-public class MainService extends IntentService {
+public class MainService extends Service {
 
     // Public class constants.
 
     /** Provide an intent key the the room push value. */
     public static final String ROOM_KEY = "roomKey";
 
+    /** The time, in milliseconds, a notification waits for others in the same room. */
+    public static final long WINDOW = 2000;
+
     // Private class constants.
 
     /** The logcat tag. */
     private static final String TAG = MainService.class.getSimpleName();
 
-    // Public constructor
+    /** The dispatch log format. */
+    private static final String LOG_FORMAT = "Dispatched %d notifications (%d coalesced, %d"
+            + " refused) in %d batches (%d failed).";
+
+    // Private class variables.
+
+    /** The transport used in place of push messaging, by tests for example, null if none. */
+    private static NotificationTransport sTransport;
+
+    // Private instance variables.
+
+    /** The dispatcher queuing and delivering the notifications. */
+    private NotificationDispatcher mDispatcher;
+
+    /** The task, run on the worker thread, dispatching the queued notifications. */
+    private Runnable mDispatchTask = new Runnable() {
+        @Override public void run() {
+            int count = mDispatcher.dispatch();
+            Log.d(TAG, String.format(Locale.US, LOG_FORMAT, count,
+                    mDispatcher.getCoalescedCount(), mDispatcher.getRefusedCount(),
+                    mDispatcher.getBatchCount(), mDispatcher.getFailureCount()));
+            mMainHandler.post(mDispatchedTask);
+        }
+    };
+
+    /**
+     * The task, run on the main thread once a dispatch is done, scheduling another dispatch for
+     * the notifications queued in the meantime or stopping the service if there are none.
+     */
+    private Runnable mDispatchedTask = new Runnable() {
+        @Override public void run() {
+            mIsScheduled = false;
+            if (mDispatcher.isEmpty())
+                stopWhenIdle();
+            else
+                schedule();
+        }
+    };
+
+    /** The handler running the dispatch task on the worker thread. */
+    private Handler mHandler;
+
+    /** TRUE iff a dispatch is scheduled or running, accessed on the main thread only. */
+    private boolean mIsScheduled;
+
+    /** The handler running the tasks on the main thread. */
+    private Handler mMainHandler;
+
+    /** The id of the latest start request. */
+    private int mStartId;
 
-    /** Build an instance to name the worker thread. */
-    public MainService() {
-        super("NotificationIntentService");
+    /** The worker thread. */
+    private HandlerThread mThread;
+
+    // Public class methods.
+
+    /** Use the given transport, or push messaging if null, in the services created later. */
+    public static void setTransport(final NotificationTransport transport) {
+        sTransport = transport;
     }
 
     // Public instance methods.
 
-    /** Handle the intent providing the notification data in the worker thread. */
-    @Override protected void onHandleIntent(Intent intent) {
-        // Ensure that there is a room key provided by the intent and that it is not the Me room.
-        // Abort if there is no key or the the key is the Me room key.
-        String roomKey = intent.getStringExtra(ROOM_KEY);
-        if (roomKey == null || roomKey.equals(AccountManager.instance.getMeRoomKey()))
-            return;
-        Log.d(TAG, "Handling the notifications task.");
-        try {
-            Thread.sleep(5000);
-        } catch (InterruptedException e) {
-            // Restore interrupt status.
-            Thread.currentThread().interrupt();
+    /** The service is not bound. */
+    @Override public IBinder onBind(final Intent intent) {
+        return null;
+    }
+
+    /** Start the worker thread and the dispatcher. */
+    @Override public void onCreate() {
+        super.onCreate();
+        mThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+        mMainHandler = new Handler(Looper.getMainLooper());
+        NotificationTransport transport = sTransport != null ? sTransport
+                : new UpstreamTransport(getString(R.string.gcm_defaultSenderId));
+        mDispatcher = new NotificationDispatcher(transport);
+    }
+
+    /** Stop the worker thread. */
+    @Override public void onDestroy() {
+        mMainHandler.removeCallbacks(mDispatchedTask);
+        mThread.quitSafely();
+        super.onDestroy();
+    }
+
+    /** Queue the notification requested by the intent, if any, on the main thread. */
+    @Override public int onStartCommand(final Intent intent, final int flags, final int startId) {
+        // Ensure that there is a room key provided by the intent, that it is not the Me room and
+        // that the room profile is available.  Otherwise there is nothing to do but stop when the
+        // notifications already queued, if any, are out.
+        mStartId = startId;
+        String roomKey = intent != null ? intent.getStringExtra(ROOM_KEY) : null;
+        Room room = roomKey != null ? RoomManager.instance.getRoomProfile(roomKey) : null;
+        if (room == null || roomKey.equals(AccountManager.instance.getMeRoomKey())) {
+            stopWhenIdle();
+            return START_NOT_STICKY;
         }
-        Log.d(TAG, "Handled the notifications task.");
+
+        // Queue the notification for the room, with a copy of its device tokens, and make sure it
+        // is dispatched at the end of the window.
+        String senderKey = AccountManager.instance.getCurrentAccountId();
+        long time = System.currentTimeMillis();
+        NotificationDispatcher.Notification notification;
+        notification = new NotificationDispatcher.Notification(roomKey, senderKey, time,
+                room.memberTokenMap);
+        if (!mDispatcher.offer(notification))
+            Log.w(TAG, String.format(Locale.US, "Queue full, dropped room {%s}.", roomKey));
+        if (!mIsScheduled)
+            schedule();
+        return START_NOT_STICKY;
+    }
+
+    // Private instance methods.
+
+    /** Schedule a dispatch at the end of the window, on the main thread. */
+    private void schedule() {
+        mIsScheduled = true;
+        mHandler.postDelayed(mDispatchTask, WINDOW);
+    }
+
+    /** Stop the service if there is nothing queued and no dispatch pending, on the main thread. */
+    private void stopWhenIdle() {
+        if (mDispatcher.isEmpty() && !mIsScheduled)
+            stopSelf(mStartId);
     }
 }
@@ -37,6 +37,7 @@ import android.widget.TextView;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.pajato.android.gamechat.BuildConfig;
 import com.pajato.android.gamechat.R;
 import com.pajato.android.gamechat.common.ToolbarManager;
 import com.pajato.android.gamechat.common.model.Account;
@@ -106,6 +107,7 @@ public enum NavigationManager {
         navigationView.setNavigationItemSelectedListener((MainActivity) activity);
         NavigationView footer = activity.findViewById(R.id.nav_footer);
         footer.setNavigationItemSelectedListener((MainActivity) activity);
+        footer.getMenu().findItem(R.id.eventMetrics).setVisible(BuildConfig.DEBUG);
 
         // Establish the account switch state and Have the toolbar manager set up the overflow menu.
         mAccountSwitchState = AccountSwitchState.main;
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.main;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Queue room notifications and dispatch them to the room members' devices.  Notifications for a
+ * room already waiting in the queue are coalesced into the one there, so rapid play or chat
+ * produces one notification per room per dispatch.  The queue is bounded: a notification for a new
+ * room is refused when it is full, leaving the caller to drop it.  A dispatch fans each
+ * notification out to the devices of the members other than the sender, in batches of device
+ * tokens, through a transport.  Notifications are offered from any thread and dispatched on one.
+ */
+public class NotificationDispatcher {
+
+    // Public class constants.
+
+    /** The default maximum number of device tokens delivered to in one transport call. */
+    public static final int BATCH_SIZE = 20;
+
+    /** The default maximum number of rooms with a notification waiting in the queue. */
+    public static final int CAPACITY = 64;
+
+    // Private class constants.
+
+    /** The logcat tag. */
+    private static final String TAG = NotificationDispatcher.class.getSimpleName();
+
+    /** The transport failure log format. */
+    private static final String FAILURE_FORMAT = "Failed to notify %d devices of room {%s}.";
+
+    // Private instance variables.
+
+    /** The maximum number of device tokens delivered to in one transport call. */
+    private final int mBatchSize;
+
+    /** The number of transport calls made. */
+    private int mBatchCount;
+
+    /** The maximum number of rooms with a notification waiting in the queue. */
+    private final int mCapacity;
+
+    /** The number of notifications coalesced into one already queued. */
+    private int mCoalescedCount;
+
+    /** The number of transport calls that failed. */
+    private int mFailureCount;
+
+    /** The number of notifications refused because the queue was full. */
+    private int mRefusedCount;
+
+    /** The queued notifications, keyed by room push key in the order they were first queued. */
+    private final Map<String, Notification> mQueue = new LinkedHashMap<>();
+
+    /** The transport delivering the notifications. */
+    private final NotificationTransport mTransport;
+
+    // Public constructors.
+
+    /** Build a dispatcher using the given transport and the default capacity and batch size. */
+    public NotificationDispatcher(final NotificationTransport transport) {
+        this(transport, CAPACITY, BATCH_SIZE);
+    }
+
+    /** Build a dispatcher using the given transport, capacity and batch size. */
+    public NotificationDispatcher(final NotificationTransport transport, final int capacity,
+                                  final int batchSize) {
+        mTransport = transport;
+        mCapacity = capacity;
+        mBatchSize = batchSize;
+    }
+
+    // Public instance methods.
+
+    /**
+     * Dispatch the queued notifications, returning the number dispatched.  A failed transport call
+     * is counted and the rest of the fan-out carries on.
+     */
+    public int dispatch() {
+        int result = 0;
+        Notification notification;
+        while ((notification = poll()) != null) {
+            List<String> tokens = getTokens(notification);
+            for (int start = 0; start < tokens.size(); start += mBatchSize) {
+                int end = Math.min(start + mBatchSize, tokens.size());
+                send(notification, new ArrayList<>(tokens.subList(start, end)));
+            }
+            result++;
+        }
+        return result;
+    }
+
+    /** Return the number of transport calls made. */
+    public synchronized int getBatchCount() {
+        return mBatchCount;
+    }
+
+    /** Return the number of notifications coalesced into one already queued. */
+    public synchronized int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /** Return the number of transport calls that failed. */
+    public synchronized int getFailureCount() {
+        return mFailureCount;
+    }
+
+    /** Return the number of notifications refused because the queue was full. */
+    public synchronized int getRefusedCount() {
+        return mRefusedCount;
+    }
+
+    /** Return TRUE iff there are no notifications waiting to be dispatched. */
+    public synchronized boolean isEmpty() {
+        return mQueue.isEmpty();
+    }
+
+    /**
+     * Queue the given notification, coalescing it into the one queued for the same room, if any.
+     * Return FALSE if the notification was refused because the queue is full.
+     */
+    public synchronized boolean offer(final Notification notification) {
+        Notification queued = mQueue.get(notification.roomKey);
+        if (queued != null) {
+            queued.merge(notification);
+            mCoalescedCount++;
+            return true;
+        }
+        if (mQueue.size() >= mCapacity) {
+            mRefusedCount++;
+            return false;
+        }
+        mQueue.put(notification.roomKey, notification);
+        return true;
+    }
+
+    // Private instance methods.
+
+    /** Return the distinct device tokens of the members of the notified room but the sender. */
+    private List<String> getTokens(final Notification notification) {
+        Set<String> result = new LinkedHashSet<>();
+        for (Map.Entry<String, List<String>> entry : notification.tokenMap.entrySet())
+            if (!entry.getKey().equals(notification.senderKey) && entry.getValue() != null)
+                result.addAll(entry.getValue());
+        return new ArrayList<>(result);
+    }
+
+    /** Remove and return the oldest queued notification, or null if there is none. */
+    private synchronized Notification poll() {
+        Iterator<Notification> iterator = mQueue.values().iterator();
+        if (!iterator.hasNext())
+            return null;
+        Notification result = iterator.next();
+        iterator.remove();
+        return result;
+    }
+
+    /** Deliver the given notification to the given batch of tokens, accounting for the call. */
+    private void send(final Notification notification, final List<String> tokens) {
+        boolean failed = false;
+        try {
+            mTransport.send(notification, tokens);
+        } catch (Exception exc) {
+            Log.w(TAG, String.format(Locale.US, FAILURE_FORMAT, tokens.size(),
+                    notification.roomKey), exc);
+            failed = true;
+        }
+        synchronized (this) {
+            mBatchCount++;
+            if (failed)
+                mFailureCount++;
+        }
+    }
+
+    // Public inner classes.
+
+    /** A notification of new activity (messages or moves) in a room. */
+    public static class Notification {
+
+        /** The number of requests coalesced into the notification. */
+        public int count = 1;
+
+        /** The room push key. */
+        public final String roomKey;
+
+        /** The push key of the member whose activity is notified: the current account. */
+        public final String senderKey;
+
+        /** The time of the latest activity notified. */
+        public long time;
+
+        /** The room's device tokens, keyed by member push key, as of the latest activity. */
+        public Map<String, List<String>> tokenMap;
+
+        /** Build a notification of activity by the given sender in the given room at a time. */
+        public Notification(final String roomKey, final String senderKey, final long time,
+                            final Map<String, List<String>> tokenMap) {
+            this.roomKey = roomKey;
+            this.senderKey = senderKey;
+            this.time = time;
+            this.tokenMap = copy(tokenMap);
+        }
+
+        /** Fold the given later notification for the same room into this one. */
+        void merge(final Notification notification) {
+            count += notification.count;
+            time = Math.max(time, notification.time);
+            tokenMap = notification.tokenMap;
+        }
+
+        /** Return a copy of the given token map, safe from changes made to the room after. */
+        private static Map<String, List<String>> copy(final Map<String, List<String>> map) {
+            Map<String, List<String>> result = new HashMap<>();
+            if (map == null)
+                return result;
+            for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+                List<String> tokens = entry.getValue();
+                result.put(entry.getKey(), tokens != null ? new ArrayList<>(tokens)
+                        : Collections.<String>emptyList());
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.main;
+
+import java.util.List;
+
+/**
+ * Provide the means by which the notification dispatcher delivers a notification to a batch of
+ * member devices: push messaging in the app, a local stub in tests.
+ */
+public interface NotificationTransport {
+
+    /**
+     * Deliver the given notification to the devices with the given tokens, failing with an
+     * exception if it cannot be delivered.  This is called on the dispatcher's worker thread.
+     */
+    void send(NotificationDispatcher.Notification notification, List<String> tokens)
+            throws Exception;
+}
@@ -122,6 +122,25 @@ public enum SupportManager {
         return outputFile.getPath();
     }
 
+    /** Return the file the event metrics have been dumped to, null if they cannot be. */
+    public String getEventMetricsPath(final Activity activity) {
+        // Write the current event metrics report to a file on internal storage.
+        File dir = new File(activity.getFilesDir(), "metrics");
+        if (!dir.exists() && !dir.mkdirs()) return null;
+
+        File outputFile = new File(dir, "events.txt");
+        String report = AppEventManager.instance.getMetrics().getReport();
+        try {
+            FileOutputStream outputStream = new FileOutputStream(outputFile);
+            outputStream.write(report.getBytes("UTF-8"));
+            outputStream.close();
+        } catch (IOException exc) {
+            Log.e(TAG, exc.getMessage(), exc);
+            return null;
+        }
+        return outputFile.getPath();
+    }
+
     /** Return null if the given bitmap cannot be saved or the file path it has been saved to. */
     public String getBitmapPath(final Bitmap bitmap, final Activity activity) {
         // Create the image file on internal storage.  Abort if the subdirectories cannot be
@@ -164,6 +183,8 @@ public enum SupportManager {
         if (path != null) attachments.add(path);
         path = SupportManager.instance.getLogcatPath(activity);
         if (path != null) attachments.add(path);
+        path = SupportManager.instance.getEventMetricsPath(activity);
+        if (path != null) attachments.add(path);
         SupportManager.instance.sendFeedback(activity, SupportManager.instance.getAbout(),
                 "Extra information: ", attachments);
         AppEventManager.instance.cancel(event);
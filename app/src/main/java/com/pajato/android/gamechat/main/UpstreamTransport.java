@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.main;
+
+import android.text.TextUtils;
+
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.RemoteMessage;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deliver notifications as upstream push messages to the GameChat app server, which relays each
+ * one to the device tokens it carries.  An upstream message payload is limited to 4KB, which is
+ * what bounds the dispatcher's batch of tokens.
+ */
+public class UpstreamTransport implements NotificationTransport {
+
+    // Public class constants.
+
+    /** The data keys of the upstream message. */
+    public static final String COUNT_KEY = "count";
+    public static final String ROOM_KEY = "roomKey";
+    public static final String SENDER_KEY = "senderKey";
+    public static final String TIME_KEY = "time";
+    public static final String TOKENS_KEY = "tokens";
+
+    // Private class constants.
+
+    /** The format of the app server address given the sender id. */
+    private static final String ADDRESS_FORMAT = "%s@gcm.googleapis.com";
+
+    /** The source of the message ids, unique for the life of the process. */
+    private static final AtomicLong sMessageId = new AtomicLong(System.currentTimeMillis());
+
+    // Private instance variables.
+
+    /** The app server address. */
+    private final String mAddress;
+
+    // Public constructors.
+
+    /** Build a transport to the app server of the given sender id. */
+    public UpstreamTransport(final String senderId) {
+        mAddress = String.format(Locale.US, ADDRESS_FORMAT, senderId);
+    }
+
+    // Public instance methods.
+
+    /** Send the notification and the batch of tokens to the app server. */
+    @Override public void send(final NotificationDispatcher.Notification notification,
+                               final List<String> tokens) {
+        RemoteMessage message = new RemoteMessage.Builder(mAddress)
+                .setMessageId(String.valueOf(sMessageId.incrementAndGet()))
+                .addData(ROOM_KEY, notification.roomKey)
+                .addData(SENDER_KEY, notification.senderKey)
+                .addData(COUNT_KEY, String.valueOf(notification.count))
+                .addData(TIME_KEY, String.valueOf(notification.time))
+                .addData(TOKENS_KEY, TextUtils.join(",", tokens))
+                .build();
+        FirebaseMessaging.getInstance().send(message);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.database;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Provide a unit test for the EntityStore class: the per room lists stay newest first and the
+ * latest entity per room and per group follows replacements and removals.
+ */
+public class EntityStoreUnitTest {
+
+    // Public instance methods.
+
+    /** Ensure entities are listed newest first and the latest is found by room and by group. */
+    @Test public void testIndexes() {
+        EntityStore<Item> store = new EntityStore<>(new ItemIndexer());
+        Item first = new Item("e1", "g1", "r1", 10);
+        Item second = new Item("e2", "g1", "r1", 30);
+        Item third = new Item("e3", "g1", "r2", 20);
+        store.put(first);
+        store.put(second);
+        store.put(third);
+        List<Item> list = store.getList("g1", "r1");
+        Assert.assertEquals(2, list.size());
+        Assert.assertSame(second, list.get(0));
+        Assert.assertSame(first, list.get(1));
+        Assert.assertSame(second, store.getLatest("g1"));
+        Assert.assertSame(third, store.getLatest("g1", "r2"));
+        Assert.assertEquals(2, store.getRoomKeys("g1").size());
+        Assert.assertEquals(3, store.size());
+        Assert.assertEquals(0, store.getList("g2", "r1").size());
+        Assert.assertTrue(store.getLatest("g2") == null);
+    }
+
+    /** Ensure a replaced entity is re-indexed and a removed one leaves no empty index behind. */
+    @Test public void testReplaceAndRemove() {
+        EntityStore<Item> store = new EntityStore<>(new ItemIndexer());
+        store.put(new Item("e1", "g1", "r1", 10));
+        store.put(new Item("e2", "g1", "r1", 20));
+        Item moved = new Item("e1", "g2", "r3", 30);
+        store.put(moved);
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals(1, store.getList("g1", "r1").size());
+        Assert.assertSame(moved, store.getLatest("g2"));
+        Assert.assertSame(moved, store.get("e1"));
+        Assert.assertSame(moved, store.remove("e1"));
+        Assert.assertTrue(store.remove("e1") == null);
+        Assert.assertEquals(1, store.getGroupKeys().size());
+        Assert.assertTrue(store.getRoomKeys("g2").isEmpty());
+        store.clear();
+        Assert.assertEquals(0, store.getGroupKeys().size());
+    }
+
+    // Private inner classes.
+
+    /** A minimal entity. */
+    private static class Item {
+        final String key;
+        final String groupKey;
+        final String roomKey;
+        final long modTime;
+
+        Item(final String key, final String groupKey, final String roomKey, final long modTime) {
+            this.key = key;
+            this.groupKey = groupKey;
+            this.roomKey = roomKey;
+            this.modTime = modTime;
+        }
+    }
+
+    /** Index the minimal entities. */
+    private static class ItemIndexer implements EntityStore.Indexer<Item> {
+        @Override public String getKey(final Item item) {
+            return item.key;
+        }
+
+        @Override public String getGroupKey(final Item item) {
+            return item.groupKey;
+        }
+
+        @Override public String getRoomKey(final Item item) {
+            return item.roomKey;
+        }
+
+        @Override public long getModTime(final Item item) {
+            return item.modTime;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.database;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/** Provide a unit test for the ReadCursorIndex class and its unseen counts per room. */
+public class ReadCursorIndexUnitTest {
+
+    // Public instance methods.
+
+    /** Ensure the items created after a room's cursor are counted in the room and its group. */
+    @Test public void testCountsFollowCursor() {
+        ReadCursorIndex index = new ReadCursorIndex();
+        index.put("g1", "r1", "m1", 10);
+        index.put("g1", "r1", "m2", 20);
+        index.put("g1", "r1", "m3", 20);
+        index.put("g1", "r2", "m4", 30);
+        Assert.assertEquals(3, index.getCount("g1", "r1"));
+        Assert.assertEquals(4, index.getCount("g1"));
+        index.setCursor("g1", "r1", 20);
+        Assert.assertEquals(0, index.getCount("g1", "r1"));
+        Assert.assertEquals(1, index.getCount("g1"));
+        index.setCursor("g1", "r1", 15);
+        Assert.assertEquals(2, index.getCount("g1", "r1"));
+        Assert.assertEquals(3, index.getCount("g1"));
+        Assert.assertEquals(0, index.getCount("g2"));
+    }
+
+    /** Ensure items that move or go away are recounted, and a cursor set first is kept. */
+    @Test public void testMoveAndRemove() {
+        ReadCursorIndex index = new ReadCursorIndex();
+        index.setCursor("g1", "r1", 15);
+        index.put("g1", "r1", "m1", 10);
+        index.put("g1", "r1", "m2", 20);
+        Assert.assertEquals(1, index.getCount("g1"));
+        index.put("g1", "r1", "m1", 25);
+        Assert.assertEquals(2, index.getCount("g1", "r1"));
+        index.remove("g1", "r1", "m2");
+        index.remove("g1", "r1", "m5");
+        Assert.assertEquals(1, index.getCount("g1", "r1"));
+        Assert.assertEquals(1, index.getCount("g1"));
+        index.clear();
+        Assert.assertEquals(0, index.getCount("g1"));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.database;
+
+import com.pajato.android.gamechat.common.model.Account;
+import com.pajato.android.gamechat.common.model.JoinState;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Provide a test class for the room read cursor writes made by MemberManager.updateSeenTime(),
+ * which must touch only the seenTime leaf of a member's join state.
+ */
+public class SeenTimeWriteUnitTest {
+
+    // Private class constants.
+
+    /** The normalized paths of the test member and its room join state. */
+    private static final String MEMBER = "groups/g1/members/m1";
+    private static final String JOIN = MEMBER + "/joinMap/r1";
+
+    // Public instance methods.
+
+    /** Ensure a cursor move alone writes only the seenTime leaf, not the join state node. */
+    @Test public void testCursorMoveWritesLeaf() {
+        WriteBatch batch = new WriteBatch();
+        batch.put(getSeenTimePath(), 20L, 0);
+        Map<String, Object> updates = batch.getUpdates();
+        Assert.assertEquals(1, updates.size());
+        Assert.assertEquals(JOIN + "/seenTime", updates.keySet().iterator().next());
+        Assert.assertEquals(20L, updates.get(JOIN + "/seenTime"));
+    }
+
+    /**
+     * Ensure a cursor move following a member write keeps the member's join state: the write is
+     * left for the next batch rather than merged into the member's JoinState objects.
+     */
+    @Test public void testJoinStateSurvivesCursorMove() {
+        Account member = new Account();
+        JoinState joinState = new JoinState();
+        joinState.setType(JoinState.JoinType.active);
+        joinState.setSeenTime(10L);
+        member.joinMap.put("r1", joinState);
+        WriteBatch batch = new WriteBatch();
+        batch.put(String.format(Locale.US, MemberManager.MEMBERS_PATH, "g1", "m1"),
+                member.toMap(), 0);
+        Assert.assertFalse(batch.put(getSeenTimePath(), 20L, 0));
+        Map<?, ?> result = (Map<?, ?>) batch.getUpdates().get(MEMBER);
+        JoinState state = (JoinState) ((Map<?, ?>) result.get("joinMap")).get("r1");
+        Assert.assertEquals("active", state.getJoinState());
+        Assert.assertEquals(10L, state.getSeenTime());
+        WriteBatch next = new WriteBatch();
+        Assert.assertTrue(next.put(getSeenTimePath(), 20L, 0));
+        Assert.assertEquals(20L, next.getUpdates().get(MEMBER + "/joinMap/r1/seenTime"));
+    }
+
+    // Private instance methods.
+
+    /** Return the path of the test room read cursor. */
+    private String getSeenTimePath() {
+        return String.format(Locale.US, MemberManager.SEEN_TIME_PATH, "g1", "m1", "r1");
+    }
+}
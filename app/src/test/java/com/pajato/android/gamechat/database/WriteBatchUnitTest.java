@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.database;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Provide a unit test for the WriteBatch class: the paths it collects never overlap, whether a
+ * later write supersedes, merges into or is refused by the writes already in the batch.
+ */
+public class WriteBatchUnitTest {
+
+    // Public instance methods.
+
+    /** Ensure distinct paths are kept, normalized, in order and a repeated path is superseded. */
+    @Test public void testDistinctAndRepeatedPaths() {
+        WriteBatch batch = new WriteBatch();
+        batch.put("/groups/g1/profile/", getMap("name", "one"), 5);
+        batch.put("/groups/g1/members/m1", getMap("name", "me"), 6);
+        batch.put("/groups/g1/profile/", getMap("name", "two"), 7);
+        Map<String, Object> updates = batch.getUpdates();
+        Assert.assertEquals(2, updates.size());
+        Assert.assertEquals("groups/g1/members/m1", updates.keySet().iterator().next());
+        Assert.assertEquals(getMap("name", "two"), updates.get("groups/g1/profile"));
+        Assert.assertEquals(3, batch.getWriteCount());
+        Assert.assertEquals(1, batch.getCoalescedCount());
+        Assert.assertEquals(5, batch.getCreateTime());
+    }
+
+    /** Ensure a write above paths in the batch replaces them. */
+    @Test public void testAncestorWriteSupersedes() {
+        WriteBatch batch = new WriteBatch();
+        batch.put("rooms/r1/experiences/e1/board/pieces/a1", "king", 0);
+        batch.put("rooms/r1/experiences/e1/turn", true, 0);
+        batch.put("rooms/r1/messages/m1", "hello", 0);
+        batch.put("rooms/r1/experiences/e1/", getMap("turn", false), 0);
+        Map<String, Object> updates = batch.getUpdates();
+        Assert.assertEquals(2, updates.size());
+        Assert.assertEquals(getMap("turn", false), updates.get("rooms/r1/experiences/e1"));
+        Assert.assertEquals(2, batch.getCoalescedCount());
+    }
+
+    /** Ensure a write below a path in the batch is merged without touching the caller's map. */
+    @Test public void testDescendantWriteMerges() {
+        WriteBatch batch = new WriteBatch();
+        Map<String, Object> experience = getMap("turn", true);
+        experience.put("board", getMap("a1", "king"));
+        batch.put("experiences/e1", experience, 0);
+        batch.put("experiences/e1/board/b2", "pawn", 0);
+        batch.put("experiences/e1/board/a1", null, 0);
+        batch.put("experiences/e1/name/first", "x", 0);
+        Map<String, Object> updates = batch.getUpdates();
+        Assert.assertEquals(1, updates.size());
+        Map<?, ?> result = (Map<?, ?>) updates.get("experiences/e1");
+        Assert.assertEquals(getMap("b2", "pawn"), result.get("board"));
+        Assert.assertEquals(getMap("first", "x"), result.get("name"));
+        Assert.assertEquals(true, result.get("turn"));
+        Assert.assertEquals(getMap("a1", "king"), experience.get("board"));
+        Assert.assertEquals(3, batch.getCoalescedCount());
+    }
+
+    /** Ensure a write below a model object or a list is refused, leaving the batch unchanged. */
+    @Test public void testObjectWriteIsNotMerged() {
+        WriteBatch batch = new WriteBatch();
+        Map<String, Object> member = getMap("name", "me");
+        member.put("joinMap", getMap("r1", new Object()));
+        member.put("rooms", Arrays.asList("r1", "r2"));
+        batch.put("members/m1", member, 0);
+        Assert.assertFalse(batch.put("members/m1/joinMap/r1/seenTime", 42L, 0));
+        Assert.assertFalse(batch.put("members/m1/rooms/0", "r3", 0));
+        Assert.assertSame(member, batch.getUpdates().get("members/m1"));
+        Assert.assertEquals(1, batch.getWriteCount());
+        Assert.assertEquals(0, batch.getCoalescedCount());
+        Assert.assertTrue(batch.put("members/m1/name/first", "x", 0));
+        Map<?, ?> result = (Map<?, ?>) batch.getUpdates().get("members/m1");
+        Assert.assertEquals(getMap("first", "x"), result.get("name"));
+    }
+
+    /** Ensure the listeners are notified with the batch and error on completion. */
+    @Test public void testCompletion() {
+        final WriteBatch batch = new WriteBatch();
+        final String[] result = new String[1];
+        batch.put("a", 1, 0);
+        batch.addListener(new WriteBatch.CompletionListener() {
+            @Override public void onComplete(WriteBatch completed, String error) {
+                Assert.assertSame(batch, completed);
+                result[0] = error;
+            }
+        });
+        batch.commit(10);
+        batch.complete("denied", 25);
+        Assert.assertEquals("denied", result[0]);
+        Assert.assertEquals(15, batch.getLatency());
+    }
+
+    // Private instance methods.
+
+    /** Return a modifiable map holding the given entry. */
+    private Map<String, Object> getMap(final String key, final Object value) {
+        Map<String, Object> result = new HashMap<>();
+        result.put(key, value);
+        return result;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.event;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** Provide a unit test for the per event type counts, percentiles and report of EventMetrics. */
+public class EventMetricsUnitTest {
+
+    // Public instance methods.
+
+    /** Ensure posts are counted and the percentiles come from the recorded times. */
+    @Test public void testCountsAndPercentiles() {
+        EventMetrics metrics = new EventMetrics();
+        List<String> subscribers = Arrays.asList("GroupManager", "UnseenCountManager");
+        for (int time = 1; time <= 100; time++)
+            metrics.record("MessageChangeEvent", subscribers, 1, time);
+        Assert.assertEquals(100, metrics.getPostCount("MessageChangeEvent"));
+        Assert.assertEquals(50, metrics.getPercentile("MessageChangeEvent", 50));
+        Assert.assertEquals(99, metrics.getPercentile("MessageChangeEvent", 99));
+        Assert.assertEquals(0, metrics.getPostCount("ClickEvent"));
+        Assert.assertEquals(0, metrics.getPercentile("ClickEvent", 50));
+        Assert.assertTrue(metrics.getReport().contains("fan-out 2, depth 1"));
+    }
+
+    /** Ensure only the most recent times are sampled and the costliest type is reported first. */
+    @Test public void testSamplingAndReportOrder() {
+        EventMetrics metrics = new EventMetrics();
+        List<String> subscribers = Arrays.asList("MainActivity");
+        for (int i = 0; i < EventMetrics.SAMPLE_SIZE; i++)
+            metrics.record("ClickEvent", subscribers, 2, 1000);
+        for (int i = 0; i < EventMetrics.SAMPLE_SIZE; i++)
+            metrics.record("ClickEvent", subscribers, 1, 10);
+        metrics.record("ChatListChangeEvent", subscribers, 1, 1);
+        Assert.assertEquals(10, metrics.getPercentile("ClickEvent", 99));
+        String report = metrics.getReport();
+        Assert.assertTrue(report.startsWith("ClickEvent: posts 512, fan-out 1, depth 2"));
+        metrics.reset();
+        Assert.assertEquals("", metrics.getReport());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/** Provide a unit test for the PositionCache lookups and its least recently used replacement. */
+public class PositionCacheUnitTest {
+
+    // Private class constants.
+
+    /** The number of positions held by the cache under test. */
+    private static final int SIZE = 8;
+
+    // Public instance methods.
+
+    /** Ensure a cached position returns its moves and flags and an unknown one is not found. */
+    @Test public void testGetReturnsCachedMoves() {
+        PositionCache cache = new PositionCache(SIZE);
+        int[] moves = {3, 1, 4, 1, 5};
+        cache.put(42L, moves, moves.length, PositionCache.IN_CHECK);
+        int[] result = new int[PositionCache.MOVE_CAPACITY];
+        Assert.assertEquals(moves.length, cache.get(42L, result));
+        for (int index = 0; index < moves.length; index++)
+            Assert.assertEquals(moves[index], result[index]);
+        Assert.assertEquals(PositionCache.IN_CHECK, cache.getFlags(42L));
+        Assert.assertEquals(PositionCache.NOT_FOUND, cache.get(43L, result));
+        Assert.assertEquals(PositionCache.NOT_FOUND, cache.getFlags(43L));
+        cache.clear();
+        Assert.assertEquals(PositionCache.NOT_FOUND, cache.get(42L, result));
+    }
+
+    /** Ensure a position with no moves (the end of a game) is cached as such. */
+    @Test public void testCachesEmptyMoveList() {
+        PositionCache cache = new PositionCache(SIZE);
+        cache.put(7L, new int[0], 0, 0);
+        Assert.assertEquals(0, cache.get(7L, new int[1]));
+    }
+
+    /** Ensure a new position replaces the less recently used position of its pair. */
+    @Test public void testReplacesLeastRecentlyUsed() {
+        // Keys 0, 8 and 16 share the first pair of an eight entry cache.
+        PositionCache cache = new PositionCache(SIZE);
+        int[] moves = {1};
+        int[] result = new int[PositionCache.MOVE_CAPACITY];
+        cache.put(0L, moves, 1, 0);
+        cache.put(8L, moves, 1, 0);
+        cache.get(0L, result);
+        cache.put(16L, moves, 1, 0);
+        Assert.assertEquals(1, cache.get(0L, result));
+        Assert.assertEquals(PositionCache.NOT_FOUND, cache.get(8L, result));
+        Assert.assertEquals(1, cache.get(16L, result));
+    }
+
+    /** Ensure a position with more moves than an entry holds is not cached. */
+    @Test public void testSkipsOversizedMoveLists() {
+        PositionCache cache = new PositionCache(SIZE);
+        int count = PositionCache.MOVE_CAPACITY + 1;
+        cache.put(5L, new int[count], count, 0);
+        Assert.assertEquals(PositionCache.NOT_FOUND, cache.get(5L, new int[count]));
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+package com.pajato.android.gamechat.exp.checkers;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboard.MAX_MOVES;
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboard.MAX_PATH;
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboard.PRIMARY_SIDE;
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboard.SECONDARY_SIDE;
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboard.toSquare;
+
+/**
+ * Provide a unit test for the CheckersBitboard move generator, covering forced captures,
+ * multi-jumps, crowning and the make/unmake round trip.
+ */
+public class CheckersBitboardUnitTest {
+
+    // Private class constants.
+
+    /** The initial positions of the primary and secondary men. */
+    private static final int[] PRIMARY_START = {40, 42, 44, 46, 49, 51, 53, 55, 56, 58, 60, 62};
+    private static final int[] SECONDARY_START = {1, 3, 5, 7, 8, 10, 12, 14, 17, 19, 21, 23};
+
+    // Package private class methods.
+
+    /** Put men (or kings) of the given side on the given board positions. */
+    static void put(final CheckersBitboard board, final int side, final boolean isKing,
+                    final int... positions) {
+        for (int position : positions)
+            board.put(toSquare(position), side, isKing);
+    }
+
+    // Public instance methods.
+
+    /** Ensure the squares map to and from the dark cells of the board. */
+    @Test public void testSquareMapping() {
+        for (int square = 0; square < CheckersBitboard.SQUARES; square++) {
+            int position = CheckersBitboard.toPosition(square);
+            Assert.assertTrue(CheckersBitboard.isPlayable(position));
+            Assert.assertEquals(square, toSquare(position));
+        }
+    }
+
+    /** Ensure each side has seven moves in the initial position. */
+    @Test public void testInitialMoves() {
+        CheckersBitboard board = new CheckersBitboard();
+        put(board, PRIMARY_SIDE, false, PRIMARY_START);
+        put(board, SECONDARY_SIDE, false, SECONDARY_START);
+        long[] moves = new long[MAX_MOVES];
+        Assert.assertEquals(7, board.generateMoves(moves));
+        board.sideToMove = SECONDARY_SIDE;
+        Assert.assertEquals(7, board.generateMoves(moves));
+    }
+
+    /** Ensure a capture anywhere on the side forces every other move off the list. */
+    @Test public void testForcedCapture() {
+        CheckersBitboard board = new CheckersBitboard();
+        put(board, PRIMARY_SIDE, false, 42, 60);
+        put(board, SECONDARY_SIDE, false, 33);
+        long[] moves = new long[MAX_MOVES];
+        Assert.assertEquals(1, board.generateMoves(moves));
+        assertMove(moves[0], 42, 24, 33);
+    }
+
+    /** Ensure a jump continues while it can, and is retraced hop by hop. */
+    @Test public void testMultiJump() {
+        CheckersBitboard board = new CheckersBitboard();
+        put(board, PRIMARY_SIDE, false, 58);
+        put(board, SECONDARY_SIDE, false, 49, 33);
+        long[] moves = new long[MAX_MOVES];
+        Assert.assertEquals(1, board.generateMoves(moves));
+        assertMove(moves[0], 58, 26, 49, 33);
+        int[] path = new int[MAX_PATH];
+        Assert.assertEquals(3, board.getPath(moves[0], path));
+        Assert.assertEquals(toSquare(40), path[1]);
+        Assert.assertEquals(toSquare(26), path[2]);
+        board.makeMove(moves[0]);
+        Assert.assertEquals(0, board.getPieces(SECONDARY_SIDE));
+    }
+
+    /** Ensure a man crowned by a jump stops there, even when a king could jump on. */
+    @Test public void testCrowningEndsJump() {
+        CheckersBitboard board = new CheckersBitboard();
+        put(board, PRIMARY_SIDE, false, 21);
+        put(board, SECONDARY_SIDE, false, 12, 10);
+        long[] moves = new long[MAX_MOVES];
+        Assert.assertEquals(1, board.generateMoves(moves));
+        assertMove(moves[0], 21, 3, 12);
+        board.makeMove(moves[0]);
+        Assert.assertEquals(1 << toSquare(3), board.kings[PRIMARY_SIDE]);
+    }
+
+    /** Ensure kings jump backwards and men do not. */
+    @Test public void testKingJumpsBackwards() {
+        CheckersBitboard board = new CheckersBitboard();
+        put(board, PRIMARY_SIDE, true, 26);
+        put(board, SECONDARY_SIDE, false, 35);
+        long[] moves = new long[MAX_MOVES];
+        Assert.assertEquals(1, board.generateMoves(moves));
+        assertMove(moves[0], 26, 44, 35);
+        board.clear();
+        put(board, PRIMARY_SIDE, false, 26);
+        put(board, SECONDARY_SIDE, false, 35);
+        Assert.assertEquals(2, board.generateMoves(moves));
+        Assert.assertEquals(0, CheckersBitboard.getCaptured(moves[0]));
+    }
+
+    /** Ensure moves are reverted exactly and the key is maintained incrementally. */
+    @Test public void testMakeUnmake() {
+        CheckersBitboard board = new CheckersBitboard();
+        put(board, PRIMARY_SIDE, false, PRIMARY_START);
+        put(board, SECONDARY_SIDE, false, SECONDARY_START);
+        Random random = new Random(7L);
+        long[] moves = new long[MAX_MOVES];
+        long initialKey = board.getKey();
+        int played = 0;
+        for (; played < 60; played++) {
+            int count = board.generateMoves(moves);
+            if (count == 0)
+                break;
+            board.makeMove(moves[random.nextInt(count)]);
+            Assert.assertEquals(getFreshKey(board), board.getKey());
+        }
+        for (; played > 0; played--)
+            board.unmakeMove();
+        Assert.assertEquals(initialKey, board.getKey());
+        Assert.assertEquals(PRIMARY_SIDE, board.sideToMove);
+    }
+
+    // Private instance methods.
+
+    /** Assert the given move goes between the given positions capturing the given positions. */
+    private void assertMove(final long move, final int from, final int to,
+                            final int... captured) {
+        int expected = 0;
+        for (int position : captured)
+            expected |= 1 << toSquare(position);
+        Assert.assertEquals(toSquare(from), CheckersBitboard.getFrom(move));
+        Assert.assertEquals(toSquare(to), CheckersBitboard.getTo(move));
+        Assert.assertEquals(expected, CheckersBitboard.getCaptured(move));
+    }
+
+    /** Return the key of a board freshly built from the pieces on the given board. */
+    private long getFreshKey(final CheckersBitboard board) {
+        CheckersBitboard copy = new CheckersBitboard();
+        for (int side = PRIMARY_SIDE; side <= SECONDARY_SIDE; side++)
+            for (int square = 0; square < CheckersBitboard.SQUARES; square++) {
+                if ((board.men[side] & (1 << square)) != 0)
+                    copy.put(square, side, false);
+                if ((board.kings[side] & (1 << square)) != 0)
+                    copy.put(square, side, true);
+            }
+        copy.sideToMove = board.sideToMove;
+        return copy.getKey();
+    }
+}
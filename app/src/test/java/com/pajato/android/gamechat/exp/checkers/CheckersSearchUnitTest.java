@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+package com.pajato.android.gamechat.exp.checkers;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboard.PRIMARY_SIDE;
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboard.SECONDARY_SIDE;
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboard.toSquare;
+import static com.pajato.android.gamechat.exp.checkers.CheckersBitboardUnitTest.put;
+
+/**
+ * Provide a test class for the computer's checkers play: it keeps its pieces out of capture for
+ * either side and returns no move when it is blocked.
+ */
+public class CheckersSearchUnitTest {
+
+    // Private class constants.
+
+    /** The time allowed for each search, in milliseconds. */
+    private static final long SEARCH_TIME = 1000L;
+
+    // Public instance methods.
+
+    /** Ensure the search does not step a man into a capture. */
+    @Test public void testAvoidsHangingPiece() {
+        CheckersBitboard board = new CheckersBitboard();
+        put(board, PRIMARY_SIDE, false, 42, 60);
+        put(board, SECONDARY_SIDE, false, 24);
+        long move = findBestMove(board);
+        boolean isHanging = CheckersBitboard.getFrom(move) == toSquare(42) &&
+                CheckersBitboard.getTo(move) == toSquare(33);
+        Assert.assertFalse(isHanging);
+    }
+
+    /** Ensure the search does not step a secondary man into a capture either. */
+    @Test public void testAvoidsHangingPieceForSecondary() {
+        CheckersBitboard board = new CheckersBitboard();
+        put(board, PRIMARY_SIDE, false, 44);
+        put(board, SECONDARY_SIDE, false, 26);
+        board.sideToMove = SECONDARY_SIDE;
+        long move = findBestMove(board);
+        Assert.assertEquals(toSquare(26), CheckersBitboard.getFrom(move));
+        Assert.assertEquals(toSquare(33), CheckersBitboard.getTo(move));
+    }
+
+    /** Ensure the search returns no move when the side to move has none. */
+    @Test public void testNoMoveWhenBlocked() {
+        CheckersBitboard board = new CheckersBitboard();
+        put(board, SECONDARY_SIDE, false, 1);
+        board.sideToMove = PRIMARY_SIDE;
+        Assert.assertEquals(CheckersSearch.NO_MOVE, findBestMove(board));
+    }
+
+    // Private instance methods.
+
+    /** Return the best move found for the given board, checking the board is restored. */
+    private long findBestMove(final CheckersBitboard board) {
+        long key = board.getKey();
+        long deadline = System.currentTimeMillis() + SEARCH_TIME;
+        long result = new CheckersSearch().findBestMove(board, deadline);
+        Assert.assertEquals(key, board.getKey());
+        return result;
+    }
+}
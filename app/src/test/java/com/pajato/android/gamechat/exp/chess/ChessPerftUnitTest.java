@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp.chess;
+
+import com.pajato.android.gamechat.exp.Team;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static com.pajato.android.gamechat.exp.chess.ChessBitboard.KIND_COUNT;
+
+/**
+ * Run perft (performance test) on the chess move generator: count the leaf nodes of the legal move
+ * tree to a fixed depth.  The expected counts for these standard positions are well known, so any
+ * move generator bug (castling, en passant, promotion, pins) shows up as a count mismatch.  Each
+ * run also reports its speed in nodes per second.
+ */
+public class ChessPerftUnitTest {
+
+    // Private class constants.
+
+    /** The standard start position. */
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -";
+
+    /** The "Kiwipete" position, rich in castling, pins and en passant. */
+    private static final String KIWIPETE =
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -";
+
+    /** A sparse end game position exercising en passant discovered checks. */
+    private static final String END_GAME = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - -";
+
+    /** A position with promotions, captured castling rooks and checks. */
+    private static final String PROMOTIONS =
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq -";
+
+    /** A position with a pawn able to promote by capture. */
+    private static final String UNDER_PROMOTIONS =
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ -";
+
+    /** The FEN piece letters, in bitboard kind order. */
+    private static final String PIECE_LETTERS = "pnbrqk";
+
+    // Public instance methods.
+
+    /** Validate the start position node counts. */
+    @Test public void testStartPosition() {
+        assertPerft("start", START, 20, 400, 8902, 197281);
+    }
+
+    /** Validate the Kiwipete position node counts. */
+    @Test public void testKiwipete() {
+        assertPerft("kiwipete", KIWIPETE, 48, 2039, 97862);
+    }
+
+    /** Validate the end game position node counts. */
+    @Test public void testEndGame() {
+        assertPerft("end game", END_GAME, 14, 191, 2812, 43238);
+    }
+
+    /** Validate the promotion position node counts. */
+    @Test public void testPromotions() {
+        assertPerft("promotions", PROMOTIONS, 6, 264, 9467);
+    }
+
+    /** Validate the under promotion position node counts. */
+    @Test public void testUnderPromotions() {
+        assertPerft("under promotions", UNDER_PROMOTIONS, 44, 1486, 62379);
+    }
+
+    /** Ensure that make/unmake restores the board exactly. */
+    @Test public void testMakeUnmakeRestoresBoard() {
+        ChessBitboard board = getBoard(KIWIPETE);
+        ChessBitboard copy = new ChessBitboard();
+        copy.copyFrom(board);
+        perft(board, 3);
+        for (int position = 0; position < 64; position++)
+            Assert.assertEquals("Mailbox differs!", copy.getPiece(position), board.getPiece(position));
+        for (int index = 0; index < 2 * KIND_COUNT; index++)
+            Assert.assertEquals("Piece set differs!", copy.pieces[index], board.pieces[index]);
+        Assert.assertEquals("Rights differ!", copy.castlingRights, board.castlingRights);
+        Assert.assertEquals("En passant differs!", copy.enPassantPosition, board.enPassantPosition);
+        Assert.assertEquals("Side differs!", copy.sideToMove, board.sideToMove);
+    }
+
+    /** Ensure that the ChessHelper threat ranges agree with the bitboard for non-king pieces. */
+    @Test public void testThreatRangesMatchBitboard() {
+        for (String fen : new String[] {START, KIWIPETE, END_GAME, PROMOTIONS}) {
+            ChessBoard board = getChessBoard(fen);
+            ChessBitboard bitboard = board.getBitboard();
+            bitboard.enPassantPosition = -1;
+            for (String key : board.getKeySet()) {
+                int position = board.getPosition(key);
+                List<Integer> expected = new ArrayList<>();
+                ChessBitboard.addPositions(bitboard.getTargets(position), expected);
+                List<Integer> actual = new ArrayList<>();
+                switch (board.getPiece(position).getPieceType()) {
+                    case PAWN: ChessHelper.getPawnThreatRange(actual, position, board); break;
+                    case KNIGHT: ChessHelper.getKnightThreatRange(actual, position, board); break;
+                    case BISHOP: ChessHelper.getBishopThreatRange(actual, position, board); break;
+                    case ROOK: ChessHelper.getRookThreatRange(actual, position, board); break;
+                    case QUEEN: ChessHelper.getQueenThreatRange(actual, position, board); break;
+                    default: continue;
+                }
+                Collections.sort(actual);
+                Assert.assertEquals(fen + " at " + position, expected, actual);
+            }
+        }
+    }
+
+    // Package private class methods.
+
+    /** Return the number of leaf nodes of the legal move tree of the given depth (> 0). */
+    static long perft(final ChessBitboard board, final int depth) {
+        int[] moves = new int[ChessBitboard.MAX_MOVES];
+        int count = board.generateLegalMoves(moves);
+        if (depth == 1)
+            return count;
+        long result = 0;
+        for (int index = 0; index < count; index++) {
+            board.makeMove(moves[index]);
+            result += perft(board, depth - 1);
+            board.unmakeMove();
+        }
+        return result;
+    }
+
+    /** Return a bitboard built from the given FEN (Forsyth-Edwards notation) position. */
+    static ChessBitboard getBoard(final String fen) {
+        // FEN lists the rows from the secondary (black) back row down, matching the board indexing.
+        String[] fields = fen.split(" ");
+        ChessBitboard board = new ChessBitboard();
+        int position = 0;
+        for (char c : fields[0].toCharArray()) {
+            if (c == '/')
+                continue;
+            if (Character.isDigit(c)) {
+                position += c - '0';
+                continue;
+            }
+            int side = Character.isUpperCase(c) ? ChessBitboard.PRIMARY_SIDE
+                    : ChessBitboard.SECONDARY_SIDE;
+            int kind = PIECE_LETTERS.indexOf(Character.toLowerCase(c));
+            board.put(position++, side * KIND_COUNT + kind);
+        }
+        board.sideToMove = fields[1].equals("w") ? ChessBitboard.PRIMARY_SIDE
+                : ChessBitboard.SECONDARY_SIDE;
+        int rights = 0;
+        if (fields[2].contains("K")) rights |= ChessBitboard.PRIMARY_KING_SIDE;
+        if (fields[2].contains("Q")) rights |= ChessBitboard.PRIMARY_QUEEN_SIDE;
+        if (fields[2].contains("k")) rights |= ChessBitboard.SECONDARY_KING_SIDE;
+        if (fields[2].contains("q")) rights |= ChessBitboard.SECONDARY_QUEEN_SIDE;
+        board.castlingRights = rights;
+        if (!fields[3].equals("-"))
+            board.enPassantPosition = (fields[3].charAt(0) - 'a') + 8 * ('8' - fields[3].charAt(1));
+        return board;
+    }
+
+    // Private instance methods.
+
+    /** Assert the node counts for each depth, starting at one, and report the speed. */
+    private void assertPerft(final String name, final String fen, final long... expected) {
+        for (int depth = 1; depth <= expected.length; depth++) {
+            ChessBitboard board = getBoard(fen);
+            long start = System.nanoTime();
+            long nodes = perft(board, depth);
+            long elapsed = Math.max(1, System.nanoTime() - start);
+            String message = String.format(Locale.US, "%s perft(%d)", name, depth);
+            Assert.assertEquals(message, expected[depth - 1], nodes);
+            double nodesPerSecond = nodes * 1e9 / elapsed;
+            System.out.println(String.format(Locale.US, "%s: %d nodes, %.0f nodes/s", message,
+                    nodes, nodesPerSecond));
+        }
+    }
+
+    /** Return a chess board model holding the pieces of the given FEN position. */
+    private ChessBoard getChessBoard(final String fen) {
+        ChessBitboard bitboard = getBoard(fen);
+        ChessPiece.PieceType[] types = {ChessPiece.PieceType.PAWN, ChessPiece.PieceType.KNIGHT,
+                ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.ROOK,
+                ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.KING};
+        ChessBoard board = new ChessBoard();
+        for (int position = 0; position < 64; position++) {
+            int piece = bitboard.getPiece(position);
+            if (piece == ChessBitboard.EMPTY)
+                continue;
+            Team team = ChessBitboard.getSide(piece) == ChessBitboard.PRIMARY_SIDE ? Team.PRIMARY
+                    : Team.SECONDARY;
+            board.add(position, types[ChessBitboard.getKind(piece)], team);
+        }
+        return board;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp.chess;
+
+import com.pajato.android.gamechat.exp.PositionCache;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import static com.pajato.android.gamechat.exp.chess.ChessPerftUnitTest.getBoard;
+
+/**
+ * Provide a test class for the computer's chess play: it finds mates and material within its
+ * deadline and keeps the incremental position key in step with the board.
+ */
+public class ChessSearchUnitTest {
+
+    // Private class constants.
+
+    /** The number of positions held by the search's position cache. */
+    private static final int CACHE_SIZE = 16;
+
+    /** The time allowed for each search, in milliseconds. */
+    private static final long SEARCH_TIME = 1000L;
+
+    /**
+     * The time, in milliseconds, past which a search is taken to have ignored its deadline.  It is
+     * generous so that a loaded machine does not fail the test.
+     */
+    private static final long DEADLINE_BOUND = 5 * SEARCH_TIME;
+
+    /** A back rank mate in one for the primary side: Ra1-a8. */
+    private static final String PRIMARY_MATE = "6k1/5ppp/8/8/8/8/5PPP/R5K1 w - -";
+
+    /** A back rank mate in one for the secondary side: Re8-e1. */
+    private static final String SECONDARY_MATE = "4r1k1/5ppp/8/8/8/8/5PPP/6K1 b - -";
+
+    /** A position where the primary side wins a queen with a knight fork. */
+    private static final String FORK = "r3k3/8/8/8/4q3/8/3N4/4K3 w - -";
+
+    // Public instance methods.
+
+    /** Ensure the search finds a mate in one for either side. */
+    @Test public void testFindsMateInOne() {
+        assertMove(PRIMARY_MATE, 56, 0);
+        assertMove(SECONDARY_MATE, 4, 60);
+    }
+
+    /** Ensure the search takes a hanging queen with a knight. */
+    @Test public void testWinsMaterial() {
+        assertMove(FORK, 51, 36);
+    }
+
+    /** Ensure the search returns no move when the side to move is mated. */
+    @Test public void testNoMoveWhenMated() {
+        ChessBitboard board = getBoard("R5k1/5ppp/8/8/8/8/5PPP/6K1 b - -");
+        long deadline = System.currentTimeMillis() + SEARCH_TIME;
+        ChessSearch search = new ChessSearch(new PositionCache(CACHE_SIZE));
+        Assert.assertEquals(ChessSearch.NO_MOVE, search.findBestMove(board, deadline));
+    }
+
+    /** Ensure the incrementally maintained key matches the key of a freshly built board. */
+    @Test public void testKeyIsIncremental() {
+        ChessBitboard board =
+                getBoard("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -");
+        int[] moves = new int[ChessBitboard.MAX_MOVES];
+        int count = board.generateLegalMoves(moves);
+        for (int index = 0; index < count; index++) {
+            long key = board.getKey();
+            board.makeMove(moves[index]);
+            ChessBitboard copy = new ChessBitboard();
+            for (int position = 0; position < 64; position++)
+                if (board.getPiece(position) != ChessBitboard.EMPTY)
+                    copy.put(position, board.getPiece(position));
+            copy.sideToMove = board.sideToMove;
+            copy.castlingRights = board.castlingRights;
+            copy.enPassantPosition = board.enPassantPosition;
+            Assert.assertEquals("Key differs!", copy.getKey(), board.getKey());
+            board.unmakeMove();
+            Assert.assertEquals("Key not restored!", key, board.getKey());
+        }
+    }
+
+    // Private instance methods.
+
+    /** Assert that the search, within the time box, plays the given move on the given board. */
+    private void assertMove(final String fen, final int from, final int to) {
+        ChessBitboard board = getBoard(fen);
+        ChessSearch search = new ChessSearch(new PositionCache(CACHE_SIZE));
+        long start = System.currentTimeMillis();
+        int move = search.findBestMove(board, start + SEARCH_TIME);
+        long elapsed = System.currentTimeMillis() - start;
+        Assert.assertEquals(fen, from, ChessBitboard.getFrom(move));
+        Assert.assertEquals(fen, to, ChessBitboard.getTo(move));
+        Assert.assertTrue("Search ignored the deadline!", elapsed < DEADLINE_BOUND);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp.chess;
+
+import com.pajato.android.gamechat.exp.SearchOrigin;
+import com.pajato.android.gamechat.exp.Team;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Exercise the computer move staleness test across the model swaps made by database changes: a
+ * move searched in one model must still be played when an equal model replaces it.
+ */
+public class SearchOriginUnitTest {
+
+    // Private class constants.
+
+    /** The experience key used by the searches. */
+    private static final String KEY = "-KchessExperience";
+
+    // Public instance methods.
+
+    /** Ensure an equal model swapped in between the search start and the play keeps the move. */
+    @Test public void testEqualModelIsCurrent() {
+        ChessBoard board = getBoard();
+        SearchOrigin origin = new SearchOrigin(KEY, board.getBitboard().getKey());
+        ChessBoard echo = getBoard();
+        Assert.assertTrue(origin.isCurrent(KEY, echo.getBitboard().getKey()));
+    }
+
+    /** Ensure a move made in the meantime makes the search stale. */
+    @Test public void testChangedPositionIsStale() {
+        ChessBoard board = getBoard();
+        SearchOrigin origin = new SearchOrigin(KEY, board.getBitboard().getKey());
+        ChessBoard moved = getBoard();
+        moved.add(20, moved.delete(12));
+        Assert.assertFalse(origin.isCurrent(KEY, moved.getBitboard().getKey()));
+    }
+
+    /** Ensure a different experience (a new game, say) in the same position makes it stale. */
+    @Test public void testOtherExperienceIsStale() {
+        ChessBoard board = getBoard();
+        long positionKey = board.getBitboard().getKey();
+        SearchOrigin origin = new SearchOrigin(KEY, positionKey);
+        Assert.assertFalse(origin.isCurrent("-KotherExperience", positionKey));
+        Assert.assertFalse(origin.isCurrent(null, positionKey));
+    }
+
+    // Private instance methods.
+
+    /** Return a board holding the kings and a pawn. */
+    private ChessBoard getBoard() {
+        ChessBoard board = new ChessBoard();
+        board.add(4, ChessPiece.PieceType.KING, Team.PRIMARY);
+        board.add(12, ChessPiece.PieceType.PAWN, Team.PRIMARY);
+        board.add(60, ChessPiece.PieceType.KING, Team.SECONDARY);
+        return board;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+package com.pajato.android.gamechat.exp.tictactoe;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.pajato.android.gamechat.exp.tictactoe.TTTBitboard.NO_CELL;
+
+/** Provide a unit test for the tictactoe board encoding, win table and perfect play solver. */
+public class TTTSolverUnitTest {
+
+    // Public instance methods.
+
+    /** Ensure the button tags map to and from cells and grids map to masks. */
+    @Test public void testEncoding() {
+        for (int cell = 0; cell < TTTBitboard.CELLS; cell++)
+            Assert.assertEquals(cell, TTTBitboard.getCell(TTTBitboard.getTag(cell)));
+        Assert.assertEquals(NO_CELL, TTTBitboard.getCell("button33"));
+        Map<String, String> grid = new HashMap<>();
+        grid.put("button00", "X");
+        grid.put("button11", "O");
+        grid.put("button22", "X");
+        Assert.assertEquals(0x101, TTTBitboard.getMask(grid, "X"));
+        Assert.assertEquals(0x010, TTTBitboard.getMask(grid, "O"));
+    }
+
+    /** Ensure the win table holds exactly the masks containing a line. */
+    @Test public void testWinTable() {
+        for (int line : TTTBitboard.LINES)
+            Assert.assertTrue(TTTBitboard.isWin(line));
+        Assert.assertFalse(TTTBitboard.isWin(0x0AB));
+        Assert.assertTrue(TTTBitboard.isWin(0x1FF));
+        Assert.assertFalse(TTTBitboard.isWin(0));
+    }
+
+    /** Ensure solving the empty board visits every reachable position once and finds a draw. */
+    @Test public void testSolvesReachablePositions() {
+        TTTSolver solver = new TTTSolver();
+        Assert.assertEquals(0, solver.getScore(0, 0, true));
+        Assert.assertEquals(5478, solver.getSolvedCount());
+    }
+
+    /** Ensure the solver wins when it can and blocks otherwise. */
+    @Test public void testBestMove() {
+        TTTSolver solver = new TTTSolver();
+        // X holds cells 0 and 1, O holds 3 and 4: X wins at 2.
+        Assert.assertEquals(2, solver.getBestMove(0x003, 0x018, true));
+        // With O to move instead, O wins at 5.
+        Assert.assertEquals(5, solver.getBestMove(0x003, 0x018, false));
+        // X holds cells 0 and 1, O holds 4: O must block at 2.
+        Assert.assertEquals(2, solver.getBestMove(0x003, 0x010, false));
+        Assert.assertEquals(NO_CELL, solver.getBestMove(0x007, 0x018, false));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.main;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provide a unit test for the NotificationDispatcher class, using a stub transport in place of
+ * push messaging to see each batch of device tokens sent.
+ */
+public class NotificationDispatcherUnitTest {
+
+    // Public instance methods.
+
+    /** Ensure notifications for a queued room are coalesced and a full queue refuses new rooms. */
+    @Test public void testCoalescingAndBackpressure() {
+        StubTransport transport = new StubTransport();
+        NotificationDispatcher dispatcher = new NotificationDispatcher(transport, 2, 10);
+        Assert.assertTrue(dispatcher.offer(getNotification("r1", 1, "m2", "t1")));
+        Assert.assertTrue(dispatcher.offer(getNotification("r2", 2, "m2", "t2")));
+        Assert.assertTrue(dispatcher.offer(getNotification("r1", 3, "m2", "t3")));
+        Assert.assertTrue(!dispatcher.offer(getNotification("r3", 4, "m2", "t4")));
+        Assert.assertEquals(1, dispatcher.getCoalescedCount());
+        Assert.assertEquals(1, dispatcher.getRefusedCount());
+        Assert.assertEquals(2, dispatcher.dispatch());
+        Assert.assertTrue(dispatcher.isEmpty());
+        Assert.assertEquals(2, transport.notifications.size());
+        NotificationDispatcher.Notification first = transport.notifications.get(0);
+        Assert.assertEquals("r1", first.roomKey);
+        Assert.assertEquals(2, first.count);
+        Assert.assertEquals(3, first.time);
+        Assert.assertEquals(Arrays.asList("t3"), transport.batches.get(0));
+    }
+
+    /** Ensure the sender is skipped, tokens are distinct and the fan-out is batched. */
+    @Test public void testFanOut() {
+        StubTransport transport = new StubTransport();
+        transport.failures = 1;
+        NotificationDispatcher dispatcher = new NotificationDispatcher(transport, 4, 2);
+        Map<String, List<String>> tokenMap = new HashMap<>();
+        tokenMap.put("m1", Arrays.asList("a", "b"));
+        tokenMap.put("m2", Arrays.asList("c", "d", "a"));
+        tokenMap.put("m3", Arrays.asList("e"));
+        tokenMap.put("me", Arrays.asList("f"));
+        dispatcher.offer(new NotificationDispatcher.Notification("r1", "me", 0, tokenMap));
+        tokenMap.get("m2").set(0, "x");
+        Assert.assertEquals(1, dispatcher.dispatch());
+        List<String> tokens = new ArrayList<>();
+        for (List<String> batch : transport.batches) {
+            Assert.assertTrue(batch.size() <= 2);
+            tokens.addAll(batch);
+        }
+        Assert.assertEquals(5, tokens.size());
+        Assert.assertTrue(tokens.containsAll(Arrays.asList("a", "b", "c", "d", "e")));
+        Assert.assertEquals(3, dispatcher.getBatchCount());
+        Assert.assertEquals(1, dispatcher.getFailureCount());
+    }
+
+    // Private instance methods.
+
+    /** Return a notification for the given room at the given time with one other member token. */
+    private NotificationDispatcher.Notification getNotification(final String roomKey,
+                                                                final long time,
+                                                                final String memberKey,
+                                                                final String token) {
+        Map<String, List<String>> tokenMap = new HashMap<>();
+        tokenMap.put(memberKey, Arrays.asList(token));
+        return new NotificationDispatcher.Notification(roomKey, "me", time, tokenMap);
+    }
+
+    // Private inner classes.
+
+    /** A local transport recording what it is given, failing the first calls if asked to. */
+    private static class StubTransport implements NotificationTransport {
+
+        /** The token batches given, failed or not, in order. */
+        final List<List<String>> batches = new ArrayList<>();
+
+        /** The number of calls left to fail. */
+        int failures;
+
+        /** The notifications given, in order. */
+        final List<NotificationDispatcher.Notification> notifications = new ArrayList<>();
+
+        @Override public void send(final NotificationDispatcher.Notification notification,
+                                   final List<String> tokens) throws Exception {
+            batches.add(tokens);
+            notifications.add(notification);
+            if (failures-- > 0)
+                throw new Exception("Stub failure.");
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.common;
+
+import com.pajato.android.gamechat.chat.model.Message;
+import com.pajato.android.gamechat.common.adapter.ListItem;
+import com.pajato.android.gamechat.database.MessageManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure building the message list items for a busy room, i.e. the work done on every message
+ * change event while the messages fragment is showing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MessageListBenchmark {
+
+    // Private class constants.
+
+    /** The benchmark group key. */
+    private static final String GROUP_KEY = "groupKey";
+
+    /** The benchmark room key. */
+    private static final String ROOM_KEY = "roomKey";
+
+    /** The number of milliseconds between successive messages, spreading them over the headers. */
+    private static final long INTERVAL = 60 * 1000L;
+
+    // Public instance variables.
+
+    /** The number of messages in the room. */
+    @Param({"500", "5000"}) public int size;
+
+    // Private instance variables.
+
+    /** The dispatcher selecting the benchmark room. */
+    private Dispatcher mDispatcher;
+
+    // Public instance methods.
+
+    /** Populate the message manager with a single room of messages. */
+    @Setup public void setup() {
+        long now = System.currentTimeMillis();
+        for (int index = 0; index < size; index++) {
+            String key = "message" + index;
+            Message message = new Message(key, "owner", "name", now - index * INTERVAL, "text",
+                    Message.STANDARD, null, new ArrayList<String>());
+            message.groupKey = GROUP_KEY;
+            message.roomKey = ROOM_KEY;
+            MessageManager.instance.putMessage(message);
+        }
+        mDispatcher = new Dispatcher(FragmentType.messageList);
+        mDispatcher.groupKey = GROUP_KEY;
+        mDispatcher.roomKey = ROOM_KEY;
+    }
+
+    /** Build the list items for the room. */
+    @Benchmark public List<ListItem> listItemData() {
+        return MessageManager.instance.getListItemData(mDispatcher);
+    }
+}
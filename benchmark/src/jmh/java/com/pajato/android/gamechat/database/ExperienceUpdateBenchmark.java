@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.database;
+
+import com.pajato.android.gamechat.exp.Experience;
+import com.pajato.android.gamechat.exp.model.Player;
+import com.pajato.android.gamechat.exp.model.TicTacToe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.pajato.android.gamechat.event.BaseChangeEvent.CHANGED;
+
+/**
+ * Measure the experience manager map rebuild performed on every experience change, for a number
+ * of groups each holding a room full of experiences.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExperienceUpdateBenchmark {
+
+    // Private class constants.
+
+    /** The number of groups. */
+    private static final int GROUP_COUNT = 10;
+
+    /** The number of milliseconds between successive experiences. */
+    private static final long INTERVAL = 60 * 60 * 1000L;
+
+    // Public instance variables.
+
+    /** The number of experiences in each group. */
+    @Param({"20", "200"}) public int size;
+
+    // Private instance variables.
+
+    /** The experiences, one of which changes on each benchmark invocation. */
+    private List<Experience> mExperiences = new ArrayList<>();
+
+    /** The index of the next experience to change. */
+    private int mIndex;
+
+    // Public instance methods.
+
+    /** Populate the experience manager with the groups and their experiences. */
+    @Setup public void setup() {
+        long now = System.currentTimeMillis();
+        for (int group = 0; group < GROUP_COUNT; group++) {
+            String groupKey = "group" + group;
+            String roomKey = "room" + group;
+            for (int index = 0; index < size; index++) {
+                String key = groupKey + "exp" + index;
+                Experience experience = new TicTacToe(key, "owner", "TicTacToe",
+                        now - index * INTERVAL, groupKey, roomKey, new ArrayList<Player>());
+                mExperiences.add(experience);
+                ExperienceManager.instance.putExperience(experience);
+            }
+        }
+        for (Experience experience : mExperiences)
+            ExperienceManager.instance.updateAllMaps(experience, CHANGED);
+    }
+
+    /** Apply a change to the next experience. */
+    @Benchmark public void updateAllMaps() {
+        Experience experience = mExperiences.get(mIndex);
+        mIndex = (mIndex + 1) % mExperiences.size();
+        ExperienceManager.instance.updateAllMaps(experience, CHANGED);
+    }
+}
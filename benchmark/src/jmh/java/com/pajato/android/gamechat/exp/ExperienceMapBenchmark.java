@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp;
+
+import com.pajato.android.gamechat.exp.checkers.CheckersBoard;
+import com.pajato.android.gamechat.exp.chess.Chess;
+import com.pajato.android.gamechat.exp.chess.ChessBoard;
+import com.pajato.android.gamechat.exp.model.Checkers;
+import com.pajato.android.gamechat.exp.model.Player;
+import com.pajato.android.gamechat.exp.model.TicTacToe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.pajato.android.gamechat.exp.model.TTTBoard.LEFT_DIAG;
+import static com.pajato.android.gamechat.exp.model.TTTBoard.MID_COL;
+import static com.pajato.android.gamechat.exp.model.TTTBoard.MID_ROW;
+import static com.pajato.android.gamechat.exp.model.TTTBoard.TOP_ROW;
+
+/**
+ * Measure the cost of building the Firebase update maps for each experience type, i.e. the work
+ * done on every move before the experience is written to the database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExperienceMapBenchmark {
+
+    // Private instance variables.
+
+    /** A chess experience in the start position. */
+    private Chess mChess;
+
+    /** A checkers experience in the start position. */
+    private Checkers mCheckers;
+
+    /** A tictactoe experience with a few moves played. */
+    private TicTacToe mTicTacToe;
+
+    // Public instance methods.
+
+    /** Build one experience of each type. */
+    @Setup public void setup() {
+        long now = System.currentTimeMillis();
+        ChessBoard chessBoard = new ChessBoard();
+        chessBoard.init();
+        mChess = new Chess(chessBoard, "chessKey", "owner", 0, "Chess", now, "groupKey",
+                "roomKey", getPlayers());
+        CheckersBoard checkersBoard = new CheckersBoard();
+        checkersBoard.init();
+        mCheckers = new Checkers(checkersBoard, "checkersKey", "owner", "Checkers", now, 0,
+                "groupKey", "roomKey", getPlayers());
+        mTicTacToe = new TicTacToe("tttKey", "owner", "TicTacToe", now, "groupKey", "roomKey",
+                getPlayers());
+        mTicTacToe.board.grid.put("button00", "X");
+        mTicTacToe.board.grid.put("button11", "O");
+        mTicTacToe.board.tallies.put(TOP_ROW, 1);
+        mTicTacToe.board.tallies.put(MID_ROW, 4);
+        mTicTacToe.board.tallies.put(MID_COL, 4);
+        mTicTacToe.board.tallies.put(LEFT_DIAG, 5);
+    }
+
+    /** Build the chess update map. */
+    @Benchmark public Map<String, Object> chessToMap() {
+        return mChess.toMap();
+    }
+
+    /** Build the checkers update map. */
+    @Benchmark public Map<String, Object> checkersToMap() {
+        return mCheckers.toMap();
+    }
+
+    /** Build the tictactoe update map. */
+    @Benchmark public Map<String, Object> ticTacToeToMap() {
+        return mTicTacToe.toMap();
+    }
+
+    // Private instance methods.
+
+    /** Return a pair of players, one for each team. */
+    private List<Player> getPlayers() {
+        List<Player> result = new ArrayList<>();
+        result.add(new Player("Player 1", "", Team.PRIMARY.name(), "owner"));
+        result.add(new Player("Player 2", "", Team.SECONDARY.name(), ""));
+        return result;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp.checkers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/** Measure checkers move generation for every piece on the start position. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CheckersMoveBenchmark {
+
+    // Private instance variables.
+
+    /** The board in the start position. */
+    private CheckersBoard mBoard;
+
+    // Public instance methods.
+
+    /** Build the start position. */
+    @Setup public void setup() {
+        mBoard = new CheckersBoard();
+        mBoard.init();
+    }
+
+    /** Generate the possible moves for every piece on the board. */
+    @Benchmark public void possibleMoves(final Blackhole blackhole) {
+        for (int position = 0; position < 64; position++)
+            if (mBoard.hasPiece(position))
+                blackhole.consume(CheckersEngine.instance.getPossibleMoves(mBoard, position));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2017 Pajato Technologies, Inc.
+ *
+ * This file is part of Pajato GameChat.
+
+ * GameChat is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * GameChat is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License along with GameChat.  If not,
+ * see <http://www.gnu.org/licenses/>.
+ */
+
+package com.pajato.android.gamechat.exp.chess;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure chess move generation over every piece on the start position: the original map based
+ * threat range helpers against the bitboard pseudo-legal and legal target generators.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChessMoveBenchmark {
+
+    // Private instance variables.
+
+    /** The board in the start position. */
+    private ChessBoard mBoard;
+
+    /** The castling flags expected by the king threat range helper, nothing has moved. */
+    private final boolean[] mCastlingFlags = new boolean[6];
+
+    // Public instance methods.
+
+    /** Build the start position and its bitboard. */
+    @Setup public void setup() {
+        mBoard = new ChessBoard();
+        mBoard.init();
+        mBoard.getBitboard();
+    }
+
+    /** Generate the targets for every piece using the map based helper. */
+    @Benchmark public void helperThreatRanges(final Blackhole blackhole) {
+        List<Integer> threatRange = new ArrayList<>();
+        for (int position = 0; position < 64; position++) {
+            ChessPiece piece = mBoard.getPiece(position);
+            if (piece == null)
+                continue;
+            threatRange.clear();
+            switch (piece.getPieceType()) {
+                case KING:
+                    ChessHelper.getKingThreatRange(threatRange, position, mBoard, mCastlingFlags);
+                    break;
+                case QUEEN: ChessHelper.getQueenThreatRange(threatRange, position, mBoard); break;
+                case BISHOP: ChessHelper.getBishopThreatRange(threatRange, position, mBoard); break;
+                case KNIGHT: ChessHelper.getKnightThreatRange(threatRange, position, mBoard); break;
+                case ROOK: ChessHelper.getRookThreatRange(threatRange, position, mBoard); break;
+                case PAWN: ChessHelper.getPawnThreatRange(threatRange, position, mBoard); break;
+                default: break;
+            }
+            blackhole.consume(threatRange.size());
+        }
+    }
+
+    /** Generate the pseudo-legal targets for every piece using the bitboard. */
+    @Benchmark public void bitboardTargets(final Blackhole blackhole) {
+        ChessBitboard bitboard = mBoard.getBitboard();
+        for (int position = 0; position < 64; position++)
+            blackhole.consume(bitboard.getTargets(position));
+    }
+
+    /** Generate the legal targets for every piece using the bitboard. */
+    @Benchmark public void bitboardLegalTargets(final Blackhole blackhole) {
+        ChessBitboard bitboard = mBoard.getBitboard();
+        for (int position = 0; position < 64; position++)
+            blackhole.consume(bitboard.getLegalTargets(position));
+    }
+}